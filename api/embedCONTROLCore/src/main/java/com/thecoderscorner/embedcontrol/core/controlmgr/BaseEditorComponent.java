@@ -25,6 +25,8 @@ import java.util.Set;
 /// @param <W> The window component type for JavaFX it is Node.
 public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
     public static final int MAX_CORRELATION_WAIT = 5000;
+    public static final int RECENT_UPDATE_HIGHLIGHT_TIME = 1000;
+    private static final long NO_TICK_DUE = Long.MAX_VALUE;
 
     protected final System.Logger logger = System.getLogger(getClass().getSimpleName());
     protected final MenuComponentControl componentControl;
@@ -37,6 +39,9 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
     private long lastUpdate = System.currentTimeMillis();
     protected volatile RenderingStatus status = RenderingStatus.NORMAL;
     private boolean locallyReadOnly;
+    private volatile UiUpdateScheduler updateScheduler;
+    private volatile TickDeadlineQueue tickQueue;
+    private long tickDueMillis = NO_TICK_DUE;
 
     protected BaseEditorComponent(MenuComponentControl controller, ComponentSettings settings,
                                   MenuItem item, ThreadMarshaller threadMarshaller) {
@@ -54,6 +59,31 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
         this.locallyReadOnly = locallyReadOnly;
     }
 
+    /**
+     * Provide a scheduler that coalesces updates to this component into frames, when not set each update is posted
+     * to the UI thread separately.
+     * @param updateScheduler the scheduler or null to post each update separately
+     */
+    public void setUpdateScheduler(UiUpdateScheduler updateScheduler) {
+        this.updateScheduler = updateScheduler;
+    }
+
+    /**
+     * Provide a queue that this component adds itself to whenever it has something pending that tick needs to clear,
+     * once set the owner only needs to tick the queue rather than every component. When not set, tick must be called
+     * frequently as before. Any deadlines this component had on a previous queue are removed from it.
+     * @param tickQueue the queue or null to rely on tick being called frequently
+     */
+    public void setTickQueue(TickDeadlineQueue tickQueue) {
+        var oldQueue = this.tickQueue;
+        this.tickQueue = tickQueue;
+        if (oldQueue != null && oldQueue != tickQueue) oldQueue.cancel(this);
+        synchronized (tickLock) {
+            tickDueMillis = NO_TICK_DUE;
+            scheduleNextTick();
+        }
+    }
+
     /**
      * Abstract method that actually makes the change to the component, needs to be implemented. This is called whenever
      * a change in component is needed.
@@ -71,12 +101,23 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
      * Actually requests that the control be updated.
      */
     public void updateEditor() {
-        threadMarshaller.runOnUiThread(() ->
-        {
-            logger.log(System.Logger.Level.INFO, "Updating editor for " + item + ", status is " + status);
-            String str = getControlText();
-            changeControlSettings(status, str);
-        });
+        var scheduler = updateScheduler;
+        if (scheduler != null) {
+            scheduler.markDirty(this);
+        } else {
+            threadMarshaller.runOnUiThread(this::redrawEditor);
+        }
+    }
+
+    /**
+     * Redraws the control from its current state, must be called on the UI thread.
+     */
+    void redrawEditor() {
+        if (logger.isLoggable(System.Logger.Level.DEBUG)) {
+            logger.log(System.Logger.Level.DEBUG, "Updating editor for " + item + ", status is " + status);
+        }
+        String str = getControlText();
+        changeControlSettings(status, str);
     }
 
     /**
@@ -107,6 +148,7 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
         synchronized (tickLock) {
             lastCorrelation = System.currentTimeMillis();
             this.correlation = correlation;
+            scheduleNextTick();
         }
         updateEditor();
     }
@@ -119,6 +161,7 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
         synchronized (tickLock) {
             this.status = status;
             lastUpdate = System.currentTimeMillis();
+            scheduleNextTick();
         }
         updateEditor();
     }
@@ -132,7 +175,7 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
         if (status == RenderingStatus.RECENT_UPDATE || status == RenderingStatus.CORRELATION_ERROR) {
             synchronized (tickLock) {
                 var span = System.currentTimeMillis() - lastUpdate;
-                if (span > 1000) {
+                if (span > RECENT_UPDATE_HIGHLIGHT_TIME) {
                     status = RenderingStatus.NORMAL;
                     updateEditor();
                 }
@@ -156,6 +199,75 @@ public abstract class BaseEditorComponent<W> implements EditorComponent<W> {
         }
     }
 
+    /**
+     * Called by the tick queue when a deadline for this component is reached, it ticks the component and then adds
+     * the next deadline if anything is still pending.
+     * @param dueMillis the deadline that was reached
+     */
+    void deadlineReached(long dueMillis) {
+        synchronized (tickLock) {
+            // an earlier deadline replaced this one and has already been handled
+            if (dueMillis != tickDueMillis) return;
+            tickDueMillis = NO_TICK_DUE;
+        }
+
+        tick();
+
+        synchronized (tickLock) {
+            scheduleNextTick();
+        }
+    }
+
+    /**
+     * Called by the tick queue when the deadlines for this component are cancelled, so that the next deadline this
+     * component needs is added again rather than being treated as already queued.
+     */
+    void deadlinesCancelled() {
+        synchronized (tickLock) {
+            tickDueMillis = NO_TICK_DUE;
+        }
+    }
+
+    /**
+     * Subclasses that have momentary state of their own that tick needs to handle can override this to say when tick
+     * is next needed, and call `requestTick` when they enter that state.
+     * @return the time in system millis that tick is next needed, or Long.MAX_VALUE when it is not needed.
+     */
+    protected long nextLocalTickDue() {
+        return NO_TICK_DUE;
+    }
+
+    /**
+     * Makes sure that the tick queue, if there is one, will tick this component by the time given by `nextLocalTickDue`
+     */
+    protected void requestTick() {
+        synchronized (tickLock) {
+            scheduleNextTick();
+        }
+    }
+
+    /**
+     * Works out when tick next needs to be called from the pending state, and adds a deadline to the queue if it is
+     * earlier than the one already there. Must be called holding tickLock.
+     */
+    private void scheduleNextTick() {
+        var queue = tickQueue;
+        if (queue == null) return;
+
+        long due = nextLocalTickDue();
+        if (status == RenderingStatus.RECENT_UPDATE || status == RenderingStatus.CORRELATION_ERROR) {
+            due = Math.min(due, lastUpdate + RECENT_UPDATE_HIGHLIGHT_TIME + 1);
+        }
+        if (correlation != null) {
+            due = Math.min(due, lastCorrelation + MAX_CORRELATION_WAIT + 1);
+        }
+
+        if (due < tickDueMillis) {
+            tickDueMillis = due;
+            queue.schedule(this, due);
+        }
+    }
+
     @Override
     public void structuralChange(MenuItem item) {
         this.item = item;
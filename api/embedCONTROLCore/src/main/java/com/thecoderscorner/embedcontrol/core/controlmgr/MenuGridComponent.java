@@ -12,9 +12,13 @@ import com.thecoderscorner.menu.domain.util.MenuItemHelper;
 import com.thecoderscorner.menu.remote.commands.AckStatus;
 import com.thecoderscorner.menu.remote.protocol.CorrelationId;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 
@@ -30,14 +34,35 @@ import static com.thecoderscorner.menu.domain.util.MenuItemHelper.asSubMenu;
 /// It is an abstract class, in that the absolute methods by which the controls are put into the grid are implemented
 /// differently in each case. Normally you will not need to create these yourself as they are created automatically
 /// when no custom panel exists.
+///
+/// When the default layout would create more rows than the virtualisation threshold, the grid becomes virtualised.
+/// Rows are then only built for the part of the grid that is in or near the viewport, which the UI reports by calling
+/// `viewportChanged`, and rows that scroll well out of view are removed again. Value updates for items without a built
+/// row only change the menu tree state, and the row shows the latest state when it is next built.
 /// @param <T> The type of UI component, normally Node
 public abstract class MenuGridComponent<T> {
+    /** The default number of rows above which the grid is virtualised */
+    public static final int DEFAULT_VIRTUALISE_ABOVE_ROWS = 200;
+    /** The number of rows either side of the viewport that are built when virtualised */
+    public static final int VIEWPORT_OVERSCAN_ROWS = 10;
+
+    private record DeferredRow<T>(MenuItem item, ComponentSettings settings, MenuEditorFactory<T> editorFactory,
+                                  Consumer<MenuItem> subRenderer) {
+    }
+
     private final MenuItemStore menuItemStore;
     private final JfxNavigationManager navMgr;
     private final MenuTree tree;
     protected final Map<Integer, EditorComponent<T>> editorComponents = new HashMap<>();
     private final ScheduledExecutorService executor;
     private ThreadMarshaller marshaller;
+    private final UiUpdateScheduler updateScheduler;
+    private final TickDeadlineQueue tickQueue = new TickDeadlineQueue();
+    private final List<EditorComponent<T>> polledComponents = new ArrayList<>();
+    private final NavigableMap<Integer, DeferredRow<T>> deferredRows = new TreeMap<>();
+    private final Map<Integer, EditorComponent<T>> builtRows = new HashMap<>();
+    private int virtualiseAboveRows = DEFAULT_VIRTUALISE_ABOVE_ROWS;
+    private boolean virtualised;
     private int row;
 
     public MenuGridComponent(MenuItemStore store, JfxNavigationManager navMgr, ScheduledExecutorService executor,
@@ -47,6 +72,30 @@ public abstract class MenuGridComponent<T> {
         this.navMgr = navMgr;
         this.executor = executor;
         this.marshaller = marshaller;
+        this.updateScheduler = new UiUpdateScheduler(marshaller, executor, UiUpdateScheduler.DEFAULT_MAX_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * @return the scheduler that coalesces the updates of all components in this grid, it can be used to change the
+     * frame cap or read how many updates were coalesced.
+     */
+    public UiUpdateScheduler getUpdateScheduler() {
+        return updateScheduler;
+    }
+
+    /**
+     * Sets the number of default layout rows above which the grid is virtualised, takes effect on the next render.
+     * @param virtualiseAboveRows the number of rows, or Integer.MAX_VALUE to never virtualise
+     */
+    public void setVirtualiseAboveRows(int virtualiseAboveRows) {
+        this.virtualiseAboveRows = virtualiseAboveRows;
+    }
+
+    /**
+     * @return true if the last render was virtualised, and so rows are only built around the viewport
+     */
+    public boolean isVirtualised() {
+        return virtualised;
     }
 
     public void renderMenuRecursive(MenuEditorFactory<T> editorFactory, SubMenuItem sub, boolean recurse, int level) {
@@ -62,7 +111,7 @@ public abstract class MenuGridComponent<T> {
                     var editorComponent = editorFactory.getComponentEditorItem(mfi.getItem(), settings, subRenderer);
                     editorComponent.ifPresent(comp -> {
                         addToGrid(entry.getPositioning(), comp, entry.getFontInfo());
-                        editorComponents.put(mfi.getItem().getId(), comp);
+                        putEditorComponent(mfi.getItem().getId(), comp);
                         MenuItemHelper.getValueFor(mfi.getItem(), tree, MenuItemHelper.getDefaultFor(mfi.getItem()));
                         comp.onItemUpdated(mfi.getItem(), tree.getMenuState(mfi.getItem()));
 
@@ -84,13 +133,7 @@ public abstract class MenuGridComponent<T> {
                         new FontInformation(150, PERCENT), EditorComponent.PortableAlignment.LEFT,
                         position, RedrawingMode.SHOW_NAME, ControlType.TEXT_CONTROL, NO_CUSTOM_DRAWING, false);
 
-                editorFactory.getComponentEditorItem(sub, settings, subRenderer).ifPresent(comp -> {
-                    addToGrid(settings.getPosition(), comp, settings.getFontInfo());
-                    editorComponents.put(sub.getId(), comp);
-                    MenuItemHelper.getValueFor(sub, tree);
-                    comp.onItemUpdated(sub, tree.getMenuState(sub));
-                });
-
+                deferredRows.put(position.getRow(), new DeferredRow<>(sub, settings, editorFactory, subRenderer));
             }
             for (var item : tree.getMenuItems(sub)) {
                 if (!item.isVisible()) continue;
@@ -98,15 +141,92 @@ public abstract class MenuGridComponent<T> {
                     renderMenuRecursive(editorFactory, (SubMenuItem) item, recurse, level + 1);
                 } else {
                     var settings = getComponentForMenuItem(item);
-                    editorFactory.getComponentEditorItem(item, settings, subRenderer).ifPresent(comp -> {
-                        addToGrid(settings.getPosition(), comp, settings.getFontInfo());
-                        editorComponents.put(item.getId(), comp);
-                        MenuItemHelper.getValueFor(item, tree, MenuItemHelper.getDefaultFor(item));
-                        comp.onItemUpdated(item, tree.getMenuState(item));
-                    });
+                    deferredRows.put(settings.getPosition().getRow(), new DeferredRow<>(item, settings, editorFactory, subRenderer));
                 }
             }
         }
+
+        if (level == 0) completeRender();
+    }
+
+    /**
+     * The default layout rows are collected during the render, once it completes they are either all built, or when
+     * there are more than the threshold, the grid is virtualised and rows are built as the viewport is reported.
+     */
+    private void completeRender() {
+        if (deferredRows.size() > virtualiseAboveRows) {
+            virtualised = true;
+            virtualRowsReserved(row);
+            viewportChanged(0, VIEWPORT_OVERSCAN_ROWS);
+        } else {
+            virtualised = false;
+            for (var deferred : deferredRows.values()) {
+                buildRow(deferred);
+            }
+            deferredRows.clear();
+        }
+    }
+
+    /**
+     * Called by the UI whenever the visible part of a virtualised grid changes. Rows near the viewport are built if
+     * they have not been already, and those that are well out of view are removed. Must be called on the UI thread,
+     * it does nothing if the grid is not virtualised.
+     * @param firstRow the first row that is visible
+     * @param lastRow the last row that is visible
+     */
+    public void viewportChanged(int firstRow, int lastRow) {
+        if (!virtualised) return;
+        int from = Math.max(0, firstRow - VIEWPORT_OVERSCAN_ROWS);
+        int to = lastRow + VIEWPORT_OVERSCAN_ROWS;
+
+        var iterator = builtRows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var built = iterator.next();
+            if (built.getKey() >= from && built.getKey() <= to) continue;
+            iterator.remove();
+            releaseBuiltRow(built.getKey(), built.getValue());
+            removeFromGrid(built.getValue());
+        }
+
+        for (var entry : deferredRows.subMap(from, true, to, true).entrySet()) {
+            if (!builtRows.containsKey(entry.getKey())) {
+                buildRow(entry.getValue()).ifPresent(comp -> builtRows.put(entry.getKey(), comp));
+            }
+        }
+    }
+
+    private Optional<EditorComponent<T>> buildRow(DeferredRow<T> deferred) {
+        var item = deferred.item();
+        var settings = deferred.settings();
+        var editorComponent = deferred.editorFactory().getComponentEditorItem(item, settings, deferred.subRenderer());
+        editorComponent.ifPresent(comp -> {
+            addToGrid(settings.getPosition(), comp, settings.getFontInfo());
+            putEditorComponent(item.getId(), comp);
+            MenuItemHelper.getValueFor(item, tree, MenuItemHelper.getDefaultFor(item));
+            comp.onItemUpdated(item, tree.getMenuState(item));
+        });
+        return editorComponent;
+    }
+
+    private void putEditorComponent(int id, EditorComponent<T> comp) {
+        if (comp instanceof BaseEditorComponent<?> baseEditor) {
+            baseEditor.setUpdateScheduler(updateScheduler);
+            baseEditor.setTickQueue(tickQueue);
+        } else {
+            polledComponents.add(comp);
+        }
+        editorComponents.put(id, comp);
+    }
+
+    private void releaseBuiltRow(int builtRow, EditorComponent<T> comp) {
+        var deferred = deferredRows.get(builtRow);
+        if (deferred != null) editorComponents.remove(deferred.item().getId(), comp);
+        if (comp instanceof BaseEditorComponent<?> baseEditor) {
+            baseEditor.setUpdateScheduler(null);
+            baseEditor.setTickQueue(null);
+        } else {
+            polledComponents.remove(comp);
+        }
     }
 
     public void itemHasUpdated(MenuItem item) {
@@ -135,8 +255,27 @@ public abstract class MenuGridComponent<T> {
 
     protected abstract void addSpaceToGrid(ComponentPositioning where, int amount);
 
+    /**
+     * Removes a component that was added with addToGrid, used when a virtualised row scrolls out of view.
+     * @param item the component to remove
+     */
+    protected abstract void removeFromGrid(EditorComponent<T> item);
+
+    /**
+     * Called when the grid is virtualised, so that the UI can reserve space for all the rows even though only those
+     * near the viewport will be added. The UI should report the visible rows by calling `viewportChanged`.
+     * @param rowCount the number of rows in the grid
+     */
+    protected abstract void virtualRowsReserved(int rowCount);
+
     public void clearGrid() {
         row = 0;
+        for (var built : builtRows.entrySet()) {
+            releaseBuiltRow(built.getKey(), built.getValue());
+        }
+        deferredRows.clear();
+        builtRows.clear();
+        virtualised = false;
     }
 
     public void acknowledgementReceived(CorrelationId key, AckStatus status) {
@@ -145,13 +284,47 @@ public abstract class MenuGridComponent<T> {
         }
     }
 
+    /**
+     * Ticks the components that have a pending deadline, such as a recent update highlight to clear or a correlation
+     * that may have timed out, components that have nothing pending are not visited.
+     */
     public void tickAll() {
-        for(var comp : editorComponents.values()) {
+        tickQueue.tickDue();
+        for(var comp : polledComponents) {
             comp.tick();
         }
     }
 
-    public record ScreenLayoutBasedConditionalColor(MenuItemStore store, ComponentPositioning where) implements ConditionalColoring {
+    /**
+     * Provides the colors for a position in the grid from the color sets in the item store. The color for every
+     * rendering status and component type is resolved into a table the first time it is needed, and again only when
+     * the store's colors or layout change, so that painting a control is an array lookup. The table holds the store's
+     * color objects themselves, so changes made within a color are seen straight away, and the store's version
+     * changes when a color is replaced or cleared, in one of its color sets or the global settings.
+     */
+    public static class ScreenLayoutBasedConditionalColor implements ConditionalColoring {
+        private static final int COMPONENT_TYPE_COUNT = ColorComponentType.values().length;
+
+        private record ResolvedColors(int version, ControlColor[] colors) {
+        }
+
+        private final MenuItemStore store;
+        private final ComponentPositioning where;
+        private volatile ResolvedColors resolved;
+
+        public ScreenLayoutBasedConditionalColor(MenuItemStore store, ComponentPositioning where) {
+            this.store = store;
+            this.where = where;
+        }
+
+        public MenuItemStore store() {
+            return store;
+        }
+
+        public ComponentPositioning where() {
+            return where;
+        }
+
         @Override
         public PortableColor foregroundFor(EditorComponent.RenderingStatus status, ColorComponentType compType) {
             return getControlColor(status, compType).getFg();
@@ -167,18 +340,39 @@ public abstract class MenuGridComponent<T> {
             return getControlColor(status, ty);
         }
 
+        private ControlColor getControlColor(EditorComponent.RenderingStatus status, ColorComponentType compType) {
+            var table = resolved;
+            var version = store.getColorLayoutVersion();
+            if (table == null || table.version() != version) {
+                table = new ResolvedColors(version, resolveAllColors());
+                resolved = table;
+            }
+            return table.colors()[status.ordinal() * COMPONENT_TYPE_COUNT + compType.ordinal()];
+        }
+
+        private ControlColor[] resolveAllColors() {
+            var statuses = EditorComponent.RenderingStatus.values();
+            var colors = new ControlColor[statuses.length * COMPONENT_TYPE_COUNT];
+            var csSelected = findColorSet();
+            for (var status : statuses) {
+                for (var compType : ColorComponentType.values()) {
+                    colors[status.ordinal() * COMPONENT_TYPE_COUNT + compType.ordinal()] = resolveColor(csSelected, status, compType);
+                }
+            }
+            return colors;
+        }
+
         private ColorCustomizable findColorSet() {
             var entryOpt = store.getFormItemIfPresent(where.getRow(), where.getCol());
             if (entryOpt.isEmpty()) return store.getTopLevelColorSet();
             else return entryOpt.get().getSettings();
         }
 
-        private ControlColor getControlColor(EditorComponent.RenderingStatus status, ColorComponentType compType) {
+        private ControlColor resolveColor(ColorCustomizable csSelected, EditorComponent.RenderingStatus status, ColorComponentType compType) {
             if (status == EditorComponent.RenderingStatus.RECENT_UPDATE) compType = ColorComponentType.CUSTOM;
             else if (status == EditorComponent.RenderingStatus.EDIT_IN_PROGRESS) compType = ColorComponentType.PENDING;
             else if (status == EditorComponent.RenderingStatus.CORRELATION_ERROR) compType = ColorComponentType.ERROR;
 
-            var csSelected = findColorSet();
             if(csSelected.getColorStatus(compType) == ColorCustomizable.ColorStatus.AVAILABLE) {
                 return csSelected.getColorFor(compType);
             } else if(store.getTopLevelColorSet().getColorStatus(compType) == ColorCustomizable.ColorStatus.AVAILABLE) {
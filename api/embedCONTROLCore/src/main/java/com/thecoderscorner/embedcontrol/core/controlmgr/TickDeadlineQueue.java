@@ -0,0 +1,78 @@
+package com.thecoderscorner.embedcontrol.core.controlmgr;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/// TickDeadlineQueue holds the editor components that have something pending that a tick needs to clear, such as a
+/// recent update highlight or a correlation that may time out, ordered by when that next needs checking. Rather than
+/// calling tick on every component in a grid, `tickDue` only calls tick on the components whose deadline has been
+/// reached, so a grid where nothing is pending does no work at all on each tick.
+///
+/// Components add themselves when they enter a pending state, and each component has at most one deadline that is
+/// current, see `BaseEditorComponent.setTickQueue`. A component's deadlines are removed with `cancel` when it is moved
+/// off the queue. `MenuGridComponent` creates one of these for its components.
+public class TickDeadlineQueue {
+    private record Deadline(long dueMillis, BaseEditorComponent<?> component) {
+    }
+
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(
+            (d1, d2) -> Long.compare(d1.dueMillis(), d2.dueMillis()));
+
+    /**
+     * Adds a deadline for a component, after which tick will be called on it.
+     * @param component the component to tick
+     * @param dueMillis the time in system millis when tick should be called
+     */
+    void schedule(BaseEditorComponent<?> component, long dueMillis) {
+        synchronized (deadlines) {
+            deadlines.add(new Deadline(dueMillis, component));
+        }
+    }
+
+    /**
+     * Removes all the deadlines for a component, so that it is no longer ticked, for example when it is removed from
+     * the grid. Any deadline it adds afterwards is kept as usual.
+     * @param component the component to remove
+     */
+    public void cancel(BaseEditorComponent<?> component) {
+        synchronized (deadlines) {
+            deadlines.removeIf(deadline -> deadline.component() == component);
+        }
+        // outside of the lock, as components hold their own lock while adding deadlines
+        component.deadlinesCancelled();
+    }
+
+    /**
+     * Calls tick on every component whose deadline has been reached, the components are ticked outside of the
+     * queue's lock so that they can add their next deadline.
+     */
+    public void tickDue() {
+        tickDue(System.currentTimeMillis());
+    }
+
+    /**
+     * Calls tick on every component whose deadline is at or before the time given.
+     * @param now the time in system millis to compare the deadlines with
+     */
+    void tickDue(long now) {
+        var due = new ArrayList<Deadline>();
+        synchronized (deadlines) {
+            while (!deadlines.isEmpty() && deadlines.peek().dueMillis() <= now) {
+                due.add(deadlines.poll());
+            }
+        }
+
+        for (var deadline : due) {
+            deadline.component().deadlineReached(deadline.dueMillis());
+        }
+    }
+
+    /**
+     * @return the number of deadlines waiting, including any that were replaced by an earlier deadline
+     */
+    public int size() {
+        synchronized (deadlines) {
+            return deadlines.size();
+        }
+    }
+}
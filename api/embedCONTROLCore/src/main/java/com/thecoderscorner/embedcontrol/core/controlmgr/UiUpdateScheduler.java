@@ -0,0 +1,118 @@
+package com.thecoderscorner.embedcontrol.core.controlmgr;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// UiUpdateScheduler coalesces editor updates so that the UI thread is asked to redraw at most once per frame,
+/// regardless of how often the menu items change. Instead of each change posting its own task to the UI thread, a
+/// component that needs updating is marked dirty, and once per frame all the dirty components are redrawn together
+/// in a single UI thread task.
+///
+/// A component that is marked dirty again before it has been redrawn is only redrawn once, and as the redraw reads
+/// the component's state at the time of the frame it always shows the latest value. Each of these extra marks is
+/// counted as a dropped update, see `getDroppedUpdates`.
+///
+/// The frames are paced on the executor provided, and the redraw is then moved onto the UI thread using the thread
+/// marshaller. `MenuGridComponent` creates one of these for all the components it manages.
+public class UiUpdateScheduler {
+    /** The default maximum number of frames per second */
+    public static final int DEFAULT_MAX_FRAMES_PER_SECOND = 30;
+
+    private final ThreadMarshaller marshaller;
+    private final ScheduledExecutorService executor;
+    private final Set<BaseEditorComponent<?>> dirtyComponents = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+    private final AtomicLong droppedUpdates = new AtomicLong();
+    private final AtomicLong framesDrawn = new AtomicLong();
+    private volatile long frameIntervalNanos;
+    private volatile long lastFrameNanos;
+
+    /**
+     * Create a scheduler that redraws at most maxFramesPerSecond times a second
+     * @param marshaller the marshaller that moves the redraw onto the UI thread
+     * @param executor the executor used to wait for the next frame
+     * @param maxFramesPerSecond the frame cap
+     */
+    public UiUpdateScheduler(ThreadMarshaller marshaller, ScheduledExecutorService executor, int maxFramesPerSecond) {
+        this.marshaller = marshaller;
+        this.executor = executor;
+        setMaxFramesPerSecond(maxFramesPerSecond);
+        this.lastFrameNanos = System.nanoTime() - frameIntervalNanos;
+    }
+
+    /**
+     * Change the frame cap, it takes effect from the next frame.
+     * @param maxFramesPerSecond the maximum number of frames per second, at least 1
+     */
+    public void setMaxFramesPerSecond(int maxFramesPerSecond) {
+        if (maxFramesPerSecond < 1) throw new IllegalArgumentException("Frame cap must be at least 1");
+        frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / maxFramesPerSecond;
+    }
+
+    /**
+     * @return the maximum number of frames per second
+     */
+    public int getMaxFramesPerSecond() {
+        return (int) (TimeUnit.SECONDS.toNanos(1) / frameIntervalNanos);
+    }
+
+    /**
+     * Marks a component as needing to be redrawn, it will be redrawn on the next frame. This can be called from
+     * any thread.
+     * @param component the component to redraw
+     */
+    public void markDirty(BaseEditorComponent<?> component) {
+        if (!dirtyComponents.add(component)) {
+            droppedUpdates.incrementAndGet();
+            return;
+        }
+
+        if (flushPending.compareAndSet(false, true)) {
+            var wait = lastFrameNanos + frameIntervalNanos - System.nanoTime();
+            if (wait <= 0 || executor == null) {
+                marshaller.runOnUiThread(this::flush);
+            } else {
+                executor.schedule(() -> marshaller.runOnUiThread(this::flush), wait, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        lastFrameNanos = System.nanoTime();
+        // cleared before redrawing, so that anything marked during the redraw is picked up by the next frame
+        flushPending.set(false);
+        framesDrawn.incrementAndGet();
+        var iterator = dirtyComponents.iterator();
+        while (iterator.hasNext()) {
+            var component = iterator.next();
+            iterator.remove();
+            component.redrawEditor();
+        }
+    }
+
+    /**
+     * @return the number of updates that were not drawn separately because the component was already waiting to be
+     * redrawn with a newer value
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    /**
+     * @return the number of frames that have been drawn
+     */
+    public long getFramesDrawn() {
+        return framesDrawn.get();
+    }
+
+    /**
+     * @return the number of components waiting for the next frame
+     */
+    public int getPendingCount() {
+        return dirtyComponents.size();
+    }
+}
@@ -43,6 +43,7 @@ public class Rs232ControllerBuilder implements ConnectorFactory {
     private Clock clock = Clock.systemDefaultZone();
     private String name;
     private UUID uuid;
+    private int readCoalesceMillis;
 
     /**
      * Mandatory, specifies the port name and baud rate for rs232.
@@ -118,6 +119,17 @@ public class Rs232ControllerBuilder implements ConnectorFactory {
         return this;
     }
 
+    /**
+     * Optional, defaults to 0 (off). Once data starts to arrive, wait this many milliseconds for the rest of the
+     * burst before handing it over, so messages on slow links are usually framed in one pass.
+     * @param millis the time to wait for the rest of a burst
+     * @return itself, suitable for chaining.
+     */
+    public Rs232ControllerBuilder withReadCoalescing(int millis) {
+        this.readCoalesceMillis = millis;
+        return this;
+    }
+
     /**
      * Once the above methods have been called to fill in the blanks, then call build to get
      * the actual instance.
@@ -127,7 +139,7 @@ public class Rs232ControllerBuilder implements ConnectorFactory {
         initialiseBasics();
         Rs232RemoteConnector connector = new Rs232RemoteConnector(
                 new LocalIdentifier(uuid, name),  portName, baud,
-                protocol, executorService, clock, ConnectMode.FULLY_AUTHENTICATED
+                protocol, executorService, clock, ConnectMode.FULLY_AUTHENTICATED, readCoalesceMillis
         );
         return new RemoteMenuController(connector, menuTree);
     }
@@ -25,15 +25,33 @@ import static java.lang.System.Logger.Level.INFO;
  * This is the R232 connector that can talk to a tcMenu library application running
  * on an embedded Arduino. Normally one uses the Rs232ControllerBuilder to construct
  * the whole remote stack instead of creating this directly.
+ *
+ * Reads wait in the serial driver for data to arrive, and then take everything that is available in a single call.
+ * Optionally, once data starts arriving, the read can wait a few milliseconds for the rest of the burst, so that
+ * a message arriving over a slow link is usually delivered in one piece.
  */
 public class Rs232RemoteConnector extends StreamRemoteConnector {
+    /** How long a read waits in the driver for the first byte before checking the connection is still open */
+    public static final int READ_WAIT_MILLIS = 100;
 
     private final String portName;
     private final SerialPort serialPort;
     private final int baud;
+    private final int readCoalesceMillis;
+    private final byte[] readBytes = new byte[MAX_MSG_EXPECTED];
 
     public Rs232RemoteConnector(LocalIdentifier localId, String portName, int baud, MenuCommandProtocol protocol,
                                 ScheduledExecutorService executor, Clock clock, ConnectMode connectMode) throws IOException {
+        this(localId, portName, baud, protocol, executor, clock, connectMode, 0);
+    }
+
+    /**
+     * Create a connector that can optionally coalesce reads, see the class documentation.
+     * @param readCoalesceMillis once data arrives, how long to wait for the rest of a burst, zero to not wait.
+     */
+    public Rs232RemoteConnector(LocalIdentifier localId, String portName, int baud, MenuCommandProtocol protocol,
+                                ScheduledExecutorService executor, Clock clock, ConnectMode connectMode,
+                                int readCoalesceMillis) throws IOException {
         super(localId, protocol, executor, clock, null);
         serialPort = Arrays.stream(SerialPort.getCommPorts())
                 .filter(sp -> sp.getSystemPortName().equals(portName))
@@ -41,6 +59,7 @@ public class Rs232RemoteConnector extends StreamRemoteConnector {
         serialPort.setBaudRate(baud);
         this.portName = portName;
         this.baud = baud;
+        this.readCoalesceMillis = readCoalesceMillis;
 
         applyStates(connectMode);
 
@@ -85,6 +104,9 @@ public class Rs232RemoteConnector extends StreamRemoteConnector {
         if(!serialPort.openPort()) {
             throw new IOException("Serial port " + portName + " not opened.");
         }
+
+        // reads wait in the driver until at least one byte is available, rather than spinning on bytesAvailable.
+        serialPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, READ_WAIT_MILLIS, 0);
     }
 
     @Override
@@ -99,14 +121,41 @@ public class Rs232RemoteConnector extends StreamRemoteConnector {
     protected void getAtLeastBytes(ByteBuffer inputBuffer, int len, ReadMode mode) throws IOException {
         if(mode == ReadMode.ONLY_WHEN_EMPTY && inputBuffer.remaining() >= len) return;
         do {
+            if(!serialPort.isOpen()) throw new IOException("Serial port closed during read " + portName);
             inputBuffer.compact();
-
-            while(serialPort.bytesAvailable() > 0) {
-                inputBuffer.put((byte)serialPort.getInputStream().read());
+            try {
+                int actual = readIntoBuffer(inputBuffer);
+                if(actual > 0 && readCoalesceMillis > 0 && inputBuffer.hasRemaining()) {
+                    Thread.sleep(readCoalesceMillis);
+                    readIntoBuffer(inputBuffer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Serial read interrupted " + portName);
+            } finally {
+                inputBuffer.flip();
             }
-
-            inputBuffer.flip();
-
         } while(inputBuffer.remaining()<len);
     }
+
+    /**
+     * Reads everything that is available in one call, waiting in the driver up to READ_WAIT_MILLIS for the first
+     * byte. The buffer must be in write mode.
+     * @return the number of bytes read, which may be zero if nothing arrived
+     */
+    private int readIntoBuffer(ByteBuffer inputBuffer) throws IOException {
+        if(!inputBuffer.hasRemaining()) return 0;
+        int toRead = Math.max(1, Math.min(serialPort.bytesAvailable(), inputBuffer.remaining()));
+        int actual;
+        if(inputBuffer.hasArray()) {
+            // read straight into the buffer, avoiding a copy
+            actual = serialPort.readBytes(inputBuffer.array(), toRead, inputBuffer.arrayOffset() + inputBuffer.position());
+            if(actual > 0) inputBuffer.position(inputBuffer.position() + actual);
+        } else {
+            actual = serialPort.readBytes(readBytes, Math.min(toRead, readBytes.length), 0);
+            if(actual > 0) inputBuffer.put(readBytes, 0, actual);
+        }
+        if(actual < 0) throw new IOException("Serial port read failed on " + portName);
+        return actual;
+    }
 }
@@ -8,6 +8,7 @@ import com.thecoderscorner.embedcontrol.customization.ApplicationThemeManager;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.thecoderscorner.embedcontrol.core.controlmgr.color.ConditionalColoring.ColorComponentType.*;
 import static com.thecoderscorner.embedcontrol.core.controlmgr.color.ControlColor.*;
@@ -19,6 +20,8 @@ import static com.thecoderscorner.embedcontrol.core.controlmgr.color.ControlColo
 public class GlobalSettings {
     private static int globalFontSize = 14;
 
+    private final AtomicInteger colorVersion = new AtomicInteger();
+
     private ControlColor updateColor;
     private ControlColor pendingColor;
     private ControlColor highlightColor;
@@ -60,6 +63,7 @@ public class GlobalSettings {
         this.updateColor.copyColorsFrom(other.errorColor);
         this.updateColor.copyColorsFrom(other.dialogColor);
         this.updateColor.copyColorsFrom(other.pendingColor);
+        colorsChanged();
     }
 
     private ControlColor wrapWithDefault(ConditionalColoring.ColorComponentType componentType, ControlColor controlColor) {
@@ -182,6 +186,22 @@ public class GlobalSettings {
         highlightColor = new ControlColor();
         dialogColor = new ControlColor();
         textColor = new ControlColor();
+        colorsChanged();
+    }
+
+    /**
+     * Indicates that a global color has been changed in place, so that anything caching colors resolved from these
+     * settings resolves them again. Resetting or copying the settings calls this already.
+     */
+    public void colorsChanged() {
+        colorVersion.incrementAndGet();
+    }
+
+    /**
+     * @return a version that changes whenever the global colors, or the theme that provides the defaults, change
+     */
+    public int getColorVersion() {
+        return colorVersion.get() + themeManager.getThemeVersion();
     }
 
     /**
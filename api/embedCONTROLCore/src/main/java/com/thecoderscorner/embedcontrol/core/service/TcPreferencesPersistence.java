@@ -52,6 +52,7 @@ public class TcPreferencesPersistence {
             color = new ControlColor(); // not in use color
         }
         settings.getUnderlyingColor(compType).copyColorsFrom(color);
+        settings.colorsChanged();
     }
 
     public TcPreferencesPersistence(GlobalSettings settings) {
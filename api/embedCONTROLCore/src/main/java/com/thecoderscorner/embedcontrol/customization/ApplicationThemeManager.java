@@ -1,6 +1,9 @@
 package com.thecoderscorner.embedcontrol.customization;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ApplicationThemeManager {
+    private final AtomicInteger themeVersion = new AtomicInteger();
     private String themeName;
 
     public ApplicationThemeManager() {
@@ -13,6 +16,14 @@ public class ApplicationThemeManager {
 
     public void setThemeName(String themeName) {
         this.themeName = themeName;
+        themeVersion.incrementAndGet();
+    }
+
+    /**
+     * @return a version that changes each time the theme is set, as the default colors depend on the theme
+     */
+    public int getThemeVersion() {
+        return themeVersion.get();
     }
 
     public boolean isDarkMode() {
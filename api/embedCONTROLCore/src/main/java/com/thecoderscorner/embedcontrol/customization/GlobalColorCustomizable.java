@@ -43,11 +43,13 @@ public class GlobalColorCustomizable implements ColorCustomizable {
     @Override
     public void setColorFor(ConditionalColoring.ColorComponentType componentType, ControlColor controlColor) {
         getColorFor(componentType).copyColorsFrom(controlColor);
+        globalSettings.colorsChanged();
     }
 
     @Override
     public void clearColorFor(ConditionalColoring.ColorComponentType componentType) {
         getActualUnderlyingColor(componentType).setInUse(false);
+        globalSettings.colorsChanged();
     }
 
     @Override
@@ -22,6 +22,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.thecoderscorner.embedcontrol.core.controlmgr.EditorComponent.PortableAlignment;
 import static com.thecoderscorner.embedcontrol.core.controlmgr.color.ConditionalColoring.ColorComponentType;
@@ -44,6 +45,7 @@ public class MenuItemStore {
     private SubMenuStore currentSubStore;
     private Map<String, CustomDrawingConfiguration> customDrawingMap = new HashMap<>();
     private Map<String, byte[]> imageDataMap = new HashMap<>();
+    private final AtomicInteger colorLayoutVersion = new AtomicInteger();
 
     /**
      * create a new item store of a given dimension and fill with empty slots
@@ -77,13 +79,35 @@ public class MenuItemStore {
         imageDataMap.clear();
 
         layoutName = name;
+        colorsOrLayoutChanged();
     }
+
+    /**
+     * Anything that caches colors resolved from this store compares this version with the one it resolved against,
+     * it changes whenever a color set, the current sub menu, or the layout changes. Color sets held by the store tell
+     * it when they change, and the version of the global settings' colors is included too.
+     * @return the current version of the colors and layout
+     */
+    public int getColorLayoutVersion() {
+        return colorLayoutVersion.get() + settings.getColorVersion();
+    }
+
+    /**
+     * Indicates that colors or layout have changed, all the setters in this store and its color sets call this
+     * already, but it should be called after changing a form item that is already in the store.
+     */
+    public void colorsOrLayoutChanged() {
+        colorLayoutVersion.incrementAndGet();
+    }
+
     public List<String> getAllColorSetNames() {
         return colorSets.keySet().stream().toList();
     }
 
     public void addColorSet(ColorCustomizable colors) {
         colorSets.put(colors.getColorSchemeName(), colors);
+        if (colors instanceof NamedColorCustomizable named) named.setColorsChangedListener(this::colorsOrLayoutChanged);
+        colorsOrLayoutChanged();
     }
 
     public ColorCustomizable getColorSet(String name) {
@@ -99,6 +123,7 @@ public class MenuItemStore {
                     FONT_100_PERCENT, currentSubStore.isRecursive()));
         }
         currentSubStore = subMenuStores.get(subId);
+        colorsOrLayoutChanged();
     }
 
     public ColorCustomizable getTopLevelColorSet() {
@@ -107,6 +132,7 @@ public class MenuItemStore {
 
     public void setTopLevelColorSet(ColorCustomizable topLevelColorSet) {
         currentSubStore.setColorSet(topLevelColorSet);
+        colorsOrLayoutChanged();
     }
 
     public int getRootItemId() {
@@ -142,6 +168,7 @@ public class MenuItemStore {
         for (var r : currentSubStore.getRowEntries().values()) {
             r.resizeTo(gridSize);
         }
+        colorsOrLayoutChanged();
     }
 
     public boolean hasItemAtPosition(int row, int col) {
@@ -159,6 +186,7 @@ public class MenuItemStore {
             currentSubStore.getRowEntries().put(row, new RowEntry());
         }
         currentSubStore.getRowEntries().get(row).setAtPosition(col, item);
+        colorsOrLayoutChanged();
     }
 
     public MenuFormItem getFormItemAt(int row, int col) {
@@ -180,6 +208,8 @@ public class MenuItemStore {
     public void removeColorSet(ColorCustomizable removal) {
         if (checkAllEntriesFor(removal)) throw new IllegalArgumentException("Entry has references");
         colorSets.remove(removal.getColorSchemeName());
+        if (removal instanceof NamedColorCustomizable named) named.setColorsChangedListener(() -> {});
+        colorsOrLayoutChanged();
     }
 
     private boolean checkAllEntriesFor(ColorCustomizable removal) {
@@ -232,7 +262,7 @@ public class MenuItemStore {
         colorSets.put(GlobalColorCustomizable.KEY_NAME, globalColorSet);
 
         for (var set : allSets) {
-            ColorCustomizable cc = new NamedColorCustomizable(set.getAttribute("name"));
+            var cc = new NamedColorCustomizable(set.getAttribute("name"));
             loadSingleColorValue(set, cc, "text", TEXT_FIELD);
             loadSingleColorValue(set, cc, "button", BUTTON);
             loadSingleColorValue(set, cc, "custom", CUSTOM);
@@ -240,6 +270,7 @@ public class MenuItemStore {
             loadSingleColorValue(set, cc, "error", ERROR);
             loadSingleColorValue(set, cc, "highlight", HIGHLIGHT);
             loadSingleColorValue(set, cc, "pending", PENDING);
+            cc.setColorsChangedListener(this::colorsOrLayoutChanged);
             colorSets.put(cc.getColorSchemeName(), cc);
         }
 
@@ -384,6 +415,7 @@ public class MenuItemStore {
             menuForm.setFontInfo(FontInformation.fromWire(XMLDOMHelper.getAttributeOrDefault(text, "fontInfo", "100%")));
             setFormItemAt(menuForm.getPositioning().getRow(), menuForm.getPositioning().getCol(), menuForm);
         }
+        colorsOrLayoutChanged();
     }
 
     private static void loadSingleColorValue(Element eleParent, ColorCustomizable cc, String elementName, ColorComponentType compTy) {
@@ -7,6 +7,7 @@ import java.util.Optional;
 
 public class NamedColorCustomizable implements ColorCustomizable {
     private final String colorName;
+    private Runnable colorsChangedListener = () -> {};
     private Optional<ControlColor> textColor = Optional.empty();
     private Optional<ControlColor> highlighColor = Optional.empty();
     private Optional<ControlColor> buttonColor = Optional.empty();
@@ -60,6 +61,7 @@ public class NamedColorCustomizable implements ColorCustomizable {
             case PENDING -> pendingColor = Optional.of(controlColor);
             default ->  throw new IllegalArgumentException("Invalid field for set color" + componentType);
         }
+        colorsChangedListener.run();
     }
 
     @Override
@@ -73,6 +75,15 @@ public class NamedColorCustomizable implements ColorCustomizable {
             case PENDING -> pendingColor = Optional.empty();
             default -> throw new IllegalArgumentException("Invalid field selected " + componentType);
         }
+        colorsChangedListener.run();
+    }
+
+    /**
+     * Set by the store that holds this color set, so that it is told when a color is set or cleared.
+     * @param listener called after each change to the colors
+     */
+    void setColorsChangedListener(Runnable listener) {
+        colorsChangedListener = listener;
     }
 
     @Override
@@ -10,9 +10,13 @@ import com.thecoderscorner.menu.domain.AnalogMenuItem;
 import com.thecoderscorner.menu.domain.FloatMenuItem;
 import com.thecoderscorner.menu.domain.MenuItem;
 import com.thecoderscorner.menu.domain.state.MenuTree;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.ArcType;
 
@@ -23,6 +27,10 @@ import static com.thecoderscorner.embedcontrol.core.controlmgr.color.ControlColo
  * AnalogMeterComponent is a UI component designed for rendering an analog meter using JavaFX.
  * It can display either a standard analog meter or a VU meter based on the configuration.
  *
+ * The meter is drawn in two layers. The static layer holds the background and scale, it is drawn onto its own canvas
+ * only when the size, colors or range change. The canvas above it is transparent apart from the parts that follow the
+ * value, and on each update only the area those parts last covered is cleared before they are drawn again.
+ *
  * @param <T> the type of the value displayed by the analog meter, extending from the Number class
  */
 public class AnalogMeterComponent<T extends Number> extends JfxTextEditorComponentBase<T> implements CanvasDrawableContext  {
@@ -43,11 +51,13 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
         } else {
             canvas = new AnalogMeterCanvas();
         }
-        borderPane = new BorderPane(canvas);
+        borderPane = new BorderPane(new StackPane(canvas.staticLayer, canvas));
         borderPane.setMaxSize(9999, 9999);
 
         canvas.widthProperty().bind(borderPane.widthProperty());
         canvas.heightProperty().bind(borderPane.heightProperty());
+        canvas.staticLayer.widthProperty().bind(borderPane.widthProperty());
+        canvas.staticLayer.heightProperty().bind(borderPane.heightProperty());
 
         borderPane.widthProperty().addListener((e) -> canvas.onPaintSurface(canvas.getGraphicsContext2D()));
         borderPane.heightProperty().addListener((e) -> canvas.onPaintSurface(canvas.getGraphicsContext2D()));
@@ -76,7 +86,17 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
         return currentVal;
     }
 
+    /**
+     * Everything that the static layer depends upon, when any of these change the static layer is drawn again.
+     */
+    private record StaticLayerKey(double width, double height, Color background, Color highlight, double maxVal) {
+    }
+
     abstract class AnalogCanvas extends ResizableCanvas {
+        private final Canvas staticLayer = new Canvas();
+        private StaticLayerKey staticLayerKey;
+        private Bounds lastDynamicBounds;
+
         AnalogCanvas() {
             super(AnalogMeterComponent.this);
         }
@@ -102,11 +122,26 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
                 throw new UnsupportedOperationException("Not able to show meter for " + item.getClass().getSimpleName());
             }
 
-            gc.setFill(asFxColor(customDrawing.getColorFor(protectedCurrent, getDrawingSettings().getColors(), status,
-                    ColorComponentType.TEXT_FIELD).getBg()));
-            gc.fillRect(0, 0, displayWidth, displayHeight);
+            var background = asFxColor(customDrawing.getColorFor(protectedCurrent, getDrawingSettings().getColors(), status,
+                    ColorComponentType.TEXT_FIELD).getBg());
+            var highlight = asFxColor(getDrawingSettings().getColors().backgroundFor(lastStatus, ColorComponentType.HIGHLIGHT));
+            var key = new StaticLayerKey(displayWidth, displayHeight, background, highlight, max);
+            if (!key.equals(staticLayerKey)) {
+                staticLayerKey = key;
+                var staticGc = staticLayer.getGraphicsContext2D();
+                staticGc.clearRect(0, 0, displayWidth, displayHeight);
+                staticGc.setFill(background);
+                staticGc.fillRect(0, 0, displayWidth, displayHeight);
+                paintStaticLayer(staticGc, max, highlight, displayWidth, displayHeight);
+                lastDynamicBounds = new BoundingBox(0, 0, displayWidth, displayHeight);
+            }
 
-            internalPaint(gc, max, protectedCurrent, displayWidth, displayHeight);
+            // only the area that the value dependent parts covered last time needs to be cleared
+            if (lastDynamicBounds != null) {
+                gc.clearRect(lastDynamicBounds.getMinX(), lastDynamicBounds.getMinY(),
+                        lastDynamicBounds.getWidth(), lastDynamicBounds.getHeight());
+            }
+            lastDynamicBounds = paintDynamicLayer(gc, max, protectedCurrent, highlight, displayWidth, displayHeight);
         }
 
         @Override
@@ -114,13 +149,30 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
             return true;
         }
 
-        protected abstract void internalPaint(GraphicsContext gc, double maxVal, double currentVal, double displayWidth, double displayHeight);
+        /**
+         * Draws the parts of the meter that do not depend on the value onto the static layer, after the background.
+         */
+        protected abstract void paintStaticLayer(GraphicsContext gc, double maxVal, Color highlight, double displayWidth, double displayHeight);
+
+        /**
+         * Draws the parts of the meter that depend on the value onto the transparent canvas above the static layer.
+         * @return the area that was drawn, it is padded to cover the line widths used.
+         */
+        protected abstract Bounds paintDynamicLayer(GraphicsContext gc, double maxVal, double currentVal, Color highlight,
+                                                    double displayWidth, double displayHeight);
+    }
+
+    private static Bounds union(Bounds b1, Bounds b2, double padding) {
+        double minX = Math.min(b1.getMinX(), b2.getMinX()) - padding;
+        double minY = Math.min(b1.getMinY(), b2.getMinY()) - padding;
+        double maxX = Math.max(b1.getMaxX(), b2.getMaxX()) + padding;
+        double maxY = Math.max(b1.getMaxY(), b2.getMaxY()) + padding;
+        return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
     }
 
     private class VuMeterCanvas extends AnalogCanvas {
         @Override
-        protected void internalPaint(GraphicsContext gc, double maxVal, double protectedCurrent,
-                                     double displayWidth, double displayHeight) {
+        protected void paintStaticLayer(GraphicsContext gc, double maxVal, Color highlight, double displayWidth, double displayHeight) {
             var customDrawing = getDrawingSettings().getCustomDrawing();
             gc.setLineWidth(8);
             if (customDrawing instanceof NumberCustomDrawingConfiguration numCust) {
@@ -133,12 +185,16 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
                 }
 
             } else {
-                gc.setStroke(asFxColor(getDrawingSettings().getColors().backgroundFor(lastStatus, ColorComponentType.HIGHLIGHT)));
+                gc.setStroke(highlight);
                 gc.setLineWidth(8);
                 gc.strokeArc(0, 10, displayWidth, displayHeight, 30, 120, ArcType.OPEN);
 
             }
+        }
 
+        @Override
+        protected Bounds paintDynamicLayer(GraphicsContext gc, double maxVal, double protectedCurrent, Color highlight,
+                                           double displayWidth, double displayHeight) {
             //range of -60 to 60 degrees
 
             double deg = -60.0 + ((protectedCurrent / maxVal) * 120);
@@ -150,14 +206,23 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
             gc.setLineWidth(2);
             gc.setStroke(asFxColor(getDrawingSettings().getColors().foregroundFor(RenderingStatus.NORMAL, ColorComponentType.TEXT_FIELD)));
             gc.strokeLine(displayWidth / 2 , displayHeight - 4, x, y);
+            var needle = new BoundingBox(Math.min(x, displayWidth / 2), Math.min(y, displayHeight - 4),
+                    Math.abs(x - displayWidth / 2), Math.abs(displayHeight - 4 - y));
 
-            drawTextUsingSettings(gc, protectedCurrent, displayWidth, displayHeight, true);
+            var text = drawTextUsingSettings(gc, protectedCurrent, displayWidth, displayHeight, true);
+            return union(needle, text, 2);
         }
     }
 
     private class AnalogMeterCanvas extends AnalogCanvas {
         @Override
-        protected void internalPaint(GraphicsContext gc, double maxVal, double protectedCurrent, double displayWidth, double displayHeight) {
+        protected void paintStaticLayer(GraphicsContext gc, double maxVal, Color highlight, double displayWidth, double displayHeight) {
+            // the dial of this meter is drawn up to the value, so only the background is static
+        }
+
+        @Override
+        protected Bounds paintDynamicLayer(GraphicsContext gc, double maxVal, double protectedCurrent, Color highlight,
+                                           double displayWidth, double displayHeight) {
             var customDrawing = getDrawingSettings().getCustomDrawing();
 
             gc.setFill(Color.TRANSPARENT);
@@ -179,7 +244,7 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
                     }
                 }
             } else {
-                gc.setStroke(asFxColor(getDrawingSettings().getColors().backgroundFor(lastStatus, ColorComponentType.HIGHLIGHT)));
+                gc.setStroke(highlight);
                 double extent = Math.min(2, (protectedCurrent / maxVal)) * -270;
                 if (getDrawingSettings().getJustification() == PortableAlignment.LEFT) {
                     gc.strokeArc(8, 8, displayWidth - 16, displayHeight - 16, -180, extent, ArcType.OPEN);
@@ -187,8 +252,10 @@ public class AnalogMeterComponent<T extends Number> extends JfxTextEditorCompone
                     gc.strokeArc(8, 8, displayWidth - 16, displayHeight - 16, 270, extent, ArcType.OPEN);
                 }
             }
+            var dial = new BoundingBox(8, 8, displayWidth - 16, displayHeight - 16);
 
-            drawTextUsingSettings(gc, protectedCurrent, displayWidth, displayHeight, true);
+            var text = drawTextUsingSettings(gc, protectedCurrent, displayWidth, displayHeight, true);
+            return union(dial, text, 6);
         }
     }
 }
\ No newline at end of file
@@ -10,14 +10,21 @@ import com.thecoderscorner.menu.domain.state.MenuTree;
 import com.thecoderscorner.menu.domain.util.MenuItemFormatter;
 import com.thecoderscorner.menu.remote.commands.AckStatus;
 import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import javafx.beans.value.ChangeListener;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.geometry.HPos;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Transform;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.thecoderscorner.embedcontrol.core.controlmgr.EditorComponent.RenderingStatus.NORMAL;
@@ -118,6 +125,12 @@ public class JfxMenuPresentable implements PanelPresentable<Node>, UpdatablePane
     }
 
     class JfxGridComponent extends MenuGridComponent<Node> {
+        private final Map<EditorComponent<Node>, Node> nodesInGrid = new HashMap<>();
+        private final ChangeListener<Transform> viewportListener = (obs, oldVal, newVal) -> reportViewport();
+        private GridPane watchedPane;
+        private double virtualRowHeight;
+        private int lastFirstRow = -1;
+        private int lastLastRow = -1;
 
         public JfxGridComponent(MenuItemStore store, JfxNavigationManager navMgr, ScheduledExecutorService executor, ThreadMarshaller marshaller) {
             super(store, navMgr, executor, marshaller);
@@ -126,6 +139,8 @@ public class JfxMenuPresentable implements PanelPresentable<Node>, UpdatablePane
         @Override
         public void clearGrid() {
             super.clearGrid();
+            nodesInGrid.clear();
+            lastFirstRow = lastLastRow = -1;
             gridPane.setHgap(5);
             gridPane.setVgap(5);
             gridPane.setMaxWidth(9999);
@@ -153,10 +168,58 @@ public class JfxMenuPresentable implements PanelPresentable<Node>, UpdatablePane
             GridPane.setColumnIndex(comp, where.getCol());
             GridPane.setRowIndex(comp, where.getRow());
             GridPane.setColumnSpan(comp, where.getColSpan());
-            if(item instanceof AnalogMeterComponent) {
+            // virtualised rows all have the same height, so that the visible rows can be worked out from the scroll
+            if(item instanceof AnalogMeterComponent && !isVirtualised()) {
                 gridPane.getRowConstraints().get(where.getRow()).setPrefHeight(100);
             }
             gridPane.getChildren().add(comp);
+            nodesInGrid.put(item, comp);
+        }
+
+        @Override
+        protected void removeFromGrid(EditorComponent<Node> item) {
+            var node = nodesInGrid.remove(item);
+            if(node != null) gridPane.getChildren().remove(node);
+        }
+
+        @Override
+        protected void virtualRowsReserved(int rowCount) {
+            var computedFontSize = store.getGlobalFontInfo().fontSizeFromExisting(GlobalSettings.defaultFontSize());
+            virtualRowHeight = computedFontSize * 2;
+            for(int i=gridPane.getRowConstraints().size(); i<rowCount; i++) {
+                gridPane.getRowConstraints().add(new RowConstraints(virtualRowHeight, virtualRowHeight, virtualRowHeight,
+                        Priority.NEVER, VPos.CENTER, true));
+            }
+
+            // the transform of the grid changes as it is scrolled, which is when rows need to be built or removed
+            if(watchedPane != gridPane) {
+                if(watchedPane != null) watchedPane.localToSceneTransformProperty().removeListener(viewportListener);
+                watchedPane = gridPane;
+                gridPane.localToSceneTransformProperty().addListener(viewportListener);
+            }
+        }
+
+        private void reportViewport() {
+            if(!isVirtualised() || gridPane.getScene() == null) return;
+            var visible = gridPane.sceneToLocal(findViewportInScene());
+            var rowSpan = virtualRowHeight + gridPane.getVgap();
+            int first = (int) Math.floor(Math.max(0, visible.getMinY()) / rowSpan);
+            int last = (int) Math.ceil(Math.max(0, visible.getMaxY()) / rowSpan);
+            if(first != lastFirstRow || last != lastLastRow) {
+                lastFirstRow = first;
+                lastLastRow = last;
+                viewportChanged(first, last);
+            }
+        }
+
+        private Bounds findViewportInScene() {
+            for(var parent = gridPane.getParent(); parent != null; parent = parent.getParent()) {
+                if(parent instanceof ScrollPane scrollPane) {
+                    return scrollPane.localToScene(scrollPane.getLayoutBounds());
+                }
+            }
+            var scene = gridPane.getScene();
+            return new BoundingBox(0, 0, scene.getWidth(), scene.getHeight());
         }
 
         @Override
@@ -6,6 +6,8 @@ import com.thecoderscorner.embedcontrol.core.controlmgr.color.ConditionalColorin
 import com.thecoderscorner.embedcontrol.core.service.GlobalSettings;
 import com.thecoderscorner.embedcontrol.customization.customdraw.CustomDrawingConfiguration;
 import com.thecoderscorner.menu.domain.util.MenuItemFormatter;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.text.Font;
@@ -24,7 +26,11 @@ class ResizableCanvas extends Canvas {
         this.context = context;
     }
 
-    public void drawTextUsingSettings(GraphicsContext gc, double protectedCurrent, double displayWidth, double displayHeight, boolean bottomVertical) {
+    /**
+     * Draws the name and or value of the item as configured in the drawing settings.
+     * @return the area of the canvas that the text was drawn into
+     */
+    public Bounds drawTextUsingSettings(GraphicsContext gc, double protectedCurrent, double displayWidth, double displayHeight, boolean bottomVertical) {
             CustomDrawingConfiguration customDrawing = context.getDrawingSettings().getCustomDrawing();
             String toDraw = "";
             boolean needName = context.getDrawingSettings().getDrawMode() == RedrawingMode.SHOW_NAME || context.getDrawingSettings().getDrawMode() == RedrawingMode.SHOW_NAME_VALUE;
@@ -47,11 +53,13 @@ class ResizableCanvas extends Canvas {
             } else {
                 yLocation = bounds.getHeight() + (displayHeight - bounds.getHeight()) / 2.0;
             }
-            switch(context.getDrawingSettings().getJustification()) {
-                case LEFT -> gc.fillText(toDraw, 8, yLocation);
-                case RIGHT -> gc.fillText(toDraw, (displayWidth - bounds.getWidth()) - 8, yLocation);
-                default -> gc.fillText(toDraw, (displayWidth - bounds.getWidth()) / 2.0, yLocation);
-            }
+            double xLocation = switch(context.getDrawingSettings().getJustification()) {
+                case LEFT -> 8;
+                case RIGHT -> (displayWidth - bounds.getWidth()) - 8;
+                default -> (displayWidth - bounds.getWidth()) / 2.0;
+            };
+            gc.fillText(toDraw, xLocation, yLocation);
+            return new BoundingBox(xLocation, yLocation + bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
         }
 
     }
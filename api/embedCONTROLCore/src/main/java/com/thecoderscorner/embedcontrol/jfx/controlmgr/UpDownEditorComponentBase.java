@@ -57,11 +57,13 @@ public abstract class UpDownEditorComponentBase<T> extends BaseUpDownIntEditorCo
         minusButton.setOnMousePressed(e -> {
             repeating = RepeatTypes.REPEAT_DOWN_WAIT;
             lastRepeatStart = System.currentTimeMillis();
+            requestTick();
         });
         minusButton.setOnMouseReleased(e -> repeating = RepeatTypes.REPEAT_NONE);
         plusButton.setOnMousePressed(e -> {
             repeating = RepeatTypes.REPEAT_UP_WAIT;
             lastRepeatStart = System.currentTimeMillis();
+            requestTick();
         });
         plusButton.setOnMouseReleased(e -> repeating = RepeatTypes.REPEAT_NONE);
 
@@ -96,6 +98,13 @@ public abstract class UpDownEditorComponentBase<T> extends BaseUpDownIntEditorCo
         } else return 0;
     }
 
+    @Override
+    protected long nextLocalTickDue() {
+        // while a button is held down, tick is needed every time to repeat the press
+        var repeat = repeating;
+        return (repeat == null || repeat == RepeatTypes.REPEAT_NONE) ? Long.MAX_VALUE : 0;
+    }
+
     @Override
     public void tick() {
         super.tick();
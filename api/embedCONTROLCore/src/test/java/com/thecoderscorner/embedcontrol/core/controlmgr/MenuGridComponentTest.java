@@ -0,0 +1,194 @@
+package com.thecoderscorner.embedcontrol.core.controlmgr;
+
+import com.thecoderscorner.embedcontrol.core.service.GlobalSettings;
+import com.thecoderscorner.embedcontrol.customization.ApplicationThemeManager;
+import com.thecoderscorner.embedcontrol.customization.FontInformation;
+import com.thecoderscorner.embedcontrol.customization.MenuItemStore;
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static com.thecoderscorner.menu.domain.AnalogMenuItemBuilder.anAnalogMenuItemBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+public class MenuGridComponentTest {
+    private MenuTree tree;
+    private MenuItemStore store;
+    private MenuEditorFactory<Object> editorFactory;
+    private RecordingGrid grid;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        tree = new MenuTree();
+        store = new MenuItemStore(new GlobalSettings(new ApplicationThemeManager()), tree, "grid", 1, 2, true);
+        editorFactory = Mockito.mock(MenuEditorFactory.class);
+        Mockito.when(editorFactory.getComponentEditorItem(any(), any(), any())).thenAnswer(inv ->
+                Optional.of(new StubEditorComponent(inv.getArgument(0), Runnable::run)));
+        grid = new RecordingGrid(store);
+    }
+
+    @Test
+    void testSmallMenuBuildsEveryRow() {
+        addItems(20);
+        grid.renderMenuRecursive(editorFactory, MenuTree.ROOT, false, 0);
+
+        assertFalse(grid.isVirtualised());
+        assertEquals(-1, grid.reservedRows);
+        assertThat(grid.rowsInGrid()).containsExactlyElementsOf(rowRange(0, 19));
+
+        // rows are only removed when virtualised
+        grid.viewportChanged(15, 19);
+        assertEquals(20, grid.rowsInGrid().size());
+    }
+
+    @Test
+    void testLargeMenuOnlyBuildsRowsAroundTheViewport() {
+        addItems(300);
+        grid.renderMenuRecursive(editorFactory, MenuTree.ROOT, false, 0);
+
+        assertTrue(grid.isVirtualised());
+        assertEquals(300, grid.reservedRows);
+        assertThat(grid.rowsInGrid()).containsExactlyElementsOf(rowRange(0, 2 * MenuGridComponent.VIEWPORT_OVERSCAN_ROWS));
+        assertEquals(grid.rowsInGrid().size(), grid.editorCount());
+    }
+
+    @Test
+    void testScrollingBuildsNewRowsAndReleasesOldOnes() {
+        addItems(300);
+        grid.renderMenuRecursive(editorFactory, MenuTree.ROOT, false, 0);
+        var firstRowComponent = grid.componentAt(0);
+
+        grid.viewportChanged(100, 110);
+        int overscan = MenuGridComponent.VIEWPORT_OVERSCAN_ROWS;
+        assertThat(grid.rowsInGrid()).containsExactlyElementsOf(rowRange(100 - overscan, 110 + overscan));
+        assertEquals(grid.rowsInGrid().size(), grid.editorCount());
+        assertEquals(grid.rowsInGrid().size(), grid.added - grid.removed);
+
+        // the released component is no longer updated from the tree
+        var firstItem = tree.getMenuById(1).orElseThrow();
+        MenuItemHelper.setMenuState(firstItem, 50, tree);
+        grid.itemHasUpdated(firstItem);
+        assertNotEquals("50", firstRowComponent.getControlText());
+
+        // overlapping viewports keep the rows that are already built
+        int addedBefore = grid.added;
+        grid.viewportChanged(105, 115);
+        assertEquals(5, grid.added - addedBefore);
+        assertThat(grid.rowsInGrid()).containsExactlyElementsOf(rowRange(105 - overscan, 115 + overscan));
+    }
+
+    @Test
+    void testRowBuiltLaterShowsLatestState() {
+        addItems(300);
+        grid.renderMenuRecursive(editorFactory, MenuTree.ROOT, false, 0);
+
+        // item 201 is in row 200, which has not been built yet
+        var item = tree.getMenuById(201).orElseThrow();
+        MenuItemHelper.setMenuState(item, 42, tree);
+        grid.itemHasUpdated(item);
+        assertNull(grid.componentAt(200));
+
+        grid.viewportChanged(195, 205);
+        assertEquals("42", grid.componentAt(200).getControlText());
+
+        // and updates now go to the built row
+        MenuItemHelper.setMenuState(item, 43, tree);
+        grid.itemHasUpdated(item);
+        assertEquals("43", grid.componentAt(200).getControlText());
+    }
+
+    @Test
+    void testClearGridReleasesBuiltRows() {
+        addItems(300);
+        grid.renderMenuRecursive(editorFactory, MenuTree.ROOT, false, 0);
+        grid.clearGrid();
+
+        assertFalse(grid.isVirtualised());
+        assertEquals(0, grid.editorCount());
+
+        // the rows that were deferred are dropped, so nothing more is built
+        int addedBefore = grid.added;
+        grid.viewportChanged(100, 110);
+        assertEquals(addedBefore, grid.added);
+    }
+
+    private void addItems(int count) {
+        for (int i = 0; i < count; i++) {
+            AnalogMenuItem item = anAnalogMenuItemBuilder().withName("Item " + i).withId(i + 1)
+                    .withMaxValue(100).menuItem();
+            tree.addMenuItem(MenuTree.ROOT, item);
+        }
+    }
+
+    private static TreeSet<Integer> rowRange(int first, int last) {
+        var rows = new TreeSet<Integer>();
+        IntStream.rangeClosed(first, last).forEach(rows::add);
+        return rows;
+    }
+
+    /**
+     * A grid with no UI, it records which row each component was added into, and which rows were reserved.
+     */
+    private static class RecordingGrid extends MenuGridComponent<Object> {
+        private final Map<EditorComponent<Object>, Integer> componentRows = new HashMap<>();
+        private int reservedRows = -1;
+        private int added;
+        private int removed;
+
+        RecordingGrid(MenuItemStore store) {
+            super(store, null, null, Runnable::run);
+        }
+
+        TreeSet<Integer> rowsInGrid() {
+            return new TreeSet<>(componentRows.values());
+        }
+
+        StubEditorComponent componentAt(int row) {
+            return componentRows.entrySet().stream()
+                    .filter(entry -> entry.getValue() == row)
+                    .map(entry -> (StubEditorComponent) entry.getKey())
+                    .findFirst().orElse(null);
+        }
+
+        int editorCount() {
+            return editorComponents.size();
+        }
+
+        @Override
+        protected void addToGrid(ComponentPositioning where, EditorComponent<Object> item, FontInformation fontInfo) {
+            componentRows.put(item, where.getRow());
+            added++;
+        }
+
+        @Override
+        protected void addTextToGrid(ComponentSettings settings, String item) {
+        }
+
+        @Override
+        protected void addSpaceToGrid(ComponentPositioning where, int amount) {
+        }
+
+        @Override
+        protected void removeFromGrid(EditorComponent<Object> item) {
+            assertNotNull(componentRows.remove(item), "removed a component that was not in the grid");
+            removed++;
+        }
+
+        @Override
+        protected void virtualRowsReserved(int rowCount) {
+            this.reservedRows = rowCount;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.thecoderscorner.embedcontrol.core.controlmgr;
+
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.state.MenuState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An editor component with no UI that records what it is asked to draw and how often it is ticked, so that the
+ * scheduling around editor components can be tested without JavaFX.
+ */
+public class StubEditorComponent extends BaseEditorComponent<Object> {
+    private final List<String> drawnText = new ArrayList<>();
+    private volatile String value = "";
+    private volatile long localTickDue = Long.MAX_VALUE;
+    private int tickCount;
+
+    public StubEditorComponent(MenuItem item, ThreadMarshaller marshaller) {
+        super(null, ComponentSettings.NO_COMPONENT, item, marshaller);
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Adds a deadline for this component at the time given, it is cleared again once the component is ticked.
+     * @param dueMillis when tick is needed
+     */
+    public void needsTickAt(long dueMillis) {
+        localTickDue = dueMillis;
+        requestTick();
+    }
+
+    public List<String> getDrawnText() {
+        return drawnText;
+    }
+
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    @Override
+    protected long nextLocalTickDue() {
+        return localTickDue;
+    }
+
+    @Override
+    public void tick() {
+        tickCount++;
+        localTickDue = Long.MAX_VALUE;
+        super.tick();
+    }
+
+    @Override
+    public void changeControlSettings(RenderingStatus status, String text) {
+        drawnText.add(text);
+    }
+
+    @Override
+    public String getControlText() {
+        return value;
+    }
+
+    @Override
+    public void onItemUpdated(MenuItem item, MenuState<?> newValue) {
+        setValue(String.valueOf(newValue.getValue()));
+        updateEditor();
+    }
+
+    @Override
+    public Object createComponent() {
+        return new Object();
+    }
+}
@@ -0,0 +1,139 @@
+package com.thecoderscorner.embedcontrol.core.controlmgr;
+
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TickDeadlineQueueTest {
+    private TickDeadlineQueue queue;
+    private StubEditorComponent comp1;
+    private StubEditorComponent comp2;
+
+    @BeforeEach
+    void setUp() {
+        queue = new TickDeadlineQueue();
+        comp1 = new StubEditorComponent(DomainFixtures.anAnalogItem("Volume", 1), Runnable::run);
+        comp2 = new StubEditorComponent(DomainFixtures.anAnalogItem("Bass", 2), Runnable::run);
+        comp1.setTickQueue(queue);
+        comp2.setTickQueue(queue);
+    }
+
+    @Test
+    void testNothingPendingAddsNoDeadline() {
+        assertEquals(0, queue.size());
+        queue.tickDue(Long.MAX_VALUE);
+        assertEquals(0, comp1.getTickCount());
+    }
+
+    @Test
+    void testComponentIsTickedOnlyOnceItsDeadlineIsReached() {
+        comp1.needsTickAt(1000);
+        assertEquals(1, queue.size());
+
+        queue.tickDue(999);
+        assertEquals(0, comp1.getTickCount());
+        assertEquals(1, queue.size());
+
+        queue.tickDue(1000);
+        assertEquals(1, comp1.getTickCount());
+        assertEquals(0, queue.size());
+
+        queue.tickDue(5000);
+        assertEquals(1, comp1.getTickCount());
+    }
+
+    @Test
+    void testOnlyDueComponentsAreTicked() {
+        comp1.needsTickAt(1000);
+        comp2.needsTickAt(3000);
+
+        queue.tickDue(2000);
+        assertEquals(1, comp1.getTickCount());
+        assertEquals(0, comp2.getTickCount());
+        assertEquals(1, queue.size());
+
+        queue.tickDue(3000);
+        assertEquals(1, comp1.getTickCount());
+        assertEquals(1, comp2.getTickCount());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testEarlierDeadlineReplacesLaterOne() {
+        comp1.needsTickAt(2000);
+        comp1.needsTickAt(1000);
+        // the replaced deadline stays in the queue until it is reached
+        assertEquals(2, queue.size());
+
+        queue.tickDue(1500);
+        assertEquals(1, comp1.getTickCount());
+
+        // the replaced deadline no longer ticks the component
+        queue.tickDue(2500);
+        assertEquals(1, comp1.getTickCount());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testLaterDeadlineDoesNotReplaceEarlierOne() {
+        comp1.needsTickAt(1000);
+        comp1.needsTickAt(2000);
+        assertEquals(1, queue.size());
+
+        queue.tickDue(1000);
+        assertEquals(1, comp1.getTickCount());
+    }
+
+    @Test
+    void testComponentCanRescheduleOnceTicked() {
+        comp1.needsTickAt(1000);
+        queue.tickDue(1000);
+        comp1.needsTickAt(4000);
+        assertEquals(1, queue.size());
+
+        queue.tickDue(3999);
+        assertEquals(1, comp1.getTickCount());
+        queue.tickDue(4000);
+        assertEquals(2, comp1.getTickCount());
+    }
+
+    @Test
+    void testCancelRemovesAllDeadlinesForComponent() {
+        comp1.needsTickAt(2000);
+        comp1.needsTickAt(1000);
+        comp2.needsTickAt(1000);
+
+        queue.cancel(comp1);
+        assertEquals(1, queue.size());
+
+        queue.tickDue(5000);
+        assertEquals(0, comp1.getTickCount());
+        assertEquals(1, comp2.getTickCount());
+
+        // a later deadline is still added after the earlier one was cancelled
+        comp1.needsTickAt(6000);
+        assertEquals(1, queue.size());
+        queue.tickDue(6000);
+        assertEquals(1, comp1.getTickCount());
+    }
+
+    @Test
+    void testRemovingTickQueueCancelsDeadlines() {
+        comp1.needsTickAt(1000);
+        comp1.setTickQueue(null);
+        assertEquals(0, queue.size());
+
+        queue.tickDue(5000);
+        assertEquals(0, comp1.getTickCount());
+
+        // and the component is scheduled again from its pending state when it goes back on the queue
+        comp1.needsTickAt(1000);
+        assertEquals(0, queue.size());
+        comp1.setTickQueue(queue);
+        assertEquals(1, queue.size());
+        queue.tickDue(1000);
+        assertEquals(1, comp1.getTickCount());
+    }
+}
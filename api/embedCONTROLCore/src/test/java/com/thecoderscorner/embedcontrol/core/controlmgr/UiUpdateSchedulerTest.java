@@ -0,0 +1,144 @@
+package com.thecoderscorner.embedcontrol.core.controlmgr;
+
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class UiUpdateSchedulerTest {
+    private final List<Runnable> uiTasks = new ArrayList<>();
+    private final ThreadMarshaller marshaller = uiTasks::add;
+    private UiUpdateScheduler scheduler;
+    private StubEditorComponent comp1;
+    private StubEditorComponent comp2;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new UiUpdateScheduler(marshaller, null, UiUpdateScheduler.DEFAULT_MAX_FRAMES_PER_SECOND);
+        comp1 = new StubEditorComponent(DomainFixtures.anAnalogItem("Volume", 1), marshaller);
+        comp2 = new StubEditorComponent(DomainFixtures.anAnalogItem("Bass", 2), marshaller);
+        comp1.setUpdateScheduler(scheduler);
+        comp2.setUpdateScheduler(scheduler);
+    }
+
+    @Test
+    void testRepeatedUpdatesCoalesceIntoOneRedrawOfTheLatestValue() {
+        comp1.setValue("1");
+        comp1.updateEditor();
+        comp1.setValue("2");
+        comp1.updateEditor();
+        comp1.setValue("3");
+        comp1.updateEditor();
+
+        assertEquals(1, uiTasks.size());
+        assertEquals(1, scheduler.getPendingCount());
+        assertEquals(2, scheduler.getDroppedUpdates());
+        assertThat(comp1.getDrawnText()).isEmpty();
+
+        runUiTasks();
+        assertThat(comp1.getDrawnText()).containsExactly("3");
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(1, scheduler.getFramesDrawn());
+    }
+
+    @Test
+    void testAllDirtyComponentsAreDrawnInOneFrame() {
+        comp1.setValue("a");
+        comp2.setValue("b");
+        comp1.updateEditor();
+        comp2.updateEditor();
+
+        assertEquals(1, uiTasks.size());
+        runUiTasks();
+        assertThat(comp1.getDrawnText()).containsExactly("a");
+        assertThat(comp2.getDrawnText()).containsExactly("b");
+        assertEquals(1, scheduler.getFramesDrawn());
+        assertEquals(0, scheduler.getDroppedUpdates());
+    }
+
+    @Test
+    void testUpdateAfterAFrameIsDrawnInTheNextFrame() {
+        comp1.setValue("1");
+        comp1.updateEditor();
+        runUiTasks();
+
+        comp1.setValue("2");
+        comp1.updateEditor();
+        assertEquals(1, uiTasks.size());
+        runUiTasks();
+
+        assertThat(comp1.getDrawnText()).containsExactly("1", "2");
+        assertEquals(2, scheduler.getFramesDrawn());
+        assertEquals(0, scheduler.getDroppedUpdates());
+    }
+
+    @Test
+    void testNextFrameWaitsForTheFrameInterval() {
+        var executor = Mockito.mock(ScheduledExecutorService.class);
+        scheduler = new UiUpdateScheduler(marshaller, executor, 10);
+        comp1.setUpdateScheduler(scheduler);
+
+        // the first frame is due straight away
+        comp1.updateEditor();
+        assertEquals(1, uiTasks.size());
+        runUiTasks();
+        Mockito.verifyNoInteractions(executor);
+
+        // the next one is scheduled no more than a frame later, and only then moved to the UI thread
+        comp1.setValue("later");
+        comp1.updateEditor();
+        comp1.updateEditor();
+        var waitingTask = ArgumentCaptor.forClass(Runnable.class);
+        var delay = ArgumentCaptor.forClass(Long.class);
+        Mockito.verify(executor).schedule(waitingTask.capture(), delay.capture(), eq(TimeUnit.NANOSECONDS));
+        Mockito.verify(executor, Mockito.times(1)).schedule(any(Runnable.class), anyLong(), any());
+        assertThat(delay.getValue()).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(uiTasks).isEmpty();
+
+        waitingTask.getValue().run();
+        runUiTasks();
+        assertThat(comp1.getDrawnText()).containsExactly("", "later");
+        assertEquals(1, scheduler.getDroppedUpdates());
+    }
+
+    @Test
+    void testComponentMarkedWhileDrawingIsPickedUpByTheNextFrame() {
+        var redrawing = new StubEditorComponent(DomainFixtures.anAnalogItem("Treble", 3), marshaller) {
+            @Override
+            public void changeControlSettings(RenderingStatus status, String text) {
+                super.changeControlSettings(status, text);
+                if (getDrawnText().size() == 1) {
+                    comp2.setValue("during");
+                    comp2.updateEditor();
+                }
+            }
+        };
+        redrawing.setUpdateScheduler(scheduler);
+        redrawing.updateEditor();
+        uiTasks.remove(0).run();
+
+        assertThat(comp2.getDrawnText()).isEmpty();
+        assertEquals(1, uiTasks.size());
+        runUiTasks();
+        assertThat(comp2.getDrawnText()).containsExactly("during");
+        assertEquals(2, scheduler.getFramesDrawn());
+    }
+
+    private void runUiTasks() {
+        while (!uiTasks.isEmpty()) {
+            uiTasks.remove(0).run();
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package com.thecoderscorner.embedcontrol.customization;
 
+import com.thecoderscorner.embedcontrol.core.controlmgr.ComponentPositioning;
+import com.thecoderscorner.embedcontrol.core.controlmgr.MenuGridComponent;
+import com.thecoderscorner.embedcontrol.core.controlmgr.color.ControlColor;
 import com.thecoderscorner.embedcontrol.core.service.GlobalSettings;
 import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.domain.state.PortableColor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.UUID;
 
+import static com.thecoderscorner.embedcontrol.core.controlmgr.EditorComponent.RenderingStatus;
+import static com.thecoderscorner.embedcontrol.core.controlmgr.color.ConditionalColoring.ColorComponentType;
 import static com.thecoderscorner.menu.domain.AnalogMenuItemBuilder.anAnalogMenuItemBuilder;
 import static com.thecoderscorner.menu.domain.BooleanMenuItemBuilder.aBooleanMenuItemBuilder;
 import static com.thecoderscorner.menu.domain.SubMenuItemBuilder.aSubMenuItemBuilder;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class MenuItemStoreTest {
     private MenuItemStore store;
@@ -41,6 +49,86 @@ public class MenuItemStoreTest {
         assertEquals(MenuFormItem.FONT_100_PERCENT, store.getGlobalFontInfo());
     }
 
+    @Test
+    void testResolvedColorsFollowStoreChanges() {
+        var coloring = new MenuGridComponent.ScreenLayoutBasedConditionalColor(store, new ComponentPositioning(0, 0));
+        var global = store.getColorSet(GlobalColorCustomizable.KEY_NAME);
+        assertSame(global.getColorFor(ColorComponentType.BUTTON), coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.BUTTON));
+
+        var named = new NamedColorCustomizable("named");
+        var textColor = new ControlColor(PortableColor.RED, PortableColor.BLACK);
+        var updateColor = new ControlColor(PortableColor.WHITE, PortableColor.RED);
+        named.setColorFor(ColorComponentType.TEXT_FIELD, textColor);
+        named.setColorFor(ColorComponentType.CUSTOM, updateColor);
+        store.addColorSet(named);
+
+        var version = store.getColorLayoutVersion();
+        store.setFormItemAt(0, 0, new MenuItemFormItem(tree.getMenuById(1).orElseThrow(), named, new ComponentPositioning(0, 0)));
+        assertNotEquals(version, store.getColorLayoutVersion());
+
+        assertSame(textColor, coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.TEXT_FIELD));
+        assertSame(updateColor, coloring.colorFor(RenderingStatus.RECENT_UPDATE, ColorComponentType.TEXT_FIELD));
+        assertSame(global.getColorFor(ColorComponentType.BUTTON), coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.BUTTON));
+
+        // changes to a color set that is already in the store are seen without telling the store
+        var newTextColor = new ControlColor(PortableColor.BLACK, PortableColor.WHITE);
+        named.setColorFor(ColorComponentType.TEXT_FIELD, newTextColor);
+        assertSame(newTextColor, coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.TEXT_FIELD));
+
+        named.clearColorFor(ColorComponentType.TEXT_FIELD);
+        assertSame(global.getColorFor(ColorComponentType.TEXT_FIELD), coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.TEXT_FIELD));
+    }
+
+    @Test
+    void testResolvedColorsFollowGlobalSettingsChanges() {
+        var coloring = new MenuGridComponent.ScreenLayoutBasedConditionalColor(store, new ComponentPositioning(0, 0));
+        var buttonColor = new ControlColor(PortableColor.RED, PortableColor.BLACK);
+        unitGlobalSettings.getUnderlyingColor(ColorComponentType.BUTTON).copyColorsFrom(buttonColor);
+        assertSame(unitGlobalSettings.getUnderlyingColor(ColorComponentType.BUTTON),
+                coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.BUTTON));
+
+        // resetting replaces the global colors, so the table must not keep the old objects
+        unitGlobalSettings.resetColorsToDefault();
+        assertSame(unitGlobalSettings.getButtonColor(), coloring.colorFor(RenderingStatus.NORMAL, ColorComponentType.BUTTON));
+        assertEquals(ControlColor.DEFAULT_LIGHT_COLORS.get(ColorComponentType.BUTTON).getBg(),
+                coloring.backgroundFor(RenderingStatus.NORMAL, ColorComponentType.BUTTON));
+    }
+
+    @Test
+    void testColorChangesOnlyInvalidateTheStoresThatHoldThem() {
+        var otherStore = new MenuItemStore(new GlobalSettings(new ApplicationThemeManager()), tree, "layout2", 1, 2, true);
+        var named = new NamedColorCustomizable("named");
+        store.addColorSet(named);
+
+        var version = store.getColorLayoutVersion();
+        var otherVersion = otherStore.getColorLayoutVersion();
+        named.setColorFor(ColorComponentType.TEXT_FIELD, new ControlColor(PortableColor.RED, PortableColor.BLACK));
+        store.getColorSet(GlobalColorCustomizable.KEY_NAME).clearColorFor(ColorComponentType.BUTTON);
+        assertEquals(version + 2, store.getColorLayoutVersion());
+        assertEquals(otherVersion, otherStore.getColorLayoutVersion());
+
+        // once removed, the color set no longer tells the store about changes
+        version = store.getColorLayoutVersion();
+        store.removeColorSet(named);
+        named.clearColorFor(ColorComponentType.TEXT_FIELD);
+        assertEquals(version + 1, store.getColorLayoutVersion());
+    }
+
+    @Test
+    void testConcurrentInvalidationsAreNotLost() throws Exception {
+        var version = store.getColorLayoutVersion();
+        Runnable invalidate = () -> {
+            for (int i = 0; i < 10000; i++) store.colorsOrLayoutChanged();
+        };
+        var first = new Thread(invalidate);
+        var second = new Thread(invalidate);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        assertEquals(version + 20000, store.getColorLayoutVersion());
+    }
+
     @Test
     void testFormLoading() {
         store.loadLayout(EXAMPLE_FORM_XML, demoUuid);
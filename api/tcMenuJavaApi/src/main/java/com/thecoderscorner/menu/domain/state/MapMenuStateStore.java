@@ -0,0 +1,35 @@
+package com.thecoderscorner.menu.domain.state;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The default state store, it holds the immutable state object for each item in a concurrent map. Every change
+ * replaces the state object for the item.
+ */
+public class MapMenuStateStore implements MenuStateStore {
+    private final Map<Integer, AnyMenuState> menuStates;
+
+    /**
+     * Create a store with the given expected number of items
+     * @param expectedSize the number of items expected
+     */
+    public MapMenuStateStore(int expectedSize) {
+        menuStates = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    @Override
+    public AnyMenuState get(int id) {
+        return menuStates.get(id);
+    }
+
+    @Override
+    public void put(int id, AnyMenuState state) {
+        menuStates.put(id, state);
+    }
+
+    @Override
+    public void remove(int id) {
+        menuStates.remove(id);
+    }
+}
@@ -0,0 +1,66 @@
+package com.thecoderscorner.menu.domain.state;
+
+import com.thecoderscorner.menu.domain.MenuItem;
+
+/**
+ * Stores the current state for each menu item in a `MenuTree` by the ID of the item. The default store is backed by
+ * a concurrent map and holds the immutable state objects directly, see `MapMenuStateStore`. The
+ * `PrimitiveMenuStateStore` instead holds integer, boolean and float values in arrays and only builds state objects
+ * when they are read. All implementations must be safe for use from many threads.
+ * @see MenuTree#MenuTree(MenuStateStore)
+ */
+public interface MenuStateStore {
+    /**
+     * @param id the menu item ID
+     * @return the state for the item, or null if there is none
+     */
+    AnyMenuState get(int id);
+
+    /**
+     * Store a state for an item, replacing any existing state.
+     * @param id the menu item ID
+     * @param state the new state
+     */
+    void put(int id, AnyMenuState state);
+
+    /**
+     * Remove any state held for an item.
+     * @param id the menu item ID
+     */
+    void remove(int id);
+
+    /**
+     * Store an integer value for an item, replacing any existing state, exactly as if an `IntegerMenuState` had been
+     * put. Stores that hold primitive values override this so that it does not allocate.
+     * @param item the item, which should be stored as an integer, such as analog or enum
+     * @param value the new value
+     * @param changed the changed flag of the new state
+     * @param active the active flag of the new state
+     */
+    default void putInt(MenuItem item, int value, boolean changed, boolean active) {
+        put(item.getId(), new IntegerMenuState(item, changed, active, value));
+    }
+
+    /**
+     * Store a boolean value for an item, replacing any existing state, exactly as if a `BooleanMenuState` had been
+     * put.
+     * @param item the item, which should be stored as a boolean
+     * @param value the new value
+     * @param changed the changed flag of the new state
+     * @param active the active flag of the new state
+     */
+    default void putBoolean(MenuItem item, boolean value, boolean changed, boolean active) {
+        put(item.getId(), new BooleanMenuState(item, changed, active, value));
+    }
+
+    /**
+     * Store a float value for an item, replacing any existing state, exactly as if a `FloatMenuState` had been put.
+     * @param item the item, which should be stored as a float
+     * @param value the new value
+     * @param changed the changed flag of the new state
+     * @param active the active flag of the new state
+     */
+    default void putFloat(MenuItem item, float value, boolean changed, boolean active) {
+        put(item.getId(), new FloatMenuState(item, changed, active, value));
+    }
+}
@@ -22,7 +22,13 @@ import static com.thecoderscorner.menu.domain.util.MenuItemHelper.stateForMenuIt
  * items, where items of type submenu can hold other items. As menu items are immutable, the state for each item is
  * held separately, and can be accessed from here for each item. There are many helper methods on `MenuItemHelper`
  * that make working with menu items easier.
+ *
+ * Changes to the structure are serialised on a lock, and all structural reads go through an immutable
+ * `MenuTreeSnapshot`, so any list returned can be iterated safely while the tree continues to change. Each change
+ * publishes a new snapshot, copying only the submenus that changed, so readers never take the lock. When building or
+ * loading a large tree, make the changes within `batchStructureChanges` so that the snapshot is published once.
  * @see MenuItemHelper
+ * @see MenuTreeSnapshot
  */
 public class MenuTree {
     /**
@@ -42,22 +48,131 @@ public class MenuTree {
     private static final int EXPECTED_MAX_VALUES = 256;
 
     /**
-     * This map holds the state for each item, it's the only semi immutable part of the library, even though
+     * This store holds the state for each item, it's the only semi immutable part of the library, even though
      * the actual state objects are immutable, and are replaced on change.
      */
-    private final Map<Integer, AnyMenuState> menuStates = new ConcurrentHashMap<>(EXPECTED_MAX_VALUES);
+    private final MenuStateStore menuStates;
+
+    /**
+     * Submenus are organised as a sub menu containing a list of items. These lists are changed in place, so must
+     * only be accessed while holding the lock on this object, readers outside of the lock use the snapshot instead.
+     */
+    private final Map<MenuItem, List<MenuItem>> subMenuItems = new HashMap<>(EXPECTED_MAX_VALUES / 8);
+
+    /**
+     * The submenus whose lists have changed since the snapshot was published, guarded by the subMenuItems lock.
+     */
+    private final Set<MenuItem> changedSubMenus = new HashSet<>();
+
+    /**
+     * The current view of the structure, it is only replaced by writers holding the subMenuItems lock, and readers
+     * use it without taking any lock.
+     */
+    private volatile MenuTreeSnapshot snapshot;
 
     /**
-     * Submenus are organised as a sub menu containing a list of items. There is a lock around this object to
-     * it is thread safe.
+     * How many batches of changes are in progress, while above zero changes do not publish a snapshot. Guarded by the
+     * subMenuItems lock.
      */
-    private final Map<MenuItem, ArrayList<MenuItem>> subMenuItems = new HashMap<>(EXPECTED_MAX_VALUES / 8);
+    private int batchDepth;
 
     /**
-     * Create a basic tree that is initially empty
+     * The version of the structure, increased on each change. Guarded by the subMenuItems lock.
+     */
+    private long structureVersion;
+
+    /**
+     * Indexes every item in the tree by its ID, so that lookups never need to walk the tree. It is only changed
+     * while holding the subMenuItems lock, but can be read without it.
+     */
+    private final Map<Integer, MenuItem> itemsById = new ConcurrentHashMap<>(EXPECTED_MAX_VALUES);
+
+    /**
+     * Indexes the parent submenu of every item in the tree by the ID of the item, maintained along with itemsById.
+     */
+    private final Map<Integer, SubMenuItem> parentsById = new ConcurrentHashMap<>(EXPECTED_MAX_VALUES);
+
+    /**
+     * Create a basic tree that is initially empty, with state held in a map
      */
     public MenuTree() {
+        this(new MapMenuStateStore(EXPECTED_MAX_VALUES));
+    }
+
+    /**
+     * Create a basic tree that is initially empty, with state held in the store provided. For menus with many
+     * frequently updated numeric items, `PrimitiveMenuStateStore` avoids allocating on each update.
+     * @param stateStore the store that will hold the state of each item
+     */
+    public MenuTree(MenuStateStore stateStore) {
+        menuStates = stateStore;
         subMenuItems.put(ROOT, new ArrayList<>());
+        itemsById.put(ROOT.getId(), ROOT);
+        structureChanged(ROOT);
+    }
+
+    /**
+     * Gets the current immutable snapshot of the tree structure. Use this when several reads must see the same
+     * version of the tree, for example when iterating over submenus and their children. The snapshot is published by
+     * each change to the structure, so this is a single volatile read that never waits on a writer.
+     * @return the current snapshot of the tree structure
+     */
+    public MenuTreeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Makes several changes to the structure together, publishing a single snapshot once they are all made, instead
+     * of one after each change. This keeps building or loading a large tree linear. Until the batch completes readers
+     * see the snapshot from before it, and so do the changes themselves if they read through the snapshot.
+     * @param changes the changes to make, which are run on this thread while holding the lock
+     */
+    public void batchStructureChanges(Runnable changes) {
+        synchronized (subMenuItems) {
+            batchDepth++;
+            try {
+                changes.run();
+            } finally {
+                batchDepth--;
+                if(batchDepth == 0 && !changedSubMenus.isEmpty()) publishSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Records a change to a submenu's list and publishes a new snapshot unless a batch is in progress, must be called
+     * with the subMenuItems lock held.
+     */
+    private void structureChanged(MenuItem subMenu) {
+        changedSubMenus.add(subMenu);
+        structureVersion++;
+        if(batchDepth == 0) publishSnapshot();
+    }
+
+    /**
+     * Builds and publishes a new snapshot, sharing the lists of submenus that have not changed with the current one.
+     * Must be called with the subMenuItems lock held.
+     */
+    private void publishSnapshot() {
+        var current = snapshot;
+        var lists = new HashMap<MenuItem, List<MenuItem>>(subMenuItems.size() * 2);
+        for(var entry : subMenuItems.entrySet()) {
+            List<MenuItem> list = null;
+            if(current != null && !changedSubMenus.contains(entry.getKey())) {
+                list = current.getMenuItems(entry.getKey());
+            }
+            lists.put(entry.getKey(), list != null ? list : List.copyOf(entry.getValue()));
+        }
+        changedSubMenus.clear();
+        snapshot = new MenuTreeSnapshot(lists, structureVersion);
+    }
+
+    private static void addItemAt(List<MenuItem> items, int idx, MenuItem item) {
+        if(idx < 0 || idx >= items.size()) {
+            items.add(item);
+        } else {
+            items.add(idx, item);
+        }
     }
 
     /**
@@ -69,11 +184,18 @@ public class MenuTree {
         SubMenuItem subMenu = (parent != null) ? parent : ROOT;
 
         synchronized (subMenuItems) {
-            ArrayList<MenuItem> subMenuChildren = subMenuItems.computeIfAbsent(subMenu, sm -> new ArrayList<>());
+            List<MenuItem> subMenuChildren = subMenuItems.computeIfAbsent(subMenu, sm -> {
+                itemsById.putIfAbsent(sm.getId(), sm);
+                return new ArrayList<>();
+            });
             subMenuChildren.add(item);
+            itemsById.put(item.getId(), item);
+            parentsById.put(item.getId(), subMenu);
+            structureChanged(subMenu);
 
             if (item.hasChildren()) {
                 subMenuItems.put(item, new ArrayList<>());
+                structureChanged(item);
             }
         }
     }
@@ -86,11 +208,12 @@ public class MenuTree {
     public void addOrUpdateItem(int parentId, MenuItem item) {
         synchronized (subMenuItems) {
             getSubMenuById(parentId).ifPresent(subMenu-> {
-                if(getMenuItems(subMenu).stream().anyMatch(it-> it.getId() == item.getId())) {
-                    replaceMenuById(asSubMenu(subMenu), item);
+                var existingParent = parentsById.get(item.getId());
+                if(existingParent != null && existingParent.getId() == parentId) {
+                    replaceMenuById(subMenu, item);
                 }
                 else {
-                    addMenuItem(asSubMenu(subMenu), item);
+                    addMenuItem(subMenu, item);
                 }
             });
         }
@@ -102,13 +225,13 @@ public class MenuTree {
      * @return an optional that will be populated when present with the sub menu.
      */
     public Optional<SubMenuItem> getSubMenuById(int parentId) {
-        return  getAllSubMenus().stream().filter(subMenu->subMenu.getId() == parentId).map(m->(SubMenuItem)m).findFirst();
+        var item = itemsById.get(parentId);
+        return (item != null && item.hasChildren()) ? Optional.of(asSubMenu(item)) : Optional.empty();
     }
 
     /**
-     * Gets the menu item with the specified ID, finding the submenu if needed. In most cases the linkage between
-     * ID and item will be cached and therefore fast, if you don't know the sub menu set it to null, and it will be
-     * determined.
+     * Gets the menu item with the specified ID, this is a direct lookup that never walks the tree. If the item has
+     * no state yet, a default state is stored for it.
      * @param id the id of the object to find.
      * @return the menu at the given id
      */
@@ -119,13 +242,9 @@ public class MenuTree {
             return Optional.of((T)state.getItem());
         }
 
-        // shortcut to find the submenu by ID if possible before going through everything.
-        var maybeItem = getAllSubMenus().stream().filter(item -> item.getId() == id).map(m -> (T)m).findFirst();
-        if(maybeItem.isEmpty()) {
-            maybeItem = getAllMenuItems().stream().filter(item -> item.getId() == id).map(m -> (T) m).findFirst();
-        }
+        var maybeItem = Optional.ofNullable((T) itemsById.get(id));
 
-        // store a state object for the menu item, then we know for sure the next lookup is fast.
+        // store a state object for the menu item, so that it has a value from now on.
         maybeItem.ifPresent(t -> menuStates.put(id, stateForMenuItem(t, MenuItemHelper.getDefaultFor(t),
                 false, false)));
 
@@ -152,7 +271,7 @@ public class MenuTree {
      */
     public void replaceMenuById(SubMenuItem subMenu, MenuItem toReplace) {
         synchronized (subMenuItems) {
-            ArrayList<MenuItem> list = subMenuItems.get(subMenu);
+            List<MenuItem> list = subMenuItems.get(subMenu);
             int idx = -1;
             for (int i = 0; i < list.size(); ++i) {
                 if (list.get(i).getId() == toReplace.getId()) {
@@ -163,19 +282,25 @@ public class MenuTree {
             if (idx != -1) {
                 // We found the original, so we now change that index to the new entry
                 MenuItem oldItem = list.set(idx, toReplace);
+                itemsById.put(toReplace.getId(), toReplace);
+                structureChanged(subMenu);
 
                 // Now we update the "state" which also acts like a cache of menu items for lookup
-                if(menuStates.containsKey(toReplace.getId())) {
-                    menuStates.compute(toReplace.getId(), (k, oldState) -> {
-                        var v = oldState != null ? oldState.getValue() : MenuItemHelper.getDefaultFor(toReplace);
-                        return stateForMenuItem(oldState, toReplace, v);
-                    });
+                var oldState = menuStates.get(toReplace.getId());
+                if(oldState != null) {
+                    menuStates.put(toReplace.getId(), stateForMenuItem(oldState, toReplace, oldState.getValue()));
                 }
 
                 // lastly if the item was a submenu, we need change the top level submenu list as well.
                 if (toReplace.hasChildren()) {
-                    ArrayList<MenuItem> items = subMenuItems.remove(oldItem);
+                    List<MenuItem> items = subMenuItems.remove(oldItem);
                     subMenuItems.put(toReplace, items);
+                    structureChanged(toReplace);
+                    if (items != null) {
+                        for (var child : items) {
+                            parentsById.put(child.getId(), asSubMenu(toReplace));
+                        }
+                    }
                 }
             }
         }
@@ -193,7 +318,11 @@ public class MenuTree {
             // get rid of the old entry first as we are moving
             SubMenuItem existingParent = findParent(itemMoved);
             var items = subMenuItems.get(existingParent);
-            items.remove(itemMoved);
+            int existingIdx = items.indexOf(itemMoved);
+            if(existingIdx != -1) {
+                items.remove(existingIdx);
+                structureChanged(existingParent);
+            }
 
             // now locate where we are to add it
             SubMenuItem newSub;
@@ -202,22 +331,19 @@ public class MenuTree {
                 newSub = (SubMenuItem) newLocation;
             } else {
                 newSub = findParent(newLocation);
-                idxToAdd = findIndexOf(newSub, newLocation);
+                idxToAdd = subMenuItems.get(newSub).indexOf(newLocation);
                 if(!before) idxToAdd++;
             }
 
             // now add to the new location
-            items = subMenuItems.get(newSub);
-            if(idxToAdd < 0 || idxToAdd >= items.size()) {
-                items.add(itemMoved);
-            } else {
-                items.add(idxToAdd, itemMoved);
-            }
+            addItemAt(subMenuItems.get(newSub), idxToAdd, itemMoved);
+            parentsById.put(itemMoved.getId(), newSub);
+            structureChanged(newSub);
         }
     }
 
     public int findIndexOf(SubMenuItem which, MenuItem item) {
-        var items = subMenuItems.get(which);
+        var items = getSnapshot().getMenuItems(which);
         for(int i=0; i<items.size(); i++) {
             if(items.get(i).equals(item)) {
                 return i;
@@ -237,22 +363,12 @@ public class MenuTree {
     }
 
     /**
-     * Finds the submenu that the provided object belongs to.
+     * Finds the submenu that the provided object belongs to, this is a direct lookup by the ID of the item.
      * @param toFind the object to find sub menu for.
-     * @return the submenu
+     * @return the submenu, or ROOT if the item is not in the tree
      */
     public SubMenuItem findParent(MenuItem toFind) {
-        synchronized (subMenuItems) {
-            SubMenuItem parent = MenuTree.ROOT;
-            for (Map.Entry<MenuItem, ArrayList<MenuItem>> entry : subMenuItems.entrySet()) {
-                for (MenuItem item : entry.getValue()) {
-                    if (item.getId() == toFind.getId()) {
-                        parent = asSubMenu(entry.getKey());
-                    }
-                }
-            }
-            return parent;
-        }
+        return parentsById.getOrDefault(toFind.getId(), ROOT);
     }
 
     /**
@@ -264,44 +380,58 @@ public class MenuTree {
         SubMenuItem subMenu = (parent != null) ? parent : ROOT;
 
         synchronized (subMenuItems) {
-            ArrayList<MenuItem> subMenuChildren = subMenuItems.get(subMenu);
+            List<MenuItem> subMenuChildren = subMenuItems.get(subMenu);
             if (subMenuChildren == null) {
                 throw new UnsupportedOperationException("Menu element not found");
             }
 
             for(int i=0; i<subMenuChildren.size(); i++) {
                 if(subMenuChildren.get(i).getId() == item.getId()) {
+                    removeFromIndex(item.getId());
                     subMenuChildren.remove(i);
+                    structureChanged(subMenu);
                     break;
                 }
             }
-            if (item.hasChildren()) {
-                subMenuItems.remove(item);
+            if (item.hasChildren() && subMenuItems.remove(item) != null) {
+                structureChanged(item);
             }
         }
         menuStates.remove(item.getId());
     }
 
     /**
-     * Returns all the submenus that are currently stored
-     * @return all available sub menus
+     * Removes an item from the id and parent indexes, along with anything below it when it is a submenu, as those
+     * items can no longer be reached in the tree. Must be called with the subMenuItems lock held.
      */
-    public Set<MenuItem> getAllSubMenus() {
-        synchronized (subMenuItems) {
-            return subMenuItems.keySet();
+    private void removeFromIndex(int id) {
+        var removed = itemsById.remove(id);
+        parentsById.remove(id);
+        if (removed != null && removed.hasChildren()) {
+            var children = subMenuItems.get(removed);
+            if (children != null) {
+                for (var child : children) {
+                    removeFromIndex(child.getId());
+                }
+            }
         }
     }
 
     /**
-     * Get a list of all menu items for a given submenu
+     * Returns all the submenus that are currently stored, taken from the current snapshot
+     * @return all available sub menus, this set is immutable
+     */
+    public Set<MenuItem> getAllSubMenus() {
+        return getSnapshot().getAllSubMenus();
+    }
+
+    /**
+     * Get a list of all menu items for a given submenu, taken from the current snapshot
      * @param item the submenu to use
      * @return a list of submenu items that's immutable
      */
     public List<MenuItem> getMenuItems(MenuItem item) {
-        synchronized (subMenuItems) {
-            ArrayList<MenuItem> menuItems = subMenuItems.get(item);
-            return menuItems == null ? null : Collections.unmodifiableList(menuItems);
-        }
+        return getSnapshot().getMenuItems(item);
     }
 
     /**
@@ -309,11 +439,11 @@ public class MenuTree {
      * @return every menu item in the tree.
      */
     public Collection<MenuItem> getAllMenuItems() {
+        var current = getSnapshot();
         var toReturn = new HashSet<MenuItem>(128);
-        var subs = getAllSubMenus();
-        for (MenuItem sub : subs) {
+        for (MenuItem sub : current.getAllSubMenus()) {
             toReturn.add(sub);
-            toReturn.addAll(getMenuItems(sub));
+            toReturn.addAll(current.getMenuItems(sub));
         }
         return toReturn;
     }
@@ -328,17 +458,7 @@ public class MenuTree {
      * @return every menu item in the tree from the given starting point.
      */
     public Collection<MenuItem> getAllMenuItemsFrom(SubMenuItem item) {
-        var toReturn = new ArrayList<MenuItem>(128);
-        var subItems = subMenuItems.get(item);
-        toReturn.add(item);
-        for(var it : subItems) {
-            if(it.hasChildren()) {
-                toReturn.addAll(getAllMenuItemsFrom(MenuItemHelper.asSubMenu(it)));
-            } else {
-                toReturn.add(it);
-            }
-        }
-        return toReturn;
+        return getSnapshot().getAllMenuItemsFrom(item);
     }
 
 
@@ -354,6 +474,43 @@ public class MenuTree {
         menuStates.put(item.getId(), menuState);
     }
 
+    /**
+     * Change the value of an integer based item such as analog or enum, this is the same as calling `changeItem` with
+     * a new `IntegerMenuState`, but with a `PrimitiveMenuStateStore` it does not allocate. No range checking is
+     * performed, see `MenuItemHelper.setMenuState` for a version that converts and checks the value.
+     * @param item the item to change
+     * @param value the new value
+     * @param changed the changed flag of the new state
+     * @param active the active flag of the new state
+     */
+    public void changeItemValue(MenuItem item, int value, boolean changed, boolean active) {
+        menuStates.putInt(item, value, changed, active);
+    }
+
+    /**
+     * Change the value of a boolean item, this is the same as calling `changeItem` with a new `BooleanMenuState`,
+     * but with a `PrimitiveMenuStateStore` it does not allocate.
+     * @param item the item to change
+     * @param value the new value
+     * @param changed the changed flag of the new state
+     * @param active the active flag of the new state
+     */
+    public void changeItemValue(MenuItem item, boolean value, boolean changed, boolean active) {
+        menuStates.putBoolean(item, value, changed, active);
+    }
+
+    /**
+     * Change the value of a float item, this is the same as calling `changeItem` with a new `FloatMenuState`, but
+     * with a `PrimitiveMenuStateStore` it does not allocate.
+     * @param item the item to change
+     * @param value the new value
+     * @param changed the changed flag of the new state
+     * @param active the active flag of the new state
+     */
+    public void changeItemValue(MenuItem item, float value, boolean changed, boolean active) {
+        menuStates.putFloat(item, value, changed, active);
+    }
+
     /**
      * Gets the menu state that's associated with a given menu item. This is the
      * current value for the menu item.
@@ -368,18 +525,13 @@ public class MenuTree {
 
     /**
      * Recurse the whole menu tree calling the consumer for each item in turn. This will always be in order so that
-     * a child item never comes before its parent.
+     * a child item never comes before its parent. The walk is over a single snapshot, so the consumer may change
+     * the tree, and those changes will not be seen by this walk.
      * @param root the starting point, normally ROOT
      * @param consumer the consumer that will be called for each item, providing the item and the parent
      */
     public void recurseTreeIteratingOnItems(SubMenuItem root, BiConsumer<MenuItem, SubMenuItem> consumer) {
-        var sub = getMenuItems(root);
-        for(var child : sub) {
-            consumer.accept(child, root);
-            if(child instanceof SubMenuItem) {
-                recurseTreeIteratingOnItems((SubMenuItem) child, consumer);
-            }
-        }
+        getSnapshot().recurseTreeIteratingOnItems(root, consumer);
     }
 
     /**
@@ -0,0 +1,128 @@
+package com.thecoderscorner.menu.domain.state;
+
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.SubMenuItem;
+import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import com.thecoderscorner.menu.persist.JsonMenuItemSerializer;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable view of the structure of a menu tree at a point in time. Each change to the structure of a `MenuTree`
+ * publishes a new snapshot, so readers can iterate over a snapshot for as long as they wish without being affected by
+ * later changes to the tree. Obtain the current snapshot from
+ * `MenuTree.getSnapshot()`.
+ * @see MenuTree
+ */
+public class MenuTreeSnapshot {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final JsonMenuItemSerializer STRUCTURE_SERIALIZER = new JsonMenuItemSerializer();
+
+    private final Map<MenuItem, List<MenuItem>> subMenuItems;
+    private final long version;
+    private volatile long structureHash;
+
+    /**
+     * Create a snapshot from a map of submenu to child lists, the lists must already be immutable.
+     * @param subMenuItems the submenu to children map, which is owned by the snapshot from now on and is not copied
+     * @param version the version of the tree this represents
+     */
+    MenuTreeSnapshot(Map<MenuItem, List<MenuItem>> subMenuItems, long version) {
+        this.subMenuItems = Collections.unmodifiableMap(subMenuItems);
+        this.version = version;
+    }
+
+    /**
+     * @return the version of the tree structure, this increases each time the structure changes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets a hash of the structure in this snapshot, covering every item's definition, position and parent, but not
+     * the values held in the items' state. Two trees with the same items defined in the same order have the same hash
+     * even in different processes, so a remote that already holds a tree with this hash need not bootstrap it again.
+     * The hash is worked out the first time it is asked for and then kept, as the snapshot never changes.
+     * @return the structure hash, which is never zero
+     */
+    public long getStructureHash() {
+        long hash = structureHash;
+        if(hash == 0) {
+            long[] acc = { FNV_OFFSET_BASIS };
+            var gson = STRUCTURE_SERIALIZER.getGson();
+            recurseTreeIteratingOnItems(MenuTree.ROOT, (item, parent) -> {
+                acc[0] = hashInto(acc[0], Integer.toString(parent.getId()));
+                acc[0] = hashInto(acc[0], item.getClass().getName());
+                acc[0] = hashInto(acc[0], gson.toJson(item));
+            });
+            hash = (acc[0] == 0) ? 1 : acc[0];
+            structureHash = hash;
+        }
+        return hash;
+    }
+
+    private static long hashInto(long hash, String text) {
+        for(int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        // separate each field so that moving characters between neighbouring fields changes the hash
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    /**
+     * @return all the submenus in this snapshot
+     */
+    public Set<MenuItem> getAllSubMenus() {
+        return subMenuItems.keySet();
+    }
+
+    /**
+     * Get a list of the items in a given submenu
+     * @param item the submenu to use
+     * @return an immutable list of the items in the submenu, or null if it is not a submenu in this snapshot
+     */
+    public List<MenuItem> getMenuItems(MenuItem item) {
+        return subMenuItems.get(item);
+    }
+
+    /**
+     * Gets every menu item in this snapshot from a given submenu in order, the submenu itself is first.
+     * @param item the starting point for traversal.
+     * @return every menu item from the starting point.
+     */
+    public Collection<MenuItem> getAllMenuItemsFrom(SubMenuItem item) {
+        var toReturn = new ArrayList<MenuItem>(128);
+        addAllItemsFrom(item, toReturn);
+        return toReturn;
+    }
+
+    private void addAllItemsFrom(SubMenuItem item, List<MenuItem> toReturn) {
+        toReturn.add(item);
+        for(var it : subMenuItems.get(item)) {
+            if(it.hasChildren()) {
+                addAllItemsFrom(MenuItemHelper.asSubMenu(it), toReturn);
+            } else {
+                toReturn.add(it);
+            }
+        }
+    }
+
+    /**
+     * Recurse the snapshot calling the consumer for each item in turn, a child item never comes before its parent.
+     * @param root the starting point, normally ROOT
+     * @param consumer the consumer that will be called for each item, providing the item and the parent
+     */
+    public void recurseTreeIteratingOnItems(SubMenuItem root, BiConsumer<MenuItem, SubMenuItem> consumer) {
+        var sub = subMenuItems.get(root);
+        if(sub == null) return;
+        for(var child : sub) {
+            consumer.accept(child, root);
+            if(child instanceof SubMenuItem) {
+                recurseTreeIteratingOnItems((SubMenuItem) child, consumer);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.thecoderscorner.menu.domain.state;
+
+import com.thecoderscorner.menu.domain.MenuItem;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A state store that is indexed directly by item ID, where integer, boolean and float values are packed along with
+ * their changed and active flags into a single long per item. Updates through `putInt`, `putBoolean` and `putFloat`
+ * do not allocate, and the `AnyMenuState` object for an item is only built when it is read, it is then cached until
+ * the value next changes. Any other type of state is held as an object, as with the map based store.
+ *
+ * Item IDs from zero up to MAX_DENSE_ID are held in the arrays, which grow as needed, any other ID is held in an
+ * overflow map. Writes are serialised on the store, which is uncontended in most cases. Reads of an unchanged value
+ * never take a lock, the first read after a change builds the state object and caches it under the lock, so that a
+ * cached view can never replace a state that was stored in the meantime.
+ */
+public class PrimitiveMenuStateStore implements MenuStateStore {
+    /** IDs at or above this value are held in the overflow map rather than the arrays */
+    public static final int MAX_DENSE_ID = 65536;
+
+    private static final int KIND_SHIFT = 40;
+    private static final long KIND_NONE = 0;
+    private static final long KIND_INT = 1;
+    private static final long KIND_BOOLEAN = 2;
+    private static final long KIND_FLOAT = 3;
+    private static final long KIND_OBJECT = 4;
+    private static final long FLAG_CHANGED = 1L << 32;
+    private static final long FLAG_ACTIVE = 1L << 33;
+
+    private record Slots(AtomicLongArray packed, AtomicReferenceArray<MenuItem> items,
+                         AtomicReferenceArray<AnyMenuState> views) {
+        Slots(int size) {
+            this(new AtomicLongArray(size), new AtomicReferenceArray<>(size), new AtomicReferenceArray<>(size));
+        }
+
+        int size() {
+            return packed.length();
+        }
+    }
+
+    private final Map<Integer, AnyMenuState> overflow = new ConcurrentHashMap<>();
+    private volatile Slots slots;
+
+    /**
+     * Create a store with room for the given number of items before it needs to grow
+     * @param initialCapacity the initial capacity, ideally the highest item ID plus one
+     */
+    public PrimitiveMenuStateStore(int initialCapacity) {
+        slots = new Slots(Math.max(16, Math.min(initialCapacity, MAX_DENSE_ID)));
+    }
+
+    @Override
+    public AnyMenuState get(int id) {
+        var s = slots;
+        if (id < 0 || id >= MAX_DENSE_ID) return overflow.get(id);
+        if (id >= s.size()) return null;
+
+        long p = s.packed().get(id);
+        long kind = p >>> KIND_SHIFT;
+        if (kind == KIND_NONE) return null;
+        if (kind == KIND_OBJECT) return s.views().get(id);
+
+        var item = s.items().get(id);
+        var cached = s.views().get(id);
+        if (cached != null && cached.getItem() == item && matches(cached, p)) {
+            return cached;
+        }
+        var view = buildView(item, p);
+        cacheView(s, id, p, item, view);
+        return view;
+    }
+
+    /**
+     * Publishes a view built from the packed value p, but only if the slot still holds that value and item, any
+     * write since p was read has stored its own state, which must not be replaced by this view.
+     */
+    private synchronized void cacheView(Slots s, int id, long p, MenuItem item, AnyMenuState view) {
+        if (slots == s && s.packed().get(id) == p && s.items().get(id) == item) {
+            s.views().set(id, view);
+        }
+    }
+
+    @Override
+    public synchronized void put(int id, AnyMenuState state) {
+        if (id < 0 || id >= MAX_DENSE_ID) {
+            overflow.put(id, state);
+            return;
+        }
+        var s = slotsFor(id);
+        long kind = kindOf(state);
+        long value = 0;
+        if (kind == KIND_INT) {
+            value = ((IntegerMenuState) state).getValue();
+        } else if (kind == KIND_BOOLEAN) {
+            value = ((BooleanMenuState) state).getValue() ? 1 : 0;
+        } else if (kind == KIND_FLOAT) {
+            value = Float.floatToRawIntBits(((FloatMenuState) state).getValue());
+        }
+        s.items().set(id, state.getItem());
+        s.views().set(id, state);
+        s.packed().set(id, pack(kind, state.isChanged(), state.isActive(), (int) value));
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        if (id < 0 || id >= MAX_DENSE_ID) {
+            overflow.remove(id);
+            return;
+        }
+        var s = slots;
+        if (id >= s.size()) return;
+        s.packed().set(id, 0);
+        s.items().set(id, null);
+        s.views().set(id, null);
+    }
+
+    @Override
+    public void putInt(MenuItem item, int value, boolean changed, boolean active) {
+        if (!putPrimitive(item, KIND_INT, value, changed, active)) {
+            MenuStateStore.super.putInt(item, value, changed, active);
+        }
+    }
+
+    @Override
+    public void putBoolean(MenuItem item, boolean value, boolean changed, boolean active) {
+        if (!putPrimitive(item, KIND_BOOLEAN, value ? 1 : 0, changed, active)) {
+            MenuStateStore.super.putBoolean(item, value, changed, active);
+        }
+    }
+
+    @Override
+    public void putFloat(MenuItem item, float value, boolean changed, boolean active) {
+        if (!putPrimitive(item, KIND_FLOAT, Float.floatToRawIntBits(value), changed, active)) {
+            MenuStateStore.super.putFloat(item, value, changed, active);
+        }
+    }
+
+    /**
+     * Replace the packed value and flags in place. Returns false when the item is outside the arrays, in which case
+     * the caller falls back to storing a state object in the overflow map.
+     */
+    private synchronized boolean putPrimitive(MenuItem item, long kind, int value, boolean changed, boolean active) {
+        int id = item.getId();
+        if (id < 0 || id >= MAX_DENSE_ID) return false;
+        var s = slotsFor(id);
+        if (s.items().get(id) != item) {
+            s.items().set(id, item);
+        }
+        s.packed().set(id, pack(kind, changed, active, value));
+        return true;
+    }
+
+    private Slots slotsFor(int id) {
+        var s = slots;
+        if (id < s.size()) return s;
+
+        int newSize = s.size();
+        while (newSize <= id) newSize *= 2;
+        var grown = new Slots(Math.min(newSize, MAX_DENSE_ID));
+        for (int i = 0; i < s.size(); i++) {
+            grown.packed().set(i, s.packed().get(i));
+            grown.items().set(i, s.items().get(i));
+            grown.views().set(i, s.views().get(i));
+        }
+        slots = grown;
+        return grown;
+    }
+
+    private static long kindOf(AnyMenuState state) {
+        if (state.getValue() == null) return KIND_OBJECT;
+        var cls = state.getClass();
+        if (cls == IntegerMenuState.class) return KIND_INT;
+        if (cls == BooleanMenuState.class) return KIND_BOOLEAN;
+        if (cls == FloatMenuState.class) return KIND_FLOAT;
+        return KIND_OBJECT;
+    }
+
+    private static long pack(long kind, boolean changed, boolean active, int value) {
+        return (kind << KIND_SHIFT) | (changed ? FLAG_CHANGED : 0) | (active ? FLAG_ACTIVE : 0) | (value & 0xffffffffL);
+    }
+
+    private static boolean matches(AnyMenuState view, long p) {
+        if (view.isChanged() != ((p & FLAG_CHANGED) != 0) || view.isActive() != ((p & FLAG_ACTIVE) != 0)) {
+            return false;
+        }
+        long kind = p >>> KIND_SHIFT;
+        int value = (int) p;
+        if (kind == KIND_INT && view instanceof IntegerMenuState intState) {
+            return intState.getValue() == value;
+        } else if (kind == KIND_BOOLEAN && view instanceof BooleanMenuState boolState) {
+            return boolState.getValue() == (value != 0);
+        } else if (kind == KIND_FLOAT && view instanceof FloatMenuState floatState) {
+            return Float.floatToRawIntBits(floatState.getValue()) == value;
+        }
+        return false;
+    }
+
+    private static AnyMenuState buildView(MenuItem item, long p) {
+        boolean changed = (p & FLAG_CHANGED) != 0;
+        boolean active = (p & FLAG_ACTIVE) != 0;
+        int value = (int) p;
+        long kind = p >>> KIND_SHIFT;
+        if (kind == KIND_INT) {
+            return new IntegerMenuState(item, changed, active, value);
+        } else if (kind == KIND_BOOLEAN) {
+            return new BooleanMenuState(item, changed, active, value != 0);
+        } else {
+            return new FloatMenuState(item, changed, active, Float.intBitsToFloat(value));
+        }
+    }
+}
@@ -284,9 +284,8 @@ public class MenuItemHelper {
                 return Optional.empty();
             }
 
-            AnyMenuState menuState = stateForMenuItem(intState, item, intState.getValue() + delta);
-            tree.changeItem(item, menuState);
-            return Optional.ofNullable(menuState);
+            setMenuState(item, val, intState.isChanged(), intState.isActive(), tree);
+            return Optional.ofNullable(tree.getMenuState(item));
         }
         else if(state.getStorageType() == SCROLL_POSITION) {
             var scrState = (CurrentScrollPositionMenuState) state;
@@ -321,37 +320,17 @@ public class MenuItemHelper {
         return MenuItemHelper.visitWithResult(item, new AbstractMenuItemVisitor<AnyMenuState>() {
             @Override
             public void visit(AnalogMenuItem item) {
-                int res = (val instanceof String) ? Integer.parseInt(val.toString()) : ((Number)val).intValue();
-                if(res < 0) res = 0;
-                if(res > item.getMaxValue()) res = item.getMaxValue();
-                setResult(new IntegerMenuState(item, changed, active, res));
+                setResult(new IntegerMenuState(item, changed, active, analogValueFrom(item, val)));
             }
 
             @Override
             public void visit(BooleanMenuItem item) {
-                boolean res;
-                if(val instanceof String) {
-                   if(((String) val).length() == 1) {
-                       res = ((String) val).charAt(0) == '1' || ((String) val).charAt(0) == 'Y';
-                   }
-                   else {
-                       res = Boolean.parseBoolean((String)val);
-                   }
-                }
-                else if(val instanceof Number) {
-                    res = ((Number) val).intValue() != 0;
-                }
-                else res = (boolean)val;
-
-                setResult(new BooleanMenuState(item, changed, active, res));
+                setResult(new BooleanMenuState(item, changed, active, booleanValueFrom(val)));
             }
 
             @Override
             public void visit(EnumMenuItem item) {
-                int res = (val instanceof String) ? Integer.parseInt(val.toString()) : ((Number)val).intValue();
-                if(res < 0) res = 0;
-                if(res >= item.getEnumEntries().size()) res = item.getEnumEntries().size() - 1;
-                setResult(new IntegerMenuState(item, changed, active, res));
+                setResult(new IntegerMenuState(item, changed, active, enumValueFrom(item, val)));
             }
 
             @Override
@@ -373,8 +352,7 @@ public class MenuItemHelper {
 
             @Override
             public void visit(FloatMenuItem item) {
-                float res = (val instanceof String) ? Float.parseFloat(val.toString()) : ((Number)val).floatValue();
-                setResult(new FloatMenuState(item, changed, active, res));
+                setResult(new FloatMenuState(item, changed, active, floatValueFrom(val)));
             }
 
             @SuppressWarnings("unchecked")
@@ -420,6 +398,39 @@ public class MenuItemHelper {
         }).orElseThrow();
     }
 
+    private static int analogValueFrom(AnalogMenuItem item, Object val) {
+        int res = (val instanceof String) ? Integer.parseInt(val.toString()) : ((Number)val).intValue();
+        if(res < 0) res = 0;
+        if(res > item.getMaxValue()) res = item.getMaxValue();
+        return res;
+    }
+
+    private static int enumValueFrom(EnumMenuItem item, Object val) {
+        int res = (val instanceof String) ? Integer.parseInt(val.toString()) : ((Number)val).intValue();
+        if(res < 0) res = 0;
+        if(res >= item.getEnumEntries().size()) res = item.getEnumEntries().size() - 1;
+        return res;
+    }
+
+    private static boolean booleanValueFrom(Object val) {
+        if(val instanceof String) {
+            if(((String) val).length() == 1) {
+                return ((String) val).charAt(0) == '1' || ((String) val).charAt(0) == 'Y';
+            }
+            else {
+                return Boolean.parseBoolean((String)val);
+            }
+        }
+        else if(val instanceof Number) {
+            return ((Number) val).intValue() != 0;
+        }
+        else return (boolean)val;
+    }
+
+    private static float floatValueFrom(Object val) {
+        return (val instanceof String) ? Float.parseFloat(val.toString()) : ((Number)val).floatValue();
+    }
+
     /**
      * Set the state in the tree for an item with a new value, setting it changed if it genuinely has.
      * @param item the item
@@ -429,9 +440,35 @@ public class MenuItemHelper {
     public static void setMenuState(MenuItem item, Object value, MenuTree tree) {
         var oldState = tree.getMenuState(item);
         if(oldState != null) {
-            tree.changeItem(item, stateForMenuItem(item, value, !value.equals(oldState.getValue()), oldState.isActive()));
+            setMenuState(item, value, !value.equals(oldState.getValue()), oldState.isActive(), tree);
+        } else {
+            setMenuState(item, value, false, false, tree);
+        }
+    }
+
+    /**
+     * Set the state in the tree for an item with a new value and the flags provided. This is the same as calling
+     * `tree.changeItem(item, stateForMenuItem(item, value, changed, active))`, converting the value in the same way,
+     * but analog, enum, boolean and float values are stored in the tree directly, so that with a
+     * `PrimitiveMenuStateStore` no state object is created.
+     * @param item the item
+     * @param value the replacement value
+     * @param changed the changed status
+     * @param active the active status
+     * @param tree the tree to change
+     */
+    public static void setMenuState(MenuItem item, Object value, boolean changed, boolean active, MenuTree tree) {
+        var val = (value != null) ? value : getDefaultFor(item);
+        if(item instanceof AnalogMenuItem analog) {
+            tree.changeItemValue(item, analogValueFrom(analog, val), changed, active);
+        } else if(item instanceof EnumMenuItem enumItem) {
+            tree.changeItemValue(item, enumValueFrom(enumItem, val), changed, active);
+        } else if(item instanceof BooleanMenuItem) {
+            tree.changeItemValue(item, booleanValueFrom(val), changed, active);
+        } else if(item instanceof FloatMenuItem) {
+            tree.changeItemValue(item, floatValueFrom(val), changed, active);
         } else {
-            tree.changeItem(item, stateForMenuItem(item, value, false, false));
+            tree.changeItem(item, stateForMenuItem(item, val, changed, active));
         }
     }
 
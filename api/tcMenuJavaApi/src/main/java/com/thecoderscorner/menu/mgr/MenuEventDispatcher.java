@@ -0,0 +1,340 @@
+package com.thecoderscorner.menu.mgr;
+
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.remote.NamedDaemonThreadFactory;
+
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An optional dispatcher for menu change events that lets MenuManagerServer hand the notification of listeners and
+ * callbacks to its own threads, so that the thread that made the change, often a connection's read thread, does not
+ * wait while a slow listener runs. Give it to the manager using `MenuManagerServer.setEventDispatcher`, without
+ * one listeners are called on the thread that made the change as before.
+ *
+ * Each consumer thread owns a bounded ring of events and an item is always given to the same ring, chosen from its
+ * ID, so changes to one item reach the listeners in the order they were made, while changes to items on different
+ * rings are dispatched in parallel. When a ring is full, the thread publishing the event waits for space, this
+ * slows the sender down to the speed of the listeners rather than losing changes. The exception is a listener that
+ * changes an item from a ring's own consumer thread, which could never make space while it waits, so its events go
+ * to an unbounded overflow behind the ring instead, and other publishers wait until that has been dispatched. The
+ * depth of the rings and how long events took from being published to being dispatched are available so you can see
+ * when listeners fall behind.
+ *
+ * As listeners now run after the change was made, a listener that reads the item's state from the tree sees the
+ * latest state, which may already be newer than the change it was called for.
+ *
+ * @see MenuManagerServer
+ */
+public class MenuEventDispatcher {
+    /**
+     * Receives each event on a consumer thread, the manager uses this to call its listeners and callbacks.
+     */
+    @FunctionalInterface
+    public interface EventTarget {
+        void dispatch(Object sender, MenuItem item, Object data);
+    }
+
+    private static class Event {
+        private Object sender;
+        private MenuItem item;
+        private Object data;
+        private long publishedAt;
+    }
+
+    private final System.Logger logger = System.getLogger(MenuEventDispatcher.class.getSimpleName());
+    private final EventRing[] rings;
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLong publishWaits = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private EventTarget target;
+    private boolean running;
+
+    /**
+     * Create a dispatcher, it does nothing until it is started.
+     * @param capacityPerThread the most events that can wait on each consumer thread's ring before publishing waits
+     * @param consumerThreads the number of threads calling listeners, each with its own ring
+     */
+    public MenuEventDispatcher(int capacityPerThread, int consumerThreads) {
+        if (capacityPerThread < 1) throw new IllegalArgumentException("Capacity must be at least one");
+        if (consumerThreads < 1) throw new IllegalArgumentException("There must be at least one consumer thread");
+        rings = new EventRing[consumerThreads];
+        for (int i = 0; i < consumerThreads; i++) {
+            rings[i] = new EventRing(capacityPerThread);
+        }
+    }
+
+    /**
+     * Starts the consumer threads, calling target for each event. Does nothing if it is already running.
+     * @param target receives each event that is published
+     */
+    public void start(EventTarget target) {
+        stateLock.lock();
+        try {
+            if (running) return;
+            running = true;
+            this.target = target;
+            for (int i = 0; i < rings.length; i++) {
+                rings[i].start(new NamedDaemonThreadFactory("menu-event-" + i));
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting events and waits for the consumer threads to dispatch anything already published.
+     * @param timeout the longest to wait for each consumer thread
+     * @param unit the unit of the timeout
+     */
+    public void stop(long timeout, TimeUnit unit) {
+        stateLock.lock();
+        try {
+            if (!running) return;
+            running = false;
+            for (var ring : rings) ring.close();
+        } finally {
+            stateLock.unlock();
+        }
+
+        for (var ring : rings) {
+            try {
+                ring.awaitStopped(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publish an event to the ring for the item, waiting if the ring is full, unless this is the ring's own consumer
+     * thread, in which case the event goes to the ring's overflow.
+     * @param sender the sender of the change
+     * @param item the item that changed
+     * @param data the new value or list response
+     * @return true if the event was published, false if the dispatcher is not running and the caller should dispatch
+     */
+    public boolean publish(Object sender, MenuItem item, Object data) {
+        try {
+            return rings[Math.floorMod(item.getId(), rings.length)].publish(sender, item, data);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the consumer threads are running
+     */
+    public boolean isRunning() {
+        stateLock.lock();
+        try {
+            return running;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be dispatched across all the rings
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (var ring : rings) depth += ring.size();
+        return depth;
+    }
+
+    /**
+     * @return the number of events that have been dispatched to the target
+     */
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return the average time in nanoseconds from an event being published until its dispatch finished
+     */
+    public long getAverageDispatchLatencyNanos() {
+        long count = dispatched.get();
+        return count == 0 ? 0 : totalLatency.get() / count;
+    }
+
+    /**
+     * @return the longest time in nanoseconds from an event being published until its dispatch finished
+     */
+    public long getMaxDispatchLatencyNanos() {
+        return maxLatency.get();
+    }
+
+    /**
+     * @return the number of times publishing had to wait because the ring for the item was full
+     */
+    public long getPublishWaits() {
+        return publishWaits.get();
+    }
+
+    /**
+     * @return the number of events that a listener published to a full ring from that ring's own consumer thread, and
+     * that therefore went to the ring's overflow
+     */
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    private void recordDispatch(long publishedAt) {
+        long latency = System.nanoTime() - publishedAt;
+        totalLatency.addAndGet(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+        dispatched.incrementAndGet();
+    }
+
+    /**
+     * A fixed array of events reused in place, filled by publishers at the tail and emptied by one consumer thread
+     * at the head, so publishing does not allocate. Events in the overflow are always newer than those in the array,
+     * the consumer takes them once the array is empty, and the array is not refilled until the overflow is empty.
+     */
+    private class EventRing {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final ArrayDeque<Event> overflow = new ArrayDeque<>();
+        private final Event[] slots;
+        private int head;
+        private int count;
+        private boolean closed = true;
+        private Thread consumer;
+
+        EventRing(int capacity) {
+            slots = new Event[capacity];
+            for (int i = 0; i < capacity; i++) slots[i] = new Event();
+        }
+
+        void start(NamedDaemonThreadFactory threadFactory) {
+            lock.lock();
+            try {
+                closed = false;
+                consumer = threadFactory.newThread(this::consume);
+                consumer.start();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean publish(Object sender, MenuItem item, Object data) throws InterruptedException {
+            lock.lock();
+            try {
+                if (isFull() && !closed) {
+                    if (Thread.currentThread() == consumer) {
+                        // a listener on this ring's own thread would wait forever for itself to make space
+                        var event = new Event();
+                        fill(event, sender, item, data);
+                        overflow.add(event);
+                        overflowed.incrementAndGet();
+                        return true;
+                    }
+                    publishWaits.incrementAndGet();
+                    while (isFull() && !closed) notFull.await();
+                }
+                if (closed) return false;
+
+                fill(slots[(head + count) % slots.length], sender, item, data);
+                count++;
+                notEmpty.signal();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isFull() {
+            return count == slots.length || !overflow.isEmpty();
+        }
+
+        private void fill(Event event, Object sender, MenuItem item, Object data) {
+            event.sender = sender;
+            event.item = item;
+            event.data = data;
+            event.publishedAt = System.nanoTime();
+        }
+
+        private void consume() {
+            Object sender;
+            MenuItem item;
+            Object data;
+            long publishedAt;
+            while (true) {
+                lock.lock();
+                try {
+                    while (count == 0 && overflow.isEmpty() && !closed) notEmpty.awaitUninterruptibly();
+                    // once closed, anything already published is still dispatched before the thread ends
+                    if (count == 0 && overflow.isEmpty()) return;
+
+                    var event = (count != 0) ? slots[head] : overflow.poll();
+                    sender = event.sender;
+                    item = event.item;
+                    data = event.data;
+                    publishedAt = event.publishedAt;
+                    if (count != 0) {
+                        event.sender = null;
+                        event.item = null;
+                        event.data = null;
+                        head = (head + 1) % slots.length;
+                        count--;
+                        notFull.signal();
+                    } else if (overflow.isEmpty()) {
+                        // the whole array is free again
+                        notFull.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    target.dispatch(sender, item, data);
+                } catch (Throwable e) {
+                    logger.log(Level.ERROR, "Listener threw an exception during dispatch of " + item, e);
+                }
+                recordDispatch(publishedAt);
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void awaitStopped(long timeout, TimeUnit unit) throws InterruptedException {
+            Thread th;
+            lock.lock();
+            try {
+                th = consumer;
+            } finally {
+                lock.unlock();
+            }
+            if (th != null && th != Thread.currentThread()) th.join(unit.toMillis(timeout));
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return count + overflow.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
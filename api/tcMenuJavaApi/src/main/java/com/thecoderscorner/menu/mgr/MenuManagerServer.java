@@ -6,20 +6,28 @@ import com.thecoderscorner.menu.domain.ScrollChoiceMenuItem;
 import com.thecoderscorner.menu.domain.state.*;
 import com.thecoderscorner.menu.domain.util.MenuItemFormatter;
 import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
+import com.thecoderscorner.menu.remote.HeartbeatWheel;
 import com.thecoderscorner.menu.remote.commands.*;
 import com.thecoderscorner.menu.remote.protocol.ApiPlatform;
 import com.thecoderscorner.menu.remote.protocol.CorrelationId;
 import com.thecoderscorner.menu.remote.protocol.MessageField;
 
 import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.time.Clock;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
@@ -42,9 +50,14 @@ import static com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand.Hear
  * Any authentication that is required is dealt with by an instance of {@link MenuAuthenticator}.
  */
 public class MenuManagerServer implements NewServerConnectionListener {
+    private static final long HEARTBEAT_TICK_MILLIS = 100;
+    private static final int HEARTBEAT_WHEEL_SIZE = 512;
+    private static final MethodType CALLBACK_TYPE = MethodType.methodType(void.class, Object.class, MenuItem.class);
+    private static final MethodType LIST_CALLBACK_TYPE = MethodType.methodType(void.class, Object.class, MenuItem.class, Object.class);
+    private static final MethodType SCROLL_VALUE_TYPE = MethodType.methodType(String.class, MenuItem.class, int.class);
     public final static Set<MessageField> MSGTYPES_CANNOT_OVERRIDE = Set.of(
             MenuCommandType.CHANGE_INT_FIELD, MenuCommandType.DIALOG_UPDATE, MenuCommandType.JOIN, MenuCommandType.HEARTBEAT,
-            MenuCommandType.PAIRING_REQUEST, MenuCommandType.BOOTSTRAP);
+            MenuCommandType.PAIRING_REQUEST, MenuCommandType.BOOTSTRAP, MenuCommandType.SUBSCRIBE);
     private final System.Logger logger = System.getLogger(MenuManagerServer.class.getSimpleName());
     private final ScheduledExecutorService executorService;
     private final MenuTree tree;
@@ -55,13 +68,23 @@ public class MenuManagerServer implements NewServerConnectionListener {
     private final MenuAuthenticator authenticator;
     private final AtomicReference<DialogManager> dialogManager = new AtomicReference<>(new EmptyDialogManager());
     private final Clock clock;
+    private final HeartbeatWheel heartbeatWheel;
     private final AtomicBoolean alreadyStarted = new AtomicBoolean(false);
     private final List<MenuManagerListener> eventListeners = new CopyOnWriteArrayList<>();
     private ScheduledFuture<?> hbScheduleThread;
-    private final Map<Integer, MethodWithObject> mapOfCallbacksById = new ConcurrentHashMap<>();
-    private final Map<Integer, MethodWithObject> mapOfChoicePopulatorsById = new ConcurrentHashMap<>();
+    private final Map<Integer, CompiledCallback> mapOfCallbacksById = new ConcurrentHashMap<>();
+    private final Map<Integer, MethodHandle> mapOfChoicePopulatorsById = new ConcurrentHashMap<>();
     private final List<MenuTreeStructureChangeListener> structureChangeListeners = new CopyOnWriteArrayList<>();
     private final AtomicReference<Supplier<String>> boardSerialProvider = new AtomicReference<>(() -> "0");
+    private final AtomicLong broadcastFramesEncoded = new AtomicLong();
+    private final AtomicLong broadcastFramesReused = new AtomicLong();
+    private final AtomicLong broadcastFramesReEncoded = new AtomicLong();
+    private final AtomicLong broadcastsFiltered = new AtomicLong();
+    private final AtomicLong bootstrapsRefreshed = new AtomicLong();
+    private final Map<ServerConnection, Set<Integer>> interestsByConnection = new ConcurrentHashMap<>();
+    private final AtomicReference<MenuEventDispatcher> eventDispatcher = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<MenuCommand> pendingBroadcasts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean broadcasting = new AtomicBoolean(false);
 
     public MenuManagerServer(ScheduledExecutorService executorService, MenuTree tree, String serverName, UUID uuid,
                              MenuAuthenticator authenticator, Clock clock) {
@@ -71,6 +94,7 @@ public class MenuManagerServer implements NewServerConnectionListener {
         this.serverUuid = uuid;
         this.authenticator = authenticator;
         this.clock = clock;
+        this.heartbeatWheel = new HeartbeatWheel(clock, HEARTBEAT_TICK_MILLIS, HEARTBEAT_WHEEL_SIZE);
     }
 
     /**
@@ -115,6 +139,24 @@ public class MenuManagerServer implements NewServerConnectionListener {
         return dialogManager.get();
     }
 
+    /**
+     * Set a dispatcher that calls the listeners and callbacks for each change on its own threads, rather than on the
+     * thread that made the change. It is started and stopped along with the manager, and must be set before the
+     * manager is started. Until it is running, listeners are called on the thread making the change.
+     * @param dispatcher the dispatcher to use
+     * @see MenuEventDispatcher
+     */
+    public void setEventDispatcher(MenuEventDispatcher dispatcher) {
+        eventDispatcher.set(dispatcher);
+    }
+
+    /**
+     * @return the event dispatcher if one has been set
+     */
+    public Optional<MenuEventDispatcher> getEventDispatcher() {
+        return Optional.ofNullable(eventDispatcher.get());
+    }
+
     /**
      * Add a connection manager to the list of connection managers. This will be started during start and any
      * connections that are created will be serviced by this manager
@@ -142,11 +184,14 @@ public class MenuManagerServer implements NewServerConnectionListener {
         for (var method : listener.getClass().getMethods()) {
             var callbackAnnotation = method.getAnnotation(MenuCallback.class);
             if (callbackAnnotation != null) {
-                mapOfCallbacksById.put(callbackAnnotation.id(), new MethodWithObject(method, listener, callbackAnnotation.listResult()));
+                var type = callbackAnnotation.listResult() ? LIST_CALLBACK_TYPE : CALLBACK_TYPE;
+                compileListenerMethod(method, listener, type).ifPresent(handle -> mapOfCallbacksById.put(
+                        callbackAnnotation.id(), new CompiledCallback(handle, callbackAnnotation.listResult())));
             }
             var scrollAnnotation = method.getAnnotation(ScrollChoiceValueRetriever.class);
             if (scrollAnnotation != null) {
-                mapOfChoicePopulatorsById.put(scrollAnnotation.id(), new MethodWithObject(method, listener, false));
+                compileListenerMethod(method, listener, SCROLL_VALUE_TYPE).ifPresent(handle ->
+                        mapOfChoicePopulatorsById.put(scrollAnnotation.id(), handle));
             }
         }
         if (alreadyStarted.get()) {
@@ -184,13 +229,21 @@ public class MenuManagerServer implements NewServerConnectionListener {
             }
         }
 
-        hbScheduleThread = executorService.scheduleAtFixedRate(this::checkHeartbeats, 200, 200, TimeUnit.MILLISECONDS);
+        var dispatcher = eventDispatcher.get();
+        if (dispatcher != null) dispatcher.start(this::dispatchToListeners);
+
+        hbScheduleThread = executorService.scheduleAtFixedRate(this::checkHeartbeats, HEARTBEAT_TICK_MILLIS,
+                HEARTBEAT_TICK_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Stop the manager all associated resources
      */
     public void stop() {
+        // let listeners see every change that was already made before they are told of the stop
+        var dispatcher = eventDispatcher.get();
+        if (dispatcher != null) dispatcher.stop(1, TimeUnit.SECONDS);
+
         try {
             for (var listener : eventListeners) listener.managerWillStop();
         } catch (Exception ex) {
@@ -213,16 +266,39 @@ public class MenuManagerServer implements NewServerConnectionListener {
         }
     }
 
+    /**
+     * Advances the heartbeat wheel, only the connections whose heartbeat deadline has been reached are checked.
+     */
     void checkHeartbeats() {
-        for (var socket : getAllServerConnections()) {
-            if ((clock.millis() - socket.lastReceivedHeartbeat()) > (socket.getHeartbeatFrequency() * 3L)) {
-                logger.log(Level.WARNING, "HB timeout, no received message within frequency");
-                socket.closeConnection();
-            } else if ((clock.millis() - socket.lastTransmittedHeartbeat()) > socket.getHeartbeatFrequency()) {
-                logger.log(Level.INFO, "Sending HB due to inactivity");
-                executorService.execute(() -> socket.sendCommand(new MenuHeartbeatCommand(socket.getHeartbeatFrequency(), HeartbeatMode.NORMAL)));
-            }
+        heartbeatWheel.advance();
+    }
+
+    /**
+     * Called by the heartbeat wheel when a connection's deadline is reached. Any messages since the deadline was set
+     * have moved the real deadline on, so it is worked out again here from the connection's last activity.
+     * @return the delay until the connection needs checking again, or STOP when it has closed
+     */
+    private long superviseHeartbeat(ServerConnection socket) {
+        if (socket.getConnectionMode() == ServerConnectionMode.DISCONNECTED) {
+            interestsByConnection.remove(socket);
+            return HeartbeatWheel.STOP;
         }
+
+        long now = clock.millis();
+        long frequency = socket.getHeartbeatFrequency();
+        long sinceReceived = now - socket.lastReceivedHeartbeat();
+        long sinceTransmitted = now - socket.lastTransmittedHeartbeat();
+        if (sinceReceived > (frequency * 3L)) {
+            logger.log(Level.WARNING, "HB timeout, no received message within frequency");
+            socket.closeConnection();
+            interestsByConnection.remove(socket);
+            return HeartbeatWheel.STOP;
+        } else if (sinceTransmitted > frequency) {
+            logger.log(Level.INFO, "Sending HB due to inactivity");
+            executorService.execute(() -> socket.sendCommand(new MenuHeartbeatCommand(socket.getHeartbeatFrequency(), HeartbeatMode.NORMAL)));
+            sinceTransmitted = 0;
+        }
+        return Math.min(frequency - sinceTransmitted, (frequency * 3L) - sinceReceived) + 1;
     }
 
     /**
@@ -256,6 +332,7 @@ public class MenuManagerServer implements NewServerConnectionListener {
     public void connectionCreated(ServerConnection connection) {
         connection.registerMessageHandler(this::messageReceived);
         connection.sendCommand(new MenuHeartbeatCommand(connection.getHeartbeatFrequency(), HeartbeatMode.START));
+        heartbeatWheel.schedule(connection.getHeartbeatFrequency() + 1L, () -> superviseHeartbeat(connection));
     }
 
     private void messageReceived(ServerConnection conn, MenuCommand cmd) {
@@ -276,18 +353,11 @@ public class MenuManagerServer implements NewServerConnectionListener {
                     conn.closeConnection();
                 } else {
                     conn.setConnectionMode(ServerConnectionMode.AUTHENTICATED);
+                    interestsByConnection.remove(conn);
                     logger.log(Level.WARNING, "Successful login from " + join.getMyName());
                     conn.sendCommand(new MenuAcknowledgementCommand(CorrelationId.EMPTY_CORRELATION, AckStatus.SUCCESS));
-                    conn.sendCommand(new MenuBootstrapCommand(MenuBootstrapCommand.BootType.START));
-
-                    tree.recurseTreeIteratingOnItems(MenuTree.ROOT, (item, parent) -> {
-                        if (!item.isLocalOnly()) {
-                            var bootMsg = MenuItemHelper.getBootMsgForItem(item, parent, tree);
-                            bootMsg.ifPresent(conn::sendCommand);
-                        }
-                    });
 
-                    conn.sendCommand(new MenuBootstrapCommand(MenuBootstrapCommand.BootType.END));
+                    sendBootstrap(conn, join.getKnownTreeHash());
                 }
             } else if (cmd.getCommandType().equals(MenuCommandType.PAIRING_REQUEST)) {
                 startPairingMode(conn, (MenuPairingCommand) cmd);
@@ -295,8 +365,15 @@ public class MenuManagerServer implements NewServerConnectionListener {
                 var hb = (MenuHeartbeatCommand) cmd;
                 if (hb.getMode() == HeartbeatMode.START) {
                     var serialNo = boardSerialProvider.get().get();
-                    conn.sendCommand(new MenuJoinCommand(serverUuid, serverName, ApiPlatform.JAVA_API, 1, serialNo));
+                    conn.sendCommand(new MenuJoinCommand(serverUuid, serverName, ApiPlatform.JAVA_API, 1, serialNo,
+                            conn.supportsBinaryNegotiation()));
+                }
+            } else if (cmd.getCommandType().equals(MenuCommandType.SUBSCRIBE)) {
+                if (conn.getConnectionMode() != ServerConnectionMode.AUTHENTICATED) {
+                    logger.log(Level.WARNING, "Un-authenticated subscribe command ignored");
+                    return;
                 }
+                handleSubscription(conn, (MenuSubscribeCommand) cmd);
             } else if (cmd.getCommandType().equals(MenuCommandType.CHANGE_INT_FIELD)) {
                 if (conn.getConnectionMode() != ServerConnectionMode.AUTHENTICATED) {
                     logger.log(Level.WARNING, "Un-authenticated change command ignored");
@@ -309,6 +386,123 @@ public class MenuManagerServer implements NewServerConnectionListener {
         }
     }
 
+    /**
+     * Turns an annotated listener method into a method handle that is bound to the listener and adapted to the type
+     * used at the call site, so each call is a direct invokeExact without the access checks, argument array and boxing
+     * of Method.invoke. Parameters that are subtypes of MenuItem are cast, and any return value of a callback is
+     * dropped. When the method cannot be adapted, for example it takes the wrong parameters, it is logged and skipped.
+     */
+    private Optional<MethodHandle> compileListenerMethod(Method method, MenuManagerListener listener, MethodType type) {
+        try {
+            // listeners in other modules must be readable for the lookup to access them, core reflection did this itself
+            getClass().getModule().addReads(listener.getClass().getModule());
+            var handle = MethodHandles.lookup().unreflect(method).bindTo(listener);
+            return Optional.of(handle.asType(type));
+        } catch (IllegalAccessException | RuntimeException e) {
+            logger.log(Level.ERROR, "Listener method " + method + " cannot be used as a callback", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Sends the bootstrap to a remote that has just joined. When the remote presents the structure hash of the tree it
+     * already holds, and the structure is unchanged, only the current value of each item is sent between start and
+     * end. Otherwise, every item is sent. Either way, the bootstrap carries the hash for the remote to present later.
+     */
+    private void sendBootstrap(ServerConnection conn, long knownTreeHash) {
+        var snapshot = tree.getSnapshot();
+        long treeHash = snapshot.getStructureHash();
+        boolean valueRefresh = knownTreeHash == treeHash;
+
+        // the whole bootstrap is one burst, so the connection can write it in as few writes as possible
+        conn.beginBatch();
+        try {
+            conn.sendCommand(new MenuBootstrapCommand(MenuBootstrapCommand.BootType.START, treeHash, valueRefresh));
+
+            snapshot.recurseTreeIteratingOnItems(MenuTree.ROOT, (item, parent) -> {
+                if (item.isLocalOnly()) return;
+                if (valueRefresh) {
+                    var state = tree.getMenuState(item);
+                    if (state != null) conn.sendCommand(changeCommandFor(item, state));
+                } else {
+                    var bootMsg = MenuItemHelper.getBootMsgForItem(item, parent, tree);
+                    bootMsg.ifPresent(conn::sendCommand);
+                }
+            });
+
+            conn.sendCommand(new MenuBootstrapCommand(MenuBootstrapCommand.BootType.END, treeHash, valueRefresh));
+        } finally {
+            conn.endBatch();
+        }
+
+        if (valueRefresh) {
+            bootstrapsRefreshed.incrementAndGet();
+            logger.log(Level.INFO, "Tree unchanged for " + conn.getUserName() + ", sent values only");
+        }
+    }
+
+    /**
+     * Records the sub menus that a remote is interested in, and because it will not have received changes for items
+     * outside its previous interest, sends it the current value of every item in any sub menu that is newly covered.
+     */
+    private void handleSubscription(ServerConnection conn, MenuSubscribeCommand cmd) {
+        Set<Integer> previous = interestsByConnection.get(conn);
+        List<Integer> newlyCovered;
+        if (cmd.isEverything()) {
+            interestsByConnection.remove(conn);
+            newlyCovered = (previous == null) ? List.of() : List.of(MenuTree.ROOT.getId());
+        } else {
+            var interests = Set.copyOf(cmd.getSubMenuIds());
+            interestsByConnection.put(conn, interests);
+            newlyCovered = (previous == null) ? List.of() : interests.stream()
+                    .filter(id -> !isWithinInterests(previous, ancestorsOf(id)))
+                    .toList();
+        }
+        logger.log(Level.INFO, "Remote " + conn.getUserName() + " subscribed to " + cmd.getSubMenuIds());
+
+        if (newlyCovered.isEmpty()) return;
+        conn.beginBatch();
+        try {
+            for (int subId : newlyCovered) {
+                tree.getSubMenuById(subId).ifPresent(sub -> {
+                    for (var item : tree.getAllMenuItemsFrom(sub)) {
+                        var state = tree.getMenuState(item);
+                        if (state != null && !item.isLocalOnly()) conn.sendCommand(changeCommandFor(item, state));
+                    }
+                });
+            }
+        } finally {
+            conn.endBatch();
+        }
+    }
+
+    /**
+     * Gets the ID of the item along with every sub menu above it up to and including root, as long as the item is in
+     * the tree; the parents are found using the tree's parent index, so this is proportional to the depth of the item.
+     */
+    private int[] ancestorsOf(int itemId) {
+        var maybeItem = tree.getMenuById(itemId);
+        if (maybeItem.isEmpty()) return null;
+        MenuItem item = maybeItem.get();
+        int[] ids = new int[8];
+        int count = 0;
+        while (true) {
+            if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = item.getId();
+            if (item.getId() == MenuTree.ROOT.getId()) break;
+            item = tree.findParent(item);
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static boolean isWithinInterests(Set<Integer> interests, int[] ancestors) {
+        if (ancestors == null) return true; // not in the tree, nothing to filter on
+        for (int id : ancestors) {
+            if (interests.contains(id)) return true;
+        }
+        return false;
+    }
+
     private void startPairingMode(ServerConnection conn, MenuPairingCommand cmd) {
         conn.setConnectionMode(ServerConnectionMode.PAIRING);
         authenticator.addAuthentication(cmd.getName(), cmd.getUuid(), true)
@@ -357,16 +551,17 @@ public class MenuManagerServer implements NewServerConnectionListener {
         applyScrollChoiceValueIfNeeded(item, state);
         fireEventToListeners(sender, item, state.getValue());
 
-        MenuCommand cmd;
+        updateRemotesWithLatestState(changeCommandFor(item, state));
+    }
+
+    private MenuCommand changeCommandFor(MenuItem item, AnyMenuState state) {
         if (state instanceof StringListMenuState) {
-            cmd = new MenuChangeCommand(CorrelationId.EMPTY_CORRELATION, item.getId(), ((StringListMenuState) state).getValue());
+            return new MenuChangeCommand(CorrelationId.EMPTY_CORRELATION, item.getId(), ((StringListMenuState) state).getValue());
         } else {
             var fmt = MenuItemFormatter.defaultInstance();
-            cmd = new MenuChangeCommand(CorrelationId.EMPTY_CORRELATION, item.getId(), ChangeType.ABSOLUTE,
+            return new MenuChangeCommand(CorrelationId.EMPTY_CORRELATION, item.getId(), ChangeType.ABSOLUTE,
                     fmt.formatToWire(item, state.getValue().toString()));
         }
-
-        updateRemotesWithLatestState(cmd);
     }
 
     /**
@@ -382,25 +577,133 @@ public class MenuManagerServer implements NewServerConnectionListener {
     }
 
     private void updateRemotesWithLatestState(MenuCommand cmd) {
-        executorService.execute(() -> {
-            for (var socket : getAllServerConnections()) {
-                socket.sendCommand(cmd);
+        pendingBroadcasts.add(cmd);
+        if (broadcasting.compareAndSet(false, true)) {
+            try {
+                executorService.execute(this::sendPendingBroadcasts);
+            } catch (RejectedExecutionException ex) {
+                broadcasting.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Runs on the executor, sending each broadcast to the remotes in the order they were made. Only one of these runs
+     * at once for the server, otherwise two changes to an item could reach a connection's queue in the wrong order and
+     * the older value would be left as the latest. Once the queue is empty it checks again after giving up the flag,
+     * in case a broadcast was added after the last poll.
+     */
+    private void sendPendingBroadcasts() {
+        do {
+            MenuCommand cmd;
+            while ((cmd = pendingBroadcasts.poll()) != null) {
+                try {
+                    broadcastToRemotes(cmd);
+                } catch (Exception e) {
+                    logger.log(Level.ERROR, "Exception while broadcasting " + cmd, e);
+                }
+            }
+            broadcasting.set(false);
+        } while (!pendingBroadcasts.isEmpty() && broadcasting.compareAndSet(false, true));
+    }
+
+    private void broadcastToRemotes(MenuCommand cmd) {
+        // the command is encoded at most once and the same frame is sent to every connection that can share it
+        var frame = new EncodedCommandFrame(cmd);
+        int sharedSends = 0;
+        int[] ancestors = null;
+        boolean ancestorsFound = false;
+        for (var socket : getAllServerConnections()) {
+            // remotes that subscribed only get changes for items within the sub menus they asked for
+            var interests = interestsByConnection.get(socket);
+            if (interests != null && cmd instanceof MenuChangeCommand change) {
+                if (!ancestorsFound) {
+                    ancestors = ancestorsOf(change.getMenuItemId());
+                    ancestorsFound = true;
+                }
+                if (!isWithinInterests(interests, ancestors)) {
+                    broadcastsFiltered.incrementAndGet();
+                    continue;
+                }
             }
-        });
+
+            if (socket.sendEncodedFrame(frame)) {
+                sharedSends++;
+            } else {
+                broadcastFramesReEncoded.incrementAndGet();
+            }
+        }
+        if (sharedSends > 0) {
+            broadcastFramesEncoded.incrementAndGet();
+            broadcastFramesReused.addAndGet(sharedSends - 1);
+        }
+    }
+
+    /**
+     * @return the number of broadcast commands that were encoded into a shared frame
+     */
+    public long getBroadcastFramesEncoded() {
+        return broadcastFramesEncoded.get();
+    }
+
+    /**
+     * @return the number of times an already encoded broadcast frame was sent to another connection without encoding
+     */
+    public long getBroadcastFramesReused() {
+        return broadcastFramesReused.get();
+    }
+
+    /**
+     * @return the number of times a broadcast command had to be encoded separately for a connection, such as when the
+     * connection is encrypted.
+     */
+    public long getBroadcastFramesReEncoded() {
+        return broadcastFramesReEncoded.get();
+    }
+
+    /**
+     * @return the number of times a broadcast change was not sent to a remote because it was outside its subscription
+     */
+    public long getBroadcastsFiltered() {
+        return broadcastsFiltered.get();
+    }
+
+    /**
+     * @return the number of bootstraps where the remote already held the tree, so only values were sent
+     */
+    public long getBootstrapsRefreshed() {
+        return bootstrapsRefreshed.get();
+    }
+
+    /**
+     * Gets the sub menus that a remote has subscribed to, when empty the remote receives changes for every item.
+     * @param connection the connection to check
+     * @return the sub menu IDs the connection is subscribed to, or empty if it has not subscribed
+     */
+    public Set<Integer> getSubscriptionFor(ServerConnection connection) {
+        return interestsByConnection.getOrDefault(connection, Set.of());
     }
 
     private void fireEventToListeners(Object sender, MenuItem item, Object data) {
+        var dispatcher = eventDispatcher.get();
+        if (dispatcher != null && dispatcher.publish(sender, item, data)) return;
+        dispatchToListeners(sender, item, data);
+    }
+
+    private void dispatchToListeners(Object sender, MenuItem item, Object data) {
         for (var l : eventListeners) l.menuItemHasChanged(sender, item);
 
         var m = mapOfCallbacksById.get(item.getId());
         if (m != null) {
             try {
-                if (m.isListResult() && data instanceof ListResponse) {
-                    m.getMethod().invoke(m.getListener(), sender, item, data);
+                if (m.isListResult()) {
+                    // list callbacks are only called with a list response, as before
+                    if (data instanceof ListResponse) m.getHandle().invokeExact(sender, item, data);
                 } else {
-                    m.getMethod().invoke(m.getListener(), sender, item);
+                    m.getHandle().invokeExact(sender, item);
                 }
-            } catch (Exception e) {
+            } catch (Throwable e) {
                 logger.log(Level.ERROR, "Callback method threw an exception ", e);
             }
         }
@@ -424,8 +727,10 @@ public class MenuManagerServer implements NewServerConnectionListener {
                 socket.sendCommand(new MenuAcknowledgementCommand(cmd.getCorrelationId(), AckStatus.VALUE_RANGE_WARNING));
             }
         } else if (cmd.getChangeType() == ChangeType.ABSOLUTE) {
-            var newState = MenuItemHelper.stateForMenuItem(tree.getMenuState(item), item, cmd.getValue());
-            tree.changeItem(item, newState);
+            AnyMenuState oldState = tree.getMenuState(item);
+            MenuItemHelper.setMenuState(item, cmd.getValue(), oldState != null && oldState.isChanged(),
+                    oldState != null && oldState.isActive(), tree);
+            AnyMenuState newState = tree.getMenuState(item);
             applyScrollChoiceValueIfNeeded(item, newState);
             fireEventToListeners(socket, item, newState.getValue());
             sendChangeAndAck(socket, item, cmd.getValue(), cmd.getCorrelationId());
@@ -439,8 +744,8 @@ public class MenuManagerServer implements NewServerConnectionListener {
             var scrState = (CurrentScrollPositionMenuState) state;
             var cp = mapOfChoicePopulatorsById.get(item.getId());
             try {
-                scrState.getValue().setTextValue(cp.getMethod().invoke(cp.getListener(), item, scrState.getValue().getPosition()));
-            } catch (Exception e) {
+                scrState.getValue().setTextValue((String) cp.invokeExact(item, scrState.getValue().getPosition()));
+            } catch (Throwable e) {
                 logger.log(Level.ERROR, "Scroll position value look up failed on " + item, e);
             }
         }
@@ -481,23 +786,17 @@ public class MenuManagerServer implements NewServerConnectionListener {
         return authenticator;
     }
 
-    private static class MethodWithObject {
-        private final Method method;
-        private final MenuManagerListener listener;
+    private static class CompiledCallback {
+        private final MethodHandle handle;
         private final boolean listResult;
 
-        private MethodWithObject(Method method, MenuManagerListener listener, boolean listResult) {
-            this.method = method;
-            this.listener = listener;
+        private CompiledCallback(MethodHandle handle, boolean listResult) {
+            this.handle = handle;
             this.listResult = listResult;
         }
 
-        public Method getMethod() {
-            return method;
-        }
-
-        public MenuManagerListener getListener() {
-            return listener;
+        public MethodHandle getHandle() {
+            return handle;
         }
 
         public boolean isListResult() {
@@ -1,5 +1,6 @@
 package com.thecoderscorner.menu.mgr;
 
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
 import com.thecoderscorner.menu.remote.RemoteDevice;
 import com.thecoderscorner.menu.remote.commands.MenuCommand;
 
@@ -41,12 +42,44 @@ public interface ServerConnection extends RemoteDevice {
      */
     void sendCommand(MenuCommand command);
 
+    /**
+     * Send a command that is being broadcast to all remotes, where possible the encoded form held in the frame should
+     * be sent rather than encoding the command again. By default, the command is just sent normally.
+     * @param frame the frame containing the command being broadcast
+     * @return true if the shared encoding was sent, false if the command had to be encoded for this connection
+     */
+    default boolean sendEncodedFrame(EncodedCommandFrame frame) {
+        sendCommand(frame.getCommand());
+        return false;
+    }
+
+    /**
+     * Marks the start of a burst of commands, such as a bootstrap, that the connection can hold back and write to the
+     * remote together when the burst ends. Every call must be paired with a call to `endBatch()`. By default,
+     * commands are written as they are sent and this does nothing.
+     */
+    default void beginBatch() {
+    }
+
+    /**
+     * Marks the end of a burst of commands started with `beginBatch()`, anything held back is written now.
+     */
+    default void endBatch() {
+    }
+
     /**
      * Register the connection listener to this connection that will receive udpates on connection changes.
      * @param connectionListener the connection state
      */
     void registerConnectionListener(BiConsumer<ServerConnection, Boolean> connectionListener);
 
+    /**
+     * @return true if the join sent to the remote should offer binary messages. By default, only tag value is offered.
+     */
+    default boolean supportsBinaryNegotiation() {
+        return false;
+    }
+
     /**
      * Register the message handler that will receive all messages from the connection
      * @param messageHandler the message handler
@@ -88,12 +88,14 @@ public class JsonMenuItemSerializer {
     public MenuTree newMenuTreeWithItems(String tcMenuCopy) {
         var tree = new MenuTree();
         var items = copyTextToItems(tcMenuCopy);
-        for (var item : items) {
-            tree.addMenuItem(tree.getSubMenuById(item.getParentId()).orElse(MenuTree.ROOT), item.getItem());
-            if(item.getDefaultValue() != null) {
-                MenuItemHelper.setMenuState(item.getItem(), item.getDefaultValue(), tree);
+        tree.batchStructureChanges(() -> {
+            for (var item : items) {
+                tree.addMenuItem(tree.getSubMenuById(item.getParentId()).orElse(MenuTree.ROOT), item.getItem());
+                if(item.getDefaultValue() != null) {
+                    MenuItemHelper.setMenuState(item.getItem(), item.getDefaultValue(), tree);
+                }
             }
-        }
+        });
         return tree;
     }
 
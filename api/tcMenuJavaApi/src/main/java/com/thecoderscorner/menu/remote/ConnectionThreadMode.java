@@ -0,0 +1,46 @@
+package com.thecoderscorner.menu.remote;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides how the long-running loops of a connection, such as the connector ticker, the server side read loop and
+ * accept loops, are run. Platform mode is the default and keeps the original behaviour where each loop holds an OS
+ * thread (or an executor thread) for the life of the connection. Virtual mode runs each loop on its own virtual
+ * thread, so a blocking read parks the virtual thread and frees the carrier, which allows many hundreds of
+ * connections to be held without needing an OS thread for each one.
+ */
+public enum ConnectionThreadMode {
+    /** Each connection loop runs on a platform thread, or the executor where one is provided */
+    PLATFORM,
+    /** Each connection loop runs on a virtual thread */
+    VIRTUAL;
+
+    /**
+     * Start a new thread for a connection loop using this mode.
+     * @param name the name to give the thread
+     * @param loop the loop to run
+     * @return the started thread
+     */
+    public Thread startThread(String name, Runnable loop) {
+        if(this == VIRTUAL) {
+            return Thread.ofVirtual().name(name).start(loop);
+        }
+        var thread = new Thread(loop, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Create an executor for short tasks run on behalf of connections, such as writing queued output. In virtual mode
+     * each task gets a new virtual thread, otherwise a cached pool of daemon threads is used.
+     * @param name the name to give the threads
+     * @return the executor, which should be shut down when no longer needed
+     */
+    public ExecutorService newTaskExecutor(String name) {
+        if(this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name).factory());
+        }
+        return Executors.newCachedThreadPool(new NamedDaemonThreadFactory(name));
+    }
+}
@@ -0,0 +1,79 @@
+package com.thecoderscorner.menu.remote;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A simple pool of fixed size direct byte buffers. Direct buffers are expensive to allocate and are only released by
+ * the garbage collector, so connections that need a buffer for a short time, for example to read from a channel or
+ * to hold output that could not yet be written, take one from here and give it back when done. The pool is safe to
+ * use from many threads, and it never retains more than the maximum number of buffers given at construction.
+ */
+public class DirectBufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final AtomicInteger allocatedCount = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxRetained;
+
+    /**
+     * Create a pool of direct buffers
+     * @param bufferSize the size of each buffer in the pool
+     * @param maxRetained the maximum number of free buffers that will be kept for reuse
+     */
+    public DirectBufferPool(int bufferSize, int maxRetained) {
+        this.bufferSize = bufferSize;
+        this.maxRetained = maxRetained;
+    }
+
+    /**
+     * Take a buffer from the pool, allocating a new one if the pool is empty.
+     * @return a cleared big endian buffer of the pool's buffer size
+     */
+    public ByteBuffer acquire() {
+        var buffer = freeBuffers.poll();
+        if(buffer == null) {
+            allocatedCount.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.BIG_ENDIAN);
+        }
+        freeCount.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Give a buffer back to the pool, it must not be used by the caller after this point. Buffers that did not come
+     * from this pool, or that would take the pool over its retained size, are left for the garbage collector.
+     * @param buffer the buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        if(buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) return;
+        if(freeCount.incrementAndGet() > maxRetained) {
+            freeCount.decrementAndGet();
+            return;
+        }
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * @return the size of each buffer in this pool
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the number of buffers that are currently free in the pool
+     */
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+
+    /**
+     * @return the total number of buffers that this pool has ever had to allocate
+     */
+    public int getAllocatedCount() {
+        return allocatedCount.get();
+    }
+}
@@ -0,0 +1,91 @@
+package com.thecoderscorner.menu.remote;
+
+import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
+import com.thecoderscorner.menu.remote.protocol.TcProtocolException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Holds a command that is being sent to many connections at once, so that it can be serialised only once. The first
+ * connection that asks for the frame encodes it using its protocol, after that the encoded bytes are immutable and
+ * every other connection with the same protocol sends those bytes directly. Connections that cannot share the bytes,
+ * for example encrypted ones, still have the original command available to encode themselves. Connections that
+ * negotiated binary messages and those that did not each get their own encoding.
+ */
+public class EncodedCommandFrame {
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocate(SharedStreamConnection.MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN));
+
+    private final MenuCommand command;
+    private MenuCommandProtocol encodedProtocol;
+    private ByteBuffer encodedTagVal;
+    private ByteBuffer encodedBinary;
+
+    public EncodedCommandFrame(MenuCommand command) {
+        this.command = command;
+    }
+
+    /**
+     * @return the command that this frame represents
+     */
+    public MenuCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * @return true if the frame has been encoded by at least one connection
+     */
+    public synchronized boolean isEncoded() {
+        return encodedTagVal != null || encodedBinary != null;
+    }
+
+    /**
+     * Gets the encoded form of the command for the given protocol, encoding it if this is the first request. Each
+     * call returns a new read only view onto the same bytes, so it can be sent without affecting other connections.
+     * @param protocol the protocol the connection uses
+     * @return the encoded frame ready for sending, or null if it was already encoded with a different protocol
+     * @throws TcProtocolException if the command cannot be encoded
+     */
+    public ByteBuffer encodedFor(MenuCommandProtocol protocol) throws TcProtocolException {
+        return encodedFor(protocol, CommandProtocol.TAG_VAL_PROTOCOL);
+    }
+
+    /**
+     * Gets the encoded form of the command for the given protocol and the preferred wire format of the connection,
+     * see {@link #encodedFor(MenuCommandProtocol)}.
+     * @param protocol the protocol the connection uses
+     * @param preferred the format that the connection agreed during join
+     * @return the encoded frame ready for sending, or null if it was already encoded with a different protocol
+     * @throws TcProtocolException if the command cannot be encoded
+     */
+    public ByteBuffer encodedFor(MenuCommandProtocol protocol, CommandProtocol preferred) throws TcProtocolException {
+        boolean binary = preferred == CommandProtocol.RAW_BIN_PROTOCOL;
+        ByteBuffer encoded;
+        synchronized (this) {
+            if (encodedProtocol == null) {
+                encodedProtocol = protocol;
+            }
+            else if (encodedProtocol != protocol) {
+                return null;
+            }
+
+            encoded = binary ? encodedBinary : encodedTagVal;
+            if (encoded == null) {
+                var buffer = ENCODE_BUFFER.get();
+                buffer.clear();
+                protocol.toChannel(buffer, command, preferred);
+                buffer.flip();
+                encoded = ByteBuffer.allocate(buffer.remaining()).put(buffer).flip().asReadOnlyBuffer();
+                if (binary) encodedBinary = encoded; else encodedTagVal = encoded;
+            }
+        }
+        return encoded.duplicate();
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedCommandFrame{command=" + command + ", encoded=" + isEncoded() + '}';
+    }
+}
@@ -0,0 +1,233 @@
+package com.thecoderscorner.menu.remote;
+
+import java.lang.System.Logger.Level;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A hashed timing wheel that supervises heartbeats for many connections with one ticking task, instead of each
+ * connection having its own scheduled check, or a check that visits every connection on each tick. Each connection
+ * schedules a heartbeat task that runs when its next deadline is reached. The task looks at the connection's activity
+ * since then, acts if a heartbeat is due or the connection has timed out, and returns how long until it should run
+ * again. A busy connection therefore costs nothing until its deadline, and each tick only visits the slot that is
+ * expiring, so the cost of a tick follows the number of expired deadlines rather than the number of connections.
+ *
+ * The wheel either ticks itself on an executor by calling `startTicking`, or is advanced by calling `advance`
+ * directly. The deadlines follow the clock given at construction. Tasks run on the thread that advances the wheel,
+ * so they should hand anything that may block, such as writing to a socket, to another executor.
+ */
+public class HeartbeatWheel {
+    /** Returned from a heartbeat task to stop it being run again */
+    public static final long STOP = -1;
+    /** The tick of the shared wheel in milliseconds */
+    public static final long SHARED_TICK_MILLIS = 100;
+    /** The number of slots in the shared wheel, with the shared tick this covers deadlines up to about 51 seconds */
+    public static final int SHARED_WHEEL_SIZE = 512;
+
+    private static final Object sharedLock = new Object();
+    private static HeartbeatWheel sharedWheel;
+
+    /**
+     * A check that is run when its deadline is reached.
+     */
+    @FunctionalInterface
+    public interface HeartbeatTask {
+        /**
+         * Called on the wheel's thread when the deadline is reached
+         * @return the number of milliseconds until this should be run again, or STOP to remove it from the wheel
+         */
+        long deadlineReached();
+    }
+
+    /**
+     * A task that is held in the wheel, the same object is moved between slots each time it is rescheduled.
+     */
+    public static class Timeout {
+        private final HeartbeatTask task;
+        private volatile boolean cancelled;
+        private long deadlineTick;
+
+        private Timeout(HeartbeatTask task) {
+            this.task = task;
+        }
+
+        /**
+         * Stops the task being run again, it is removed from the wheel when its slot is next visited.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final System.Logger logger = System.getLogger(HeartbeatWheel.class.getSimpleName());
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Clock clock;
+    private final long tickMillis;
+    private final List<Timeout>[] slots;
+    private final AtomicLong deadlinesReached = new AtomicLong();
+    private long lastTick;
+    private int size;
+
+    /**
+     * Create a wheel that is not yet ticking
+     * @param clock the clock that deadlines are measured with
+     * @param tickMillis the resolution of the wheel in milliseconds
+     * @param wheelSize the number of slots, deadlines further away than one turn of the wheel are still handled, but
+     *                  they are visited once per turn until they are reached
+     */
+    @SuppressWarnings("unchecked")
+    public HeartbeatWheel(Clock clock, long tickMillis, int wheelSize) {
+        if (tickMillis < 1) throw new IllegalArgumentException("Tick must be at least one millisecond");
+        if (wheelSize < 1) throw new IllegalArgumentException("Wheel must have at least one slot");
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.slots = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) slots[i] = new ArrayList<>();
+        this.lastTick = clock.millis() / tickMillis;
+    }
+
+    /**
+     * Gets the wheel that is shared by all client connections in this process that use the system clock, it ticks on
+     * a daemon thread that is started the first time it is requested. Connections that measure time with any other
+     * clock must not use it, as its deadlines would not agree with their own timings, see `isSystemClock`.
+     * @return the shared wheel for the system clock
+     */
+    public static HeartbeatWheel shared() {
+        synchronized (sharedLock) {
+            if (sharedWheel == null) {
+                var executor = Executors.newSingleThreadScheduledExecutor(
+                        new NamedDaemonThreadFactory("heartbeat-wheel"));
+                sharedWheel = new HeartbeatWheel(Clock.systemUTC(), SHARED_TICK_MILLIS, SHARED_WHEEL_SIZE);
+                sharedWheel.startTicking(executor);
+            }
+            return sharedWheel;
+        }
+    }
+
+    /**
+     * Checks if a clock gives the same time as the shared wheel, which is true for the system clock in any time zone.
+     * @param clock the clock to check
+     * @return true if connections using the clock can use the shared wheel
+     */
+    public static boolean isSystemClock(Clock clock) {
+        return clock != null && Clock.systemUTC().equals(clock.withZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * Start advancing the wheel once per tick on the executor
+     * @param executor the executor that will advance the wheel and so run the tasks
+     * @return the future for the ticking task, cancel it to stop ticking
+     */
+    public ScheduledFuture<?> startTicking(ScheduledExecutorService executor) {
+        return executor.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a task that will be run once the delay has passed
+     * @param delayMillis the delay in milliseconds until the task is run
+     * @param task the task to run
+     * @return the timeout which can be used to cancel the task
+     */
+    public Timeout schedule(long delayMillis, HeartbeatTask task) {
+        var timeout = new Timeout(task);
+        lock.lock();
+        try {
+            place(timeout, clock.millis(), delayMillis);
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    private void place(Timeout timeout, long now, long delayMillis) {
+        // rounded up, so that a task is never run before its deadline, and at the earliest on the next tick
+        long tick = (now + Math.max(0, delayMillis) + tickMillis - 1) / tickMillis;
+        timeout.deadlineTick = Math.max(tick, lastTick + 1);
+        slots[(int) Math.floorMod(timeout.deadlineTick, (long) slots.length)].add(timeout);
+        size++;
+    }
+
+    /**
+     * Runs every task whose deadline has been reached by the time now on the wheel's clock, visiting only the slots
+     * for the ticks that have passed since it was last advanced.
+     */
+    public void advance() {
+        long now = clock.millis();
+        long nowTick = now / tickMillis;
+        var expired = new ArrayList<Timeout>();
+        lock.lock();
+        try {
+            if (nowTick <= lastTick) return;
+            long ticksToVisit = Math.min(nowTick - lastTick, slots.length);
+            for (long tick = lastTick + 1; tick <= lastTick + ticksToVisit; tick++) {
+                var slot = slots[(int) Math.floorMod(tick, (long) slots.length)];
+                slot.removeIf(timeout -> {
+                    boolean remove = timeout.cancelled || timeout.deadlineTick <= nowTick;
+                    if (remove) {
+                        size--;
+                        if (!timeout.cancelled) expired.add(timeout);
+                    }
+                    return remove;
+                });
+            }
+            lastTick = nowTick;
+        } finally {
+            lock.unlock();
+        }
+
+        // the tasks run outside the lock so that they can schedule other tasks
+        for (var timeout : expired) {
+            runExpired(timeout, now);
+        }
+    }
+
+    private void runExpired(Timeout timeout, long now) {
+        deadlinesReached.incrementAndGet();
+        long nextDelay;
+        try {
+            nextDelay = timeout.task.deadlineReached();
+        } catch (Exception ex) {
+            logger.log(Level.ERROR, "Heartbeat task failed, it will not run again", ex);
+            return;
+        }
+        if (nextDelay == STOP || timeout.cancelled) return;
+
+        lock.lock();
+        try {
+            place(timeout, now, nextDelay);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of tasks in the wheel, including cancelled ones that have not yet been removed
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of times a task has been run because its deadline was reached
+     */
+    public long getDeadlinesReached() {
+        return deadlinesReached.get();
+    }
+}
@@ -0,0 +1,89 @@
+package com.thecoderscorner.menu.remote;
+
+import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
+import com.thecoderscorner.menu.remote.protocol.TagValTextParser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Works out when a complete message is available in an input buffer, without rescanning data it has already seen.
+ * It is used once the start of message byte has been read, with the buffer positioned at the protocol byte. The scan
+ * position is held relative to the buffer position, so the buffer can be compacted and filled between calls as long
+ * as the start of the message stays at the buffer position.
+ *
+ * For tag value messages it scans forward for the field terminator followed by the end of message byte, for binary
+ * messages it waits until the length is known and that many bytes are present. Call `reset()` before each new
+ * message, this is done automatically once a complete message has been found.
+ */
+public class IncrementalMessageFramer {
+    private static final int RAW_HEADER_SIZE = 5; // protocol, type high, type low, length(2)
+
+    private CommandProtocol messageProtocol;
+    private int scanned;
+    private boolean lastWasTerminator;
+    private int frameLength;
+
+    /**
+     * Checks if the message that starts at the buffer position is complete, scanning only data that has arrived
+     * since the last call. When it returns true, `getFrameLength()` gives the length of the message from the
+     * buffer position, and the framer is ready for the next message.
+     * @param buffer the buffer in read mode, positioned at the protocol byte of the message
+     * @return true if the message is complete
+     */
+    public boolean hasCompleteMessage(ByteBuffer buffer) {
+        int start = buffer.position();
+        int available = buffer.remaining();
+        if (messageProtocol == null) {
+            if (available < 1) return false;
+            messageProtocol = CommandProtocol.fromProtocolId(buffer.get(start));
+            scanned = 1;
+        }
+
+        if (messageProtocol == CommandProtocol.TAG_VAL_PROTOCOL) {
+            // START_OF_MSG - Protocol(1) - MSGTypeHi - MsgTypeLo - Tagval - END_OF_MSG
+            for (int i = scanned; i < available; i++) {
+                byte by = buffer.get(start + i);
+                if (lastWasTerminator && by == MenuCommandProtocol.PROTO_END_OF_MSG) {
+                    return messageComplete(i + 1);
+                }
+                lastWasTerminator = by == TagValTextParser.FIELD_TERMINATOR;
+            }
+            scanned = available;
+            return false;
+        } else {
+            // START_OF_MSG - Protocol - MSGTypeHi - MsgTypeLo - len(2) - BinData
+            if (available < RAW_HEADER_SIZE) return false;
+            int len = buffer.getShort(start + 3);
+            return available - RAW_HEADER_SIZE >= len && messageComplete(RAW_HEADER_SIZE + Math.max(len, 0));
+        }
+    }
+
+    private boolean messageComplete(int length) {
+        frameLength = length;
+        reset();
+        return true;
+    }
+
+    /**
+     * @return the length of the last complete message from the buffer position, excluding the start of message
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * @return the number of bytes of the current message that have been examined so far
+     */
+    public int getScanned() {
+        return scanned;
+    }
+
+    /**
+     * Clears any partial scan, this should be called when the buffer is cleared or a new message is started.
+     */
+    public void reset() {
+        messageProtocol = null;
+        scanned = 0;
+        lastWasTerminator = false;
+    }
+}
@@ -37,6 +37,25 @@ public interface MenuCommandProtocol {
      */
     void toChannel(ByteBuffer buffer, MenuCommand cmd) throws TcProtocolException;
 
+    /**
+     * Puts the command specified into the byte buffer, using the preferred protocol if the command can be written
+     * that way. By default the preference is ignored.
+     * @param buffer to write the data to
+     * @param cmd the command to write
+     * @param preferred the protocol that the remote has agreed to receive
+     */
+    default void toChannel(ByteBuffer buffer, MenuCommand cmd, CommandProtocol preferred) throws TcProtocolException {
+        toChannel(buffer, cmd);
+    }
+
+    /**
+     * @return true if this protocol should offer binary messages during join, and switch to them when the remote
+     * offers them too.
+     */
+    default boolean supportsBinaryNegotiation() {
+        return false;
+    }
+
     /**
      * Checks the message and sees which protocol it will be processed with. For example the JOIN message would be
      * processed using TagVal.
@@ -0,0 +1,270 @@
+package com.thecoderscorner.menu.remote;
+
+import com.thecoderscorner.menu.remote.commands.BootItemMenuCommand;
+import com.thecoderscorner.menu.remote.commands.MenuChangeCommand;
+import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue of commands waiting to be written to one remote, so that the thread sending a command, for example
+ * the server broadcasting a change, only has to queue it and never waits on a slow remote. Whenever the queue goes
+ * from empty to having work, a drain task is given to the executor, it writes the waiting commands in order using the
+ * writer and hands the executor thread back after a few writes so that one busy connection cannot hold it forever.
+ *
+ * With the CONFLATE_CHANGES policy, an absolute value change for an item that is already waiting is updated in place
+ * with the new value instead of being queued again, so the remote gets the latest value at the position of the first
+ * change. Delta changes, list state changes and changes that are replies to a request are never conflated. Any such
+ * command, or a boot item, that is queued for an item after an absolute change also stops later changes for the item
+ * being merged into that waiting change, as the later value must not overtake it. When the queue is full the failure
+ * handler is called, and the connection is expected to close as the remote is not keeping up.
+ *
+ * @see OutboundQueuePolicy
+ */
+public class OutboundCommandQueue {
+    /** The most commands that a drain task writes before giving the executor thread back */
+    public static final int MAX_WRITES_PER_DRAIN = 64;
+    private static final int NO_CONFLATION = -1;
+
+    /**
+     * Writes commands taken from the queue to the remote, called on an executor thread, one command at a time.
+     */
+    public interface OutboundWriter {
+        void writeCommand(MenuCommand command) throws IOException;
+        void writeFrame(EncodedCommandFrame frame) throws IOException;
+
+        /** Called before each run of writes, so that the writer can hold them back and send them together */
+        default void beginBatch() {
+        }
+
+        /** Called after each run of writes, anything held back should be written now */
+        default void endBatch() throws IOException {
+        }
+    }
+
+    private static class Entry {
+        private final int conflationKey;
+        private MenuCommand command;
+        private EncodedCommandFrame frame;
+
+        Entry(int conflationKey, MenuCommand command, EncodedCommandFrame frame) {
+            this.conflationKey = conflationKey;
+            this.command = command;
+            this.frame = frame;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private final Map<Integer, Entry> pendingChanges = new HashMap<>();
+    private final OutboundQueuePolicy policy;
+    private final int capacity;
+    private final Executor executor;
+    private final OutboundWriter writer;
+    private final Consumer<Exception> failureHandler;
+    private boolean draining;
+    private boolean closed;
+    private long conflatedCount;
+
+    /**
+     * Create a queue for a connection
+     * @param policy the policy, which must be one of the queued policies
+     * @param capacity the most commands that can be waiting before the remote is considered too slow
+     * @param executor the executor that runs the drain tasks
+     * @param writer writes each command to the remote
+     * @param failureHandler called when writing fails or the queue is full, usually closes the connection
+     */
+    public OutboundCommandQueue(OutboundQueuePolicy policy, int capacity, Executor executor, OutboundWriter writer,
+                                Consumer<Exception> failureHandler) {
+        if (policy == OutboundQueuePolicy.DIRECT) throw new IllegalArgumentException("Direct policy does not queue");
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least one");
+        this.policy = policy;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.writer = writer;
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Queue a command to be encoded and written to the remote
+     * @param command the command
+     * @return true if the command was queued or conflated, false if the queue is closed or full
+     */
+    public boolean offerCommand(MenuCommand command) {
+        return offer(command, null);
+    }
+
+    /**
+     * Queue a frame that is being broadcast, the shared encoding is used when it is written if possible.
+     * @param frame the frame
+     * @return true if the frame was queued or conflated, false if the queue is closed or full
+     */
+    public boolean offerFrame(EncodedCommandFrame frame) {
+        return offer(frame.getCommand(), frame);
+    }
+
+    private boolean offer(MenuCommand command, EncodedCommandFrame frame) {
+        boolean startDrain;
+        boolean overflowed = false;
+        lock.lock();
+        try {
+            if (closed) return false;
+
+            int key = conflationKeyFor(command);
+            var existing = (key == NO_CONFLATION) ? null : pendingChanges.get(key);
+            if (existing != null) {
+                existing.command = command;
+                existing.frame = frame;
+                conflatedCount++;
+                return true;
+            }
+            if (key == NO_CONFLATION && !pendingChanges.isEmpty()) {
+                // this carries the item's state too, so a newer value must not be moved ahead of it
+                int itemId = itemIdFor(command);
+                if (itemId != NO_CONFLATION) pendingChanges.remove(itemId);
+            }
+
+            if (pending.size() >= capacity) {
+                closeQueue();
+                overflowed = true;
+            } else {
+                var entry = new Entry(key, command, frame);
+                pending.add(entry);
+                if (key != NO_CONFLATION) pendingChanges.put(key, entry);
+            }
+            startDrain = !overflowed && !draining;
+            if (startDrain) draining = true;
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflowed) {
+            failureHandler.accept(new IOException("Remote is not reading, outbound queue of " + capacity + " is full"));
+            return false;
+        }
+        if (startDrain) scheduleDrain();
+        return true;
+    }
+
+    private int conflationKeyFor(MenuCommand command) {
+        if (policy == OutboundQueuePolicy.CONFLATE_CHANGES && command instanceof MenuChangeCommand change
+                && change.getCorrelationId() == CorrelationId.EMPTY_CORRELATION
+                && (change.getChangeType() == MenuChangeCommand.ChangeType.ABSOLUTE
+                    || change.getChangeType() == MenuChangeCommand.ChangeType.ABSOLUTE_LIST)) {
+            return change.getMenuItemId();
+        }
+        return NO_CONFLATION;
+    }
+
+    private static int itemIdFor(MenuCommand command) {
+        if (command instanceof MenuChangeCommand change) return change.getMenuItemId();
+        if (command instanceof BootItemMenuCommand<?, ?> boot) return boot.getMenuItem().getId();
+        return NO_CONFLATION;
+    }
+
+    private void scheduleDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException ex) {
+            close();
+            failureHandler.accept(ex);
+        }
+    }
+
+    private void drain() {
+        boolean finished = false;
+        writer.beginBatch();
+        try {
+            for (int written = 0; written < MAX_WRITES_PER_DRAIN && !finished; written++) {
+                finished = !writeNext();
+            }
+            writer.endBatch();
+        } catch (Exception ex) {
+            close();
+            failureHandler.accept(ex);
+            return;
+        }
+
+        // still busy, go to the back of the executor's queue rather than holding the thread
+        if (!finished) scheduleDrain();
+    }
+
+    private boolean writeNext() throws IOException {
+        MenuCommand command;
+        EncodedCommandFrame frame;
+        lock.lock();
+        try {
+            var entry = pending.pollFirst();
+            if (entry == null || closed) {
+                draining = false;
+                return false;
+            }
+            if (entry.conflationKey != NO_CONFLATION) pendingChanges.remove(entry.conflationKey, entry);
+            command = entry.command;
+            frame = entry.frame;
+        } finally {
+            lock.unlock();
+        }
+
+        if (frame != null) writer.writeFrame(frame); else writer.writeCommand(command);
+        return true;
+    }
+
+    /**
+     * Discards anything waiting and stops accepting commands, a drain task that is running stops after its current write.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closeQueue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQueue() {
+        closed = true;
+        draining = false;
+        pending.clear();
+        pendingChanges.clear();
+    }
+
+    /**
+     * @return the number of commands waiting to be written
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of changes that replaced one already waiting rather than being queued
+     */
+    public long getConflatedCount() {
+        lock.lock();
+        try {
+            return conflatedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the policy of this queue
+     */
+    public OutboundQueuePolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,21 @@
+package com.thecoderscorner.menu.remote;
+
+/**
+ * Decides how a server connection sends commands to its remote. Direct is the default and keeps the original behaviour
+ * where the calling thread encodes and writes the command itself, so a slow remote holds up the caller. The queued
+ * policies instead put the command on a bounded per connection queue that is written out on another thread, the
+ * connection is closed if the remote falls so far behind that the queue fills.
+ *
+ * @see OutboundCommandQueue
+ */
+public enum OutboundQueuePolicy {
+    /** Commands are written on the calling thread, there is no queue */
+    DIRECT,
+    /** Commands are queued and written in the order they were sent */
+    QUEUED,
+    /**
+     * Commands are queued in order, but an absolute value change for an item that is still waiting to be written is
+     * replaced by the newer value, so a slow remote receives the latest state rather than every intermediate value.
+     */
+    CONFLATE_CHANGES
+}
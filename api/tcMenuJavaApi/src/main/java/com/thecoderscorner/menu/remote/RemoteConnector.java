@@ -72,4 +72,13 @@ public interface RemoteConnector extends RemoteDevice {
      * @return the status of the connection and authentication.
      */
     AuthStatus getAuthenticationStatus();
+
+    /**
+     * Sets the structure hash of the tree that is already held locally, it is presented to the server on each join,
+     * and if the server's tree still has the same structure, only the values are sent instead of a full bootstrap.
+     * Connectors that do not support this ignore it, so a full bootstrap is always done.
+     * @param treeHash the structure hash of the tree held, or zero if no complete tree is held
+     */
+    default void setKnownTreeHash(long treeHash) {
+    }
 }
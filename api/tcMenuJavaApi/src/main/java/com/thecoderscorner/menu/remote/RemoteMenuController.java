@@ -7,6 +7,7 @@
 package com.thecoderscorner.menu.remote;
 
 import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.SubMenuItem;
 import com.thecoderscorner.menu.domain.state.ListResponse;
 import com.thecoderscorner.menu.domain.state.MenuTree;
 import com.thecoderscorner.menu.domain.util.MenuItemHelper;
@@ -16,6 +17,7 @@ import com.thecoderscorner.menu.remote.protocol.CorrelationId;
 import com.thecoderscorner.menu.remote.protocol.MessageField;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,6 +45,9 @@ public class RemoteMenuController {
     private final ConcurrentMap<CorrelationId, MenuItem> itemsInProgress = new ConcurrentHashMap<>();
     private final List<RemoteControllerListener> listeners = new CopyOnWriteArrayList<>();
     private final Map<MessageField, BiConsumer<RemoteMenuController, MenuCommand>> customMessageHandlers = new ConcurrentHashMap<>();
+    private volatile List<Integer> subscribedSubMenus = List.of();
+    private volatile long bootstrappedTreeHash;
+    private volatile boolean valueRefreshInProgress;
 
 
     public RemoteMenuController(RemoteConnector connector, MenuTree managedMenu) {
@@ -79,6 +84,7 @@ public class RemoteMenuController {
         logger.log(INFO, "Connection state changed to connected = " + status);
 
         if(status == AWAITING_CONNECTION || status == CONNECTION_FAILED) {
+            valueRefreshInProgress = false;
             itemsInProgress.forEach((key, item) ->
                     listeners.forEach(rcl -> rcl.ackReceived(key, item, AckStatus.UNKNOWN_ERROR))
             );
@@ -157,6 +163,44 @@ public class RemoteMenuController {
         return correlationId;
     }
 
+    /**
+     * Tell the server that only changes to items within these sub menus are needed, for example the sub menus that
+     * are currently on display. The subscription replaces any earlier one, and is sent again automatically after each
+     * bootstrap, so it survives reconnection. Servers that do not support subscriptions ignore it and send everything.
+     * @param subMenus the sub menus of interest, an empty collection means every item
+     */
+    public void subscribeTo(Collection<SubMenuItem> subMenus) {
+        subscribedSubMenus = subMenus.stream().map(MenuItem::getId).toList();
+        if(isTreeFullyPopulated()) sendCommand(newSubscribeCommand(subscribedSubMenus));
+    }
+
+    /**
+     * Go back to receiving changes for every item, which is the default.
+     */
+    public void subscribeToAll() {
+        subscribeTo(List.of());
+    }
+
+    /**
+     * Gets the structure hash of the tree held in the managed menu, as given by the server in the last bootstrap. When
+     * the connection is re-established, this hash is presented to the server, which then only sends values if the
+     * structure has not changed. An application that saves the managed menu can save this hash along with it.
+     * @return the structure hash of the managed menu, or zero if no complete bootstrap has been received
+     */
+    public long getBootstrappedTreeHash() {
+        return bootstrappedTreeHash;
+    }
+
+    /**
+     * Use this before starting when the managed menu was populated from a tree saved earlier, rather than by a
+     * bootstrap, so that if the server still has the same structure, only values are sent on connection.
+     * @param treeHash the structure hash that was saved along with the tree
+     */
+    public void useCachedTree(long treeHash) {
+        bootstrappedTreeHash = treeHash;
+        connector.setKnownTreeHash(treeHash);
+    }
+
     /**
      * get the underlying connectivity, rarely needed
      * @return underlying connector
@@ -207,7 +251,16 @@ public class RemoteMenuController {
     }
 
     private void onBootstrap(MenuBootstrapCommand menuCommand) {
-        if(menuCommand.getBootType() == MenuBootstrapCommand.BootType.END) {
+        if(menuCommand.getBootType() == MenuBootstrapCommand.BootType.START) {
+            // a full bootstrap rebuilds the tree, so until it ends, the tree held cannot be presented on a later join
+            valueRefreshInProgress = menuCommand.isValueRefresh();
+            if(!valueRefreshInProgress) useCachedTree(0);
+        }
+        else if(menuCommand.getBootType() == MenuBootstrapCommand.BootType.END) {
+            valueRefreshInProgress = false;
+            if(menuCommand.getTreeHash() != 0) useCachedTree(menuCommand.getTreeHash());
+            var subscription = subscribedSubMenus;
+            if(!subscription.isEmpty()) sendCommand(newSubscribeCommand(subscription));
             listeners.forEach(RemoteControllerListener::treeFullyPopulated);
         }
     }
@@ -225,13 +278,13 @@ public class RemoteMenuController {
 
     private void onMenuItemBoot(BootItemMenuCommand<?,?> menuCommand) {
         managedMenu.addOrUpdateItem(menuCommand.getSubMenuId(), menuCommand.getMenuItem());
-        managedMenu.changeItem(menuCommand.getMenuItem(), menuCommand.newMenuState(managedMenu.getMenuState(menuCommand.getMenuItem())));
+        MenuItemHelper.setMenuState(menuCommand.getMenuItem(), menuCommand.getCurrentValue(), managedMenu);
         listeners.forEach(l-> l.menuItemChanged(menuCommand.getMenuItem(), false));
     }
 
     private void onChangeField(MenuChangeCommand menuCommand) {
-        // we cannot process until the tree is populated
-        if(!isTreeFullyPopulated()) return;
+        // we cannot process until the tree is populated, unless the tree is already held and values are being refreshed
+        if(!isTreeFullyPopulated() && !valueRefreshInProgress) return;
 
         if(menuCommand.getChangeType() == MenuChangeCommand.ChangeType.ABSOLUTE_LIST) {
             managedMenu.getMenuById(menuCommand.getMenuItemId()).ifPresent((item) -> {
@@ -241,7 +294,7 @@ public class RemoteMenuController {
         }
         else {
             managedMenu.getMenuById(menuCommand.getMenuItemId()).ifPresent((item) -> {
-                managedMenu.changeItem(item, MenuItemHelper.stateForMenuItem(item, menuCommand.getValue(), true, false));
+                MenuItemHelper.setMenuState(item, menuCommand.getValue(), true, false, managedMenu);
                 listeners.forEach(l -> l.menuItemChanged(item, true));
             });
         }
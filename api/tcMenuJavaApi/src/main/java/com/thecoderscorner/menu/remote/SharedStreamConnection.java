@@ -1,6 +1,7 @@
 package com.thecoderscorner.menu.remote;
 
 import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.commands.MenuJoinCommand;
 import com.thecoderscorner.menu.remote.encryption.ProtocolEncryptionHandler;
 import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
 import com.thecoderscorner.menu.remote.protocol.TagValTextParser;
@@ -9,26 +10,87 @@ import com.thecoderscorner.menu.remote.protocol.TcProtocolException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.System.Logger.Level.DEBUG;
 import static java.lang.System.Logger.Level.WARNING;
 
 public abstract class SharedStreamConnection {
     public static final int MAX_MSG_EXPECTED = 8192;
+    /** room for the length, IV or nonce, padding and tag that encryption adds to a message */
+    private static final int ENCRYPTION_OVERHEAD = 64;
     protected final System.Logger logger = System.getLogger(getClass().getSimpleName());
 
     protected final MenuCommandProtocol protocol;
-    protected final ByteBuffer inputBuffer = ByteBuffer.allocate(MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN);
-    protected final ByteBuffer cmdBuffer = ByteBuffer.allocate(MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN);
+    /** holds data read from the stream, null when the subclass manages its input itself, see the constructor */
+    protected ByteBuffer inputBuffer;
+    /** messages are encoded into this before they are sent, allocated on the first send */
+    protected ByteBuffer cmdBuffer;
     protected final ProtocolEncryptionHandler encryptionHandler;
+    /** holds each encrypted message with its length while it is sent, only allocated when there is encryption */
+    protected final ByteBuffer encryptedBuffer;
+    /** guards cmdBuffer and the transport while sending, a lock rather than a monitor so virtual threads park on it */
+    protected final ReentrantLock sendLock = new ReentrantLock();
+    /** the format used for messages that can be sent either way, binary once both sides have offered it during join */
+    protected volatile CommandProtocol preferredProtocol = CommandProtocol.TAG_VAL_PROTOCOL;
+    /** tracks how much of the message being read has already been checked for completeness */
+    protected final IncrementalMessageFramer framer = new IncrementalMessageFramer();
 
     protected SharedStreamConnection(MenuCommandProtocol protocol, ProtocolEncryptionHandler encryptionHandler) {
+        this(protocol, encryptionHandler, true);
+    }
+
+    /**
+     * Create a connection, optionally without an input buffer for connections that do not read using
+     * readCommandFromStream, and instead provide the input buffer only while they have data to process.
+     * @param protocol the protocol used to encode and decode messages
+     * @param encryptionHandler the encryption handler or null when not encrypted
+     * @param allocateInputBuffer true to allocate the input buffer now, otherwise it is left null
+     */
+    protected SharedStreamConnection(MenuCommandProtocol protocol, ProtocolEncryptionHandler encryptionHandler,
+                                     boolean allocateInputBuffer) {
         this.protocol = protocol;
         this.encryptionHandler = encryptionHandler;
+        this.inputBuffer = allocateInputBuffer ? ByteBuffer.allocate(MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN) : null;
+        this.encryptedBuffer = (encryptionHandler == null) ? null
+                : ByteBuffer.allocate(MAX_MSG_EXPECTED + ENCRYPTION_OVERHEAD).order(ByteOrder.BIG_ENDIAN);
     }
 
     public void close() {
         if(encryptionHandler != null) encryptionHandler.getDecryptBuffer().reset().flip();
+        framer.reset();
+        preferredProtocol = CommandProtocol.TAG_VAL_PROTOCOL;
+    }
+
+    /**
+     * @return the format used to send messages that can be written either way, agreed during join.
+     */
+    public CommandProtocol getPreferredProtocol() {
+        return preferredProtocol;
+    }
+
+    /**
+     * @return true if the join this connection sends should offer binary messages, which is when its protocol can
+     * negotiate them.
+     */
+    public boolean supportsBinaryNegotiation() {
+        return protocol.supportsBinaryNegotiation();
+    }
+
+    /**
+     * Called with each command that is received, when the remote sends a join that offers binary and our protocol
+     * supports it, we switch over to sending binary messages. We can always read both formats.
+     * @param cmd the command that was received
+     */
+    protected void negotiateProtocol(MenuCommand cmd) {
+        if(cmd instanceof MenuJoinCommand join) {
+            var newProtocol = (join.isBinaryCapable() && protocol.supportsBinaryNegotiation())
+                    ? CommandProtocol.RAW_BIN_PROTOCOL : CommandProtocol.TAG_VAL_PROTOCOL;
+            if(newProtocol != preferredProtocol && logger.isLoggable(DEBUG)) {
+                connectionLog(DEBUG, "Switching message format to " + newProtocol);
+            }
+            preferredProtocol = newProtocol;
+        }
     }
 
     public MenuCommand readCommandFromStream() throws IOException {
@@ -40,6 +102,7 @@ public abstract class SharedStreamConnection {
                 if(!isDeviceConnected()) throw new IOException("Connection thread not connected");
                 byStart = nextByte(inputBuffer);
             }
+            framer.reset();
 
             // and then make sure there are enough bytes and read the protocol
             readCompleteMessage(inputBuffer);
@@ -49,6 +112,7 @@ public abstract class SharedStreamConnection {
             // now we take a shallow buffer copy and process the message
             MenuCommand mc = protocol.fromChannel(inputBuffer);
             if(logger.isLoggable(DEBUG)) connectionLog(DEBUG, "Menu command read: " + mc);
+            negotiateProtocol(mc);
             return mc;
         }
         catch(TcProtocolException ex) {
@@ -58,6 +122,12 @@ public abstract class SharedStreamConnection {
         }
     }
 
+    /**
+     * Checks if the buffer contains a complete message by scanning it from the start, for use when a buffer is only
+     * checked once. Connections use an `IncrementalMessageFramer` instead, which does not rescan on each read.
+     * @param inputBuffer the buffer positioned at the protocol byte
+     * @return true if a complete message is present
+     */
     public static boolean doesBufferHaveEOM(ByteBuffer inputBuffer) {
         if(inputBuffer.remaining() < 4) return false;
         ByteBuffer bbCopy = inputBuffer.slice();
@@ -77,9 +147,18 @@ public abstract class SharedStreamConnection {
         }
     }
 
+    /**
+     * Reads until the message that starts at the buffer position is complete. The framer only examines the data
+     * that arrives on each read, so the cost is linear in the message size however the data is split up.
+     * @param inputBuffer the buffer positioned at the protocol byte
+     * @throws IOException if the message is corrupt or there are problems reading
+     */
     protected void readCompleteMessage(ByteBuffer inputBuffer) throws IOException {
-        while(!doesBufferHaveEOM(inputBuffer)) {
-            if(inputBuffer.remaining() > MAX_MSG_EXPECTED) throw new TcProtocolException("Message corrupt, no EOM");
+        while(!framer.hasCompleteMessage(inputBuffer)) {
+            if(inputBuffer.remaining() >= inputBuffer.capacity()) {
+                framer.reset();
+                throw new TcProtocolException("Message corrupt, no EOM");
+            }
             getAtLeastBytes(inputBuffer, 1, StreamRemoteConnector.ReadMode.READ_MORE);
         }
     }
@@ -99,8 +178,9 @@ public abstract class SharedStreamConnection {
                 while(decryptBuffer.remaining() < len) {
                     getAtLeastBytes(decryptBuffer, len, StreamRemoteConnector.ReadMode.ONLY_WHEN_EMPTY);
                 }
-                var data = encryptionHandler.decryptBuffer(decryptBuffer, len);
-                inputBuffer.compact().put(data).flip();
+                inputBuffer.compact();
+                encryptionHandler.decryptInto(decryptBuffer, len, inputBuffer);
+                inputBuffer.flip();
             }
         } else {
             getAtLeastBytes(inputBuffer, 1, StreamRemoteConnector.ReadMode.ONLY_WHEN_EMPTY);
@@ -152,19 +232,55 @@ public abstract class SharedStreamConnection {
      */
     public void sendMenuCommand(MenuCommand msg) throws IOException {
         if (canSendMessageNow(msg)) {
-            synchronized (cmdBuffer) {
+            sendLock.lock();
+            try {
+                if(cmdBuffer == null) cmdBuffer = ByteBuffer.allocate(MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN);
                 cmdBuffer.clear();
-                protocol.toChannel(cmdBuffer, msg);
+                protocol.toChannel(cmdBuffer, msg, preferredProtocol);
                 cmdBuffer.flip();
                 logByteBuffer("Sending message on " + getConnectionName(), cmdBuffer);
                 if(encryptionHandler != null) {
-                    var data = encryptionHandler.encryptBuffer(cmdBuffer);
-                    cmdBuffer.clear()
-                            .putShort((short) data.length).put(data)
-                            .flip();
+                    encryptedBuffer.clear().position(2);
+                    int len = encryptionHandler.encryptInto(cmdBuffer, encryptedBuffer);
+                    encryptedBuffer.putShort(0, (short) len).flip();
+                    sendInternal(encryptedBuffer);
+                } else {
+                    sendInternal(cmdBuffer);
                 }
-                sendInternal(cmdBuffer);
             }
+            finally {
+                sendLock.unlock();
+            }
+        } else {
+            throw new IOException("Not connected to port");
+        }
+    }
+
+    /**
+     * Sends a command that is being broadcast to many remotes. When this connection is not encrypted, the frame is
+     * encoded only once and the same bytes are written to every connection. Encrypted connections encode the command
+     * themselves as usual.
+     * @param frame the frame being broadcast
+     * @return true if the shared encoding of the frame was sent, false if the command was encoded again
+     * @throws IOException if there are issues with the transport
+     */
+    public boolean sendEncodedFrame(EncodedCommandFrame frame) throws IOException {
+        ByteBuffer data = (encryptionHandler == null) ? frame.encodedFor(protocol, preferredProtocol) : null;
+        if (data == null) {
+            sendMenuCommand(frame.getCommand());
+            return false;
+        }
+
+        if (canSendMessageNow(frame.getCommand())) {
+            sendLock.lock();
+            try {
+                logByteBuffer("Sending shared frame on " + getConnectionName(), data);
+                sendInternal(data);
+            }
+            finally {
+                sendLock.unlock();
+            }
+            return true;
         } else {
             throw new IOException("Not connected to port");
         }
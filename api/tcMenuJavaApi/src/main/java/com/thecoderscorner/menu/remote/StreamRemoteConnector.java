@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -48,6 +49,11 @@ public abstract class StreamRemoteConnector extends SharedStreamConnection imple
     private final AtomicReference<RemoteConnectorState> connectorState= new AtomicReference<>();
     private final AtomicReference<RemoteInformation> remoteParty = new AtomicReference<>(NOT_CONNECTED);
     private final AtomicBoolean connectionRunning = new AtomicBoolean(false);
+    private volatile ConnectionThreadMode threadMode = ConnectionThreadMode.PLATFORM;
+    private volatile long knownTreeHash;
+    private final Object heartbeatLock = new Object();
+    private HeartbeatWheel ownHeartbeatWheel;
+    private ScheduledFuture<?> ownHeartbeatTicker;
 
     protected StreamRemoteConnector(LocalIdentifier ourLocalId, MenuCommandProtocol protocol,
                                     ScheduledExecutorService executor, Clock clock,
@@ -70,7 +76,34 @@ public abstract class StreamRemoteConnector extends SharedStreamConnection imple
 
     protected void startThreadProc() {
         connectionRunning.set(true);
-        executor.execute(this::tickerThreadProc);
+        if(threadMode == ConnectionThreadMode.VIRTUAL) {
+            threadMode.startThread("ticker-" + getConnectionName(), this::tickerThreadProc);
+        }
+        else {
+            executor.execute(this::tickerThreadProc);
+        }
+    }
+
+    /**
+     * Set how the ticker loop of this connector is run, by default it occupies a thread from the executor for as long
+     * as the connection is running. In virtual mode it runs on its own virtual thread instead, so that blocking reads
+     * park rather than holding an OS thread. Must be called before the connector is started.
+     * @param threadMode the thread mode for the ticker loop
+     */
+    public void setThreadMode(ConnectionThreadMode threadMode) {
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * @return the thread mode used for the ticker loop
+     */
+    public ConnectionThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    @Override
+    public void setKnownTreeHash(long treeHash) {
+        this.knownTreeHash = treeHash;
     }
 
     @SuppressWarnings("BusyWait")
@@ -102,11 +135,39 @@ public abstract class StreamRemoteConnector extends SharedStreamConnection imple
     public void close() {
         inputBuffer.clear();
         inputBuffer.flip();
-        cmdBuffer.clear();
+        if(cmdBuffer != null) cmdBuffer.clear();
+        stopOwnHeartbeatWheel();
         notifyConnection();
         super.close();
     }
 
+    /**
+     * Connectors that use the system clock share one heartbeat wheel. With any other clock, this connector has its
+     * own wheel that follows its clock and ticks on its executor, it is stopped when the connection closes and a new
+     * one is started when next connected, so nothing is kept for clocks that are no longer used.
+     * @return the wheel that supervises heartbeats for this connector
+     */
+    @Override
+    public HeartbeatWheel getHeartbeatWheel() {
+        if(HeartbeatWheel.isSystemClock(clock)) return HeartbeatWheel.shared();
+        synchronized (heartbeatLock) {
+            if(ownHeartbeatWheel == null) {
+                ownHeartbeatWheel = new HeartbeatWheel(clock, HeartbeatWheel.SHARED_TICK_MILLIS,
+                        HeartbeatWheel.SHARED_WHEEL_SIZE);
+                ownHeartbeatTicker = ownHeartbeatWheel.startTicking(executor);
+            }
+            return ownHeartbeatWheel;
+        }
+    }
+
+    private void stopOwnHeartbeatWheel() {
+        synchronized (heartbeatLock) {
+            if(ownHeartbeatTicker != null) ownHeartbeatTicker.cancel(false);
+            ownHeartbeatTicker = null;
+            ownHeartbeatWheel = null;
+        }
+    }
+
     protected void handleCoreConnectionStates(ConnectMode connectMode) {
         if(connectMode == ConnectMode.PAIRING_CONNECTION) {
             stateMachineMappings.put(AuthStatus.SEND_AUTH, SendPairingMessageState.class);
@@ -219,7 +280,8 @@ public abstract class StreamRemoteConnector extends SharedStreamConnection imple
 
     @Override
     public void sendJoin() throws IOException {
-        sendMenuCommand(CommandFactory.newJoinCommand(ourLocalId.getName(), ourLocalId.getUuid(), UI_SERIAL_NO));
+        sendMenuCommand(CommandFactory.newJoinCommand(ourLocalId.getName(), ourLocalId.getUuid(), UI_SERIAL_NO,
+                knownTreeHash, supportsBinaryNegotiation()));
     }
 
     @Override
@@ -0,0 +1,207 @@
+package com.thecoderscorner.menu.remote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects the encoded frames going to one remote so that several of them can be handed to the transport in a single
+ * gathering write, rather than one write per message. Frames are held until one of the limits is reached: the number
+ * of frames, the number of bytes, or how long the first frame has been waiting. Between `beginBatch()` and `endBatch()`
+ * frames are always held until a limit is reached or the batch ends, which is how a bootstrap is sent as one burst.
+ *
+ * Read only buffers, such as the shared encoding of a broadcast EncodedCommandFrame, are immutable so are held by
+ * reference. Any other buffer is normally reused by the caller once the send returns, so it is copied into a staging
+ * area first. With a linger time of zero, frames sent outside a batch are written straight away.
+ */
+public class WriteBatcher {
+    /**
+     * Writes a group of frames to the transport, all the data in the buffers must be written before returning.
+     */
+    public interface BatchSink {
+        void writeAll(ByteBuffer[] buffers, int count) throws IOException;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int maxFrames;
+    private final int maxBytes;
+    private final long lingerMicros;
+    private final ScheduledExecutorService scheduler;
+    private final BatchSink sink;
+    private final Consumer<Exception> failureHandler;
+    private final ByteBuffer staging;
+    private final ByteBuffer[] frames;
+    private int frameCount;
+    private int pendingBytes;
+    private int batchDepth;
+    private ScheduledFuture<?> lingerTask;
+    private long writeCount;
+
+    /**
+     * Create a batcher that only holds frames between begin and end of batch, writing others straight away.
+     * @param maxFrames the most frames to hold before writing
+     * @param maxBytes the most bytes to hold before writing
+     * @param sink the transport that writes the frames
+     */
+    public WriteBatcher(int maxFrames, int maxBytes, BatchSink sink) {
+        this(maxFrames, maxBytes, 0, null, sink, ex -> {});
+    }
+
+    /**
+     * Create a batcher that also holds frames sent outside a batch for up to the linger time.
+     * @param maxFrames the most frames to hold before writing
+     * @param maxBytes the most bytes to hold before writing
+     * @param lingerMicros how long a frame sent outside a batch can wait for others, zero to write it straight away
+     * @param scheduler used to write frames once the linger time expires, only needed when linger is not zero
+     * @param sink the transport that writes the frames
+     * @param failureHandler called if a write that was started by the linger timer fails
+     */
+    public WriteBatcher(int maxFrames, int maxBytes, long lingerMicros, ScheduledExecutorService scheduler,
+                        BatchSink sink, Consumer<Exception> failureHandler) {
+        if (maxFrames < 1) throw new IllegalArgumentException("At least one frame must be allowed");
+        if (lingerMicros > 0 && scheduler == null) throw new IllegalArgumentException("Linger needs a scheduler");
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+        this.lingerMicros = lingerMicros;
+        this.scheduler = scheduler;
+        this.sink = sink;
+        this.failureHandler = failureHandler;
+        this.staging = ByteBuffer.allocate(Math.max(maxBytes, SharedStreamConnection.MAX_MSG_EXPECTED));
+        this.frames = new ByteBuffer[maxFrames];
+    }
+
+    /**
+     * Add a frame, it is written now if a limit has been reached or no batch is in progress and there is no linger.
+     * The buffer is consumed; if it is not read only it can be reused by the caller as soon as this returns.
+     * @param data the encoded frame
+     * @throws IOException if a write that was needed fails
+     */
+    public void add(ByteBuffer data) throws IOException {
+        lock.lock();
+        try {
+            int len = data.remaining();
+            boolean copy = !data.isReadOnly();
+            if (frameCount > 0 && (pendingBytes + len > maxBytes || (copy && staging.remaining() < len))) {
+                flushLocked();
+            }
+
+            if (copy) {
+                int start = staging.position();
+                staging.put(data);
+                frames[frameCount++] = staging.slice(start, len);
+            } else {
+                frames[frameCount++] = data.slice();
+                data.position(data.limit());
+            }
+            pendingBytes += len;
+
+            if (frameCount >= maxFrames || pendingBytes >= maxBytes || (batchDepth == 0 && lingerMicros == 0)) {
+                flushLocked();
+            } else if (batchDepth == 0 && lingerTask == null) {
+                lingerTask = scheduler.schedule(this::lingerExpired, lingerMicros, TimeUnit.MICROSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start holding frames until `endBatch()`, batches can be nested and only the outermost end writes the frames.
+     */
+    public void beginBatch() {
+        lock.lock();
+        try {
+            batchDepth++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * End a batch, writing any frames that are held once the outermost batch ends.
+     * @throws IOException if the write fails
+     */
+    public void endBatch() throws IOException {
+        lock.lock();
+        try {
+            if (batchDepth > 0 && --batchDepth == 0) flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write any frames that are held now.
+     * @throws IOException if the write fails
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop any frames that are held, and leave any batch that was in progress, usually as the connection closes.
+     */
+    public void discard() {
+        lock.lock();
+        try {
+            batchDepth = 0;
+            clearLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lingerExpired() {
+        lock.lock();
+        try {
+            lingerTask = null;
+            if (batchDepth == 0) flushLocked();
+        } catch (Exception ex) {
+            failureHandler.accept(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        if (frameCount == 0) return;
+        try {
+            sink.writeAll(frames, frameCount);
+            writeCount++;
+        } finally {
+            clearLocked();
+        }
+    }
+
+    private void clearLocked() {
+        for (int i = 0; i < frameCount; i++) frames[i] = null;
+        frameCount = 0;
+        pendingBytes = 0;
+        staging.clear();
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+    }
+
+    /**
+     * @return the number of writes made to the transport, each of which may contain many frames
+     */
+    public long getWriteCount() {
+        lock.lock();
+        try {
+            return writeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.thecoderscorner.menu.remote.protocol.CorrelationId;
 import com.thecoderscorner.menu.remote.protocol.ProtocolUtil;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -44,6 +45,33 @@ public class CommandFactory {
         return new MenuJoinCommand(uuid, name, ApiPlatform.JAVA_API, ProtocolUtil.getVersionFromProperties(), serialNo);
     }
 
+    /**
+     * Create a new join command that presents the structure hash of a tree already held from an earlier bootstrap.
+     * @param name the name that the remote will show for the connection
+     * @param uuid the UUID that will the remote will see for this.
+     * @param serialNo the serial number of this device
+     * @param knownTreeHash the structure hash of the tree held, or zero if none is held
+     * @return join command
+     */
+    public static MenuJoinCommand newJoinCommand(String name, UUID uuid, String serialNo, long knownTreeHash) {
+        return newJoinCommand(name, uuid, serialNo, knownTreeHash, false);
+    }
+
+    /**
+     * Create a new join command that presents the structure hash of a tree already held, and can offer binary messages.
+     * @param name the name that the remote will show for the connection
+     * @param uuid the UUID that will the remote will see for this.
+     * @param serialNo the serial number of this device
+     * @param knownTreeHash the structure hash of the tree held, or zero if none is held
+     * @param binaryCapable true to offer binary messages to the remote
+     * @return join command
+     */
+    public static MenuJoinCommand newJoinCommand(String name, UUID uuid, String serialNo, long knownTreeHash,
+                                                 boolean binaryCapable) {
+        return new MenuJoinCommand(uuid, name, ApiPlatform.JAVA_API, ProtocolUtil.getVersionFromProperties(),
+                serialNo, binaryCapable, knownTreeHash);
+    }
+
     /**
      * Create a new heartbeat message with the frequency specified
      * @param frequency the frequency
@@ -67,6 +95,10 @@ public class CommandFactory {
         return new MenuPairingCommand(name, uuid);
     }
 
+    public static MenuSubscribeCommand newSubscribeCommand(Collection<Integer> subMenuIds) {
+        return new MenuSubscribeCommand(subMenuIds);
+    }
+
     public static MenuDialogCommand newDialogCommand(DialogMode mode, String header, String msg,
                                                      MenuButtonType b1, MenuButtonType b2,
                                                      CorrelationId correlationId) {
@@ -82,6 +114,17 @@ public class CommandFactory {
         return new MenuBootstrapCommand(type);
     }
 
+    /**
+     * Create a new bootstrap message that carries the structure hash of the tree being sent
+     * @param type one of the enum values allowed
+     * @param treeHash the structure hash of the tree
+     * @param valueRefresh true if the remote already holds the tree and only values will be sent
+     * @return bootstrap message
+     */
+    public static MenuBootstrapCommand newBootstrapCommand(MenuBootstrapCommand.BootType type, long treeHash, boolean valueRefresh) {
+        return new MenuBootstrapCommand(type, treeHash, valueRefresh);
+    }
+
     /**
      * create a new analog bootstrap command.
      * @param parentId the parent onto which the item will be placed.
@@ -13,15 +13,45 @@ import java.util.Objects;
 public class MenuBootstrapCommand implements MenuCommand {
     public enum BootType {START, END}
     private final BootType bootType;
+    private final long treeHash;
+    private final boolean valueRefresh;
 
     public MenuBootstrapCommand(BootType bootType) {
+        this(bootType, 0, false);
+    }
+
+    /**
+     * Creates a bootstrap command that also carries the structure hash of the tree being sent. A remote that keeps the
+     * tree can present this hash when it next joins, and if the structure has not changed, the server sends a value
+     * refresh, where only the current value of each item is sent between start and end instead of every item.
+     * @param bootType the type of bootstrap message
+     * @param treeHash the structure hash of the tree, or zero if not known
+     * @param valueRefresh true if only values follow, because the remote already holds the tree with this hash
+     */
+    public MenuBootstrapCommand(BootType bootType, long treeHash, boolean valueRefresh) {
         this.bootType = bootType;
+        this.treeHash = treeHash;
+        this.valueRefresh = valueRefresh;
     }
 
     public BootType getBootType() {
         return bootType;
     }
 
+    /**
+     * @return the structure hash of the tree being bootstrapped, or zero if the server did not provide one
+     */
+    public long getTreeHash() {
+        return treeHash;
+    }
+
+    /**
+     * @return true if the remote already holds the tree, and only values are being sent
+     */
+    public boolean isValueRefresh() {
+        return valueRefresh;
+    }
+
     @Override
     public MessageField getCommandType() {
         return MenuCommandType.BOOTSTRAP;
@@ -29,7 +59,8 @@ public class MenuBootstrapCommand implements MenuCommand {
 
     @Override
     public String toString() {
-        return "MenuBootstrapCommand{bootType=" + bootType + '}';
+        return "MenuBootstrapCommand{bootType=" + bootType + ", treeHash=" + Long.toHexString(treeHash) +
+                ", valueRefresh=" + valueRefresh + '}';
     }
 
     @Override
@@ -38,11 +69,12 @@ public class MenuBootstrapCommand implements MenuCommand {
         if (o == null || getClass() != o.getClass()) return false;
         MenuBootstrapCommand that = (MenuBootstrapCommand) o;
         return getBootType() == that.getBootType()
+                && treeHash == that.treeHash && valueRefresh == that.valueRefresh
                 && this.getCommandType() == that.getCommandType();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getBootType(), getCommandType());
+        return Objects.hash(getBootType(), treeHash, valueRefresh, getCommandType());
     }
 }
@@ -35,4 +35,5 @@ public interface MenuCommandType {
     MessageField FORM_GET_NAMES_RESPONSE = new MessageField('F', 'N');
     MessageField FORM_DATA_REQUEST = new MessageField('F', 'R');
     MessageField FORM_DATA_RESPONSE = new MessageField('F', 'D');
+    MessageField SUBSCRIBE = new MessageField('S', 'U');
 }
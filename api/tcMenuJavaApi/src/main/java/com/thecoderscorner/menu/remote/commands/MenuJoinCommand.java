@@ -18,13 +18,34 @@ public class MenuJoinCommand implements MenuCommand {
     private final ApiPlatform platform;
     private final UUID appUuid;
     private final String serialNumber;
+    private final boolean binaryCapable;
+    private final long knownTreeHash;
 
     public MenuJoinCommand(UUID uuid, String myName, ApiPlatform platform, int apiVer, String serialNo) {
+        this(uuid, myName, platform, apiVer, serialNo, false);
+    }
+
+    /**
+     * Creates a join command that can also advertise that the sender understands the binary forms of the hot path
+     * messages, when both sides advertise this, each side switches over to sending them in binary.
+     */
+    public MenuJoinCommand(UUID uuid, String myName, ApiPlatform platform, int apiVer, String serialNo, boolean binaryCapable) {
+        this(uuid, myName, platform, apiVer, serialNo, binaryCapable, 0);
+    }
+
+    /**
+     * Creates a join command that also presents the structure hash of the tree the sender already holds from an
+     * earlier bootstrap, so that the server can send only values if the structure is unchanged.
+     */
+    public MenuJoinCommand(UUID uuid, String myName, ApiPlatform platform, int apiVer, String serialNo,
+                           boolean binaryCapable, long knownTreeHash) {
         this.myName = myName;
         this.appUuid = uuid;
         this.apiVer = apiVer;
         this.platform = platform;
         this.serialNumber = serialNo;
+        this.binaryCapable = binaryCapable;
+        this.knownTreeHash = knownTreeHash;
     }
 
     public String getMyName() {
@@ -47,6 +68,20 @@ public class MenuJoinCommand implements MenuCommand {
         return serialNumber;
     }
 
+    /**
+     * @return true if the sender can receive the binary protocol forms of the hot path messages
+     */
+    public boolean isBinaryCapable() {
+        return binaryCapable;
+    }
+
+    /**
+     * @return the structure hash of the tree the sender already holds, or zero if it holds no tree
+     */
+    public long getKnownTreeHash() {
+        return knownTreeHash;
+    }
+
     @Override
     public MessageField getCommandType() {
         return MenuCommandType.JOIN;
@@ -58,7 +93,9 @@ public class MenuJoinCommand implements MenuCommand {
                 "myName='" + myName + '\'' +
                 ", apiVer=" + apiVer +
                 ", platform=" + platform + '\'' +
-                ", uuid=" + appUuid + " (S/N=" + serialNumber + ")}";
+                ", uuid=" + appUuid + " (S/N=" + serialNumber + ")" +
+                ", binary=" + binaryCapable +
+                ", knownTree=" + Long.toHexString(knownTreeHash) + '}';
     }
 
     @Override
@@ -0,0 +1,58 @@
+package com.thecoderscorner.menu.remote.commands;
+
+import com.thecoderscorner.menu.remote.protocol.MessageField;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sent by a remote to tell the server which sub menus it is interested in, after this the server only sends value
+ * changes for items that are within one of those sub menus. Each subscription replaces the last one, and an empty
+ * subscription (or never sending one) means that the remote wants changes for every item. Sub menu ID 0 is the root,
+ * so subscribing to it also means every item.
+ */
+public class MenuSubscribeCommand implements MenuCommand {
+    private final List<Integer> subMenuIds;
+
+    public MenuSubscribeCommand(Collection<Integer> subMenuIds) {
+        this.subMenuIds = subMenuIds.stream().distinct().sorted().toList();
+    }
+
+    /**
+     * @return the sub menu IDs that the remote is interested in, in ascending order
+     */
+    public List<Integer> getSubMenuIds() {
+        return subMenuIds;
+    }
+
+    /**
+     * @return true if this subscription covers every item
+     */
+    public boolean isEverything() {
+        return subMenuIds.isEmpty() || subMenuIds.contains(0);
+    }
+
+    @Override
+    public MessageField getCommandType() {
+        return MenuCommandType.SUBSCRIBE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MenuSubscribeCommand that = (MenuSubscribeCommand) o;
+        return Objects.equals(subMenuIds, that.subMenuIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(subMenuIds);
+    }
+
+    @Override
+    public String toString() {
+        return "MenuSubscribeCommand{subMenuIds=" + subMenuIds + '}';
+    }
+}
@@ -2,12 +2,21 @@ package com.thecoderscorner.menu.remote.encryption;
 
 public class AESEncryptionHandlerFactory implements EncryptionHandlerFactory {
     private final String key;
+    private final EncryptMode mode;
 
     public AESEncryptionHandlerFactory(String key) {
+        this(key, EncryptMode.AES_ENCRYPTION);
+    }
+
+    public AESEncryptionHandlerFactory(String key, EncryptMode mode) {
         this.key = key;
+        this.mode = mode;
     }
 
     public ProtocolEncryptionHandler create() throws Exception {
-        return new AESProtocolEncryptionHandler(key);
+        return switch (mode) {
+            case AES_ENCRYPTION -> new AESProtocolEncryptionHandler(key);
+            case AES_GCM_ENCRYPTION -> new AESGCMProtocolEncryptionHandler(key);
+        };
     }
 }
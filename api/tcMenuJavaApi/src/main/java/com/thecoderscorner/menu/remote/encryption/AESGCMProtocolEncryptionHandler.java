@@ -0,0 +1,123 @@
+package com.thecoderscorner.menu.remote.encryption;
+
+import com.thecoderscorner.menu.remote.SharedStreamConnection;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * This implements encryption and decryption based on AES GCM mode. Each message is sent as a 12 byte nonce followed by
+ * the encrypted data and a 16 byte authentication tag. No padding is needed, and a message that has been altered or
+ * was encrypted with another key fails to decrypt rather than producing corrupt data.
+ *
+ * GCM must never use the same nonce twice with a key. The nonce is made of 8 random bytes chosen for each handler and a
+ * 4 byte count of the messages it has sent, new random bytes are chosen before the count wraps. Encryption and
+ * decryption work directly on the buffers given, reusing the handler's nonce arrays.
+ */
+public class AESGCMProtocolEncryptionHandler implements ProtocolEncryptionHandler {
+    private final static String AES_GCM_ALGO_NAME = "AES/GCM/NoPadding";
+    /** the length of the nonce that is sent before each message */
+    public static final int NONCE_LENGTH = 12;
+    /** the length of the authentication tag that is sent after each message */
+    public static final int TAG_LENGTH = 16;
+    private static final int RANDOM_PART_LENGTH = 8;
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final SecretKey configuredKey;
+    private final Cipher encryptCipher;
+    private final Cipher decryptCipher;
+    private final ByteBuffer decryptBuffer = ByteBuffer.allocate(SharedStreamConnection.MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN).flip();
+    private final byte[] encryptNonce = new byte[NONCE_LENGTH];
+    private final byte[] decryptNonce = new byte[NONCE_LENGTH];
+    private int messageCount;
+
+    public AESGCMProtocolEncryptionHandler(SecretKey configuredKey) throws Exception {
+        this.configuredKey = configuredKey;
+        encryptCipher = Cipher.getInstance(AES_GCM_ALGO_NAME);
+        decryptCipher = Cipher.getInstance(AES_GCM_ALGO_NAME);
+    }
+
+    public AESGCMProtocolEncryptionHandler(String key) throws Exception {
+        this(keyFromBase64(key));
+    }
+
+    private static SecretKey keyFromBase64(String key) {
+        byte[] decodedKey = Base64.getDecoder().decode(key);
+        return new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
+    }
+
+    private void nextNonce() {
+        if (messageCount == 0) {
+            secureRandom.nextBytes(encryptNonce);
+        }
+        for (int i = 0; i < NONCE_LENGTH - RANDOM_PART_LENGTH; i++) {
+            encryptNonce[NONCE_LENGTH - 1 - i] = (byte) (messageCount >>> (i * 8));
+        }
+        messageCount++;
+    }
+
+    @Override
+    public byte[] encryptBuffer(ByteBuffer inputBuffer) throws IOException {
+        var encrypted = ByteBuffer.allocate(NONCE_LENGTH + inputBuffer.remaining() + TAG_LENGTH);
+        encryptInto(inputBuffer, encrypted);
+        return encrypted.array();
+    }
+
+    @Override
+    public byte[] decryptBuffer(ByteBuffer inputBuffer, int len) throws IOException {
+        var decrypted = ByteBuffer.allocate(Math.max(0, len - NONCE_LENGTH - TAG_LENGTH));
+        decryptInto(inputBuffer, len, decrypted);
+        return decrypted.array();
+    }
+
+    @Override
+    public int encryptInto(ByteBuffer inputBuffer, ByteBuffer outputBuffer) throws IOException {
+        var needed = NONCE_LENGTH + inputBuffer.remaining() + TAG_LENGTH;
+        if (outputBuffer.remaining() < needed) throw new IOException("No room for " + needed + " encrypted bytes");
+        try {
+            nextNonce();
+            encryptCipher.init(Cipher.ENCRYPT_MODE, configuredKey, new GCMParameterSpec(TAG_LENGTH * 8, encryptNonce));
+            outputBuffer.put(encryptNonce);
+            return NONCE_LENGTH + encryptCipher.doFinal(inputBuffer, outputBuffer);
+        } catch (Exception e) {
+            throw new IOException("Encrypt failed", e);
+        }
+    }
+
+    @Override
+    public void decryptInto(ByteBuffer inputBuffer, int len, ByteBuffer outputBuffer) throws IOException {
+        if (len < NONCE_LENGTH + TAG_LENGTH) throw new IOException("Encrypted message too short " + len);
+        int oldLimit = inputBuffer.limit();
+        try {
+            inputBuffer.get(decryptNonce);
+            decryptCipher.init(Cipher.DECRYPT_MODE, configuredKey, new GCMParameterSpec(TAG_LENGTH * 8, decryptNonce));
+            // limit the input to this message so the cipher can consume it directly
+            inputBuffer.limit(inputBuffer.position() + len - NONCE_LENGTH);
+            decryptCipher.doFinal(inputBuffer, outputBuffer);
+        } catch (AEADBadTagException ex) {
+            throw new IOException("Decrypt failed, message is not authentic", ex);
+        } catch (Exception ex) {
+            throw new IOException("Decrypt failed", ex);
+        } finally {
+            inputBuffer.limit(oldLimit);
+        }
+    }
+
+    @Override
+    public ByteBuffer getDecryptBuffer() {
+        return decryptBuffer;
+    }
+
+    @Override
+    public EncryptMode getEncryptMode() {
+        return EncryptMode.AES_GCM_ENCRYPTION;
+    }
+}
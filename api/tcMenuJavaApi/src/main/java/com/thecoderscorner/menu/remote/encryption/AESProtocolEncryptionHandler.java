@@ -15,16 +15,23 @@ import java.security.SecureRandom;
 import java.util.Base64;
 
 /**
- * This implements encryption and decryption based on AES CBC mode with an initialisation vector.
+ * This implements encryption and decryption based on AES CBC mode with an initialisation vector. Each message is sent
+ * as the IV followed by the data zero padded to a multiple of 16 and then encrypted. The buffer based methods keep the
+ * same format, but reuse the handler's arrays and let the cipher work directly on the buffers.
  */
 public class AESProtocolEncryptionHandler implements ProtocolEncryptionHandler {
 
     private final static String AES_ALGO_NAME = "AES/CBC/PKCS5Padding";
+    private static final int BLOCK_SIZE = 16;
+    private static final int IV_LENGTH = 16;
     private static final SecureRandom secureRandom = new SecureRandom();
     private final SecretKey configuredKey;
     private final Cipher encryptCipher;
     private final Cipher decryptCipher;
     private final ByteBuffer decryptBuffer = ByteBuffer.allocate(SharedStreamConnection.MAX_MSG_EXPECTED).order(ByteOrder.BIG_ENDIAN).flip();
+    private final byte[] encryptIv = new byte[IV_LENGTH];
+    private final byte[] decryptIv = new byte[IV_LENGTH];
+    private final ByteBuffer zeroPadding = ByteBuffer.allocate(BLOCK_SIZE);
 
     public AESProtocolEncryptionHandler(SecretKey configuredKey) throws Exception {
         this.configuredKey = configuredKey;
@@ -91,6 +98,46 @@ public class AESProtocolEncryptionHandler implements ProtocolEncryptionHandler {
         }
     }
 
+    @Override
+    public int encryptInto(ByteBuffer inputBuffer, ByteBuffer outputBuffer) throws IOException {
+        try {
+            secureRandom.nextBytes(encryptIv);
+            encryptCipher.init(Cipher.ENCRYPT_MODE, configuredKey, new IvParameterSpec(encryptIv));
+
+            // the same zero padding as encryptBuffer, but fed to the cipher after the data rather than copied
+            var in = inputBuffer.remaining();
+            var remainder = in % BLOCK_SIZE;
+            var padding = remainder == 0 ? 0 : BLOCK_SIZE - remainder;
+            var needed = IV_LENGTH + encryptCipher.getOutputSize(in + padding);
+            if (outputBuffer.remaining() < needed) throw new IOException("No room for " + needed + " encrypted bytes");
+
+            outputBuffer.put(encryptIv);
+            int written = encryptCipher.update(inputBuffer, outputBuffer);
+            written += encryptCipher.doFinal(zeroPadding.clear().limit(padding), outputBuffer);
+            return IV_LENGTH + written;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Encrypt failed", e);
+        }
+    }
+
+    @Override
+    public void decryptInto(ByteBuffer inputBuffer, int len, ByteBuffer outputBuffer) throws IOException {
+        int oldLimit = inputBuffer.limit();
+        try {
+            inputBuffer.get(decryptIv);
+            decryptCipher.init(Cipher.DECRYPT_MODE, configuredKey, new IvParameterSpec(decryptIv));
+            // limit the input to this message so the cipher can consume it directly
+            inputBuffer.limit(inputBuffer.position() + len - IV_LENGTH);
+            decryptCipher.doFinal(inputBuffer, outputBuffer);
+        } catch(Exception ex) {
+            throw new IOException("Decrypt failed", ex);
+        } finally {
+            inputBuffer.limit(oldLimit);
+        }
+    }
+
     @Override
     public ByteBuffer getDecryptBuffer() {
         return decryptBuffer;
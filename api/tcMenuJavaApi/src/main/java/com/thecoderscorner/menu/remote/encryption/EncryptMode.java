@@ -1,8 +1,18 @@
 package com.thecoderscorner.menu.remote.encryption;
 
 /**
- * Defines the type of encryption that we want to use, presently always AES
+ * Defines the type of encryption that we want to use, both sides of a connection must be configured with the same mode
+ * as the mode cannot be agreed over the connection before encryption starts.
  */
 public enum EncryptMode {
-    AES_ENCRYPTION
+    /**
+     * AES in CBC mode with a random IV sent before each message, the data is zero padded to a multiple of the block
+     * size. This is the mode supported by embedded devices.
+     */
+    AES_ENCRYPTION,
+    /**
+     * AES in GCM mode, each message carries a unique nonce and an authentication tag, so there is no padding and any
+     * message that has been altered fails to decrypt.
+     */
+    AES_GCM_ENCRYPTION
 }
@@ -27,6 +27,41 @@ public interface ProtocolEncryptionHandler {
      */
     byte[] decryptBuffer(ByteBuffer inputBuffer, int len) throws IOException;
 
+    /**
+     * Encrypts the remaining bytes of the input buffer into the output buffer, writing the same bytes that
+     * `encryptBuffer` would return. Handlers should override this to encrypt without allocating new arrays, by default
+     * it copies the result of `encryptBuffer`.
+     * @param inputBuffer the buffer to encrypt, it is fully consumed
+     * @param outputBuffer the buffer to write the encrypted data into
+     * @return the number of bytes written to the output buffer
+     * @throws IOException if there is a problem, including the output buffer being too small
+     */
+    default int encryptInto(ByteBuffer inputBuffer, ByteBuffer outputBuffer) throws IOException {
+        var data = encryptBuffer(inputBuffer);
+        outputBuffer.put(data);
+        return data.length;
+    }
+
+    /**
+     * Decrypts len bytes from the input buffer into the output buffer, the same as `decryptBuffer` but without
+     * returning a new array. Handlers should override this to decrypt without allocating, by default it copies the
+     * result of `decryptBuffer`.
+     * @param inputBuffer the buffer to decrypt from, it must have at least len bytes remaining
+     * @param len the length of data to process
+     * @param outputBuffer the buffer to write the decrypted data into
+     * @throws IOException if there is a problem, including the output buffer being too small
+     */
+    default void decryptInto(ByteBuffer inputBuffer, int len, ByteBuffer outputBuffer) throws IOException {
+        outputBuffer.put(decryptBuffer(inputBuffer, len));
+    }
+
+    /**
+     * @return the encryption mode that this handler implements, both sides of a connection must use the same mode
+     */
+    default EncryptMode getEncryptMode() {
+        return EncryptMode.AES_ENCRYPTION;
+    }
+
     /**
      * Returns a byte buffer that decryption can take place into, usually this requires an extra buffer.
      * @return a ready allocated buffer
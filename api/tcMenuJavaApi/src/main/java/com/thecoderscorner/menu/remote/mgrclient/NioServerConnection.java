@@ -0,0 +1,550 @@
+package com.thecoderscorner.menu.remote.mgrclient;
+
+import com.thecoderscorner.menu.mgr.ServerConnection;
+import com.thecoderscorner.menu.mgr.ServerConnectionMode;
+import com.thecoderscorner.menu.remote.DirectBufferPool;
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
+import com.thecoderscorner.menu.remote.MenuCommandProtocol;
+import com.thecoderscorner.menu.remote.OutboundCommandQueue;
+import com.thecoderscorner.menu.remote.OutboundQueuePolicy;
+import com.thecoderscorner.menu.remote.SharedStreamConnection;
+import com.thecoderscorner.menu.remote.StreamRemoteConnector;
+import com.thecoderscorner.menu.remote.WriteBatcher;
+import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand;
+import com.thecoderscorner.menu.remote.commands.MenuJoinCommand;
+import com.thecoderscorner.menu.remote.encryption.ProtocolEncryptionHandler;
+import com.thecoderscorner.menu.remote.protocol.TcProtocolException;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import static java.lang.System.Logger.Level.*;
+
+/**
+ * Represents a client API connection to a device that is driven by the selector in NioServerConnectionManager rather
+ * than having its own read thread. The manager calls into this class when the channel has data to read or room to
+ * write, and commands are decoded on the selector thread as soon as a complete message is available. The input buffer
+ * is taken from the pool only while there is data to process, so an idle connection holds no input buffer. Decoded
+ * commands are passed to the message handler on the handler executor, in the order they arrived, so that a handler
+ * that does a lot of work, such as sending a bootstrap, never holds up the selector and the other connections.
+ *
+ * Output is written directly when the socket can accept it, anything left over is held in pooled direct buffers
+ * until the selector reports that the channel is writable again. A remote that falls so far behind that more than
+ * MAX_PENDING_OUTPUT_BYTES are waiting is disconnected.
+ *
+ * @see NioServerConnectionManager
+ */
+public class NioServerConnection extends SharedStreamConnection implements ServerConnection {
+    /** The most bytes of output that can be waiting for a slow remote before the connection is dropped, this is
+     * enough to hold the bootstrap of a very large menu */
+    public static final int MAX_PENDING_OUTPUT_BYTES = 4 * 1024 * 1024;
+
+    private final int heartbeatFrequency;
+    private final AtomicLong lastHeartbeatTx = new AtomicLong();
+    private final AtomicLong lastHeartbeatRx = new AtomicLong();
+    private final SocketChannel channel;
+    private final SocketAddress remoteAddress;
+    private final Clock clock;
+    private final DirectBufferPool bufferPool;
+    /** receives each decrypted message before it is framed, only allocated when there is encryption */
+    private final ByteBuffer decryptedBuffer;
+    private final ArrayDeque<ByteBuffer> pendingOutput = new ArrayDeque<>();
+    /** guarded by pendingOutput */
+    private int pendingOutputBytes;
+    private final Executor handlerExecutor;
+    private final ConcurrentLinkedQueue<MenuCommand> receivedCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean handlingCommands = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicReference<String> remoteUser = new AtomicReference<>("Unknown");
+    private final AtomicReference<BiConsumer<ServerConnection, MenuCommand>> messageHandler = new AtomicReference<>();
+    private final AtomicReference<BiConsumer<ServerConnection, Boolean>> connectionListener = new AtomicReference<>();
+    private final AtomicReference<ServerConnectionMode> connectionMode = new AtomicReference<>(ServerConnectionMode.UNAUTHENTICATED);
+    private volatile OutboundCommandQueue outboundQueue;
+    private final WriteBatcher batcher = new WriteBatcher(SocketServerConnection.DEFAULT_BATCH_FRAMES,
+            SocketServerConnection.DEFAULT_BATCH_BYTES, this::writeFrames);
+    private volatile SelectionKey selectionKey;
+
+    /**
+     * Create a connection that calls the message handler directly on the selector thread, only suitable when the
+     * handler does very little work.
+     */
+    public NioServerConnection(SocketChannel channel, MenuCommandProtocol protocol, Clock clock,
+                               ProtocolEncryptionHandler encryption, int heartbeatFrequency,
+                               DirectBufferPool bufferPool) throws IOException {
+        this(channel, protocol, clock, encryption, heartbeatFrequency, bufferPool, Runnable::run);
+    }
+
+    /**
+     * Create a connection that is driven by a selector
+     * @param channel the non-blocking channel of the connection
+     * @param protocol the protocol to use
+     * @param clock the clock to use
+     * @param encryption the encryption handler or null when not encrypted
+     * @param heartbeatFrequency the heartbeat frequency
+     * @param bufferPool the pool that input and pending output buffers are taken from
+     * @param handlerExecutor the executor on which the message handler is called
+     * @throws IOException if the remote address is not available
+     */
+    public NioServerConnection(SocketChannel channel, MenuCommandProtocol protocol, Clock clock,
+                               ProtocolEncryptionHandler encryption, int heartbeatFrequency,
+                               DirectBufferPool bufferPool, Executor handlerExecutor) throws IOException {
+        super(protocol, encryption, false);
+        this.channel = channel;
+        this.remoteAddress = channel.getRemoteAddress();
+        this.clock = clock;
+        this.bufferPool = bufferPool;
+        this.heartbeatFrequency = heartbeatFrequency;
+        this.handlerExecutor = handlerExecutor;
+        this.decryptedBuffer = (encryption == null) ? null : ByteBuffer.allocate(MAX_MSG_EXPECTED);
+        lastHeartbeatRx.set(clock.millis());
+        lastHeartbeatTx.set(clock.millis());
+    }
+
+    /**
+     * Called by the manager once the channel is registered with the selector.
+     * @param key the selection key for this connection's channel
+     */
+    void setSelectionKey(SelectionKey key) {
+        this.selectionKey = key;
+    }
+
+    /**
+     * Called on the selector thread when the channel has data available. The data is read into the pooled buffer,
+     * moved into the input buffer (decrypting if needed), and any complete commands are queued for the message
+     * handler. The input buffer goes back to the pool once it holds no partial message.
+     * @param readBuffer a pooled buffer that can be used for the duration of this call
+     */
+    void handleReadable(ByteBuffer readBuffer) {
+        try {
+            readBuffer.clear();
+            int actual = channel.read(readBuffer);
+            if (actual < 0) {
+                connectionLog(INFO, "Remote closed the connection");
+                closeConnection();
+                return;
+            }
+            readBuffer.flip();
+
+            while (readBuffer.hasRemaining() && !closed.get()) {
+                if (encryptionHandler != null) {
+                    appendToBuffer(encryptionHandler.getDecryptBuffer(), readBuffer);
+                    decryptAvailableData();
+                } else {
+                    appendToBuffer(acquireInputBuffer(), readBuffer);
+                    processInputBuffer();
+                }
+            }
+        } catch (Exception e) {
+            logger.log(ERROR, "Exception while processing read on " + getConnectionName(), e);
+            closeConnection();
+        } finally {
+            releaseInputBufferWhenEmpty();
+        }
+    }
+
+    /**
+     * Called on the selector thread when the channel can accept more output, writes as much of the pending output
+     * as possible and stops watching for writability once it is all sent.
+     */
+    void handleWritable() {
+        try {
+            synchronized (pendingOutput) {
+                writePendingOutput();
+                if (pendingOutput.isEmpty() && selectionKey != null && selectionKey.isValid()) {
+                    selectionKey.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        } catch (Exception e) {
+            connectionLog(ERROR, "Connection error during write " + e.getMessage());
+            closeConnection();
+        }
+    }
+
+    private ByteBuffer acquireInputBuffer() {
+        if (inputBuffer == null) inputBuffer = bufferPool.acquire().flip();
+        return inputBuffer;
+    }
+
+    private void releaseInputBufferWhenEmpty() {
+        if (inputBuffer != null && (closed.get() || !inputBuffer.hasRemaining())) {
+            bufferPool.release(inputBuffer);
+            inputBuffer = null;
+        }
+    }
+
+    private void appendToBuffer(ByteBuffer target, ByteBuffer source) {
+        target.compact();
+        if (!target.hasRemaining()) {
+            logger.log(WARNING, "Protocol error: Message corrupt, no EOM, remote=" + getConnectionName());
+            target.clear();
+            framer.reset();
+        }
+        int len = Math.min(target.remaining(), source.remaining());
+        target.put(source.slice(source.position(), len));
+        source.position(source.position() + len);
+        target.flip();
+    }
+
+    private void decryptAvailableData() throws IOException {
+        var decryptBuffer = encryptionHandler.getDecryptBuffer();
+        while (decryptBuffer.remaining() >= 2) {
+            int len = decryptBuffer.getShort(decryptBuffer.position());
+            if (decryptBuffer.remaining() < len + 2) return;
+            decryptBuffer.getShort();
+            var source = decryptedBuffer.clear();
+            encryptionHandler.decryptInto(decryptBuffer, len, source);
+            source.flip();
+            while (source.hasRemaining()) {
+                appendToBuffer(acquireInputBuffer(), source);
+                processInputBuffer();
+            }
+        }
+    }
+
+    private void processInputBuffer() throws IOException {
+        while (!closed.get()) {
+            // discard anything before the start of the next message
+            while (inputBuffer.hasRemaining() && inputBuffer.get(inputBuffer.position()) != MenuCommandProtocol.PROTO_START_OF_MSG) {
+                inputBuffer.get();
+            }
+            if (!inputBuffer.hasRemaining()) return;
+
+            // wait for more data when the message is not yet complete, leaving the start of message in the buffer,
+            // the framer remembers how far it got so only new data is scanned next time.
+            int messageStart = inputBuffer.position();
+            inputBuffer.get();
+            if (!framer.hasCompleteMessage(inputBuffer)) {
+                inputBuffer.position(messageStart);
+                return;
+            }
+
+            logByteBuffer("Line read from stream", inputBuffer);
+            try {
+                var cmd = protocol.fromChannel(inputBuffer);
+                if (logger.isLoggable(DEBUG)) connectionLog(DEBUG, "Menu command read: " + cmd);
+                dispatchCommand(cmd);
+            } catch (TcProtocolException ex) {
+                // a protocol problem shouldn't drop the connection
+                logger.log(WARNING, "Protocol error: " + ex.getMessage() + ", remote=" + getConnectionName());
+            }
+        }
+    }
+
+    private void dispatchCommand(MenuCommand cmd) {
+        var handler = messageHandler.get();
+        if (cmd == null || handler == null) return;
+        if (cmd instanceof MenuHeartbeatCommand) {
+            logger.log(DEBUG, "received heartbeat command");
+        } else if (cmd instanceof MenuJoinCommand join) {
+            remoteUser.set(join.getMyName());
+            negotiateProtocol(join);
+        }
+        lastHeartbeatRx.set(clock.millis());
+        receivedCommands.add(cmd);
+        if (handlingCommands.compareAndSet(false, true)) {
+            handlerExecutor.execute(this::handleReceivedCommands);
+        }
+    }
+
+    /**
+     * Runs on the handler executor, passing each received command to the message handler in the order they arrived.
+     * Only one of these runs at once for a connection, once the queue is empty it checks again after giving up the
+     * flag, in case a command was added after the last poll.
+     */
+    private void handleReceivedCommands() {
+        do {
+            MenuCommand cmd;
+            while ((cmd = receivedCommands.poll()) != null) {
+                var handler = messageHandler.get();
+                if (closed.get() || handler == null) continue;
+                try {
+                    handler.accept(this, cmd);
+                } catch (Exception e) {
+                    logger.log(ERROR, "Exception while handling command on " + getConnectionName(), e);
+                    closeConnection();
+                }
+            }
+            handlingCommands.set(false);
+        } while (!receivedCommands.isEmpty() && handlingCommands.compareAndSet(false, true));
+    }
+
+    @Override
+    public int getHeartbeatFrequency() {
+        return heartbeatFrequency;
+    }
+
+    @Override
+    public void closeConnection() {
+        if (closed.getAndSet(true)) return;
+        connectionMode.set(ServerConnectionMode.DISCONNECTED);
+        connectionLog(INFO, "Close connection called");
+        var queue = outboundQueue;
+        if (queue != null) queue.close();
+        batcher.discard();
+        try {
+            var key = selectionKey;
+            if (key != null) key.cancel();
+            channel.close();
+        } catch (IOException e) {
+            logger.log(ERROR, "Error closing socket " + remoteAddress, e);
+        }
+        synchronized (pendingOutput) {
+            while (!pendingOutput.isEmpty()) bufferPool.release(pendingOutput.poll());
+            pendingOutputBytes = 0;
+        }
+        var l = connectionListener.get();
+        if (l != null) l.accept(this, false);
+    }
+
+    @Override
+    public long lastReceivedHeartbeat() {
+        return lastHeartbeatRx.get();
+    }
+
+    @Override
+    public long lastTransmittedHeartbeat() {
+        return lastHeartbeatTx.get();
+    }
+
+    /**
+     * Send commands to the remote through a bounded queue that is written on the executor, rather than on the thread
+     * that calls sendCommand, so that a slow remote does not hold up the server. This should be called before the
+     * connection is given to the server. If the remote falls so far behind that the queue fills, it is disconnected.
+     * @param policy the queued policy to use
+     * @param capacity the most commands that can be waiting for the remote
+     * @param executor the executor that writes the queued commands
+     */
+    public void useOutboundQueue(OutboundQueuePolicy policy, int capacity, Executor executor) {
+        if (policy == OutboundQueuePolicy.DIRECT) {
+            outboundQueue = null;
+            return;
+        }
+        outboundQueue = new OutboundCommandQueue(policy, capacity, executor, new OutboundCommandQueue.OutboundWriter() {
+            @Override
+            public void writeCommand(MenuCommand command) throws IOException {
+                sendMenuCommand(command);
+            }
+
+            @Override
+            public void writeFrame(EncodedCommandFrame frame) throws IOException {
+                NioServerConnection.super.sendEncodedFrame(frame);
+            }
+
+            @Override
+            public void beginBatch() {
+                batcher.beginBatch();
+            }
+
+            @Override
+            public void endBatch() throws IOException {
+                batcher.endBatch();
+            }
+        }, ex -> {
+            connectionLog(ERROR, "Connection error during queued send " + ex.getMessage());
+            closeConnection();
+        });
+    }
+
+    @Override
+    public void beginBatch() {
+        batcher.beginBatch();
+    }
+
+    @Override
+    public void endBatch() {
+        try {
+            batcher.endBatch();
+        }
+        catch (Exception e) {
+            connectionLog(ERROR, "Connection error during send");
+            closeConnection();
+        }
+    }
+
+    /**
+     * @return the outbound queue for this connection, or null when commands are sent directly
+     */
+    public OutboundCommandQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    @Override
+    public void sendCommand(MenuCommand command) {
+        var queue = outboundQueue;
+        if (queue != null) {
+            queue.offerCommand(command);
+            return;
+        }
+        try {
+            sendMenuCommand(command);
+        }
+        catch (Exception e) {
+            connectionLog(ERROR, "Connection error during send");
+            closeConnection();
+        }
+    }
+
+    @Override
+    public boolean sendEncodedFrame(EncodedCommandFrame frame) {
+        var queue = outboundQueue;
+        if (queue != null) {
+            // the frame is written later, report whether its shared encoding can be used for this connection
+            return queue.offerFrame(frame) && encryptionHandler == null;
+        }
+        try {
+            return super.sendEncodedFrame(frame);
+        }
+        catch (Exception e) {
+            connectionLog(ERROR, "Connection error during send");
+            closeConnection();
+            return false;
+        }
+    }
+
+    @Override
+    public void registerConnectionListener(BiConsumer<ServerConnection, Boolean> connectionListener) {
+        this.connectionListener.set(connectionListener);
+    }
+
+    @Override
+    public void registerMessageHandler(BiConsumer<ServerConnection, MenuCommand> messageHandler) {
+        this.messageHandler.set(messageHandler);
+    }
+
+    @Override
+    public void setConnectionMode(ServerConnectionMode mode) {
+        connectionMode.set(mode);
+    }
+
+    @Override
+    public ServerConnectionMode getConnectionMode() {
+        return connectionMode.get();
+    }
+
+    @Override
+    public String getUserName() {
+        return remoteUser.get();
+    }
+
+    @Override
+    public String getConnectionName() {
+        if(!closed.get()) {
+            return String.format("NioServer %s as %s", remoteAddress, remoteUser.get());
+        }
+        else {
+            return "NioServer disconnected";
+        }
+    }
+
+    @Override
+    protected void getAtLeastBytes(ByteBuffer inputBuffer, int len, StreamRemoteConnector.ReadMode mode) throws IOException {
+        throw new IOException("Reads on a non-blocking connection are driven by the selector");
+    }
+
+    @Override
+    protected void sendInternal(ByteBuffer cmdBuffer) throws IOException {
+        if (closed.get()) throw new IOException("Socket closed during write");
+        batcher.add(cmdBuffer);
+    }
+
+    /**
+     * Writes a group of frames from the batcher with one gathering write when nothing is already waiting, whatever the
+     * socket does not accept is held in pooled buffers until the selector reports that the channel is writable.
+     */
+    private void writeFrames(ByteBuffer[] buffers, int count) throws IOException {
+        if (closed.get()) throw new IOException("Socket closed during write");
+
+        synchronized (pendingOutput) {
+            // anything already waiting must go first, then try to write straight to the socket
+            writePendingOutput();
+            if (pendingOutput.isEmpty()) {
+                channel.write(buffers, 0, count);
+            }
+            for (int i = 0; i < count; i++) {
+                holdRemainingOutput(buffers[i]);
+            }
+
+            var key = selectionKey;
+            if (!pendingOutput.isEmpty() && key != null && key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                key.selector().wakeup();
+            }
+        }
+        lastHeartbeatTx.set(clock.millis());
+    }
+
+    private void holdRemainingOutput(ByteBuffer data) throws IOException {
+        if (pendingOutputBytes + data.remaining() > MAX_PENDING_OUTPUT_BYTES) {
+            throw new IOException("Remote is not reading, too much output is pending");
+        }
+        pendingOutputBytes += data.remaining();
+        while (data.hasRemaining()) {
+            var last = pendingOutput.peekLast();
+            if (last == null || !last.hasRemaining()) {
+                last = bufferPool.acquire();
+                pendingOutput.add(last);
+            }
+            int len = Math.min(last.remaining(), data.remaining());
+            last.put(data.slice(data.position(), len));
+            data.position(data.position() + len);
+        }
+    }
+
+    private void writePendingOutput() throws IOException {
+        while (!pendingOutput.isEmpty()) {
+            var first = pendingOutput.peekFirst();
+            first.flip();
+            pendingOutputBytes -= channel.write(first);
+            if (first.hasRemaining()) {
+                first.compact();
+                return;
+            }
+            bufferPool.release(pendingOutput.pollFirst());
+        }
+    }
+
+    /**
+     * @return the number of buffers holding output that is waiting for the remote to read it
+     */
+    public int getPendingOutputBuffers() {
+        synchronized (pendingOutput) {
+            return pendingOutput.size();
+        }
+    }
+
+    /**
+     * @return the number of bytes of output that are waiting for the remote to read them
+     */
+    public int getPendingOutputBytes() {
+        synchronized (pendingOutput) {
+            return pendingOutputBytes;
+        }
+    }
+
+    @Override
+    public boolean isDeviceConnected() {
+        return !closed.get() && channel.isConnected();
+    }
+
+    @Override
+    public boolean canSendMessageNow(MenuCommand cmd) {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NioSocket %s - %s", remoteAddress, getUserName());
+    }
+}
@@ -0,0 +1,235 @@
+package com.thecoderscorner.menu.remote.mgrclient;
+
+import com.thecoderscorner.menu.mgr.NewServerConnectionListener;
+import com.thecoderscorner.menu.mgr.ServerConnection;
+import com.thecoderscorner.menu.mgr.ServerConnectionManager;
+import com.thecoderscorner.menu.mgr.ServerConnectionMode;
+import com.thecoderscorner.menu.remote.ConnectionThreadMode;
+import com.thecoderscorner.menu.remote.DirectBufferPool;
+import com.thecoderscorner.menu.remote.MenuCommandProtocol;
+import com.thecoderscorner.menu.remote.OutboundQueuePolicy;
+import com.thecoderscorner.menu.remote.SharedStreamConnection;
+import com.thecoderscorner.menu.remote.encryption.EncryptionHandlerFactory;
+import com.thecoderscorner.menu.remote.encryption.NoEncryptionHandlerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A server connection manager that handles all of its connections on a single selector thread using non-blocking
+ * socket channels, instead of the thread per connection used by SocketServerConnectionManager. Idle connections cost
+ * no thread and no input buffer, data is read using a small pool of direct buffers that is shared by all connections,
+ * and a connection only keeps one while it has part of a message. The buffer used to encode output is allocated on
+ * a connection's first send. Commands are decoded on the selector thread, but the message handlers are called on a
+ * task executor, so that a handler sending a bootstrap does not hold up the other connections. Each connection is a
+ * NioServerConnection which keeps the usual ServerConnection contract, so it can be used with MenuManagerServer in
+ * exactly the same way as the socket based manager.
+ *
+ * @see NioServerConnection
+ */
+public class NioServerConnectionManager implements ServerConnectionManager {
+    private final System.Logger logger = System.getLogger(NioServerConnectionManager.class.getSimpleName());
+    private final List<ServerConnection> connections = new CopyOnWriteArrayList<>();
+    private final DirectBufferPool bufferPool = new DirectBufferPool(SharedStreamConnection.MAX_MSG_EXPECTED, 256);
+    private final MenuCommandProtocol protocol;
+    private final ScheduledFuture<?> taskFuture;
+    private final int port;
+    private final Clock clock;
+    private final int heartbeatTimeout;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread selectorThread;
+    private final ConnectionThreadMode threadMode;
+    private final ExecutorService handlerExecutor;
+    private volatile NewServerConnectionListener connectionListener;
+    private EncryptionHandlerFactory encryptionManager = new NoEncryptionHandlerFactory();
+    private volatile OutboundQueuePolicy outboundPolicy = OutboundQueuePolicy.DIRECT;
+    private volatile int outboundCapacity;
+    private volatile ExecutorService outboundExecutor;
+
+    public NioServerConnectionManager(MenuCommandProtocol protocol, ScheduledExecutorService service,
+                                      int port, Clock clock, int heartbeatTimeout)  {
+        this(protocol, service, port, clock, heartbeatTimeout, ConnectionThreadMode.PLATFORM);
+    }
+
+    /**
+     * Create a non-blocking server connection manager choosing how the message handlers and any queued output are
+     * run, in virtual mode each of these tasks runs on a virtual thread.
+     * @param protocol the protocol to use for connections
+     * @param service the executor used for housekeeping
+     * @param port the port to listen on
+     * @param clock the clock to use
+     * @param heartbeatTimeout the heartbeat frequency for connections
+     * @param threadMode how the handler and outbound tasks are run
+     */
+    public NioServerConnectionManager(MenuCommandProtocol protocol, ScheduledExecutorService service,
+                                      int port, Clock clock, int heartbeatTimeout, ConnectionThreadMode threadMode)  {
+        this.protocol = protocol;
+        this.port = port;
+        this.clock = clock;
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.threadMode = threadMode;
+        this.handlerExecutor = threadMode.newTaskExecutor("nio-handler-" + port);
+        selectorThread = new Thread(this::selectLoop, "NioServer-" + port);
+        selectorThread.setDaemon(true);
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+        }
+        catch (IOException ex) {
+            logger.log(System.Logger.Level.ERROR, "Server channel not created", ex);
+            throw new IllegalStateException("Could not start server channel", ex);
+        }
+        taskFuture = service.scheduleAtFixedRate(this::checkAllConnections, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void checkAllConnections() {
+        var connectionsToRemove = new ArrayList<ServerConnection>();
+        for(var connection : connections) {
+            if(connection.getConnectionMode() == ServerConnectionMode.DISCONNECTED) {
+                connectionsToRemove.add(connection);
+            }
+        }
+
+        for(var connection: connectionsToRemove) {
+            connections.remove(connection);
+        }
+    }
+
+    private void selectLoop() {
+        logger.log(System.Logger.Level.INFO, "Start selector thread");
+
+        while(!Thread.currentThread().isInterrupted() && selector.isOpen()) {
+            try {
+                selector.select(1000);
+                var selected = selector.selectedKeys();
+                if(selected.isEmpty()) continue;
+
+                var readBuffer = bufferPool.acquire();
+                try {
+                    for(var key : selected) {
+                        if(!key.isValid()) continue;
+                        if(key.isAcceptable()) {
+                            acceptConnections();
+                        }
+                        else if(key.attachment() instanceof NioServerConnection connection) {
+                            if(key.isWritable()) connection.handleWritable();
+                            if(key.isValid() && key.isReadable()) connection.handleReadable(readBuffer);
+                        }
+                    }
+                }
+                finally {
+                    selected.clear();
+                    bufferPool.release(readBuffer);
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.ERROR, "Exception in selector loop", e);
+            }
+        }
+
+        logger.log(System.Logger.Level.INFO, "End selector thread");
+    }
+
+    private void acceptConnections() {
+        SocketChannel channel;
+        while(true) {
+            try {
+                channel = serverChannel.accept();
+                if(channel == null) return;
+                logger.log(System.Logger.Level.INFO, "Accepted client " + channel.getRemoteAddress());
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                var newConnection = new NioServerConnection(channel, protocol, clock, encryptionManager.create(),
+                        heartbeatTimeout, bufferPool, handlerExecutor);
+                if (outboundPolicy != OutboundQueuePolicy.DIRECT) {
+                    newConnection.useOutboundQueue(outboundPolicy, outboundCapacity, outboundExecutor);
+                }
+                newConnection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, newConnection));
+                connections.add(newConnection);
+                connectionListener.connectionCreated(newConnection);
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.ERROR, "Exception during accept", e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<ServerConnection> getServerConnections() {
+        if(connections.isEmpty()) return List.of();
+        return List.copyOf(connections);
+    }
+
+    /**
+     * @return the pool of direct buffers used by this manager's connections
+     */
+    public DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Choose how connections accepted from now on send commands to their remote. With one of the queued policies,
+     * each connection gets a bounded queue that is written on a shared executor owned by this manager, so that
+     * broadcasting never waits on a slow remote. The default is direct, where commands are written by the caller.
+     * @param policy the policy for new connections
+     * @param capacity the most commands that can be waiting for each remote before it is disconnected
+     */
+    public void setOutboundQueue(OutboundQueuePolicy policy, int capacity) {
+        if (policy != OutboundQueuePolicy.DIRECT && outboundExecutor == null) {
+            outboundExecutor = threadMode.newTaskExecutor("outbound-" + port);
+        }
+        this.outboundCapacity = capacity;
+        this.outboundPolicy = policy;
+    }
+
+    @Override
+    public void start(NewServerConnectionListener listener) {
+        logger.log(System.Logger.Level.INFO, "Start called on NIO server manager - port " + port);
+        this.connectionListener = listener;
+
+        try {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            selectorThread.start();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.ERROR, "Exception during start", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        logger.log(System.Logger.Level.INFO, "Stop called on NIO server manager");
+
+        taskFuture.cancel(true);
+        if (outboundExecutor != null) outboundExecutor.shutdownNow();
+        handlerExecutor.shutdownNow();
+        selectorThread.interrupt();
+        for(var connection : connections) {
+            connection.closeConnection();
+        }
+        connections.clear();
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.ERROR, "Exception closing selector", e);
+        }
+    }
+}
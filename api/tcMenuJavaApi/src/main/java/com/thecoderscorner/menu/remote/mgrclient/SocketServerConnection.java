@@ -2,9 +2,14 @@ package com.thecoderscorner.menu.remote.mgrclient;
 
 import com.thecoderscorner.menu.mgr.ServerConnection;
 import com.thecoderscorner.menu.mgr.ServerConnectionMode;
+import com.thecoderscorner.menu.remote.ConnectionThreadMode;
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
 import com.thecoderscorner.menu.remote.MenuCommandProtocol;
+import com.thecoderscorner.menu.remote.OutboundCommandQueue;
+import com.thecoderscorner.menu.remote.OutboundQueuePolicy;
 import com.thecoderscorner.menu.remote.SharedStreamConnection;
 import com.thecoderscorner.menu.remote.StreamRemoteConnector;
+import com.thecoderscorner.menu.remote.WriteBatcher;
 import com.thecoderscorner.menu.remote.commands.MenuCommand;
 import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand;
 import com.thecoderscorner.menu.remote.commands.MenuJoinCommand;
@@ -14,6 +19,8 @@ import java.io.IOException;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.time.Clock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
@@ -25,6 +32,11 @@ import static java.lang.System.Logger.Level.*;
  * socket connection to an API client.
  */
 public class SocketServerConnection extends SharedStreamConnection implements ServerConnection {
+    /** By default, a batch is written once it holds this many frames */
+    public static final int DEFAULT_BATCH_FRAMES = 64;
+    /** By default, a batch is written once it holds this many bytes */
+    public static final int DEFAULT_BATCH_BYTES = 16384;
+
     private final System.Logger logger = System.getLogger(SocketServerConnection.class.getSimpleName());
     private final int heartbeatFrequency;
     private final AtomicLong lastHeartbeatTx = new AtomicLong();
@@ -35,18 +47,27 @@ public class SocketServerConnection extends SharedStreamConnection implements Se
     private final AtomicReference<BiConsumer<ServerConnection, MenuCommand>> messageHandler = new AtomicReference<>();
     private final AtomicReference<BiConsumer<ServerConnection, Boolean>> connectionListener = new AtomicReference<>();
     private final Thread readThread;
+    private final byte[] readBytes = new byte[256];
+    private final byte[] writeBytes = new byte[256];
     private final AtomicReference<ServerConnectionMode> connectionMode = new AtomicReference<>(ServerConnectionMode.UNAUTHENTICATED);
+    private volatile OutboundCommandQueue outboundQueue;
+    private volatile WriteBatcher batcher = new WriteBatcher(DEFAULT_BATCH_FRAMES, DEFAULT_BATCH_BYTES, this::writeFrames);
 
     public SocketServerConnection(Socket socket, MenuCommandProtocol protocol, Clock clock,
                                   ProtocolEncryptionHandler encryption, int heartbeatFrequency) {
+        this(socket, protocol, clock, encryption, heartbeatFrequency, ConnectionThreadMode.PLATFORM);
+    }
+
+    public SocketServerConnection(Socket socket, MenuCommandProtocol protocol, Clock clock,
+                                  ProtocolEncryptionHandler encryption, int heartbeatFrequency,
+                                  ConnectionThreadMode threadMode) {
         super(protocol, encryption);
         this.socket = socket;
         this.clock = clock;
-        readThread = new Thread(this::readLoop);
-        readThread.start();
         lastHeartbeatRx.set(clock.millis());
         lastHeartbeatTx.set(clock.millis());
         this.heartbeatFrequency = heartbeatFrequency;
+        readThread = threadMode.startThread("read-" + socket.getRemoteSocketAddress(), this::readLoop);
     }
 
     private void readLoop() {
@@ -83,6 +104,9 @@ public class SocketServerConnection extends SharedStreamConnection implements Se
             connectionMode.set(ServerConnectionMode.DISCONNECTED);
             connectionLog(INFO, "Close connection called");
             readThread.interrupt();
+            var queue = outboundQueue;
+            if (queue != null) queue.close();
+            batcher.discard();
             socket.close();
             var l = connectionListener.get();
             if (l != null) l.accept(this, false);
@@ -101,8 +125,99 @@ public class SocketServerConnection extends SharedStreamConnection implements Se
         return lastHeartbeatTx.get();
     }
 
+    /**
+     * Send commands to the remote through a bounded queue that is written on the executor, rather than on the thread
+     * that calls sendCommand, so that a slow remote does not hold up the server. This should be called before the
+     * connection is given to the server. If the remote falls so far behind that the queue fills, it is disconnected.
+     * @param policy the queued policy to use
+     * @param capacity the most commands that can be waiting for the remote
+     * @param executor the executor that writes the queued commands
+     */
+    public void useOutboundQueue(OutboundQueuePolicy policy, int capacity, Executor executor) {
+        if (policy == OutboundQueuePolicy.DIRECT) {
+            outboundQueue = null;
+            return;
+        }
+        outboundQueue = new OutboundCommandQueue(policy, capacity, executor, new OutboundCommandQueue.OutboundWriter() {
+            @Override
+            public void writeCommand(MenuCommand command) throws IOException {
+                sendMenuCommand(command);
+            }
+
+            @Override
+            public void writeFrame(EncodedCommandFrame frame) throws IOException {
+                SocketServerConnection.super.sendEncodedFrame(frame);
+            }
+
+            @Override
+            public void beginBatch() {
+                batcher.beginBatch();
+            }
+
+            @Override
+            public void endBatch() throws IOException {
+                batcher.endBatch();
+            }
+        }, ex -> {
+            connectionLog(ERROR, "Connection error during queued send " + ex.getMessage());
+            closeConnection();
+        });
+    }
+
+    /**
+     * Change how frames are grouped together before being written to the socket. Frames are always held during a
+     * batch, such as a bootstrap, until one of the limits is reached; with a linger time other frames can also wait
+     * briefly for others to join them, which trades a little latency for fewer writes. This should be called before
+     * the connection is given to the server.
+     * @param maxFrames the most frames written together
+     * @param maxBytes the most bytes written together
+     * @param lingerMicros how long a frame sent outside of a batch may wait, zero to write it straight away
+     * @param scheduler used to write frames when the linger time expires, only needed when linger is not zero
+     */
+    public void configureWriteBatching(int maxFrames, int maxBytes, long lingerMicros, ScheduledExecutorService scheduler) {
+        batcher = new WriteBatcher(maxFrames, maxBytes, lingerMicros, scheduler, this::writeFrames, ex -> {
+            connectionLog(ERROR, "Connection error during batched send " + ex.getMessage());
+            closeConnection();
+        });
+    }
+
+    /**
+     * @return the write batcher for this connection
+     */
+    public WriteBatcher getWriteBatcher() {
+        return batcher;
+    }
+
+    @Override
+    public void beginBatch() {
+        batcher.beginBatch();
+    }
+
+    @Override
+    public void endBatch() {
+        try {
+            batcher.endBatch();
+        }
+        catch (Exception e) {
+            connectionLog(ERROR, "Connection error during send");
+            closeConnection();
+        }
+    }
+
+    /**
+     * @return the outbound queue for this connection, or null when commands are sent directly
+     */
+    public OutboundCommandQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
     @Override
     public void sendCommand(MenuCommand command) {
+        var queue = outboundQueue;
+        if (queue != null) {
+            queue.offerCommand(command);
+            return;
+        }
         try {
             sendMenuCommand(command);
         }
@@ -112,6 +227,23 @@ public class SocketServerConnection extends SharedStreamConnection implements Se
         }
     }
 
+    @Override
+    public boolean sendEncodedFrame(EncodedCommandFrame frame) {
+        var queue = outboundQueue;
+        if (queue != null) {
+            // the frame is written later, report whether its shared encoding can be used for this connection
+            return queue.offerFrame(frame) && encryptionHandler == null;
+        }
+        try {
+            return super.sendEncodedFrame(frame);
+        }
+        catch (Exception e) {
+            connectionLog(ERROR, "Connection error during send");
+            close();
+            return false;
+        }
+    }
+
     @Override
     public void registerConnectionListener(BiConsumer<ServerConnection, Boolean> connectionListener) {
         this.connectionListener.set(connectionListener);
@@ -155,20 +287,53 @@ public class SocketServerConnection extends SharedStreamConnection implements Se
 
         do {
             inputBuffer.compact();
-            byte[] dataBytes = new byte[256];
-            int actual = socket.getInputStream().read(dataBytes);
-            if (actual <= 0) throw new IOException("Socket probably closed, read return was 0 or less");
-            inputBuffer.put(dataBytes, 0, actual);
+            int actual;
+            if(inputBuffer.hasArray()) {
+                // read straight into the buffer, avoiding a copy
+                actual = socket.getInputStream().read(inputBuffer.array(), inputBuffer.arrayOffset() + inputBuffer.position(), inputBuffer.remaining());
+                if(actual > 0) inputBuffer.position(inputBuffer.position() + actual);
+            }
+            else {
+                actual = socket.getInputStream().read(readBytes, 0, Math.min(readBytes.length, inputBuffer.remaining()));
+                if(actual > 0) inputBuffer.put(readBytes, 0, actual);
+            }
             inputBuffer.flip();
+            if (actual <= 0) throw new IOException("Socket probably closed, read return was 0 or less");
         } while(inputBuffer.remaining()<len);
     }
 
     @Override
     protected void sendInternal(ByteBuffer cmdBuffer) throws IOException {
-        int remaining = cmdBuffer.remaining();
-        byte[] data = new byte[remaining];
-        cmdBuffer.get(data, 0, remaining);
-        socket.getOutputStream().write(data);
+        batcher.add(cmdBuffer);
+    }
+
+    /**
+     * Writes a group of frames from the batcher. Sockets accepted from a channel use a single gathering write, other
+     * sockets write each frame's backing array straight to the output stream without copying it.
+     */
+    private void writeFrames(ByteBuffer[] buffers, int count) throws IOException {
+        var channel = socket.getChannel();
+        if (channel != null) {
+            while (buffers[count - 1].hasRemaining()) {
+                channel.write(buffers, 0, count);
+            }
+        }
+        else {
+            var out = socket.getOutputStream();
+            for (int i = 0; i < count; i++) {
+                var buffer = buffers[i];
+                if (buffer.hasArray()) {
+                    out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                }
+                else {
+                    while (buffer.hasRemaining()) {
+                        int len = Math.min(writeBytes.length, buffer.remaining());
+                        buffer.get(writeBytes, 0, len);
+                        out.write(writeBytes, 0, len);
+                    }
+                }
+            }
+        }
         lastHeartbeatTx.set(clock.millis());
     }
 
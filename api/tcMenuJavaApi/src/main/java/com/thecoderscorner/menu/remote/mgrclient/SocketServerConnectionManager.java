@@ -4,43 +4,72 @@ import com.thecoderscorner.menu.mgr.NewServerConnectionListener;
 import com.thecoderscorner.menu.mgr.ServerConnection;
 import com.thecoderscorner.menu.mgr.ServerConnectionManager;
 import com.thecoderscorner.menu.mgr.ServerConnectionMode;
+import com.thecoderscorner.menu.remote.ConnectionThreadMode;
 import com.thecoderscorner.menu.remote.MenuCommandProtocol;
+import com.thecoderscorner.menu.remote.OutboundQueuePolicy;
 import com.thecoderscorner.menu.remote.encryption.EncryptionHandlerFactory;
 import com.thecoderscorner.menu.remote.encryption.NoEncryptionHandlerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class SocketServerConnectionManager implements ServerConnectionManager {
     private final System.Logger logger = System.getLogger(SocketServerConnectionManager.class.getSimpleName());
-    private final Thread acceptThread;
+    private final ConnectionThreadMode threadMode;
+    private volatile Thread acceptThread;
     private final ServerSocket serverSocket;
     private final List<ServerConnection> connections = new CopyOnWriteArrayList<>();
     private final MenuCommandProtocol protocol;
     private final ScheduledFuture<?> taskFuture;
+    private final ScheduledExecutorService executorService;
     private final int port;
     private final Clock clock;
     private final int heartbeatTimeout;
     private volatile NewServerConnectionListener connectionListener;
     private EncryptionHandlerFactory encryptionManager = new NoEncryptionHandlerFactory();
+    private volatile OutboundQueuePolicy outboundPolicy = OutboundQueuePolicy.DIRECT;
+    private volatile int outboundCapacity;
+    private volatile ExecutorService outboundExecutor;
+    private volatile int batchFrames = SocketServerConnection.DEFAULT_BATCH_FRAMES;
+    private volatile int batchBytes = SocketServerConnection.DEFAULT_BATCH_BYTES;
+    private volatile long batchLingerMicros;
 
     public SocketServerConnectionManager(MenuCommandProtocol protocol, ScheduledExecutorService service,
                                          int port, Clock clock, int heartbeatTimeout)  {
+        this(protocol, service, port, clock, heartbeatTimeout, ConnectionThreadMode.PLATFORM);
+    }
+
+    /**
+     * Create a socket server connection manager choosing how the accept loop and each connection's read loop are run,
+     * in virtual mode every connection uses a virtual thread instead of an OS thread.
+     * @param protocol the protocol to use for connections
+     * @param service the executor used for housekeeping
+     * @param port the port to listen on
+     * @param clock the clock to use
+     * @param heartbeatTimeout the heartbeat frequency for connections
+     * @param threadMode how the connection loops are run
+     */
+    public SocketServerConnectionManager(MenuCommandProtocol protocol, ScheduledExecutorService service,
+                                         int port, Clock clock, int heartbeatTimeout, ConnectionThreadMode threadMode)  {
         this.protocol = protocol;
         this.port = port;
         this.clock = clock;
         this.heartbeatTimeout = heartbeatTimeout;
-        acceptThread = new Thread(this::acceptConnections);
+        this.threadMode = threadMode;
+        this.executorService = service;
         try {
-            serverSocket = new ServerSocket();
+            // opened from a channel so that accepted sockets can use gathering writes
+            serverSocket = ServerSocketChannel.open().socket();
         }
         catch (IOException ex) {
             logger.log(System.Logger.Level.ERROR, "Server socket not created", ex);
@@ -69,7 +98,12 @@ public class SocketServerConnectionManager implements ServerConnectionManager {
             try {
                 var sock = serverSocket.accept();
                 logger.log(System.Logger.Level.INFO, "Accepted client " + sock.getRemoteSocketAddress());
-                var newConnection = new SocketServerConnection(sock, protocol, clock, encryptionManager.create(), heartbeatTimeout);
+                sock.setTcpNoDelay(true);
+                var newConnection = new SocketServerConnection(sock, protocol, clock, encryptionManager.create(), heartbeatTimeout, threadMode);
+                newConnection.configureWriteBatching(batchFrames, batchBytes, batchLingerMicros, executorService);
+                if (outboundPolicy != OutboundQueuePolicy.DIRECT) {
+                    newConnection.useOutboundQueue(outboundPolicy, outboundCapacity, outboundExecutor);
+                }
                 connections.add(newConnection);
                 connectionListener.connectionCreated(newConnection);
             } catch (Exception e) {
@@ -86,6 +120,35 @@ public class SocketServerConnectionManager implements ServerConnectionManager {
         return List.copyOf(connections);
     }
 
+    /**
+     * Choose how connections accepted from now on send commands to their remote. With one of the queued policies,
+     * each connection gets a bounded queue that is written on a shared executor owned by this manager, so that
+     * broadcasting never waits on a slow remote. The default is direct, where commands are written by the caller.
+     * @param policy the policy for new connections
+     * @param capacity the most commands that can be waiting for each remote before it is disconnected
+     */
+    public void setOutboundQueue(OutboundQueuePolicy policy, int capacity) {
+        if (policy != OutboundQueuePolicy.DIRECT && outboundExecutor == null) {
+            outboundExecutor = threadMode.newTaskExecutor("outbound-" + port);
+        }
+        this.outboundCapacity = capacity;
+        this.outboundPolicy = policy;
+    }
+
+    /**
+     * Choose how connections accepted from now on group frames together before writing them to the socket, see
+     * SocketServerConnection.configureWriteBatching. By default, frames in a batch such as a bootstrap are written
+     * together and all others are written straight away.
+     * @param maxFrames the most frames written together
+     * @param maxBytes the most bytes written together
+     * @param lingerMicros how long a frame sent outside a batch may wait for others, zero to write it straight away
+     */
+    public void setWriteBatching(int maxFrames, int maxBytes, long lingerMicros) {
+        this.batchFrames = maxFrames;
+        this.batchBytes = maxBytes;
+        this.batchLingerMicros = lingerMicros;
+    }
+
     @Override
     public void start(NewServerConnectionListener listener) {
         logger.log(System.Logger.Level.INFO, "Start called on server manager - port " + port);
@@ -93,7 +156,7 @@ public class SocketServerConnectionManager implements ServerConnectionManager {
 
         try {
             serverSocket.bind(new InetSocketAddress(port));
-            acceptThread.start();
+            acceptThread = threadMode.startThread("accept-" + port, this::acceptConnections);
         } catch (IOException e) {
             logger.log(System.Logger.Level.ERROR, "Exception during start", e);
         }
@@ -103,7 +166,8 @@ public class SocketServerConnectionManager implements ServerConnectionManager {
     public void stop() {
         logger.log(System.Logger.Level.INFO, "Stop called on server manager");
 
-        acceptThread.interrupt();
+        if(acceptThread != null) acceptThread.interrupt();
         taskFuture.cancel(true);
+        if (outboundExecutor != null) outboundExecutor.shutdownNow();
     }
 }
@@ -0,0 +1,353 @@
+package com.thecoderscorner.menu.remote.protocol;
+
+import com.thecoderscorner.menu.domain.*;
+import com.thecoderscorner.menu.remote.commands.*;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.thecoderscorner.menu.remote.commands.MenuChangeCommand.ChangeType;
+import static com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand.HeartbeatMode;
+
+/**
+ * A series of protocol handlers that write the hot path messages, changes, heartbeats, acknowledgements and the
+ * bootstrap of the common item types, in binary form using the RAW_BIN protocol. They are registered alongside the
+ * tag value handlers, and are only used for sending once the remote has said it understands them during join, see
+ * {@link ConfigurableProtocolConverter#toChannel(ByteBuffer, MenuCommand, CommandProtocol)}. Incoming binary
+ * messages are always accepted.
+ *
+ * Each message is the standard header, followed by a two byte length and then the fields in a fixed order. All
+ * numbers are big endian, correlation ids are 4 bytes and strings are a two byte length followed by UTF-8 data.
+ * EEPROM addresses are two bytes unsigned, so from 0 to 65534, with 0xFFFF standing for -1, which means no storage.
+ * Readers ignore any data after the fields they know about, so that fields can be added to the end of a message.
+ */
+public class BinaryMenuCommandProcessors {
+    private static final MenuBootstrapCommand.BootType[] BOOT_TYPES = MenuBootstrapCommand.BootType.values();
+    private static final AckStatus[] ACK_STATUSES = AckStatus.values();
+    private static final int NO_EEPROM_ADDRESS = 0xffff;
+    private static final int FLAG_READ_ONLY = 0x01;
+    private static final int FLAG_VISIBLE = 0x02;
+
+    public void addHandlersToProtocol(ConfigurableProtocolConverter proto) {
+        addReader(proto, MenuCommandType.CHANGE_INT_FIELD, this::readChange);
+        addReader(proto, MenuCommandType.HEARTBEAT, this::readHeartbeat);
+        addReader(proto, MenuCommandType.ACKNOWLEDGEMENT, this::readAcknowledgement);
+        addReader(proto, MenuCommandType.BOOTSTRAP, this::readBootstrap);
+        addReader(proto, MenuCommandType.ANALOG_BOOT_ITEM, this::readAnalogBootItem);
+        addReader(proto, MenuCommandType.SUBMENU_BOOT_ITEM, this::readSubMenuBootItem);
+        addReader(proto, MenuCommandType.ACTION_BOOT_ITEM, this::readActionBootItem);
+        addReader(proto, MenuCommandType.ENUM_BOOT_ITEM, this::readEnumBootItem);
+        addReader(proto, MenuCommandType.BOOLEAN_BOOT_ITEM, this::readBoolBootItem);
+        addReader(proto, MenuCommandType.FLOAT_BOOT_ITEM, this::readFloatBootItem);
+        addReader(proto, MenuCommandType.TEXT_BOOT_ITEM, this::readTextBootItem);
+
+        addWriter(proto, MenuCommandType.CHANGE_INT_FIELD, this::writeChange, MenuChangeCommand.class);
+        addWriter(proto, MenuCommandType.HEARTBEAT, this::writeHeartbeat, MenuHeartbeatCommand.class);
+        addWriter(proto, MenuCommandType.ACKNOWLEDGEMENT, this::writeAcknowledgement, MenuAcknowledgementCommand.class);
+        addWriter(proto, MenuCommandType.BOOTSTRAP, this::writeBootstrap, MenuBootstrapCommand.class);
+        addWriter(proto, MenuCommandType.ANALOG_BOOT_ITEM, this::writeAnalogBootItem, MenuAnalogBootCommand.class);
+        addWriter(proto, MenuCommandType.SUBMENU_BOOT_ITEM, this::writeCommonBootFields, MenuSubBootCommand.class);
+        addWriter(proto, MenuCommandType.ACTION_BOOT_ITEM, this::writeCommonBootFields, MenuActionBootCommand.class);
+        addWriter(proto, MenuCommandType.ENUM_BOOT_ITEM, this::writeEnumBootItem, MenuEnumBootCommand.class);
+        addWriter(proto, MenuCommandType.BOOLEAN_BOOT_ITEM, this::writeBoolBootItem, MenuBooleanBootCommand.class);
+        addWriter(proto, MenuCommandType.FLOAT_BOOT_ITEM, this::writeFloatBootItem, MenuFloatBootCommand.class);
+        addWriter(proto, MenuCommandType.TEXT_BOOT_ITEM, this::writeTextBootItem, MenuTextBootCommand.class);
+    }
+
+    @FunctionalInterface
+    private interface BinaryMsgReader {
+        MenuCommand apply(ByteBuffer data) throws TcProtocolException;
+    }
+
+    /**
+     * Registers a reader that is given a view of exactly the message data, the message is always fully consumed from
+     * the incoming buffer even if the reader does not need all of it.
+     */
+    private void addReader(ConfigurableProtocolConverter proto, MessageField field, BinaryMsgReader reader) {
+        proto.addRawInProcessor(field, (buffer, len) -> {
+            if(len < 0 || len > buffer.remaining()) throw new TcProtocolException("Binary length invalid " + len + " for " + field);
+            var data = buffer.slice(buffer.position(), len).order(ByteOrder.BIG_ENDIAN);
+            buffer.position(buffer.position() + len);
+            try {
+                return reader.apply(data);
+            }
+            catch(BufferUnderflowException ex) {
+                throw new TcProtocolException("Binary message too short for " + field, ex);
+            }
+        });
+    }
+
+    /**
+     * Registers a writer, the length is reserved before the writer is called and filled in afterwards.
+     */
+    private <T extends MenuCommand> void addWriter(ConfigurableProtocolConverter proto, MessageField field,
+                                                   ProtocolOutgoingMsgConverter<T, ByteBuffer> writer, Class<T> clazz) {
+        proto.addRawOutProcessor(field, (buffer, cmd) -> {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            int lenPosition = buffer.position();
+            buffer.putShort((short) 0);
+            writer.apply(buffer, cmd);
+            buffer.putShort(lenPosition, (short) (buffer.position() - lenPosition - 2));
+        }, clazz);
+    }
+
+    private MenuCommand readChange(ByteBuffer data) {
+        var correlation = getCorrelation(data);
+        int id = data.getInt();
+        var type = MenuChangeCommand.changeTypeFromInt(data.get());
+        if(type == ChangeType.DELTA) {
+            return CommandFactory.newDeltaChangeCommand(correlation, id, data.getInt());
+        }
+        else if(type == ChangeType.ABSOLUTE_LIST) {
+            int count = data.getShort() & 0xffff;
+            List<String> values = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) values.add(getString(data));
+            return CommandFactory.newAbsoluteListChangeCommand(correlation, id, values);
+        }
+        else {
+            return new MenuChangeCommand(correlation, id, type, getString(data));
+        }
+    }
+
+    private void writeChange(ByteBuffer buffer, MenuChangeCommand cmd) throws TcProtocolException {
+        putCorrelation(buffer, cmd.getCorrelationId());
+        buffer.putInt(cmd.getMenuItemId());
+        buffer.put((byte) MenuChangeCommand.changeTypeToInt(cmd.getChangeType()));
+        if(cmd.getChangeType() == ChangeType.DELTA) {
+            try {
+                buffer.putInt(Integer.parseInt(cmd.getValue()));
+            }
+            catch(NumberFormatException ex) {
+                throw new TcProtocolException("Delta change is not an integer " + cmd.getValue(), ex);
+            }
+        }
+        else if(cmd.getChangeType() == ChangeType.ABSOLUTE_LIST) {
+            var values = cmd.getValues() != null ? cmd.getValues() : List.<String>of();
+            buffer.putShort((short) values.size());
+            for(var value : values) putString(buffer, value);
+        }
+        else {
+            putString(buffer, cmd.getValue());
+        }
+    }
+
+    private MenuCommand readHeartbeat(ByteBuffer data) {
+        int interval = data.getInt();
+        var mode = switch (data.get()) {
+            case 1 -> HeartbeatMode.START;
+            case 2 -> HeartbeatMode.END;
+            default -> HeartbeatMode.NORMAL;
+        };
+        return CommandFactory.newHeartbeatCommand(interval, mode);
+    }
+
+    private void writeHeartbeat(ByteBuffer buffer, MenuHeartbeatCommand cmd) {
+        buffer.putInt(cmd.getHearbeatInterval());
+        buffer.put((byte) switch (cmd.getMode()) {
+            case START -> 1;
+            case END -> 2;
+            default -> 0;
+        });
+    }
+
+    private MenuCommand readAcknowledgement(ByteBuffer data) {
+        var correlation = getCorrelation(data);
+        int code = data.getInt();
+        var status = AckStatus.UNKNOWN_ERROR;
+        for(var s : ACK_STATUSES) {
+            if(s.getStatusCode() == code) {
+                status = s;
+                break;
+            }
+        }
+        return CommandFactory.newAcknowledgementCommand(correlation, status);
+    }
+
+    private void writeAcknowledgement(ByteBuffer buffer, MenuAcknowledgementCommand cmd) {
+        putCorrelation(buffer, cmd.getCorrelationId());
+        buffer.putInt(cmd.getAckStatus().getStatusCode());
+    }
+
+    private MenuCommand readBootstrap(ByteBuffer data) throws TcProtocolException {
+        int type = data.get();
+        if(type < 0 || type >= BOOT_TYPES.length) throw new TcProtocolException("Unknown boot type " + type);
+        // the tree hash and refresh flag were added later, so are only present when there is room for them
+        if(data.remaining() < 9) return new MenuBootstrapCommand(BOOT_TYPES[type]);
+        return new MenuBootstrapCommand(BOOT_TYPES[type], data.getLong(), data.get() != 0);
+    }
+
+    private void writeBootstrap(ByteBuffer buffer, MenuBootstrapCommand cmd) {
+        buffer.put((byte) cmd.getBootType().ordinal());
+        if(cmd.getTreeHash() != 0) {
+            buffer.putLong(cmd.getTreeHash());
+            buffer.put((byte) (cmd.isValueRefresh() ? 1 : 0));
+        }
+    }
+
+    private MenuCommand readAnalogBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        var builder = common.apply(AnalogMenuItemBuilder.anAnalogMenuItemBuilder())
+                .withOffset(data.getInt())
+                .withDivisor(data.getInt())
+                .withMaxValue(data.getInt())
+                .withStep(data.getInt())
+                .withUnit(getString(data));
+        return CommandFactory.newAnalogBootCommand(common.parentId, builder.menuItem(), data.getInt());
+    }
+
+    private void writeAnalogBootItem(ByteBuffer buffer, MenuAnalogBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        var item = cmd.getMenuItem();
+        buffer.putInt(item.getOffset());
+        buffer.putInt(item.getDivisor());
+        buffer.putInt(item.getMaxValue());
+        buffer.putInt(item.getStep());
+        putString(buffer, item.getUnitName());
+        buffer.putInt(cmd.getCurrentValue());
+    }
+
+    private MenuCommand readSubMenuBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        var item = common.apply(SubMenuItemBuilder.aSubMenuItemBuilder()).menuItem();
+        return CommandFactory.newMenuSubBootCommand(common.parentId, item);
+    }
+
+    private MenuCommand readActionBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        var item = common.apply(ActionMenuItemBuilder.anActionMenuItemBuilder()).menuItem();
+        return CommandFactory.newMenuActionBootCommand(common.parentId, item);
+    }
+
+    private MenuCommand readEnumBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        int currentValue = data.getInt();
+        int count = data.getShort() & 0xffff;
+        List<String> entries = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) entries.add(getString(data));
+        var item = common.apply(EnumMenuItemBuilder.anEnumMenuItemBuilder()).withEnumList(entries).menuItem();
+        return CommandFactory.newMenuEnumBootCommand(common.parentId, item, currentValue);
+    }
+
+    private void writeEnumBootItem(ByteBuffer buffer, MenuEnumBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        buffer.putInt(cmd.getCurrentValue());
+        var entries = cmd.getMenuItem().getEnumEntries();
+        buffer.putShort((short) entries.size());
+        for(var entry : entries) putString(buffer, entry);
+    }
+
+    private MenuCommand readBoolBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        var naming = TagValMenuCommandProcessors.toNaming(data.get());
+        boolean currentValue = data.get() != 0;
+        var item = common.apply(BooleanMenuItemBuilder.aBooleanMenuItemBuilder()).withNaming(naming).menuItem();
+        return CommandFactory.newMenuBooleanBootCommand(common.parentId, item, currentValue);
+    }
+
+    private void writeBoolBootItem(ByteBuffer buffer, MenuBooleanBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        buffer.put((byte) TagValMenuCommandProcessors.fromNaming(cmd.getMenuItem().getNaming()));
+        buffer.put((byte) (cmd.getCurrentValue() ? 1 : 0));
+    }
+
+    private MenuCommand readFloatBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        var item = common.apply(FloatMenuItemBuilder.aFloatMenuItemBuilder()).withDecimalPlaces(data.get()).menuItem();
+        return CommandFactory.newMenuFloatBootCommand(common.parentId, item, data.getFloat());
+    }
+
+    private void writeFloatBootItem(ByteBuffer buffer, MenuFloatBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        buffer.put((byte) cmd.getMenuItem().getNumDecimalPlaces());
+        buffer.putFloat(cmd.getCurrentValue());
+    }
+
+    private MenuCommand readTextBootItem(ByteBuffer data) {
+        var common = CommonBootFields.read(data);
+        var item = common.apply(EditableTextMenuItemBuilder.aTextMenuItemBuilder())
+                .withEditItemType(EditItemType.fromId(data.get()))
+                .withLength(data.getShort())
+                .menuItem();
+        return CommandFactory.newMenuTextBootCommand(common.parentId, item, getString(data));
+    }
+
+    private void writeTextBootItem(ByteBuffer buffer, MenuTextBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        buffer.put((byte) cmd.getMenuItem().getItemType().getMsgId());
+        buffer.putShort((short) cmd.getMenuItem().getTextLength());
+        putString(buffer, cmd.getCurrentValue());
+    }
+
+    private void writeCommonBootFields(ByteBuffer buffer, BootItemMenuCommand<?, ?> cmd) {
+        var item = cmd.getMenuItem();
+        buffer.putInt(cmd.getSubMenuId());
+        buffer.putInt(item.getId());
+        buffer.putShort((short) (item.getEepromAddress() < 0 ? NO_EEPROM_ADDRESS : item.getEepromAddress()));
+        buffer.put((byte) ((item.isReadOnly() ? FLAG_READ_ONLY : 0) | (item.isVisible() ? FLAG_VISIBLE : 0)));
+        putString(buffer, item.getName());
+    }
+
+    /**
+     * The fields at the start of every boot item message, read before the type specific fields.
+     */
+    private record CommonBootFields(int parentId, int id, int eeprom, int flags, String name) {
+        static CommonBootFields read(ByteBuffer data) {
+            int parentId = data.getInt();
+            int id = data.getInt();
+            int eeprom = Short.toUnsignedInt(data.getShort());
+            return new CommonBootFields(parentId, id, (eeprom == NO_EEPROM_ADDRESS) ? -1 : eeprom, data.get(), getString(data));
+        }
+
+        <B extends MenuItemBuilder<B, ?>> B apply(B builder) {
+            return builder.withId(id).withEepromAddr(eeprom).withName(name)
+                    .withReadOnly((flags & FLAG_READ_ONLY) != 0)
+                    .withVisible((flags & FLAG_VISIBLE) != 0);
+        }
+    }
+
+    private static CorrelationId getCorrelation(ByteBuffer data) {
+        long id = Integer.toUnsignedLong(data.getInt());
+        return (id == 0) ? CorrelationId.EMPTY_CORRELATION : new CorrelationId(id);
+    }
+
+    private static void putCorrelation(ByteBuffer buffer, CorrelationId correlation) {
+        buffer.putInt((int) correlation.getUnderlyingId());
+    }
+
+    /**
+     * Writes a string as a two byte length followed by the UTF-8 data, encoding straight into the buffer.
+     * @param buffer the buffer to write to
+     * @param value the string to write, null is written as an empty string
+     */
+    public static void putString(ByteBuffer buffer, String value) {
+        int lenPosition = buffer.position();
+        buffer.putShort((short) 0);
+        if(value != null) TagValMenuCommandProcessors.putUtf8(buffer, value, false);
+        buffer.putShort(lenPosition, (short) (buffer.position() - lenPosition - 2));
+    }
+
+    /**
+     * Reads a string that was written by {@link #putString(ByteBuffer, String)}
+     * @param data the buffer to read from
+     * @return the string
+     */
+    public static String getString(ByteBuffer data) {
+        int len = data.getShort() & 0xffff;
+        if(len > data.remaining()) throw new BufferUnderflowException();
+        String str;
+        if(data.hasArray()) {
+            str = new String(data.array(), data.arrayOffset() + data.position(), len, StandardCharsets.UTF_8);
+            data.position(data.position() + len);
+        }
+        else {
+            byte[] bytes = new byte[len];
+            data.get(bytes);
+            str = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return str;
+    }
+}
@@ -22,17 +22,37 @@ public class ConfigurableProtocolConverter implements MenuCommandProtocol {
     private final System.Logger logger = System.getLogger(getClass().getSimpleName());
 
     private final Map<MessageField, TagValProtocolIncomingMsgConverter> tagValIncomingParsers = new HashMap<>(128);
-    private final Map<MessageField, OutputMsgConverterWithType<? extends MenuCommand, StringBuilder>> tagValOutputWriters = new HashMap<>(128);
+    private final Map<MessageField, OutputMsgConverterWithType<? extends MenuCommand, ByteBuffer>> tagValOutputWriters = new HashMap<>(128);
     private final Map<MessageField, RawProtocolIncomingMsgConverter> rawIncomingParsers = new HashMap<>();
     private final Map<MessageField, OutputMsgConverterWithType<? extends MenuCommand, ByteBuffer>> rawOutputWriters = new HashMap<>();
+    private final ThreadLocal<TagValTextParser> tagValParsers = ThreadLocal.withInitial(TagValTextParser::new);
+    private volatile boolean binaryNegotiation;
 
     public ConfigurableProtocolConverter(boolean includeDefaultProcessors) {
         if(includeDefaultProcessors) {
             var tagValProcessors = new TagValMenuCommandProcessors();
             tagValProcessors.addHandlersToProtocol(this);
+            var binaryProcessors = new BinaryMenuCommandProcessors();
+            binaryProcessors.addHandlersToProtocol(this);
+            binaryNegotiation = true;
         }
     }
 
+    /**
+     * Turns on or off the offer to use binary messages during join. It is on by default when the default processors
+     * are included, turning it off means this side always sends tag value messages, although binary messages are
+     * still accepted.
+     * @param binaryNegotiation true to offer binary messages during join
+     */
+    public void setBinaryNegotiation(boolean binaryNegotiation) {
+        this.binaryNegotiation = binaryNegotiation;
+    }
+
+    @Override
+    public boolean supportsBinaryNegotiation() {
+        return binaryNegotiation;
+    }
+
     /**
      * This method adds an additional tag value message processor that can convert an incoming wire message into a
      * command. In this case the processor will take a {@link TagValTextParser} and convert that into a
@@ -47,13 +67,33 @@ public class ConfigurableProtocolConverter implements MenuCommandProtocol {
 
     /**
      * This methods adds an additional tag value message processor that can convert a {@link MenuCommand} into the
-     * appropriate wire format for sending.
+     * appropriate wire format for sending. The processor appends fields to a string builder that is then copied into
+     * the output buffer, see {@link #addTagValBufferOutProcessor(MessageField, ProtocolOutgoingMsgConverter, Class)}
+     * for a version that writes straight into the buffer.
      * @param field the type to convert
      * @param processor the processor that can do the conversion
      * @param clazz the specific message class
      * @param <T> specialization of the message class extending from MenuCommand.
      */
     public <T extends MenuCommand> void addTagValOutProcessor(MessageField field, ProtocolOutgoingMsgConverter<T, StringBuilder> processor, Class<T> clazz) {
+        addTagValBufferOutProcessor(field, (buffer, cmd) -> {
+            StringBuilder sb = new StringBuilder(256);
+            processor.apply(sb, cmd);
+            buffer.put(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }, clazz);
+    }
+
+    /**
+     * This methods adds an additional tag value message processor that converts a {@link MenuCommand} by writing
+     * the tag value fields directly into the output buffer, after the header has been written. Use the appendField
+     * methods in {@link TagValMenuCommandProcessors} that take a ByteBuffer to write each field, the end of message
+     * is added automatically.
+     * @param field the type to convert
+     * @param processor the processor that can do the conversion
+     * @param clazz the specific message class
+     * @param <T> specialization of the message class extending from MenuCommand.
+     */
+    public <T extends MenuCommand> void addTagValBufferOutProcessor(MessageField field, ProtocolOutgoingMsgConverter<T, ByteBuffer> processor, Class<T> clazz) {
         tagValOutputWriters.put(field, new OutputMsgConverterWithType<>(processor, clazz));
     }
 
@@ -71,7 +111,8 @@ public class ConfigurableProtocolConverter implements MenuCommandProtocol {
 
     /**
      * This method adds an addition binary message processor that can convert a {@link MenuCommand} into binary wire
-     * format, you must write 4 bytes containing the length first.
+     * format, you must write 2 bytes containing the length first. When there is also a tag value writer for the same
+     * message, the binary writer is only used for connections that have agreed to binary during join.
      * @param field the message type to convert
      * @param processor the processor for this conversion
      * @param clazz the specific message class
@@ -86,14 +127,20 @@ public class ConfigurableProtocolConverter implements MenuCommandProtocol {
         byte protoId = buffer.get();
         CommandProtocol protocol = CommandProtocol.fromProtocolId(protoId);
 
-        String ty = getMsgTypeFromBuffer(buffer);
-        MessageField cmdType = MessageField.fromId(ty);
-        if(cmdType == null) throw new TcUnknownMessageException("Received unexpected message: " + ty);
-
-        if(protocol == CommandProtocol.TAG_VAL_PROTOCOL && tagValIncomingParsers.containsKey(cmdType)) {
-            TagValTextParser parser = new TagValTextParser(buffer);
-            if (DEBUG_ALL_MESSAGES) logger.log(DEBUG, "Protocol convert in: {0}", parser);
-            return tagValIncomingParsers.get(cmdType).apply(parser);
+        MessageField cmdType = MessageField.fromBytes(buffer.get(), buffer.get());
+
+        TagValProtocolIncomingMsgConverter tagValProcessor;
+        if(protocol == CommandProtocol.TAG_VAL_PROTOCOL && (tagValProcessor = tagValIncomingParsers.get(cmdType)) != null) {
+            // each reading thread reuses its own parser, the parser only indexes the buffer so nothing is copied.
+            TagValTextParser parser = tagValParsers.get();
+            try {
+                parser.parse(buffer);
+                if (DEBUG_ALL_MESSAGES) logger.log(DEBUG, "Protocol convert in: {0}", parser);
+                return tagValProcessor.apply(parser);
+            }
+            finally {
+                parser.clear();
+            }
 
         } else if(protocol == CommandProtocol.RAW_BIN_PROTOCOL && rawIncomingParsers.containsKey(cmdType)){
             buffer.order(ByteOrder.BIG_ENDIAN);
@@ -106,18 +153,28 @@ public class ConfigurableProtocolConverter implements MenuCommandProtocol {
 
     @Override
     public void toChannel(ByteBuffer buffer, MenuCommand cmd) throws TcProtocolException {
+        toChannel(buffer, cmd, CommandProtocol.TAG_VAL_PROTOCOL);
+    }
+
+    /**
+     * Writes the command using the preferred protocol when there is a writer for it, otherwise whichever writer is
+     * available is used. Messages that only have a binary writer are always written in binary.
+     * @param buffer to write the data to
+     * @param cmd the command to write
+     * @param preferred the protocol that the remote has agreed to receive
+     * @throws TcProtocolException if there is no writer for the command
+     */
+    @Override
+    public void toChannel(ByteBuffer buffer, MenuCommand cmd, CommandProtocol preferred) throws TcProtocolException {
         var rawProcessor = rawOutputWriters.get(cmd.getCommandType());
-        if(rawProcessor != null) {
+        var tagWriter = tagValOutputWriters.get(cmd.getCommandType());
+        if(rawProcessor != null && (preferred == CommandProtocol.RAW_BIN_PROTOCOL || tagWriter == null)) {
             writeStandardHeader(buffer, cmd, CommandProtocol.RAW_BIN_PROTOCOL);
             rawProcessor.apply(buffer, cmd);
-        } else if(tagValOutputWriters.containsKey(cmd.getCommandType())) {
-            var tagWriter = tagValOutputWriters.get(cmd.getCommandType());
+        } else if(tagWriter != null) {
             writeStandardHeader(buffer, cmd, CommandProtocol.TAG_VAL_PROTOCOL);
-            StringBuilder sb = new StringBuilder(256);
-            tagWriter.apply(sb, cmd);
-            buffer.put(sb.toString().getBytes(StandardCharsets.UTF_8));
-            buffer.put((byte)0x02);
-
+            tagWriter.apply(buffer, cmd);
+            buffer.put(PROTO_END_OF_MSG);
         }
         else throw new TcProtocolException("Message not processed" + cmd.getCommandType());
     }
@@ -134,10 +191,6 @@ public class ConfigurableProtocolConverter implements MenuCommandProtocol {
         buffer.put((byte) cmd.getCommandType().getLow());
     }
 
-    private String getMsgTypeFromBuffer(ByteBuffer buffer) {
-        return String.valueOf((char) buffer.get()) + (char) buffer.get();
-    }
-
     private static class OutputMsgConverterWithType<T extends MenuCommand, B> {
         private final ProtocolOutgoingMsgConverter<T, B> converter;
         private final Class<T> theClazz;
@@ -28,6 +28,15 @@ public class CorrelationId {
         correlation = (Long.parseLong(correlationAsText, 16));
     }
 
+    /**
+     * Creates a correlation id with the specified underlying value, for existing correlation ids that have already
+     * been decoded from hex.
+     * @param correlation the underlying id to be represented
+     */
+    public CorrelationId(long correlation) {
+        this.correlation = correlation;
+    }
+
     /**
      * Creates a new correlation ID that is relatively unique
      */
@@ -3,9 +3,11 @@ package com.thecoderscorner.menu.remote.protocol;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class MessageField {
     private static final Map<String, MessageField> ALL_FIELDS_MAP = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<MessageField> ASCII_FIELDS = new AtomicReferenceArray<>(128 * 128);
     private final char high;
     private final char low;
 
@@ -14,6 +16,11 @@ public class MessageField {
         this.low = secondByte;
         if(ALL_FIELDS_MAP.containsKey(toId())) throw new IllegalArgumentException("Duplicate key " + high + low);
         ALL_FIELDS_MAP.put(toId(), this);
+        if(high < 128 && low < 128) ASCII_FIELDS.set(asciiIndex(high, low), this);
+    }
+
+    private static int asciiIndex(int high, int low) {
+        return (high << 7) | low;
     }
 
     public char getHigh() {
@@ -35,6 +42,19 @@ public class MessageField {
         throw new IllegalStateException("An unknown message type was generated");
     }
 
+    /**
+     * Gets the message field for the two bytes read from the wire, this is the same as fromId but does not need a
+     * string to be created first.
+     * @param high the first byte of the message type
+     * @param low the second byte of the message type
+     * @return the message field
+     */
+    public static MessageField fromBytes(byte high, byte low) {
+        MessageField field = (high >= 0 && low >= 0) ? ASCII_FIELDS.get(asciiIndex(high, low)) : null;
+        if(field != null) return field;
+        return fromId(String.valueOf((char) (high & 0xff)) + (char) (low & 0xff));
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -16,6 +16,7 @@ import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static com.thecoderscorner.menu.domain.AnalogMenuItemBuilder.anAnalogMenuItemBuilder;
 import static com.thecoderscorner.menu.domain.SubMenuItemBuilder.aSubMenuItemBuilder;
@@ -32,6 +33,10 @@ import static com.thecoderscorner.menu.remote.protocol.TagValMenuFields.*;
  * @see ConfigurableProtocolConverter
  */
 public class TagValMenuCommandProcessors {
+    private static final BootType[] BOOT_TYPES = BootType.values();
+    private static final AckStatus[] ACK_STATUSES = AckStatus.values();
+    private static final MenuButtonType[] BUTTON_TYPES = MenuButtonType.values();
+
     public void addHandlersToProtocol(ConfigurableProtocolConverter proto) {
 
         proto.addTagValInProcessor(MenuCommandType.JOIN, this::processJoin);
@@ -52,25 +57,27 @@ public class TagValMenuCommandProcessors {
         proto.addTagValInProcessor(MenuCommandType.ACKNOWLEDGEMENT, this::processAcknowledgement);
         proto.addTagValInProcessor(MenuCommandType.PAIRING_REQUEST, this::processPairingRequest);
         proto.addTagValInProcessor(MenuCommandType.DIALOG_UPDATE, this::processDialogUpdate);
-
-        proto.addTagValOutProcessor(MenuCommandType.HEARTBEAT, this::writeHeartbeat, MenuHeartbeatCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.JOIN, this::writeJoin, MenuJoinCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.ACKNOWLEDGEMENT, this::writeAcknowledgement, MenuAcknowledgementCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.BOOTSTRAP, this::writeBootstrap, MenuBootstrapCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.ANALOG_BOOT_ITEM, this::writeAnalogItem, MenuAnalogBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.SUBMENU_BOOT_ITEM, this::writeSubMenuItem, MenuSubBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.ENUM_BOOT_ITEM, this::writeEnumMenuItem, MenuEnumBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.ACTION_BOOT_ITEM, this::writeActionBootItem, MenuActionBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.FLOAT_BOOT_ITEM, this::writeFloatBootItem, MenuFloatBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.BOOLEAN_BOOT_ITEM, this::writeBoolMenuItem, MenuBooleanBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.RUNTIME_LIST_BOOT, this::writeRuntimeListBootItem, MenuRuntimeListBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.LARGE_NUM_BOOT_ITEM, this::writeLargeNumberBootItem, MenuLargeNumBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.CHANGE_INT_FIELD, this::writeChangeInt, MenuChangeCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.TEXT_BOOT_ITEM, this::writeTextMenuItem, MenuTextBootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.PAIRING_REQUEST, this::writePairingRequest, MenuPairingCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.DIALOG_UPDATE, this::writeDialogUpdate, MenuDialogCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.BOOT_RGB_COLOR, this::writeRgbBoot, MenuRgb32BootCommand.class);
-        proto.addTagValOutProcessor(MenuCommandType.BOOT_SCROLL_CHOICE, this::writeScrollBoot, MenuScrollChoiceBootCommand.class);
+        proto.addTagValInProcessor(MenuCommandType.SUBSCRIBE, this::processSubscribe);
+
+        proto.addTagValBufferOutProcessor(MenuCommandType.HEARTBEAT, this::writeHeartbeat, MenuHeartbeatCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.JOIN, this::writeJoin, MenuJoinCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.ACKNOWLEDGEMENT, this::writeAcknowledgement, MenuAcknowledgementCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.BOOTSTRAP, this::writeBootstrap, MenuBootstrapCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.ANALOG_BOOT_ITEM, this::writeAnalogItem, MenuAnalogBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.SUBMENU_BOOT_ITEM, this::writeSubMenuItem, MenuSubBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.ENUM_BOOT_ITEM, this::writeEnumMenuItem, MenuEnumBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.ACTION_BOOT_ITEM, this::writeActionBootItem, MenuActionBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.FLOAT_BOOT_ITEM, this::writeFloatBootItem, MenuFloatBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.BOOLEAN_BOOT_ITEM, this::writeBoolMenuItem, MenuBooleanBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.RUNTIME_LIST_BOOT, this::writeRuntimeListBootItem, MenuRuntimeListBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.LARGE_NUM_BOOT_ITEM, this::writeLargeNumberBootItem, MenuLargeNumBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.CHANGE_INT_FIELD, this::writeChangeInt, MenuChangeCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.TEXT_BOOT_ITEM, this::writeTextMenuItem, MenuTextBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.PAIRING_REQUEST, this::writePairingRequest, MenuPairingCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.DIALOG_UPDATE, this::writeDialogUpdate, MenuDialogCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.BOOT_RGB_COLOR, this::writeRgbBoot, MenuRgb32BootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.BOOT_SCROLL_CHOICE, this::writeScrollBoot, MenuScrollChoiceBootCommand.class);
+        proto.addTagValBufferOutProcessor(MenuCommandType.SUBSCRIBE, this::writeSubscribe, MenuSubscribeCommand.class);
     }
 
     public static void putRawLengthInBuffer(ByteBuffer buffer, int len) {
@@ -78,9 +85,13 @@ public class TagValMenuCommandProcessors {
         buffer.put((byte) (len & 0xFF));
     }
 
+    private CorrelationId correlationFromMsg(TagValTextParser parser) {
+        long id = parser.getValueAsHexWithDefault(KEY_CORRELATION_FIELD, 0);
+        return (id == 0) ? CorrelationId.EMPTY_CORRELATION : new CorrelationId(id);
+    }
+
     private MenuCommand processDialogUpdate(TagValTextParser parser) throws TcProtocolException {
-        var cor = parser.getValueWithDefault(KEY_CORRELATION_FIELD, "");
-        var correlationId = (cor.isEmpty()) ? CorrelationId.EMPTY_CORRELATION : new CorrelationId(cor);
+        var correlationId = correlationFromMsg(parser);
 
         return newDialogCommand(
                 asDialogMode(parser.getValue(KEY_MODE_FIELD)),
@@ -103,9 +114,10 @@ public class TagValMenuCommandProcessors {
     }
 
     private MenuButtonType asButton(int req) {
-        return Arrays.stream(MenuButtonType.values())
-                .filter(b -> b.getTypeVal() == req)
-                .findFirst().orElse(MenuButtonType.NONE);
+        for(var button : BUTTON_TYPES) {
+            if(button.getTypeVal() == req) return button;
+        }
+        return MenuButtonType.NONE;
     }
 
     private MenuCommand processPairingRequest(TagValTextParser parser) throws TcProtocolException {
@@ -115,22 +127,35 @@ public class TagValMenuCommandProcessors {
         );
     }
 
+    private MenuCommand processSubscribe(TagValTextParser parser) throws TcProtocolException {
+        var ids = new ArrayList<Integer>();
+        for(var id : parser.getValueWithDefault(KEY_SUBSCRIBED_IDS, "").split(",")) {
+            if(id.isBlank()) continue;
+            try {
+                ids.add(Integer.parseInt(id.trim()));
+            }
+            catch(NumberFormatException ex) {
+                throw new TcProtocolException("Subscription contains an invalid ID " + id);
+            }
+        }
+        return newSubscribeCommand(ids);
+    }
+
     private MenuCommand processAcknowledgement(TagValTextParser parser) throws TcProtocolException {
-        CorrelationId id = new CorrelationId(parser.getValueWithDefault(KEY_CORRELATION_FIELD, "0"));
-        return newAcknowledgementCommand(id, fromCode(parser.getValueAsInt(KEY_ACK_STATUS)));
+        return newAcknowledgementCommand(correlationFromMsg(parser), fromCode(parser.getValueAsInt(KEY_ACK_STATUS)));
     }
 
     private AckStatus fromCode(int codeIn) {
-        return Arrays.stream(AckStatus.values())
-                .filter(s-> s.getStatusCode() == codeIn)
-                .findFirst().orElse(AckStatus.UNKNOWN_ERROR);
+        for(var status : ACK_STATUSES) {
+            if(status.getStatusCode() == codeIn) return status;
+        }
+        return AckStatus.UNKNOWN_ERROR;
     }
 
     private MenuCommand processItemChange(TagValTextParser parser) throws TcProtocolException {
         ChangeType type = MenuChangeCommand.changeTypeFromInt(parser.getValueAsInt(KEY_CHANGE_TYPE));
 
-        var corStr = parser.getValueWithDefault( KEY_CORRELATION_FIELD, "");
-        var correlation = corStr.isEmpty() ? CorrelationId.EMPTY_CORRELATION : new CorrelationId(corStr);
+        var correlation = correlationFromMsg(parser);
         if(type == ChangeType.DELTA) {
             return newDeltaChangeCommand(
                     correlation,
@@ -282,7 +307,7 @@ public class TagValMenuCommandProcessors {
         return newMenuFloatBootCommand(parentId, item, Float.valueOf(currentVal));
     }
 
-    private BooleanMenuItem.BooleanNaming toNaming(int i) {
+    static BooleanMenuItem.BooleanNaming toNaming(int i) {
         if (i == 0) {
             return BooleanMenuItem.BooleanNaming.TRUE_FALSE;
         } else if (i == 1) {
@@ -369,8 +394,9 @@ public class TagValMenuCommandProcessors {
     }
 
     private MenuCommand processBootstrap(TagValTextParser parser) throws TcProtocolException {
-        BootType bt= BootType.valueOf(parser.getValue(KEY_BOOT_TYPE_FIELD));
-        return new MenuBootstrapCommand(bt);
+        BootType bt = parser.getValueAsEnum(KEY_BOOT_TYPE_FIELD, BOOT_TYPES);
+        return new MenuBootstrapCommand(bt, parser.getValueAsHexWithDefault(KEY_TREE_HASH, 0),
+                parser.getValueAsIntWithDefault(KEY_VALUE_REFRESH, 0) != 0);
     }
 
     private MenuCommand processJoin(TagValTextParser parser) throws TcProtocolException {
@@ -381,7 +407,9 @@ public class TagValMenuCommandProcessors {
                 parser.getValue(KEY_NAME_FIELD),
                 ProtocolUtil.fromKeyToApiPlatform(parser.getValueAsInt(KEY_PLATFORM_ID)),
                 parser.getValueAsInt(KEY_VER_FIELD),
-                parser.getValueWithDefault(KEY_SERIAL_NO, "0"));
+                parser.getValueWithDefault(KEY_SERIAL_NO, "0"),
+                parser.getValueAsIntWithDefault(KEY_BINARY_PROTOCOL, 0) != 0,
+                parser.getValueAsHexWithDefault(KEY_TREE_HASH, 0));
     }
 
     private MenuCommand processHeartbeat(TagValTextParser parser) throws TcProtocolException {
@@ -403,13 +431,13 @@ public class TagValMenuCommandProcessors {
         }
     }
 
-    private void writeDialogUpdate(StringBuilder sb, MenuDialogCommand cmd) {
-        appendField(sb, KEY_MODE_FIELD, asWireMode(cmd.getDialogMode()));
-        if(cmd.getHeader() != null) appendField(sb, KEY_HEADER_FIELD, cmd.getHeader());
-        if(cmd.getBuffer() != null) appendField(sb, KEY_BUFFER_FIELD, cmd.getBuffer());
-        appendField(sb, KEY_BUTTON1_FIELD, cmd.getButton1().getTypeVal());
-        appendField(sb, KEY_BUTTON2_FIELD, cmd.getButton2().getTypeVal());
-        appendField(sb, KEY_CORRELATION_FIELD, cmd.getCorrelationId());
+    private void writeDialogUpdate(ByteBuffer buffer, MenuDialogCommand cmd) {
+        appendField(buffer, KEY_MODE_FIELD, asWireMode(cmd.getDialogMode()));
+        if(cmd.getHeader() != null) appendField(buffer, KEY_HEADER_FIELD, cmd.getHeader());
+        if(cmd.getBuffer() != null) appendField(buffer, KEY_BUFFER_FIELD, cmd.getBuffer());
+        appendField(buffer, KEY_BUTTON1_FIELD, cmd.getButton1().getTypeVal());
+        appendField(buffer, KEY_BUTTON2_FIELD, cmd.getButton2().getTypeVal());
+        appendField(buffer, KEY_CORRELATION_FIELD, cmd.getCorrelationId());
     }
 
     private String asWireMode(DialogMode dialogMode) {
@@ -418,17 +446,22 @@ public class TagValMenuCommandProcessors {
         else return "A";
     }
 
-    private void writePairingRequest(StringBuilder sb, MenuPairingCommand cmd) {
-        appendField(sb, KEY_NAME_FIELD, cmd.getName());
-        appendField(sb, KEY_UUID_FIELD, cmd.getUuid());
+    private void writePairingRequest(ByteBuffer buffer, MenuPairingCommand cmd) {
+        appendField(buffer, KEY_NAME_FIELD, cmd.getName());
+        appendField(buffer, KEY_UUID_FIELD, cmd.getUuid());
+    }
+
+    private void writeSubscribe(ByteBuffer buffer, MenuSubscribeCommand cmd) {
+        var ids = cmd.getSubMenuIds().stream().map(String::valueOf).collect(Collectors.joining(","));
+        appendField(buffer, KEY_SUBSCRIBED_IDS, ids);
     }
 
-    private void writeAcknowledgement(StringBuilder sb, MenuAcknowledgementCommand cmd) {
-        appendField(sb, KEY_CORRELATION_FIELD, cmd.getCorrelationId().toString());
-        appendField(sb, KEY_ACK_STATUS, cmd.getAckStatus().getStatusCode());
+    private void writeAcknowledgement(ByteBuffer buffer, MenuAcknowledgementCommand cmd) {
+        appendField(buffer, KEY_CORRELATION_FIELD, cmd.getCorrelationId());
+        appendField(buffer, KEY_ACK_STATUS, cmd.getAckStatus().getStatusCode());
     }
 
-    private void writeHeartbeat(StringBuilder sb, MenuHeartbeatCommand cmd) {
+    private void writeHeartbeat(ByteBuffer buffer, MenuHeartbeatCommand cmd) {
         int hbMode;
         switch(cmd.getMode()) {
             case START:
@@ -442,102 +475,102 @@ public class TagValMenuCommandProcessors {
                 hbMode = 0;
                 break;
         }
-        appendField(sb, HB_FREQUENCY_FIELD, cmd.getHearbeatInterval());
-        appendField(sb, HB_MODE_FIELD, hbMode);
+        appendField(buffer, HB_FREQUENCY_FIELD, cmd.getHearbeatInterval());
+        appendField(buffer, HB_MODE_FIELD, hbMode);
     }
 
-    private void writeChangeInt(StringBuilder sb, MenuChangeCommand cmd) {
-        appendField(sb, KEY_CORRELATION_FIELD, cmd.getCorrelationId());
-        appendField(sb, KEY_ID_FIELD, cmd.getMenuItemId());
-        appendField(sb, KEY_CHANGE_TYPE, MenuChangeCommand.changeTypeToInt(cmd.getChangeType()));
+    private void writeChangeInt(ByteBuffer buffer, MenuChangeCommand cmd) {
+        appendField(buffer, KEY_CORRELATION_FIELD, cmd.getCorrelationId());
+        appendField(buffer, KEY_ID_FIELD, cmd.getMenuItemId());
+        appendField(buffer, KEY_CHANGE_TYPE, MenuChangeCommand.changeTypeToInt(cmd.getChangeType()));
         if(cmd.getChangeType() == ChangeType.ABSOLUTE_LIST) {
-            appendChoices(sb, cmd.getValues());
+            appendChoices(buffer, cmd.getValues());
         }
-        else appendField(sb, KEY_CURRENT_VAL, cmd.getValue());
+        else appendField(buffer, KEY_CURRENT_VAL, cmd.getValue());
     }
 
-    private void writeLargeNumberBootItem(StringBuilder sb, MenuLargeNumBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
+    private void writeLargeNumberBootItem(ByteBuffer buffer, MenuLargeNumBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
         int decimalPlaces = cmd.getMenuItem().getDecimalPlaces();
         boolean isNegativeAllowed = cmd.getMenuItem().isNegativeAllowed();
-        appendField(sb, KEY_FLOAT_DECIMAL_PLACES, decimalPlaces);
-        appendField(sb, KEY_NEGATIVE_ALLOWED, isNegativeAllowed ? 1 : 0);
-        appendField(sb, KEY_MAX_LENGTH, cmd.getMenuItem().getDigitsAllowed());
+        appendField(buffer, KEY_FLOAT_DECIMAL_PLACES, decimalPlaces);
+        appendField(buffer, KEY_NEGATIVE_ALLOWED, isNegativeAllowed ? 1 : 0);
+        appendField(buffer, KEY_MAX_LENGTH, cmd.getMenuItem().getDigitsAllowed());
         NumberFormat fmt = NumberFormat.getInstance(Locale.US);
         fmt.setGroupingUsed(false);
         fmt.setMinimumFractionDigits(decimalPlaces);
         fmt.setMaximumFractionDigits(decimalPlaces);
-        appendField(sb, KEY_CURRENT_VAL, fmt.format(cmd.getCurrentValue()));
+        appendField(buffer, KEY_CURRENT_VAL, fmt.format(cmd.getCurrentValue()));
     }
 
-    private void writeScrollBoot(StringBuilder sb, MenuScrollChoiceBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_WIDTH_FIELD, cmd.getMenuItem().getItemWidth());
-        appendField(sb, KEY_NO_OF_CHOICES, cmd.getMenuItem().getNumEntries());
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue().toString());
+    private void writeScrollBoot(ByteBuffer buffer, MenuScrollChoiceBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_WIDTH_FIELD, cmd.getMenuItem().getItemWidth());
+        appendField(buffer, KEY_NO_OF_CHOICES, cmd.getMenuItem().getNumEntries());
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue().toString());
     }
 
-    private void writeRgbBoot(StringBuilder sb, MenuRgb32BootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_ALPHA_FIELD, cmd.getMenuItem().isIncludeAlphaChannel() ? 1 : 0);
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue().toString());
+    private void writeRgbBoot(ByteBuffer buffer, MenuRgb32BootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_ALPHA_FIELD, cmd.getMenuItem().isIncludeAlphaChannel() ? 1 : 0);
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue().toString());
     }
 
-    private void writeAnalogItem(StringBuilder sb, MenuAnalogBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_ANALOG_OFFSET_FIELD, cmd.getMenuItem().getOffset());
-        appendField(sb, KEY_ANALOG_DIVISOR_FIELD, cmd.getMenuItem().getDivisor());
-        appendField(sb, KEY_ANALOG_MAX_FIELD, cmd.getMenuItem().getMaxValue());
-        appendField(sb, KEY_ANALOG_STEP_FIELD, cmd.getMenuItem().getStep());
-        appendField(sb, KEY_ANALOG_UNIT_FIELD, cmd.getMenuItem().getUnitName());
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue());
+    private void writeAnalogItem(ByteBuffer buffer, MenuAnalogBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_ANALOG_OFFSET_FIELD, cmd.getMenuItem().getOffset());
+        appendField(buffer, KEY_ANALOG_DIVISOR_FIELD, cmd.getMenuItem().getDivisor());
+        appendField(buffer, KEY_ANALOG_MAX_FIELD, cmd.getMenuItem().getMaxValue());
+        appendField(buffer, KEY_ANALOG_STEP_FIELD, cmd.getMenuItem().getStep());
+        appendField(buffer, KEY_ANALOG_UNIT_FIELD, cmd.getMenuItem().getUnitName());
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue());
     }
 
-    private void writeSubMenuItem(StringBuilder sb, MenuSubBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_CURRENT_VAL, "0");
+    private void writeSubMenuItem(ByteBuffer buffer, MenuSubBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_CURRENT_VAL, "0");
     }
 
-    private void writeActionBootItem(StringBuilder sb, MenuActionBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_CURRENT_VAL, "");
+    private void writeActionBootItem(ByteBuffer buffer, MenuActionBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_CURRENT_VAL, "");
     }
 
-    private void writeBoolMenuItem(StringBuilder sb, MenuBooleanBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_BOOLEAN_NAMING, fromNaming(cmd.getMenuItem().getNaming()));
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue() ? 1  : 0);
+    private void writeBoolMenuItem(ByteBuffer buffer, MenuBooleanBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_BOOLEAN_NAMING, fromNaming(cmd.getMenuItem().getNaming()));
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue() ? 1  : 0);
     }
 
-    private void writeCommonBootFields(StringBuilder sb, BootItemMenuCommand<?, ?> cmd) {
-        appendField(sb, KEY_PARENT_ID_FIELD, cmd.getSubMenuId());
-        appendField(sb, KEY_ID_FIELD, cmd.getMenuItem().getId());
-        appendField(sb, KEY_EEPROM_FIELD, cmd.getMenuItem().getEepromAddress());
-        appendField(sb, KEY_NAME_FIELD, cmd.getMenuItem().getName());
-        appendField(sb, KEY_READONLY_FIELD, cmd.getMenuItem().isReadOnly() ? 1 : 0);
-        appendField(sb, KEY_VISIBLE_FIELD, cmd.getMenuItem().isVisible() ? 1 : 0);
+    private void writeCommonBootFields(ByteBuffer buffer, BootItemMenuCommand<?, ?> cmd) {
+        appendField(buffer, KEY_PARENT_ID_FIELD, cmd.getSubMenuId());
+        appendField(buffer, KEY_ID_FIELD, cmd.getMenuItem().getId());
+        appendField(buffer, KEY_EEPROM_FIELD, cmd.getMenuItem().getEepromAddress());
+        appendField(buffer, KEY_NAME_FIELD, cmd.getMenuItem().getName());
+        appendField(buffer, KEY_READONLY_FIELD, cmd.getMenuItem().isReadOnly() ? 1 : 0);
+        appendField(buffer, KEY_VISIBLE_FIELD, cmd.getMenuItem().isVisible() ? 1 : 0);
     }
 
-    private void writeRuntimeListBootItem(StringBuilder sb, MenuRuntimeListBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendChoices(sb, cmd.getCurrentValue());
+    private void writeRuntimeListBootItem(ByteBuffer buffer, MenuRuntimeListBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendChoices(buffer, cmd.getCurrentValue());
 
     }
 
-    private void writeFloatBootItem(StringBuilder sb, MenuFloatBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_FLOAT_DECIMAL_PLACES, cmd.getMenuItem().getNumDecimalPlaces());
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue());
+    private void writeFloatBootItem(ByteBuffer buffer, MenuFloatBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_FLOAT_DECIMAL_PLACES, cmd.getMenuItem().getNumDecimalPlaces());
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue());
     }
 
-    private void writeTextMenuItem(StringBuilder sb, MenuTextBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_MAX_LENGTH, cmd.getMenuItem().getTextLength());
-        appendField(sb, KEY_EDIT_TYPE, cmd.getMenuItem().getItemType().getMsgId());
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue());
+    private void writeTextMenuItem(ByteBuffer buffer, MenuTextBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_MAX_LENGTH, cmd.getMenuItem().getTextLength());
+        appendField(buffer, KEY_EDIT_TYPE, cmd.getMenuItem().getItemType().getMsgId());
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue());
     }
 
-    private int fromNaming(BooleanMenuItem.BooleanNaming naming) {
+    static int fromNaming(BooleanMenuItem.BooleanNaming naming) {
         switch (naming) {
 
             case ON_OFF:
@@ -552,35 +585,155 @@ public class TagValMenuCommandProcessors {
         }
     }
 
-    private void writeEnumMenuItem(StringBuilder sb, MenuEnumBootCommand cmd) {
-        writeCommonBootFields(sb, cmd);
-        appendField(sb, KEY_CURRENT_VAL, cmd.getCurrentValue());
+    private void writeEnumMenuItem(ByteBuffer buffer, MenuEnumBootCommand cmd) {
+        writeCommonBootFields(buffer, cmd);
+        appendField(buffer, KEY_CURRENT_VAL, cmd.getCurrentValue());
         List<String> entries = cmd.getMenuItem().getEnumEntries();
-        appendChoices(sb, entries);
+        appendChoices(buffer, entries);
     }
 
-    private void appendChoices(StringBuilder sb, List<String> entries) {
+    private void appendChoices(ByteBuffer buffer, List<String> entries) {
         if(entries == null) {
-            appendField(sb, KEY_NO_OF_CHOICES, 0);
+            appendField(buffer, KEY_NO_OF_CHOICES, 0);
         }
         else {
-            appendField(sb, KEY_NO_OF_CHOICES, entries.size());
+            appendField(buffer, KEY_NO_OF_CHOICES, entries.size());
             for (int i = 0; i < entries.size(); ++i) {
-                appendField(sb, KEY_PREPEND_CHOICE + (char) ('A' + i), entries.get(i));
+                appendField(buffer, KEY_PREPEND_CHOICE + (char) ('A' + i), entries.get(i));
             }
         }
     }
 
-    private void writeBootstrap(StringBuilder sb, MenuBootstrapCommand cmd) {
-        appendField(sb, KEY_BOOT_TYPE_FIELD, cmd.getBootType());
+    private void writeBootstrap(ByteBuffer buffer, MenuBootstrapCommand cmd) {
+        appendField(buffer, KEY_BOOT_TYPE_FIELD, cmd.getBootType());
+        if(cmd.getTreeHash() != 0) appendField(buffer, KEY_TREE_HASH, Long.toHexString(cmd.getTreeHash()));
+        if(cmd.isValueRefresh()) appendField(buffer, KEY_VALUE_REFRESH, 1);
+    }
+
+    private void writeJoin(ByteBuffer buffer, MenuJoinCommand cmd) {
+        appendField(buffer, KEY_NAME_FIELD, cmd.getMyName());
+        appendField(buffer, KEY_UUID_FIELD, cmd.getAppUuid());
+        appendField(buffer, KEY_VER_FIELD, cmd.getApiVersion());
+        appendField(buffer, KEY_PLATFORM_ID, cmd.getPlatform().getKey());
+        appendField(buffer, KEY_SERIAL_NO, cmd.getSerialNumber());
+        if(cmd.isBinaryCapable()) appendField(buffer, KEY_BINARY_PROTOCOL, 1);
+        if(cmd.getKnownTreeHash() != 0) appendField(buffer, KEY_TREE_HASH, Long.toHexString(cmd.getKnownTreeHash()));
+    }
+
+    /**
+     * Appends a field with a string value directly into the buffer, escaping any field separators and encoding the
+     * value as UTF-8 without creating any intermediate copies.
+     * @param buffer the buffer to write the field into
+     * @param key the key of the field
+     * @param value the value of the field
+     */
+    public static void appendField(ByteBuffer buffer, String key, String value) {
+        putKey(buffer, key);
+        putUtf8(buffer, value, true);
+        buffer.put((byte) TagValTextParser.FIELD_TERMINATOR);
+    }
+
+    /**
+     * Appends a field with an integer value directly into the buffer as decimal digits.
+     * @param buffer the buffer to write the field into
+     * @param key the key of the field
+     * @param value the value of the field
+     */
+    public static void appendField(ByteBuffer buffer, String key, long value) {
+        putKey(buffer, key);
+        if(value < 0) {
+            buffer.put((byte) '-');
+        }
+        else {
+            value = -value;
+        }
+        // digits are produced from the negative value so that Long.MIN_VALUE works
+        long divisor = 1;
+        while(value / divisor <= -10) divisor *= 10;
+        while(divisor != 0) {
+            buffer.put((byte) ('0' - (value / divisor)));
+            value %= divisor;
+            divisor /= 10;
+        }
+        buffer.put((byte) TagValTextParser.FIELD_TERMINATOR);
+    }
+
+    /**
+     * Appends a correlation id field directly into the buffer, in the same zero padded hex form as its toString.
+     * @param buffer the buffer to write the field into
+     * @param key the key of the field
+     * @param correlationId the correlation to write
+     */
+    public static void appendField(ByteBuffer buffer, String key, CorrelationId correlationId) {
+        putKey(buffer, key);
+        long id = correlationId.getUnderlyingId();
+        int digits = Math.max(8, (67 - Long.numberOfLeadingZeros(id)) / 4);
+        for(int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            buffer.put((byte) Character.forDigit((int) ((id >>> shift) & 0x0f), 16));
+        }
+        buffer.put((byte) TagValTextParser.FIELD_TERMINATOR);
+    }
+
+    /**
+     * Appends a field of any type directly into the buffer. Strings are escaped, integers and correlation ids are
+     * written without conversion to a string, and anything else is written using its string form.
+     * @param buffer the buffer to write the field into
+     * @param key the key of the field
+     * @param value the value of the field
+     */
+    public static void appendField(ByteBuffer buffer, String key, Object value) {
+        if(value instanceof String str) {
+            appendField(buffer, key, str);
+        }
+        else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            appendField(buffer, key, ((Number) value).longValue());
+        }
+        else if(value instanceof CorrelationId correlation) {
+            appendField(buffer, key, correlation);
+        }
+        else {
+            putKey(buffer, key);
+            putUtf8(buffer, String.valueOf(value), false);
+            buffer.put((byte) TagValTextParser.FIELD_TERMINATOR);
+        }
+    }
+
+    static void putUtf8(ByteBuffer buffer, String value, boolean escapeSeparators) {
+        int len = value.length();
+        for(int i = 0; i < len; i++) {
+            char ch = value.charAt(i);
+            if(ch < 0x80) {
+                if(escapeSeparators && (ch == '|' || ch == '=')) buffer.put((byte) '\\');
+                buffer.put((byte) ch);
+            }
+            else if(ch < 0x800) {
+                buffer.put((byte) (0xc0 | (ch >> 6)));
+                buffer.put((byte) (0x80 | (ch & 0x3f)));
+            }
+            else if(Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, value.charAt(++i));
+                buffer.put((byte) (0xf0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (cp & 0x3f)));
+            }
+            else if(Character.isSurrogate(ch)) {
+                // unpaired surrogate, replaced in the same way as String.getBytes
+                buffer.put((byte) '?');
+            }
+            else {
+                buffer.put((byte) (0xe0 | (ch >> 12)));
+                buffer.put((byte) (0x80 | ((ch >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (ch & 0x3f)));
+            }
+        }
     }
 
-    private void writeJoin(StringBuilder sb, MenuJoinCommand cmd) {
-        appendField(sb, KEY_NAME_FIELD, cmd.getMyName());
-        appendField(sb, KEY_UUID_FIELD, cmd.getAppUuid());
-        appendField(sb, KEY_VER_FIELD, cmd.getApiVersion());
-        appendField(sb, KEY_PLATFORM_ID, cmd.getPlatform().getKey());
-        appendField(sb, KEY_SERIAL_NO, cmd.getSerialNumber());
+    private static void putKey(ByteBuffer buffer, String key) {
+        for(int i = 0; i < key.length(); i++) {
+            buffer.put((byte) key.charAt(i));
+        }
+        buffer.put((byte) '=');
     }
 
     public static void appendField(StringBuilder sb, String key, Object value) {
@@ -50,5 +50,9 @@ public interface TagValMenuFields {
     String KEY_HEADER_FIELD = "HF";
     String KEY_BUTTON1_FIELD = "B1";
     String KEY_BUTTON2_FIELD = "B2";
+    String KEY_BINARY_PROTOCOL = "PB";
+    String KEY_SUBSCRIBED_IDS = "SI";
+    String KEY_TREE_HASH = "TH";
+    String KEY_VALUE_REFRESH = "VR";
 }
 
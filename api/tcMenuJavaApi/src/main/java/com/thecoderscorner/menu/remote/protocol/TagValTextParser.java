@@ -10,17 +10,47 @@ import com.thecoderscorner.menu.remote.MenuCommandProtocol;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * This is the parser implementation that understands tag value format and can convert the tags back into
  * a series of tags and values suitable for the protocol to decode messages.
+ * <p>
+ * Rather than copying each key and value out of the message, the parser records the offset of every field within
+ * the buffer in a primitive index. Integer, hex and enum values are then decoded straight from the message bytes,
+ * and only values requested as strings are ever turned into a String. A single instance can be reused for many
+ * messages by calling {@link #parse(ByteBuffer)}, in which case the index arrays are reused too. Any values must be
+ * read before the buffer is modified, as the parser does not take a copy of it.
  */
 public class TagValTextParser {
     public static final char FIELD_TERMINATOR = '|';
-    private static final int MAX_FIELD_EXPECTED = 256;
-    private final Map<String, String> keyToValue = new HashMap<>(32);
+    private static final int INITIAL_FIELDS = 32;
+    private static final int KEY_NOT_PACKED = -1;
+
+    private ByteBuffer buffer;
+    private int fieldCount;
+    private int[] fieldKeys = new int[INITIAL_FIELDS];
+    private int[] keyStarts = new int[INITIAL_FIELDS];
+    private int[] keyEnds = new int[INITIAL_FIELDS];
+    private int[] valueStarts = new int[INITIAL_FIELDS];
+    private int[] valueEnds = new int[INITIAL_FIELDS];
+    private boolean[] valueEscaped = new boolean[INITIAL_FIELDS];
+    private byte[] scratch = new byte[64];
+    private byte[] decodeSource;
+    private int decodeOffset;
+
+    // state of the last token read by readToken
+    private int tokenEnd;
+    private int tokenPacked;
+    private boolean tokenEscaped;
+    private boolean tokenAtEnd;
+
+    /**
+     * Creates an empty parser that can be reused for many messages by calling {@link #parse(ByteBuffer)}.
+     */
+    public TagValTextParser() {
+    }
 
     /**
      * Creates an instance that contains all the tags and values in a map, that can
@@ -29,47 +59,227 @@ public class TagValTextParser {
      * @throws IOException if the buffer is invalid
      */
     public TagValTextParser(ByteBuffer buffer) throws IOException {
+        parse(buffer);
+    }
+
+    /**
+     * Indexes the fields of the message starting at the current position of the buffer, replacing anything that was
+     * previously parsed. On return the buffer is positioned immediately after the end of message, or at the limit if
+     * there was no end of message marker.
+     * @param buffer a buffer containing a message.
+     * @throws IOException if the buffer is invalid
+     */
+    public void parse(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        fieldCount = 0;
+        int pos = buffer.position();
+        int limit = buffer.limit();
         boolean foundEnd = false;
-        while(buffer.hasRemaining() && !foundEnd) {
-            String key = readString(buffer);
-            if(key.isEmpty()) {
-                throw new TcProtocolException("Key is empty in protocol");
-            }
-            else if(key.charAt(0) == MenuCommandProtocol.PROTO_END_OF_MSG) {
-                foundEnd = true;
-            }
-            else {
-                String value = readString(buffer);
-                if (!value.isEmpty() && value.charAt(0) == MenuCommandProtocol.PROTO_END_OF_MSG) {
+        try {
+            while (pos < limit && !foundEnd) {
+                int keyStart = pos;
+                pos = readToken(pos, limit);
+                if (tokenAtEnd) {
                     foundEnd = true;
+                    continue;
+                }
+                int keyEnd = tokenEnd;
+                int keyPacked = tokenPacked;
+                if (keyEnd == keyStart) {
+                    throw new TcProtocolException("Key is empty in protocol");
                 }
-                keyToValue.put(key, value);
+
+                int valueStart = pos;
+                pos = readToken(pos, limit);
+                foundEnd = tokenAtEnd;
+                addField(keyPacked, keyStart, keyEnd, valueStart, tokenEnd, tokenEscaped);
             }
+        } finally {
+            buffer.position(pos);
         }
     }
 
-    private String readString(ByteBuffer buffer) {
-        byte rawData[] = new byte[MAX_FIELD_EXPECTED];
-        int position = 0;
-        while(buffer.hasRemaining() && position < MAX_FIELD_EXPECTED) {
-            var by = buffer.get();
-            if(by == MenuCommandProtocol.PROTO_END_OF_MSG) {
-                return "\u0002";
-            }
-            else if(by == '\\') {
+    /**
+     * Releases the buffer that was last parsed, so that a reused parser does not hold onto it. After this call no
+     * values are available until the next parse.
+     */
+    public void clear() {
+        buffer = null;
+        // this can point at the array behind the buffer, so must be released with it
+        decodeSource = null;
+        fieldCount = 0;
+    }
+
+    /**
+     * @return the number of fields that were found in the last message parsed
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    private int readToken(int pos, int limit) {
+        int packed = 0;
+        int len = 0;
+        tokenEscaped = false;
+        tokenAtEnd = false;
+        while (pos < limit) {
+            byte by = buffer.get(pos++);
+            if (by == MenuCommandProtocol.PROTO_END_OF_MSG) {
+                tokenAtEnd = true;
+                tokenEnd = pos - 1;
+                return pos;
+            } else if (by == '=' || by == FIELD_TERMINATOR) {
+                tokenEnd = pos - 1;
+                tokenPacked = len > 3 ? KEY_NOT_PACKED : (len << 24) | packed;
+                return pos;
+            } else if (by == '\\') {
                 // special escape case allows anything to be sent
-                rawData[position++] = buffer.get();
+                tokenEscaped = true;
+                if (pos == limit) break;
+                by = buffer.get(pos++);
             }
-            else if(by == '=' || by == TagValTextParser.FIELD_TERMINATOR) {
-                // end of current token
-                return new String(rawData, 0, position);
-            }
-            else {
-                // within current token
-                rawData[position++] = by;
+            if (len < 3) packed = (packed << 8) | (by & 0xff);
+            len++;
+        }
+        tokenEnd = pos;
+        tokenPacked = len > 3 ? KEY_NOT_PACKED : (len << 24) | packed;
+        return pos;
+    }
+
+    private void addField(int packed, int keyStart, int keyEnd, int valueStart, int valueEnd, boolean escaped) {
+        if (fieldCount == fieldKeys.length) {
+            int newSize = fieldCount * 2;
+            fieldKeys = Arrays.copyOf(fieldKeys, newSize);
+            keyStarts = Arrays.copyOf(keyStarts, newSize);
+            keyEnds = Arrays.copyOf(keyEnds, newSize);
+            valueStarts = Arrays.copyOf(valueStarts, newSize);
+            valueEnds = Arrays.copyOf(valueEnds, newSize);
+            valueEscaped = Arrays.copyOf(valueEscaped, newSize);
+        }
+        fieldKeys[fieldCount] = packed;
+        keyStarts[fieldCount] = keyStart;
+        keyEnds[fieldCount] = keyEnd;
+        valueStarts[fieldCount] = valueStart;
+        valueEnds[fieldCount] = valueEnd;
+        valueEscaped[fieldCount] = escaped;
+        fieldCount++;
+    }
+
+    private static int packKey(String key) {
+        int len = key.length();
+        if (len > 3) return KEY_NOT_PACKED;
+        int packed = 0;
+        for (int i = 0; i < len; i++) {
+            char ch = key.charAt(i);
+            if (ch > 0xff) return KEY_NOT_PACKED;
+            packed = (packed << 8) | ch;
+        }
+        return (len << 24) | packed;
+    }
+
+    /**
+     * Finds the index of the field with the given key, where a key is repeated the last one wins.
+     */
+    private int findField(String key) {
+        int packed = packKey(key);
+        for (int i = fieldCount - 1; i >= 0; i--) {
+            if (packed != KEY_NOT_PACKED) {
+                if (fieldKeys[i] == packed) return i;
+            } else if (fieldKeys[i] == KEY_NOT_PACKED && keyMatches(i, key)) {
+                return i;
             }
         }
-        return new String(rawData, 0, position);
+        return -1;
+    }
+
+    private boolean keyMatches(int field, String key) {
+        int idx = 0;
+        int pos = keyStarts[field];
+        int end = keyEnds[field];
+        while (pos < end) {
+            byte by = buffer.get(pos++);
+            if (by == '\\' && pos < end) by = buffer.get(pos++);
+            if (idx >= key.length() || key.charAt(idx++) != (by & 0xff)) return false;
+        }
+        return idx == key.length();
+    }
+
+    /**
+     * Makes the value of a field available in decodeSource from decodeOffset, removing any escaping.
+     * @return the length of the decoded value
+     */
+    private int prepareValue(int field) {
+        int start = valueStarts[field];
+        int end = valueEnds[field];
+        if (!valueEscaped[field] && buffer.hasArray()) {
+            decodeSource = buffer.array();
+            decodeOffset = buffer.arrayOffset() + start;
+            return end - start;
+        }
+
+        if (scratch.length < end - start) scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        int len = 0;
+        int pos = start;
+        while (pos < end) {
+            byte by = buffer.get(pos++);
+            if (by == '\\' && valueEscaped[field] && pos < end) by = buffer.get(pos++);
+            scratch[len++] = by;
+        }
+        decodeSource = scratch;
+        decodeOffset = 0;
+        return len;
+    }
+
+    private String valueAsString(int field) {
+        int len = prepareValue(field);
+        return new String(decodeSource, decodeOffset, len, StandardCharsets.UTF_8);
+    }
+
+    private int valueAsInt(int field) {
+        int len = prepareValue(field);
+        byte[] data = decodeSource;
+        int pos = decodeOffset;
+        int end = decodeOffset + len;
+        if (len == 0) throw invalidNumber(field);
+
+        boolean negative = false;
+        if (data[pos] == '-' || data[pos] == '+') {
+            negative = data[pos] == '-';
+            if (++pos == end) throw invalidNumber(field);
+        }
+
+        // accumulate negatively so that Integer.MIN_VALUE can be represented, as Integer.parseInt does.
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multMin = limit / 10;
+        int result = 0;
+        while (pos < end) {
+            int digit = data[pos++] - '0';
+            if (digit < 0 || digit > 9 || result < multMin) throw invalidNumber(field);
+            result *= 10;
+            if (result < limit + digit) throw invalidNumber(field);
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private long valueAsHex(int field) {
+        int len = prepareValue(field);
+        if (len == 0 || len > 16) throw invalidNumber(field);
+        long result = 0;
+        for (int i = decodeOffset; i < decodeOffset + len; i++) {
+            int digit = Character.digit(decodeSource[i], 16);
+            if (digit < 0) throw invalidNumber(field);
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    private NumberFormatException invalidNumber(int field) {
+        return new NumberFormatException("For input string: \"" + valueAsString(field) + "\"");
+    }
+
+    private TcProtocolException missingKey(String key) {
+        return new TcProtocolException("Key " + key + " doesn't exist in " + this);
     }
 
     /**
@@ -79,12 +289,9 @@ public class TagValTextParser {
      * @return the associated value
      */
     public String getValue(String keyMsgType) throws TcProtocolException {
-        if(keyToValue.containsKey(keyMsgType)) {
-            return keyToValue.get(keyMsgType);
-        }
-        else {
-            throw new TcProtocolException("Key " + keyMsgType + " doesn't exist in " + keyToValue);
-        }
+        int field = findField(keyMsgType);
+        if(field == -1) throw missingKey(keyMsgType);
+        return valueAsString(field);
     }
 
     /**
@@ -94,34 +301,81 @@ public class TagValTextParser {
      * @return the associated value or the default
      */
     public String getValueWithDefault(String keyMsgType, String defaultVal) {
-        return keyToValue.getOrDefault(keyMsgType, defaultVal);
+        int field = findField(keyMsgType);
+        return (field == -1) ? defaultVal : valueAsString(field);
     }
 
     /**
-     * Calls the getValue method first and the converts to an integer.
+     * Decodes the value associated with the key directly as an integer.
      * @param keyIdField the key to obtain
      * @return the integer value associated
      */
     public int getValueAsInt(String keyIdField) throws TcProtocolException {
-        return Integer.parseInt(getValue(keyIdField));
+        int field = findField(keyIdField);
+        if(field == -1) throw missingKey(keyIdField);
+        return valueAsInt(field);
     }
 
     /**
-     * Calls the getValue method first and the converts to an integer.
+     * Decodes the value associated with the key directly as an integer, returning the default if it is not present.
      * @param keyIdField the key to obtain
      * @return the integer value associated
      */
     public int getValueAsIntWithDefault(String keyIdField, int defaultVal) throws TcProtocolException {
-        if(keyToValue.containsKey(keyIdField)) {
-            return Integer.parseInt(getValue(keyIdField));
+        int field = findField(keyIdField);
+        return (field == -1) ? defaultVal : valueAsInt(field);
+    }
+
+    /**
+     * Decodes the value associated with the key directly from hex, as used by correlation IDs. Correlation fields are
+     * often sent empty, so the default is returned if the key is either missing or has no value.
+     * @param keyIdField the key to obtain
+     * @param defaultVal the value to return if the field is missing or empty
+     * @return the value decoded from hex, or the default
+     */
+    public long getValueAsHexWithDefault(String keyIdField, long defaultVal) {
+        int field = findField(keyIdField);
+        if(field == -1 || valueStarts[field] == valueEnds[field]) return defaultVal;
+        return valueAsHex(field);
+    }
+
+    /**
+     * Decodes the value associated with the key as one of the enum values provided, by comparing the name of each
+     * value directly with the message bytes. Pass a cached copy of values() to avoid allocating a new array.
+     * @param keyIdField the key to obtain
+     * @param values the possible values of the enum
+     * @return the matching enum value
+     * @param <T> the enum type
+     * @throws TcProtocolException if the key is missing or the value does not match any enum value
+     */
+    public <T extends Enum<T>> T getValueAsEnum(String keyIdField, T[] values) throws TcProtocolException {
+        int field = findField(keyIdField);
+        if(field == -1) throw missingKey(keyIdField);
+        int len = prepareValue(field);
+        for(var value : values) {
+            if(nameMatches(value.name(), len)) return value;
         }
-        else return defaultVal;
+        throw new TcProtocolException("Value " + valueAsString(field) + " for key " + keyIdField + " is not a valid enum value");
+    }
+
+    private boolean nameMatches(String name, int len) {
+        if(name.length() != len) return false;
+        for(int i = 0; i < len; i++) {
+            if(name.charAt(i) != (decodeSource[decodeOffset + i] & 0xff)) return false;
+        }
+        return true;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(255);
-        keyToValue.forEach((k, v) -> sb.append("[Key='").append(k).append("', val='").append(v).append("'] "));
+        for(int i = 0; i < fieldCount; i++) {
+            sb.append("[Key='");
+            for(int pos = keyStarts[i]; pos < keyEnds[i]; pos++) {
+                sb.append((char)(buffer.get(pos) & 0xff));
+            }
+            sb.append("', val='").append(valueAsString(i)).append("'] ");
+        }
         return sb.toString();
     }
 }
@@ -1,5 +1,6 @@
 package com.thecoderscorner.menu.remote.socket;
 
+import com.thecoderscorner.menu.remote.ConnectionThreadMode;
 import com.thecoderscorner.menu.remote.LocalIdentifier;
 import com.thecoderscorner.menu.remote.MenuCommandProtocol;
 import com.thecoderscorner.menu.remote.RemoteInformation;
@@ -25,6 +26,7 @@ public class SocketClientRemoteServer {
     private final Clock clock;
     private final EncryptionHandlerFactory encryptionFactory;
     private final Semaphore connectionSemaphore;
+    private final ConnectionThreadMode threadMode;
 
     private final Map<UuidAndSerial, SocketClientRemoteConnector> mapOfConnections = new ConcurrentHashMap<>();
     private final List<SocketClientServerListener> connectionListeners = new CopyOnWriteArrayList<>();
@@ -35,6 +37,13 @@ public class SocketClientRemoteServer {
     protected SocketClientRemoteServer(int port, LocalIdentifier localId, ScheduledExecutorService executor,
                                        MenuCommandProtocol protocol, Clock clock, EncryptionHandlerFactory encryptionFactory,
                                        int maximumInstances) {
+        this(port, localId, executor, protocol, clock, encryptionFactory, maximumInstances, ConnectionThreadMode.PLATFORM);
+    }
+
+    protected SocketClientRemoteServer(int port, LocalIdentifier localId, ScheduledExecutorService executor,
+                                       MenuCommandProtocol protocol, Clock clock, EncryptionHandlerFactory encryptionFactory,
+                                       int maximumInstances, ConnectionThreadMode threadMode) {
+        this.threadMode = threadMode;
         this.port = port;
         this.localId = localId;
         this.executor = executor;
@@ -56,8 +65,7 @@ public class SocketClientRemoteServer {
         serverSocket = ServerSocketChannel.open();
         serverSocket.configureBlocking(true);
         serverSocket.socket().bind(new InetSocketAddress(3333));
-        connectionThread = new Thread(this::acceptConnections);
-        connectionThread.start();
+        connectionThread = threadMode.startThread("accept-" + port, this::acceptConnections);
     }
 
     public void stop() throws IOException {
@@ -88,6 +96,7 @@ public class SocketClientRemoteServer {
                 logger.log(System.Logger.Level.INFO, "Accepted client " + sock.getRemoteAddress());
                 SocketClientRemoteConnector connector = new SocketClientRemoteConnector(localId, executor, clock, protocol, sock,
                         this::onConnectionClose, encryptionFactory.create());
+                connector.setThreadMode(threadMode);
                 var uuidSerial = UuidAndSerial.fromRemote(connector.getRemoteParty());
                 mapOfConnections.put(uuidSerial, connector);
                 for(var listener : connectionListeners) {
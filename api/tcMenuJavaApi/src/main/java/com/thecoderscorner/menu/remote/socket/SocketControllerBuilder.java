@@ -9,6 +9,7 @@ package com.thecoderscorner.menu.remote.socket;
 import com.thecoderscorner.menu.domain.state.MenuTree;
 import com.thecoderscorner.menu.remote.*;
 import com.thecoderscorner.menu.remote.encryption.AESEncryptionHandlerFactory;
+import com.thecoderscorner.menu.remote.encryption.EncryptMode;
 import com.thecoderscorner.menu.remote.encryption.EncryptionHandlerFactory;
 import com.thecoderscorner.menu.remote.encryption.NoEncryptionHandlerFactory;
 import com.thecoderscorner.menu.remote.encryption.ProtocolEncryptionHandler;
@@ -49,7 +50,9 @@ public class SocketControllerBuilder implements ConnectorFactory {
     private int maximumInstances = 99999;
     private String encryptedAesIv;
     private String encryptedAesKey;
+    private EncryptMode encryptMode = EncryptMode.AES_ENCRYPTION;
     private EncryptionHandlerFactory encryptionHandlerFactory;
+    private ConnectionThreadMode threadMode = ConnectionThreadMode.PLATFORM;
 
     /**
      * Optional, defaults to system clock but can be overriden
@@ -144,6 +147,17 @@ public class SocketControllerBuilder implements ConnectorFactory {
         return this;
     }
 
+    /**
+     * Optional, defaults to platform threads. When set to virtual, the connection loop of each connector runs on a
+     * virtual thread instead of holding a thread from the executor, this is useful when connecting to many devices.
+     * @param threadMode the thread mode for connection loops
+     * @return itself, suitable for chaining
+     */
+    public SocketControllerBuilder withThreadMode(ConnectionThreadMode threadMode) {
+        this.threadMode = threadMode;
+        return this;
+    }
+
     /**
      * Once the above methods have been called to fill in the blanks, then call build to get
      * the actual instance.
@@ -161,6 +175,7 @@ public class SocketControllerBuilder implements ConnectorFactory {
                 new LocalIdentifier(uuid, name), executorService, clock,
                 protocol, address, port, ConnectMode.FULLY_AUTHENTICATED, handler
         );
+        connector.setThreadMode(threadMode);
         return new RemoteMenuController(connector, menuTree);
     }
 
@@ -172,7 +187,8 @@ public class SocketControllerBuilder implements ConnectorFactory {
     public SocketClientRemoteServer buildClient() {
         initialiseBasics();
         var localId = new LocalIdentifier(uuid, name);
-        return new SocketClientRemoteServer(port, localId, executorService, protocol, clock, encryptionHandlerFactory, maximumInstances);
+        return new SocketClientRemoteServer(port, localId, executorService, protocol, clock, encryptionHandlerFactory,
+                maximumInstances, threadMode);
     }
 
     private void initialiseBasics() {
@@ -189,7 +205,7 @@ public class SocketControllerBuilder implements ConnectorFactory {
         }
 
         if(encryptedAesKey != null && encryptedAesIv != null) {
-            encryptionHandlerFactory = new AESEncryptionHandlerFactory(encryptedAesKey);
+            encryptionHandlerFactory = new AESEncryptionHandlerFactory(encryptedAesKey, encryptMode);
         } else {
             encryptionHandlerFactory = new NoEncryptionHandlerFactory();
         }
@@ -209,6 +225,7 @@ public class SocketControllerBuilder implements ConnectorFactory {
                 new LocalIdentifier(uuid, name), executorService, clock,
                 protocol, address, port, ConnectMode.PAIRING_CONNECTION, handler
         );
+        connector.setThreadMode(threadMode);
         PairingHelper helper = new PairingHelper(connector, executorService, maybePairingListener);
         return helper.attemptPairing();
     }
@@ -218,4 +235,16 @@ public class SocketControllerBuilder implements ConnectorFactory {
         this.encryptedAesKey = encryptedAesKey;
         return this;
     }
+
+    /**
+     * Optional, the mode of AES encryption to use when it is turned on with `withAESEncryption`, defaults to
+     * AES_ENCRYPTION which embedded devices support. AES_GCM_ENCRYPTION also authenticates each message, both sides
+     * must be configured with the same mode.
+     * @param mode the encryption mode
+     * @return itself, can be chained
+     */
+    public SocketControllerBuilder withEncryptMode(EncryptMode mode) {
+        this.encryptMode = mode;
+        return this;
+    }
 }
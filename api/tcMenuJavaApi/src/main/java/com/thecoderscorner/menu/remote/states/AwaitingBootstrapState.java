@@ -48,6 +48,7 @@ public class AwaitingBootstrapState extends BaseMessageProcessingState {
             markDone();
             if( bs.getBootType() == MenuBootstrapCommand.BootType.START) {
                 context.changeState(AuthStatus.BOOTSTRAPPING);
+                context.notifyListeners(cmd);
             }
             else {
                 logger.log(ERROR, "Received a boot end without start", context.getConnectionName());
@@ -7,12 +7,11 @@
 package com.thecoderscorner.menu.remote.states;
 
 import com.thecoderscorner.menu.remote.AuthStatus;
+import com.thecoderscorner.menu.remote.HeartbeatWheel;
 import com.thecoderscorner.menu.remote.commands.MenuCommand;
 import com.thecoderscorner.menu.remote.commands.MenuCommandType;
 import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand;
 
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -22,7 +21,8 @@ import static java.lang.System.Logger.Level.INFO;
 public class ConnectionReadyState extends BaseMessageProcessingState {
     private final AtomicLong lastTx = new AtomicLong();
     private final AtomicInteger heartbeatInterval = new AtomicInteger(5000);
-    private ScheduledFuture<?> hbTask = null;
+    private HeartbeatWheel.Timeout hbTask = null;
+    private boolean heartbeatStopped = false;
 
     public ConnectionReadyState(RemoteConnectorContext context) {
         super(context);
@@ -43,28 +43,59 @@ public class ConnectionReadyState extends BaseMessageProcessingState {
     @Override
     public void enterState() {
         lastReception.set(context.getClock().millis());
+        lastTx.set(context.getClock().millis());
         disconnectInterval.set(heartbeatInterval.get() * 3);
-        hbTask = context.getScheduledExecutor().scheduleAtFixedRate(this::hbChecker, 1, 1, TimeUnit.SECONDS);
+        scheduleHbChecker(heartbeatInterval.get() + 1L);
         super.enterState();
     }
 
     @Override
     public void exitState(RemoteConnectorState nextState) {
-        if(hbTask != null) hbTask.cancel(true);
+        synchronized (this) {
+            heartbeatStopped = true;
+            if(hbTask != null) hbTask.cancel();
+        }
         super.exitState(nextState);
     }
 
-    private void hbChecker() {
+    /**
+     * Replaces any scheduled heartbeat check with one that runs after the delay, unless the state has been left.
+     */
+    private synchronized void scheduleHbChecker(long delayMillis) {
+        if(heartbeatStopped) return;
+        if(hbTask != null) hbTask.cancel();
+        hbTask = context.getHeartbeatWheel().schedule(delayMillis, this::hbChecker);
+    }
+
+    /**
+     * Runs on the heartbeat wheel when the earliest of the heartbeat and disconnect deadlines is reached, sending and
+     * closing are passed to the connector's executor so that a slow connection does not hold up the wheel.
+     * @return the delay until the next deadline
+     */
+    private long hbChecker() {
         var now = context.getClock().millis();
-        if(now - lastTx.get() > heartbeatInterval.get()) {
-            logger.log(INFO, "Heartbeat being sent due to inactivity " + context.getConnectionName());
-            context.sendHeartbeat(heartbeatInterval.get(), MenuHeartbeatCommand.HeartbeatMode.NORMAL);
+        long sinceReception = now - lastReception.get();
+        if(sinceReception > disconnectInterval.get()) {
+            logger.log(ERROR, "Connection closed due to inactivity " + context.getConnectionName());
+            context.getScheduledExecutor().execute(this::processTimeout);
+            return HeartbeatWheel.STOP;
         }
 
-        if(now - lastReception.get() > disconnectInterval.get()) {
-            logger.log(ERROR, "Connection closed due to inactivity " + context.getConnectionName());
-            processTimeout();
+        long sinceTx = now - lastTx.get();
+        if(sinceTx > heartbeatInterval.get()) {
+            logger.log(INFO, "Heartbeat being sent due to inactivity " + context.getConnectionName());
+            lastTx.set(now);
+            context.getScheduledExecutor().execute(() -> context.sendHeartbeat(heartbeatInterval.get(), MenuHeartbeatCommand.HeartbeatMode.NORMAL));
+            sinceTx = 0;
         }
+        return Math.min(heartbeatInterval.get() - sinceTx, disconnectInterval.get() - sinceReception) + 1;
+    }
+
+    private long millisToNextDeadline() {
+        var now = context.getClock().millis();
+        long untilHeartbeat = heartbeatInterval.get() - (now - lastTx.get());
+        long untilDisconnect = disconnectInterval.get() - (now - lastReception.get());
+        return Math.max(0, Math.min(untilHeartbeat, untilDisconnect)) + 1;
     }
 
     @Override
@@ -80,9 +111,13 @@ public class ConnectionReadyState extends BaseMessageProcessingState {
 
         if(cmd.getCommandType() == MenuCommandType.HEARTBEAT) {
             MenuHeartbeatCommand hb = (MenuHeartbeatCommand) cmd;
-            heartbeatInterval.set(hb.getHearbeatInterval());
+            int oldInterval = heartbeatInterval.getAndSet(hb.getHearbeatInterval());
             disconnectInterval.set(hb.getHearbeatInterval() * 3);
             logger.log(INFO, "Heartbeat interval is " + hb.getHearbeatInterval());
+            if(oldInterval != hb.getHearbeatInterval()) {
+                // the check in the wheel was timed for the old interval, so it may now be too late
+                scheduleHbChecker(millisToNextDeadline());
+            }
         }
 
         context.notifyListeners(cmd);
@@ -7,6 +7,7 @@
 package com.thecoderscorner.menu.remote.states;
 
 import com.thecoderscorner.menu.remote.AuthStatus;
+import com.thecoderscorner.menu.remote.HeartbeatWheel;
 import com.thecoderscorner.menu.remote.RemoteInformation;
 import com.thecoderscorner.menu.remote.commands.AckStatus;
 import com.thecoderscorner.menu.remote.commands.MenuCommand;
@@ -39,6 +40,14 @@ public interface RemoteConnectorContext {
 
     Clock getClock();
 
+    /**
+     * @return the timing wheel that supervises heartbeats once connected, by default the one shared by all connections
+     * that use the system clock. A context that uses any other clock must provide a wheel that follows its clock.
+     */
+    default HeartbeatWheel getHeartbeatWheel() {
+        return HeartbeatWheel.shared();
+    }
+
     String getConnectionName();
 
     void setRemoteParty(RemoteInformation remote);
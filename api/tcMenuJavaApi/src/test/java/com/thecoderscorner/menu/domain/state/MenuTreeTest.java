@@ -14,6 +14,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.thecoderscorner.menu.domain.state.MenuTree.ROOT;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -232,4 +233,185 @@ public class MenuTreeTest {
         assertNotNull(menuTree.getMenuState(item3));
         assertNotNull(menuTree.getMenuState(subMenu));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParentAndIdIndexFollowTreeChanges() {
+        SubMenuItem subMenu2 = DomainFixtures.aSubMenu("Sub2", 5);
+        menuTree.addMenuItem(ROOT, subMenu);
+        menuTree.addMenuItem(ROOT, subMenu2);
+        menuTree.addMenuItem(subMenu, item3);
+        menuTree.addMenuItem(ROOT, item1);
+
+        assertEquals(subMenu, menuTree.findParent(item3));
+        assertEquals(ROOT, menuTree.findParent(item1));
+        assertEquals(ROOT, menuTree.findParent(subMenu2));
+        assertEquals(subMenu2, menuTree.getSubMenuById(5).orElseThrow());
+        assertTrue(menuTree.getSubMenuById(item1.getId()).isEmpty());
+
+        menuTree.moveItem(item3, subMenu2, false);
+        assertEquals(subMenu2, menuTree.findParent(item3));
+
+        // replacing a submenu must leave the children pointing at the new instance
+        SubMenuItem replacement = DomainFixtures.aSubMenu("Replaced", 5);
+        menuTree.replaceMenuById(replacement);
+        assertSame(replacement, menuTree.findParent(item3));
+        assertSame(replacement, menuTree.getSubMenuById(5).orElseThrow());
+
+        // removing a submenu takes everything underneath it out of the index too
+        menuTree.removeMenuItem(replacement);
+        assertTrue(menuTree.getMenuById(5).isEmpty());
+        assertTrue(menuTree.getMenuById(item3.getId()).isEmpty());
+        assertEquals(ROOT, menuTree.findParent(item3));
+        assertEquals(ROOT, menuTree.findParent(item1));
+    }
+
+    @Test
+    public void testLookupsInLargeTree() {
+        SubMenuItem last = null;
+        for(int sub = 0; sub < 200; sub++) {
+            last = DomainFixtures.aSubMenu("Sub" + sub, 100000 + sub);
+            menuTree.addMenuItem(ROOT, last);
+            for(int i = 0; i < 100; i++) {
+                menuTree.addMenuItem(last, DomainFixtures.anAnalogItem("Item" + i, sub * 100 + i + 1));
+            }
+        }
+
+        MenuItem item = menuTree.getMenuById(20000).orElseThrow();
+        assertEquals("Item99", item.getName());
+        assertEquals(last, menuTree.findParent(item));
+        assertEquals(last, menuTree.getSubMenuById(100199).orElseThrow());
+        assertTrue(menuTree.getMenuById(20001).isEmpty());
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByLaterChanges() {
+        menuTree.addMenuItem(ROOT, subMenu);
+        menuTree.addMenuItem(subMenu, item3);
+        menuTree.addMenuItem(ROOT, item1);
+
+        var before = menuTree.getSnapshot();
+        var rootItems = menuTree.getMenuItems(ROOT);
+
+        menuTree.addMenuItem(ROOT, item2);
+        menuTree.removeMenuItem(subMenu);
+
+        assertThat(rootItems).containsExactly(subMenu, item1);
+        assertThat(before.getMenuItems(subMenu)).containsExactly(item3);
+        assertThat(before.getAllMenuItemsFrom(ROOT)).containsExactly(ROOT, subMenu, item3, item1);
+        assertThat(menuTree.getMenuItems(ROOT)).containsExactly(item1, item2);
+        assertTrue(menuTree.getSnapshot().getVersion() > before.getVersion());
+        assertNull(menuTree.getMenuItems(subMenu));
+    }
+
+    @Test
+    public void testSnapshotPublishedOnEachChange() {
+        menuTree.addMenuItem(ROOT, subMenu);
+        menuTree.addMenuItem(subMenu, item3);
+        menuTree.addMenuItem(ROOT, item1);
+
+        var first = menuTree.getSnapshot();
+        assertSame(first, menuTree.getSnapshot());
+
+        menuTree.addMenuItem(ROOT, item2);
+        var second = menuTree.getSnapshot();
+        assertNotSame(first, second);
+        assertSame("unchanged submenus are shared", first.getMenuItems(subMenu), second.getMenuItems(subMenu));
+        assertThat(second.getMenuItems(ROOT)).containsExactly(subMenu, item1, item2);
+        assertThat(first.getMenuItems(ROOT)).containsExactly(subMenu, item1);
+    }
+
+    @Test
+    public void testBatchedChangesPublishOneSnapshot() {
+        menuTree.addMenuItem(ROOT, subMenu);
+        var before = menuTree.getSnapshot();
+
+        menuTree.batchStructureChanges(() -> {
+            menuTree.addMenuItem(subMenu, item3);
+            menuTree.addMenuItem(ROOT, item1);
+            menuTree.batchStructureChanges(() -> menuTree.addMenuItem(ROOT, item2));
+
+            // nothing is published until the outermost batch completes
+            assertSame(before, menuTree.getSnapshot());
+        });
+
+        var after = menuTree.getSnapshot();
+        assertNotSame(before, after);
+        assertThat(after.getMenuItems(ROOT)).containsExactly(subMenu, item1, item2);
+        assertThat(after.getMenuItems(subMenu)).containsExactly(item3);
+        assertThat(before.getMenuItems(ROOT)).containsExactly(subMenu);
+
+        // an empty batch leaves the snapshot as it is
+        menuTree.batchStructureChanges(() -> {});
+        assertSame(after, menuTree.getSnapshot());
+    }
+
+    @Test
+    public void testStructureHashFollowsStructureNotValues() {
+        var tree = DomainFixtures.fullEspAmplifierTestTree();
+        long hash = tree.getSnapshot().getStructureHash();
+        assertNotEquals(0, hash);
+        assertEquals("same structure, same hash", hash, DomainFixtures.fullEspAmplifierTestTree().getSnapshot().getStructureHash());
+
+        MenuItemHelper.setMenuState(tree.getMenuById(1).orElseThrow(), 42, tree);
+        assertEquals("values are not part of the structure", hash, tree.getSnapshot().getStructureHash());
+
+        AnalogMenuItem volume = (AnalogMenuItem) tree.getMenuById(1).orElseThrow();
+        tree.replaceMenuById(new AnalogMenuItemBuilder().withExisting(volume).withName("Vol").menuItem());
+        long renamedHash = tree.getSnapshot().getStructureHash();
+        assertNotEquals(hash, renamedHash);
+
+        tree.moveItem(tree.getMenuById(2).orElseThrow(), tree.getMenuById(1).orElseThrow(), true);
+        assertNotEquals(renamedHash, tree.getSnapshot().getStructureHash());
+    }
+
+    @Test
+    public void testTreeCanChangeWhileBeingIterated() {
+        menuTree.addMenuItem(ROOT, subMenu);
+        menuTree.addMenuItem(subMenu, item3);
+        menuTree.addMenuItem(ROOT, item1);
+
+        List<MenuItem> items = new ArrayList<>();
+        menuTree.recurseTreeIteratingOnItems(ROOT, (menuItem, parent) -> {
+            items.add(menuItem);
+            menuTree.addMenuItem(ROOT, DomainFixtures.anAnalogItem("Added", 1000 + items.size()));
+        });
+
+        assertThat(items).containsExactly(subMenu, item3, item1);
+        assertEquals(5, menuTree.getMenuItems(ROOT).size());
+    }
+
+    @Test
+    public void testReadersSeeConsistentTreeDuringWrites() throws Exception {
+        menuTree.addMenuItem(ROOT, subMenu);
+        var failure = new AtomicReference<Throwable>();
+        var writer = new Thread(() -> {
+            for(int i = 0; i < 2000; i++) {
+                var item = DomainFixtures.anAnalogItem("Item" + i, 100 + i);
+                menuTree.addMenuItem(subMenu, item);
+                if(i % 2 == 0) menuTree.removeMenuItem(item);
+            }
+        });
+        var reader = new Thread(() -> {
+            try {
+                while(writer.isAlive()) {
+                    var snap = menuTree.getSnapshot();
+                    for(var sub : snap.getAllSubMenus()) {
+                        for(var child : snap.getMenuItems(sub)) {
+                            assertNotNull(child);
+                        }
+                    }
+                    snap.recurseTreeIteratingOnItems(ROOT, (item, parent) -> assertNotNull(item));
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(1000, menuTree.getMenuItems(subMenu).size());
+    }
+}
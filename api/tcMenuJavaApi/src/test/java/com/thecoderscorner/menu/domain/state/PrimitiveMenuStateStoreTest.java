@@ -0,0 +1,143 @@
+package com.thecoderscorner.menu.domain.state;
+
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.BooleanMenuItem;
+import com.thecoderscorner.menu.domain.EditableTextMenuItem;
+import com.thecoderscorner.menu.domain.FloatMenuItem;
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.thecoderscorner.menu.domain.state.MenuTree.ROOT;
+import static org.junit.Assert.*;
+
+public class PrimitiveMenuStateStoreTest {
+    private final AnalogMenuItem analog = DomainFixtures.anAnalogItem("Volume", 1);
+    private final BooleanMenuItem bool = DomainFixtures.aBooleanMenu("Mute", 2, BooleanMenuItem.BooleanNaming.ON_OFF);
+    private final FloatMenuItem floatItem = DomainFixtures.aFloatMenu("Temp", 3);
+    private final EditableTextMenuItem text = DomainFixtures.aTextMenu("Text", 4);
+    private MenuTree tree;
+
+    @Before
+    public void setUp() {
+        tree = new MenuTree(new PrimitiveMenuStateStore(8));
+        tree.addMenuItem(ROOT, analog);
+        tree.addMenuItem(ROOT, bool);
+        tree.addMenuItem(ROOT, floatItem);
+        tree.addMenuItem(ROOT, text);
+    }
+
+    @Test
+    public void testStatesAreRebuiltFromPrimitives() {
+        tree.changeItem(analog, new IntegerMenuState(analog, true, false, 22));
+        tree.changeItem(bool, new BooleanMenuState(bool, false, true, true));
+        tree.changeItem(floatItem, new FloatMenuState(floatItem, false, false, 12.5F));
+
+        tree.changeItemValue(analog, 33, true, false);
+        tree.changeItemValue(bool, false, false, true);
+        tree.changeItemValue(floatItem, -1.25F, false, false);
+
+        IntegerMenuState intState = tree.getMenuState(analog);
+        assertEquals(33, (int) intState.getValue());
+        assertTrue(intState.isChanged());
+        assertSame(analog, intState.getItem());
+        assertSame("view is cached until the next change", intState, tree.getMenuState(analog));
+
+        BooleanMenuState boolState = tree.getMenuState(bool);
+        assertFalse(boolState.getValue());
+        assertTrue(boolState.isActive());
+
+        FloatMenuState floatState = tree.getMenuState(floatItem);
+        assertEquals(-1.25F, floatState.getValue(), 0.0001);
+        assertEquals(-1.25F, (float) MenuItemHelper.getValueFor(floatItem, tree, 0.0F), 0.0001);
+    }
+
+    @Test
+    public void testObjectStatesAndRemoval() {
+        MenuItemHelper.setMenuState(text, "hello", tree);
+        assertEquals("hello", MenuItemHelper.getValueFor(text, tree, ""));
+
+        // an item stored as an object can then be stored as a primitive, and back again
+        tree.changeItemValue(text, 5, false, false);
+        assertEquals(5, (int) MenuItemHelper.getValueFor(text, tree, 0));
+        MenuItemHelper.setMenuState(text, "again", tree);
+        assertEquals("again", MenuItemHelper.getValueFor(text, tree, ""));
+
+        tree.changeItemValue(analog, 10, false, false);
+        tree.removeMenuItem(analog);
+        assertNull(tree.getMenuState(analog));
+    }
+
+    @Test
+    public void testIdsBeyondCapacityAndOverflow() {
+        var highItem = DomainFixtures.anAnalogItem("High", 40000);
+        var overflowItem = DomainFixtures.anAnalogItem("Overflow", PrimitiveMenuStateStore.MAX_DENSE_ID + 10);
+        tree.changeItem(analog, new IntegerMenuState(analog, false, false, 4));
+        tree.changeItemValue(highItem, 99, false, false);
+        tree.changeItemValue(overflowItem, 100, false, false);
+
+        assertEquals(4, (int) MenuItemHelper.getValueFor(analog, tree, 0));
+        assertEquals(99, (int) MenuItemHelper.getValueFor(highItem, tree, 0));
+        assertEquals(100, (int) MenuItemHelper.getValueFor(overflowItem, tree, 0));
+    }
+
+    @Test
+    public void testMapStoreMatchesPrimitiveStore() {
+        var mapTree = new MenuTree();
+        mapTree.addMenuItem(ROOT, analog);
+        mapTree.changeItem(analog, new IntegerMenuState(analog, true, true, 1));
+        tree.changeItem(analog, new IntegerMenuState(analog, true, true, 1));
+        mapTree.changeItemValue(analog, 42, false, true);
+        tree.changeItemValue(analog, 42, false, true);
+        assertEquals(mapTree.getMenuState(analog), tree.getMenuState(analog));
+    }
+
+    @Test
+    public void testSetMenuStateMatchesChangeItem() {
+        var mapTree = new MenuTree();
+        mapTree.addMenuItem(ROOT, analog);
+        mapTree.addMenuItem(ROOT, bool);
+        mapTree.addMenuItem(ROOT, floatItem);
+
+        mapTree.changeItem(analog, MenuItemHelper.stateForMenuItem(analog, "150", true, false));
+        MenuItemHelper.setMenuState(analog, "150", true, false, tree);
+        mapTree.changeItem(bool, MenuItemHelper.stateForMenuItem(bool, "Y", false, true));
+        MenuItemHelper.setMenuState(bool, "Y", false, true, tree);
+        mapTree.changeItem(floatItem, MenuItemHelper.stateForMenuItem(floatItem, "2.5", true, true));
+        MenuItemHelper.setMenuState(floatItem, "2.5", true, true, tree);
+
+        for (var item : new MenuItem[] { analog, bool, floatItem }) {
+            assertEquals(mapTree.getMenuState(item), tree.getMenuState(item));
+        }
+
+        // changed is worked out from the value in the same way for both kinds of store
+        MenuItemHelper.setMenuState(analog, 150, tree);
+        assertFalse(tree.getMenuState(analog).isChanged());
+        MenuItemHelper.setMenuState(analog, 20, tree);
+        assertTrue(tree.getMenuState(analog).isChanged());
+    }
+
+    @Test
+    public void testCachedViewNeverReplacesStoredObject() throws Exception {
+        var failure = new AtomicReference<String>();
+        var reader = new Thread(() -> {
+            for (int i = 0; i < 200000 && failure.get() == null; i++) {
+                tree.getMenuState(text);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20000 && reader.isAlive(); i++) {
+            tree.changeItemValue(text, i, false, false);
+            var stored = new StringMenuState(text, true, true, "stored" + i);
+            tree.changeItem(text, stored);
+            var read = tree.getMenuState(text);
+            if (read != stored) failure.set("stored state replaced by " + read);
+        }
+        reader.join();
+        assertNull(failure.get());
+    }
+}
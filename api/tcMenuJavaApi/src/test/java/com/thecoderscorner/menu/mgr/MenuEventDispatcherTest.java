@@ -0,0 +1,149 @@
+package com.thecoderscorner.menu.mgr;
+
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MenuEventDispatcherTest {
+    private final List<AnalogMenuItem> items = List.of(
+            DomainFixtures.anAnalogItem("One", 1), DomainFixtures.anAnalogItem("Two", 2),
+            DomainFixtures.anAnalogItem("Three", 3), DomainFixtures.anAnalogItem("Four", 4)
+    );
+    private MenuEventDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() {
+        if (dispatcher != null) dispatcher.stop(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testEventsForEachItemArriveInOrder() {
+        var received = new ConcurrentHashMap<Integer, List<Integer>>();
+        var threadsByItem = new ConcurrentHashMap<Integer, String>();
+        dispatcher = new MenuEventDispatcher(8, 2);
+        dispatcher.start((sender, item, data) -> {
+            received.computeIfAbsent(item.getId(), id -> new ArrayList<>()).add((Integer) data);
+            threadsByItem.put(item.getId(), Thread.currentThread().getName());
+        });
+
+        for (int i = 0; i < 500; i++) {
+            for (var item : items) assertTrue(dispatcher.publish(this, item, i));
+        }
+        dispatcher.stop(5, TimeUnit.SECONDS);
+
+        assertEquals(2000, dispatcher.getDispatchedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+        for (var item : items) {
+            var values = received.get(item.getId());
+            assertEquals(500, values.size());
+            for (int i = 0; i < 500; i++) assertEquals(i, values.get(i));
+        }
+        // odd and even IDs are on different rings, so they are dispatched by different threads
+        assertNotEquals(threadsByItem.get(1), threadsByItem.get(2));
+        assertEquals(threadsByItem.get(2), threadsByItem.get(4));
+        assertTrue(dispatcher.getMaxDispatchLatencyNanos() >= dispatcher.getAverageDispatchLatencyNanos());
+    }
+
+    @Test
+    public void testSlowListenerFillsRingThenPublishWaits() throws Exception {
+        var listenerEntered = new CountDownLatch(1);
+        var releaseListener = new CountDownLatch(1);
+        dispatcher = new MenuEventDispatcher(4, 1);
+        dispatcher.start((sender, item, data) -> {
+            listenerEntered.countDown();
+            try {
+                releaseListener.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertTrue(dispatcher.publish(this, items.get(0), 0));
+        assertTrue(listenerEntered.await(2, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) assertTrue(dispatcher.publish(this, items.get(0), i));
+        assertEquals(4, dispatcher.getQueueDepth());
+        assertEquals(0, dispatcher.getPublishWaits());
+
+        var publisher = new Thread(() -> dispatcher.publish(this, items.get(1), 5));
+        publisher.start();
+        for (int i = 0; i < 200 && dispatcher.getPublishWaits() == 0; i++) Thread.sleep(10);
+        assertEquals(1, dispatcher.getPublishWaits());
+        assertTrue(publisher.isAlive());
+
+        releaseListener.countDown();
+        publisher.join(2000);
+        dispatcher.stop(2, TimeUnit.SECONDS);
+        assertEquals(6, dispatcher.getDispatchedCount());
+    }
+
+    @Test
+    @Timeout(10)
+    public void testListenerRepublishingIntoItsOwnFullRingDoesNotDeadlock() throws Exception {
+        var ringFilled = new CountDownLatch(1);
+        var received = new ArrayList<Integer>();
+        dispatcher = new MenuEventDispatcher(2, 1);
+        dispatcher.start((sender, item, data) -> {
+            int value = (Integer) data;
+            received.add(value);
+            if (value == 0) {
+                try {
+                    ringFilled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // the ring is full, and this is its consumer thread, as when a listener calls updateMenuItem
+                for (int i = 100; i < 103; i++) assertTrue(dispatcher.publish(this, items.get(1), i));
+            }
+        });
+
+        assertTrue(dispatcher.publish(this, items.get(0), 0));
+        for (int i = 0; i < 200 && dispatcher.getQueueDepth() != 0; i++) Thread.sleep(10);
+        assertTrue(dispatcher.publish(this, items.get(0), 1));
+        assertTrue(dispatcher.publish(this, items.get(0), 2));
+        ringFilled.countDown();
+
+        for (int i = 0; i < 200 && dispatcher.getOverflowCount() < 3; i++) Thread.sleep(10);
+        assertTrue(dispatcher.publish(this, items.get(0), 3));
+        dispatcher.stop(2, TimeUnit.SECONDS);
+
+        assertEquals(3, dispatcher.getOverflowCount());
+        assertEquals(List.of(0, 1, 2, 100, 101, 102, 3), received);
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    public void testListenerExceptionDoesNotStopDispatch() {
+        var calls = new ConcurrentHashMap<Integer, Integer>();
+        dispatcher = new MenuEventDispatcher(4, 1);
+        dispatcher.start((sender, item, data) -> {
+            calls.merge(item.getId(), 1, Integer::sum);
+            if (item.getId() == 1) throw new IllegalStateException("listener failed");
+        });
+
+        dispatcher.publish(this, items.get(0), 1);
+        dispatcher.publish(this, items.get(1), 1);
+        dispatcher.stop(2, TimeUnit.SECONDS);
+        assertEquals(Map.of(1, 1, 2, 1), calls);
+    }
+
+    @Test
+    public void testPublishWhenNotRunningIsRefused() {
+        dispatcher = new MenuEventDispatcher(4, 1);
+        assertFalse(dispatcher.publish(this, items.get(0), 1));
+        dispatcher.start((sender, item, data) -> {});
+        dispatcher.stop(1, TimeUnit.SECONDS);
+        assertFalse(dispatcher.isRunning());
+        assertFalse(dispatcher.publish(this, items.get(0), 1));
+    }
+}
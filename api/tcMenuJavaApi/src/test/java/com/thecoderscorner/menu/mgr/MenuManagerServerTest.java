@@ -5,6 +5,7 @@ import com.thecoderscorner.menu.domain.*;
 import com.thecoderscorner.menu.domain.state.CurrentScrollPosition;
 import com.thecoderscorner.menu.domain.state.ListResponse;
 import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
 import com.thecoderscorner.menu.remote.commands.*;
 import com.thecoderscorner.menu.remote.protocol.ApiPlatform;
 import com.thecoderscorner.menu.remote.protocol.CorrelationId;
@@ -18,6 +19,7 @@ import org.mockito.internal.stubbing.answers.CallsRealMethods;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
@@ -97,6 +99,63 @@ class MenuManagerServerTest {
         assertEquals("9-Item 9 type ARRAY_IN_EEPROM", getValueFor(scroll, tree, new CurrentScrollPosition("0-")).toString());
     }
 
+    @Test
+    public void testCallbackWithWrongParametersIsSkipped() {
+        var calls = new AtomicInteger();
+        mgr.addMenuManagerListener(new MenuManagerListener() {
+            @MenuCallback(id=1)
+            public void wrongParameters(Object sender, String notAnItem) {
+                fail("should never be called");
+            }
+
+            @MenuCallback(id=3)
+            public int returnValueIgnored(Object sender, MenuItem item) {
+                return calls.incrementAndGet();
+            }
+
+            @Override
+            public void menuItemHasChanged(Object sender, MenuItem item) {
+            }
+
+            @Override
+            public void managerWillStart() {
+            }
+
+            @Override
+            public void managerWillStop() {
+            }
+        });
+
+        mgr.updateMenuItem(this, tree.getMenuById(1).orElseThrow(), 22);
+        mgr.updateMenuItem(this, tree.getMenuById(3).orElseThrow(), true);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testListenersCalledOnDispatcherWhenSet() throws InterruptedException {
+        var callbackThread = new AtomicReference<String>();
+        var called = new CountDownLatch(2);
+        var dispatcher = new MenuEventDispatcher(16, 2);
+        mgr.setEventDispatcher(dispatcher);
+        mgr.addMenuManagerListener(new MyMenuListenerWithAnnotation() {
+            @MenuCallback(id=3)
+            public void directHasChanged(Object sender, BooleanMenuItem item) {
+                callbackThread.set(Thread.currentThread().getName());
+                called.countDown();
+            }
+        });
+        mgr.start();
+
+        mgr.updateMenuItem(this, tree.getMenuById(3).orElseThrow(), true);
+        mgr.updateMenuItem(this, tree.getMenuById(3).orElseThrow(), false);
+        assertTrue(called.await(2, TimeUnit.SECONDS));
+        mgr.stop();
+
+        assertTrue(callbackThread.get().startsWith("menu-event-"));
+        assertEquals(2, dispatcher.getDispatchedCount());
+        assertFalse(dispatcher.isRunning());
+    }
+
     @Test
     public void testRemoteConnectionAuthWrong() {
         MyMenuListenerWithAnnotation listener = new MyMenuListenerWithAnnotation();
@@ -180,6 +239,142 @@ class MenuManagerServerTest {
         assertTrue(listener.getStopped() > 0);
     }
 
+    @Test
+    public void testBroadcastSharesEncodedFrame() {
+        var serverConnectionMgr = mock(ServerConnectionManager.class);
+        var plain1 = mock(ServerConnection.class);
+        var plain2 = mock(ServerConnection.class);
+        var plain3 = mock(ServerConnection.class);
+        when(plain1.sendEncodedFrame(any())).thenReturn(true);
+        when(plain2.sendEncodedFrame(any())).thenReturn(true);
+        when(plain3.sendEncodedFrame(any())).thenReturn(true);
+        // stands in for a connection that cannot use the shared encoding, such as an encrypted one, as it keeps the
+        // default sendEncodedFrame that sends the command to be encoded again
+        var reEncoding = new SimulatedConnection();
+        when(serverConnectionMgr.getServerConnections()).thenReturn(List.of(plain1, plain2, reEncoding, plain3));
+        mgr.addConnectionManager(serverConnectionMgr);
+
+        var spanner = new SpannerCommand(10, "Broadcast");
+        mgr.sendCommand(spanner);
+
+        var captor = ArgumentCaptor.forClass(EncodedCommandFrame.class);
+        verify(plain1).sendEncodedFrame(captor.capture());
+        verify(plain3).sendEncodedFrame(captor.getValue());
+        assertSame(spanner, captor.getValue().getCommand());
+        assertTrue(reEncoding.ensureMessageMatching(SpannerCommand.class, cmd -> cmd == spanner));
+
+        assertEquals(1, mgr.getBroadcastFramesEncoded());
+        assertEquals(2, mgr.getBroadcastFramesReused());
+        assertEquals(1, mgr.getBroadcastFramesReEncoded());
+    }
+
+    @Test
+    public void testSubscribedRemoteOnlyGetsChangesWithinItsSubMenus() {
+        var serverConnectionMgr = mock(ServerConnectionManager.class);
+        var captor = ArgumentCaptor.forClass(NewServerConnectionListener.class);
+        doNothing().when(serverConnectionMgr).start(captor.capture());
+        mgr.addConnectionManager(serverConnectionMgr);
+        SimulatedConnection simConnection = new SimulatedConnection();
+        mgr.start();
+        captor.getValue().connectionCreated(simConnection);
+        when(serverConnectionMgr.getServerConnections()).thenReturn(List.of(simConnection));
+
+        when(authenticator.authenticate(CLIENT_NAME, CLIENT_UUID)).thenReturn(true);
+        simConnection.simulateMessageToMessageHandler(new MenuHeartbeatCommand(1500, START));
+        simConnection.simulateMessageToMessageHandler(new MenuJoinCommand(CLIENT_UUID, CLIENT_NAME, ApiPlatform.JAVA_API, 100, "0"));
+        simConnection.simulateMessageToMessageHandler(CommandFactory.newSubscribeCommand(List.of(5)));
+        assertEquals(Set.of(5), mgr.getSubscriptionFor(simConnection));
+
+        simConnection.commandsSent.clear();
+        mgr.updateMenuItem(this, tree.getMenuById(8).orElseThrow(), 10); // within 7, itself within 5
+        mgr.updateMenuItem(this, tree.getMenuById(15).orElseThrow(), 20); // within 6
+        mgr.updateMenuItem(this, tree.getMenuById(1).orElseThrow(), 30); // at root
+
+        assertEquals(List.of(8), changedItemIds(simConnection));
+        assertEquals(2, mgr.getBroadcastsFiltered());
+
+        // widening the subscription sends the current values of the sub menu that was not being followed
+        simConnection.commandsSent.clear();
+        simConnection.simulateMessageToMessageHandler(CommandFactory.newSubscribeCommand(List.of(5, 6)));
+        assertTrue(changedItemIds(simConnection).containsAll(List.of(14, 15, 16, 28)));
+        assertFalse(changedItemIds(simConnection).contains(8));
+
+        // subscribing to everything again sends everything, and stops filtering
+        simConnection.commandsSent.clear();
+        simConnection.simulateMessageToMessageHandler(CommandFactory.newSubscribeCommand(List.of()));
+        assertTrue(changedItemIds(simConnection).contains(1));
+        assertTrue(mgr.getSubscriptionFor(simConnection).isEmpty());
+        simConnection.commandsSent.clear();
+        mgr.updateMenuItem(this, tree.getMenuById(1).orElseThrow(), 31);
+        assertEquals(List.of(1), changedItemIds(simConnection));
+        assertEquals(2, mgr.getBroadcastsFiltered());
+    }
+
+    @Test
+    public void testServerJoinOffersBinaryOnlyWhenConnectionSupportsIt() {
+        var serverConnectionMgr = mock(ServerConnectionManager.class);
+        var captor = ArgumentCaptor.forClass(NewServerConnectionListener.class);
+        doNothing().when(serverConnectionMgr).start(captor.capture());
+        mgr.addConnectionManager(serverConnectionMgr);
+        mgr.start();
+
+        var tagValOnly = new SimulatedConnection();
+        captor.getValue().connectionCreated(tagValOnly);
+        tagValOnly.simulateMessageToMessageHandler(new MenuHeartbeatCommand(1500, START));
+        assertTrue(tagValOnly.ensureMessageMatching(MenuJoinCommand.class, jn -> !jn.isBinaryCapable()));
+
+        var binary = new SimulatedConnection();
+        binary.binaryCapable = true;
+        captor.getValue().connectionCreated(binary);
+        binary.simulateMessageToMessageHandler(new MenuHeartbeatCommand(1500, START));
+        assertTrue(binary.ensureMessageMatching(MenuJoinCommand.class, MenuJoinCommand::isBinaryCapable));
+    }
+
+    @Test
+    public void testJoinWithKnownTreeOnlyRefreshesValues() {
+        var serverConnectionMgr = mock(ServerConnectionManager.class);
+        var captor = ArgumentCaptor.forClass(NewServerConnectionListener.class);
+        doNothing().when(serverConnectionMgr).start(captor.capture());
+        mgr.addConnectionManager(serverConnectionMgr);
+        mgr.start();
+        when(authenticator.authenticate(CLIENT_NAME, CLIENT_UUID)).thenReturn(true);
+
+        var first = new SimulatedConnection();
+        captor.getValue().connectionCreated(first);
+        first.simulateMessageToMessageHandler(new MenuJoinCommand(CLIENT_UUID, CLIENT_NAME, ApiPlatform.JAVA_API, 100, "0"));
+        long treeHash = tree.getSnapshot().getStructureHash();
+        assertTrue(first.ensureMessageMatching(MenuBootstrapCommand.class, b -> b.getTreeHash() == treeHash && !b.isValueRefresh()));
+        assertTrue(first.commandsSent.stream().anyMatch(cmd -> cmd instanceof BootItemMenuCommand));
+
+        mgr.updateMenuItem(this, tree.getMenuById(1).orElseThrow(), 77);
+        var second = new SimulatedConnection();
+        captor.getValue().connectionCreated(second);
+        second.simulateMessageToMessageHandler(new MenuJoinCommand(CLIENT_UUID, CLIENT_NAME, ApiPlatform.JAVA_API, 100, "0", false, treeHash));
+
+        assertTrue(second.ensureMessageMatching(MenuBootstrapCommand.class, b -> b.getTreeHash() == treeHash && b.isValueRefresh()));
+        assertTrue(second.commandsSent.stream().noneMatch(cmd -> cmd instanceof BootItemMenuCommand));
+        assertTrue(second.ensureMessageMatching(MenuChangeCommand.class, chg -> chg.getMenuItemId() == 1 && chg.getValue().equals("77")));
+        var last = second.commandsSent.get(second.commandsSent.size() - 1);
+        assertTrue(last instanceof MenuBootstrapCommand boot && boot.getBootType() == MenuBootstrapCommand.BootType.END);
+        assertEquals(1, mgr.getBootstrapsRefreshed());
+
+        // once the structure changes, the old hash no longer matches and a full bootstrap is sent
+        AnalogMenuItem volume = (AnalogMenuItem) tree.getMenuById(1).orElseThrow();
+        tree.replaceMenuById(new AnalogMenuItemBuilder().withExisting(volume).withName("Vol").menuItem());
+        var third = new SimulatedConnection();
+        captor.getValue().connectionCreated(third);
+        third.simulateMessageToMessageHandler(new MenuJoinCommand(CLIENT_UUID, CLIENT_NAME, ApiPlatform.JAVA_API, 100, "0", false, treeHash));
+        assertTrue(third.ensureMessageMatching(MenuBootstrapCommand.class, b -> b.getTreeHash() != treeHash && !b.isValueRefresh()));
+        assertTrue(third.ensureMessageMatching(MenuAnalogBootCommand.class, b -> b.getMenuItem().getName().equals("Vol")));
+        assertEquals(1, mgr.getBootstrapsRefreshed());
+    }
+
+    private List<Integer> changedItemIds(SimulatedConnection connection) {
+        return connection.commandsSent.stream()
+                .filter(cmd -> cmd instanceof MenuChangeCommand)
+                .map(cmd -> ((MenuChangeCommand) cmd).getMenuItemId())
+                .toList();
+    }
 
     class MyMenuListenerWithAnnotation implements MenuManagerListener {
 
@@ -262,6 +457,7 @@ class MenuManagerServerTest {
         private BiConsumer<ServerConnection, MenuCommand> messageHandler;
         private final AtomicReference<ServerConnectionMode> connectionMode = new AtomicReference<>(ServerConnectionMode.UNAUTHENTICATED);
         private final AtomicInteger hbFrequency = new AtomicInteger(1500);
+        private boolean binaryCapable;
 
         void simulateMessageToMessageHandler(MenuCommand cmd) {
             messageHandler.accept(this, cmd);
@@ -302,6 +498,11 @@ class MenuManagerServerTest {
             commandsSent.add(command);
         }
 
+        @Override
+        public boolean supportsBinaryNegotiation() {
+            return binaryCapable;
+        }
+
         @Override
         public void registerConnectionListener(BiConsumer<ServerConnection, Boolean> connectionListener) {
 
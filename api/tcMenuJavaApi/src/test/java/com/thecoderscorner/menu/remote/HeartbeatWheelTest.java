@@ -0,0 +1,152 @@
+package com.thecoderscorner.menu.remote;
+
+import com.thecoderscorner.menu.remote.socket.SocketBasedConnector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class HeartbeatWheelTest {
+    private final List<String> runs = new ArrayList<>();
+    private Clock clock;
+    private HeartbeatWheel wheel;
+
+    @Before
+    public void setUp() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        wheel = new HeartbeatWheel(clock, 10, 8);
+    }
+
+    @Test
+    public void testTaskRunsAtDeadlineAndIsRescheduled() {
+        var delays = new ArrayList<>(List.of(50L, HeartbeatWheel.STOP));
+        wheel.schedule(25, () -> {
+            runs.add("hb@" + clock.millis());
+            return delays.remove(0);
+        });
+
+        advanceTo(1020);
+        assertTrue(runs.isEmpty());
+        advanceTo(1030);
+        assertEquals(List.of("hb@1030"), runs);
+        assertEquals(1, wheel.size());
+
+        advanceTo(1070);
+        assertEquals(1, runs.size());
+        advanceTo(1080);
+        assertEquals(List.of("hb@1030", "hb@1080"), runs);
+        assertEquals(0, wheel.size());
+        assertEquals(2, wheel.getDeadlinesReached());
+    }
+
+    @Test
+    public void testOnlyExpiredDeadlinesAreRun() {
+        for (int i = 0; i < 1000; i++) {
+            wheel.schedule(5000, () -> {
+                runs.add("idle");
+                return HeartbeatWheel.STOP;
+            });
+        }
+        wheel.schedule(10, () -> {
+            runs.add("due");
+            return HeartbeatWheel.STOP;
+        });
+
+        advanceTo(1010);
+        assertEquals(List.of("due"), runs);
+        assertEquals(1000, wheel.size());
+        assertEquals(1, wheel.getDeadlinesReached());
+    }
+
+    @Test
+    public void testDeadlineBeyondOneTurnOfTheWheel() {
+        wheel.schedule(200, () -> {
+            runs.add("late");
+            return HeartbeatWheel.STOP;
+        });
+
+        for (long now = 1010; now < 1200; now += 10) advanceTo(now);
+        assertTrue(runs.isEmpty());
+        advanceTo(1200);
+        assertEquals(List.of("late"), runs);
+    }
+
+    @Test
+    public void testLargeClockJumpRunsEachDueTaskOnce() {
+        wheel.schedule(10, () -> {
+            runs.add("a");
+            return HeartbeatWheel.STOP;
+        });
+        wheel.schedule(70, () -> {
+            runs.add("b");
+            return HeartbeatWheel.STOP;
+        });
+
+        advanceTo(60000);
+        assertEquals(2, runs.size());
+        assertTrue(runs.containsAll(List.of("a", "b")));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancelledTaskIsNotRun() {
+        var timeout = wheel.schedule(10, () -> {
+            runs.add("cancelled");
+            return 10;
+        });
+        timeout.cancel();
+
+        advanceTo(1050);
+        assertTrue(runs.isEmpty());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testOnlySystemClocksUseTheSharedWheel() {
+        assertSame(HeartbeatWheel.shared(), HeartbeatWheel.shared());
+        assertTrue(HeartbeatWheel.isSystemClock(Clock.systemUTC()));
+        assertTrue(HeartbeatWheel.isSystemClock(Clock.systemDefaultZone()));
+        assertFalse(HeartbeatWheel.isSystemClock(Clock.fixed(Instant.EPOCH, ZoneOffset.UTC)));
+        assertFalse(HeartbeatWheel.isSystemClock(Clock.offset(Clock.systemUTC(), Duration.ofMinutes(1))));
+        assertFalse(HeartbeatWheel.isSystemClock(clock));
+        assertFalse(HeartbeatWheel.isSystemClock(null));
+    }
+
+    @Test
+    public void testConnectorWithItsOwnClockHasItsOwnWheelUntilClosed() {
+        var executor = mock(ScheduledExecutorService.class);
+        var ticker = mock(ScheduledFuture.class);
+        doReturn(ticker).when(executor).scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), any());
+        var connector = new SocketBasedConnector(new LocalIdentifier(UUID.randomUUID(), "test"), executor, clock,
+                mock(MenuCommandProtocol.class), "localhost", 3333, ConnectMode.FULLY_AUTHENTICATED, null);
+
+        var ownWheel = connector.getHeartbeatWheel();
+        assertNotSame(HeartbeatWheel.shared(), ownWheel);
+        assertSame(ownWheel, connector.getHeartbeatWheel());
+        verify(executor, times(1)).scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), any());
+
+        connector.close();
+        verify(ticker).cancel(false);
+        assertNotSame(ownWheel, connector.getHeartbeatWheel());
+    }
+
+    private void advanceTo(long now) {
+        when(clock.millis()).thenReturn(now);
+        wheel.advance();
+    }
+}
@@ -0,0 +1,146 @@
+package com.thecoderscorner.menu.remote;
+
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand.HeartbeatMode;
+import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
+import com.thecoderscorner.menu.remote.protocol.ConfigurableProtocolConverter;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.thecoderscorner.menu.remote.commands.CommandFactory.*;
+import static org.junit.Assert.*;
+
+public class IncrementalMessageFramerTest {
+    private ConfigurableProtocolConverter protocol;
+    private IncrementalMessageFramer framer;
+
+    @Before
+    public void setUp() {
+        protocol = new ConfigurableProtocolConverter(true);
+        framer = new IncrementalMessageFramer();
+    }
+
+    @Test
+    public void testTagValFedOneByteAtATime() throws IOException {
+        var data = encode(newAnalogBootCommand(0, DomainFixtures.anAnalogItem("Volume", 1), 22), CommandProtocol.TAG_VAL_PROTOCOL);
+        checkFedByteByByte(data);
+    }
+
+    @Test
+    public void testBinaryFedOneByteAtATime() throws IOException {
+        var data = encode(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 22, 5), CommandProtocol.RAW_BIN_PROTOCOL);
+        checkFedByteByByte(data);
+    }
+
+    @Test
+    public void testMessagesBackToBack() throws IOException {
+        var first = encode(newHeartbeatCommand(1500, HeartbeatMode.NORMAL), CommandProtocol.TAG_VAL_PROTOCOL);
+        var second = encode(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 22, 5), CommandProtocol.RAW_BIN_PROTOCOL);
+        var buffer = ByteBuffer.allocate(first.length + second.length).put(first).put(second).flip();
+
+        buffer.get();
+        assertTrue(framer.hasCompleteMessage(buffer));
+        assertEquals(first.length - 1, framer.getFrameLength());
+        buffer.position(buffer.position() + framer.getFrameLength());
+
+        buffer.get();
+        assertTrue(framer.hasCompleteMessage(buffer));
+        assertEquals(second.length - 1, framer.getFrameLength());
+    }
+
+    @Test
+    public void testConnectionReadsMessageArrivingInSmallChunks() throws IOException {
+        var cmd = newAnalogBootCommand(0, DomainFixtures.anAnalogItem("Volume", 1), 22);
+        var data = encode(cmd, CommandProtocol.TAG_VAL_PROTOCOL);
+        var connection = new ChunkedTestConnection(protocol, data, 3);
+
+        assertEquals(cmd, connection.readCommandFromStream());
+        assertFalse(connection.source.hasRemaining());
+        assertEquals((data.length + 2) / 3, connection.reads);
+    }
+
+    /**
+     * Feeds a message one byte at a time, compacting between each byte in the same way the connections do, and
+     * checks that the framer only ever looks at the new byte and completes exactly at the end of the message.
+     */
+    private void checkFedByteByByte(byte[] data) {
+        var buffer = ByteBuffer.allocate(data.length).flip();
+        int fed = 0;
+        boolean complete = false;
+        while (!complete) {
+            buffer.compact().put(data[fed++]).flip();
+            if (fed == 1) {
+                assertEquals(MenuCommandProtocol.PROTO_START_OF_MSG, buffer.get());
+                continue;
+            }
+            complete = framer.hasCompleteMessage(buffer);
+            if (!complete) {
+                assertTrue(framer.getScanned() <= buffer.remaining());
+            }
+        }
+        assertEquals(data.length, fed);
+        assertEquals(data.length - 1, framer.getFrameLength());
+        assertEquals(0, framer.getScanned());
+    }
+
+    private byte[] encode(MenuCommand cmd, CommandProtocol format) throws IOException {
+        var buffer = ByteBuffer.allocate(1024);
+        protocol.toChannel(buffer, cmd, format);
+        buffer.flip();
+        var data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * A connection that returns the provided data a few bytes at a time, as a slow serial link would.
+     */
+    private static class ChunkedTestConnection extends SharedStreamConnection {
+        private final ByteBuffer source;
+        private final int chunkSize;
+        private int reads;
+
+        ChunkedTestConnection(MenuCommandProtocol protocol, byte[] data, int chunkSize) {
+            super(protocol, null);
+            this.source = ByteBuffer.wrap(data);
+            this.chunkSize = chunkSize;
+            inputBuffer.flip();
+        }
+
+        @Override
+        protected void getAtLeastBytes(ByteBuffer inputBuffer, int len, StreamRemoteConnector.ReadMode mode) throws IOException {
+            if (mode == StreamRemoteConnector.ReadMode.ONLY_WHEN_EMPTY && inputBuffer.remaining() >= len) return;
+            do {
+                if (!source.hasRemaining()) throw new IOException("No more data");
+                int toRead = Math.min(chunkSize, source.remaining());
+                inputBuffer.compact().put(source.slice(source.position(), toRead)).flip();
+                source.position(source.position() + toRead);
+                reads++;
+            } while (inputBuffer.remaining() < len);
+        }
+
+        @Override
+        protected void sendInternal(ByteBuffer cmdBuffer) {
+        }
+
+        @Override
+        public boolean isDeviceConnected() {
+            return true;
+        }
+
+        @Override
+        public String getConnectionName() {
+            return "chunked";
+        }
+
+        @Override
+        public boolean canSendMessageNow(MenuCommand cmd) {
+            return true;
+        }
+    }
+}
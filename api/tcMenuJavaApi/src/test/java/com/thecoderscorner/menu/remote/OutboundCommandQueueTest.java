@@ -0,0 +1,166 @@
+package com.thecoderscorner.menu.remote;
+
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand.HeartbeatMode;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.thecoderscorner.menu.remote.commands.CommandFactory.*;
+import static org.junit.Assert.*;
+
+public class OutboundCommandQueueTest {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final List<MenuCommand> written = new ArrayList<>();
+    private final List<Exception> failures = new ArrayList<>();
+    private boolean failWrites;
+
+    private final OutboundCommandQueue.OutboundWriter writer = new OutboundCommandQueue.OutboundWriter() {
+        @Override
+        public void writeCommand(MenuCommand command) throws IOException {
+            if (failWrites) throw new IOException("write failed");
+            written.add(command);
+        }
+
+        @Override
+        public void writeFrame(EncodedCommandFrame frame) throws IOException {
+            writeCommand(frame.getCommand());
+        }
+    };
+
+    @Test
+    public void testAbsoluteChangesAreConflated() {
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.CONFLATE_CHANGES, 256, tasks::add, writer, failures::add);
+        queue.offerCommand(newHeartbeatCommand(1500, HeartbeatMode.NORMAL));
+        for (int i = 0; i < 100; i++) {
+            queue.offerFrame(new EncodedCommandFrame(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, i)));
+            queue.offerCommand(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 2, 1));
+        }
+
+        assertEquals("one task is scheduled until the queue drains", 1, tasks.size());
+        assertEquals(99, queue.getConflatedCount());
+        assertEquals(102, queue.size());
+
+        runAllTasks();
+
+        var absolutes = written.stream().filter(cmd -> cmd.toString().contains("ABSOLUTE")).toList();
+        assertEquals(1, absolutes.size());
+        assertEquals(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 99).toString(), absolutes.get(0).toString());
+        assertEquals(102, written.size());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void testConflatedValueIsSentAtFirstPosition() {
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.CONFLATE_CHANGES, 16, tasks::add, writer, failures::add);
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 1));
+        queue.offerCommand(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 2, 1));
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 2));
+        queue.offerCommand(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 2, 1));
+        var reply = newAbsoluteMenuChangeCommand(new CorrelationId("1234"), 1, 3);
+        queue.offerCommand(reply);
+        assertEquals(4, queue.size());
+
+        runAllTasks();
+
+        assertEquals(List.of(
+                newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 2).toString(),
+                newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 2, 1).toString(),
+                newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 2, 1).toString(),
+                reply.toString()
+        ), written.stream().map(Object::toString).toList());
+        assertEquals(1, queue.getConflatedCount());
+        assertTrue(failures.isEmpty());
+
+        // once written, a change for the same item is queued again
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 4));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testLaterCommandForItemStopsConflationIntoEarlierChange() {
+        var item = DomainFixtures.anAnalogItem("Volume", 1);
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.CONFLATE_CHANGES, 16, tasks::add, writer, failures::add);
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 1));
+        queue.offerCommand(newAnalogBootCommand(0, item, 5));
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 2));
+        queue.offerCommand(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 1));
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 4));
+        queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 5));
+        assertEquals(5, queue.size());
+
+        runAllTasks();
+
+        assertEquals(List.of(
+                newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 1).toString(),
+                newAnalogBootCommand(0, item, 5).toString(),
+                newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 2).toString(),
+                newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 1).toString(),
+                newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 5).toString()
+        ), written.stream().map(Object::toString).toList());
+        assertEquals(1, queue.getConflatedCount());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void testQueuedPolicyKeepsEveryChange() {
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.QUEUED, 16, tasks::add, writer, failures::add);
+        for (int i = 0; i < 10; i++) {
+            queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, i));
+        }
+        runAllTasks();
+        assertEquals(10, written.size());
+        assertEquals(0, queue.getConflatedCount());
+    }
+
+    @Test
+    public void testDrainGivesBackThreadAfterABatch() {
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.QUEUED, 1000, tasks::add, writer, failures::add);
+        for (int i = 0; i < OutboundCommandQueue.MAX_WRITES_PER_DRAIN + 10; i++) {
+            queue.offerCommand(newHeartbeatCommand(1500, HeartbeatMode.NORMAL));
+        }
+        tasks.poll().run();
+        assertEquals(OutboundCommandQueue.MAX_WRITES_PER_DRAIN, written.size());
+        assertEquals("the drain is rescheduled", 1, tasks.size());
+        runAllTasks();
+        assertEquals(OutboundCommandQueue.MAX_WRITES_PER_DRAIN + 10, written.size());
+    }
+
+    @Test
+    public void testFullQueueFailsAndCloses() {
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.CONFLATE_CHANGES, 3, tasks::add, writer, failures::add);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, i, i)));
+        }
+        assertTrue("a conflated change still fits", queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, 10)));
+        assertFalse(queue.offerCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 4, 4)));
+
+        assertEquals(1, failures.size());
+        assertEquals(0, queue.size());
+        assertFalse("closed queues reject commands", queue.offerCommand(newHeartbeatCommand(1500, HeartbeatMode.NORMAL)));
+        runAllTasks();
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    public void testWriteFailureCloses() {
+        var queue = new OutboundCommandQueue(OutboundQueuePolicy.QUEUED, 16, tasks::add, writer, failures::add);
+        failWrites = true;
+        queue.offerCommand(newHeartbeatCommand(1500, HeartbeatMode.NORMAL));
+        queue.offerCommand(newHeartbeatCommand(1500, HeartbeatMode.NORMAL));
+        runAllTasks();
+
+        assertEquals(1, failures.size());
+        assertEquals(0, queue.size());
+        assertFalse(queue.offerCommand(newHeartbeatCommand(1500, HeartbeatMode.NORMAL)));
+    }
+
+    private void runAllTasks() {
+        while (!tasks.isEmpty()) tasks.poll().run();
+    }
+}
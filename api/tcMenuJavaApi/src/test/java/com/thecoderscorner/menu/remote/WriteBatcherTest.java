@@ -0,0 +1,122 @@
+package com.thecoderscorner.menu.remote;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WriteBatcherTest {
+    private final List<List<String>> writes = new ArrayList<>();
+    private final ByteBuffer reused = ByteBuffer.allocate(64);
+    private ScheduledExecutorService scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    private void sink(ByteBuffer[] buffers, int count) {
+        var frames = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            frames.add(StandardCharsets.US_ASCII.decode(buffers[i]).toString());
+        }
+        synchronized (writes) {
+            writes.add(frames);
+        }
+    }
+
+    @Test
+    public void testFramesOutsideBatchAreWrittenImmediately() throws Exception {
+        var batcher = new WriteBatcher(8, 1024, this::sink);
+        batcher.add(frame("one"));
+        batcher.add(frame("two"));
+        assertEquals(List.of(List.of("one"), List.of("two")), writes);
+        assertEquals(2, batcher.getWriteCount());
+    }
+
+    @Test
+    public void testBatchIsWrittenTogetherAtEnd() throws Exception {
+        var batcher = new WriteBatcher(8, 1024, this::sink);
+        batcher.beginBatch();
+        batcher.add(frame("one"));
+        batcher.beginBatch();
+        batcher.add(frame("two"));
+        batcher.endBatch();
+        var shared = ByteBuffer.wrap("shared".getBytes()).asReadOnlyBuffer();
+        batcher.add(shared);
+        assertFalse(shared.hasRemaining());
+        assertTrue("only the outer end writes", writes.isEmpty());
+
+        batcher.endBatch();
+        assertEquals(List.of(List.of("one", "two", "shared")), writes);
+        assertEquals(1, batcher.getWriteCount());
+    }
+
+    @Test
+    public void testLimitsWriteDuringBatch() throws Exception {
+        var batcher = new WriteBatcher(2, 1024, this::sink);
+        batcher.beginBatch();
+        batcher.add(frame("a"));
+        batcher.add(frame("b"));
+        batcher.add(frame("c"));
+        assertEquals(List.of(List.of("a", "b")), writes);
+
+        var byBytes = new WriteBatcher(16, 8, this::sink);
+        byBytes.beginBatch();
+        byBytes.add(frame("12345"));
+        byBytes.add(frame("6789"));
+        assertEquals(List.of(List.of("a", "b"), List.of("12345")), writes);
+        byBytes.endBatch();
+        batcher.endBatch();
+        assertEquals(List.of(List.of("a", "b"), List.of("12345"), List.of("6789"), List.of("c")), writes);
+    }
+
+    @Test
+    public void testLingerWritesAfterDelay() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        var written = new CountDownLatch(1);
+        var batcher = new WriteBatcher(8, 1024, 20000, scheduler, (buffers, count) -> {
+            sink(buffers, count);
+            written.countDown();
+        }, ex -> fail(ex.getMessage()));
+
+        batcher.add(frame("one"));
+        batcher.add(frame("two"));
+        synchronized (writes) {
+            assertTrue(writes.isEmpty());
+        }
+
+        assertTrue(written.await(2, TimeUnit.SECONDS));
+        synchronized (writes) {
+            assertEquals(List.of(List.of("one", "two")), writes);
+        }
+    }
+
+    @Test
+    public void testDiscardDropsHeldFrames() throws Exception {
+        var batcher = new WriteBatcher(8, 1024, this::sink);
+        batcher.beginBatch();
+        batcher.add(frame("one"));
+        batcher.discard();
+        batcher.endBatch();
+        batcher.add(frame("two"));
+        assertEquals(List.of(List.of("two")), writes);
+    }
+
+    /**
+     * Fills the same buffer each time, as a connection does with its command buffer, so that the test also checks
+     * writable buffers are copied rather than held.
+     */
+    private ByteBuffer frame(String text) {
+        return reused.clear().put(text.getBytes(StandardCharsets.US_ASCII)).flip();
+    }
+}
@@ -0,0 +1,191 @@
+package com.thecoderscorner.menu.remote.encryption;
+
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
+import com.thecoderscorner.menu.remote.SharedStreamConnection;
+import com.thecoderscorner.menu.remote.StreamRemoteConnector;
+import com.thecoderscorner.menu.remote.commands.MenuChangeCommand;
+import com.thecoderscorner.menu.remote.commands.MenuCommand;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand;
+import com.thecoderscorner.menu.remote.protocol.ConfigurableProtocolConverter;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static com.thecoderscorner.menu.remote.commands.CommandFactory.newAbsoluteMenuChangeCommand;
+import static com.thecoderscorner.menu.remote.commands.CommandFactory.newHeartbeatCommand;
+import static org.junit.Assert.*;
+
+public class ProtocolEncryptionHandlerTest {
+    private static final String KEY = Base64.getEncoder().encodeToString("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+
+    @Test
+    public void testCbcBufferMethodsMatchArrayMethods() throws Exception {
+        var sender = new AESProtocolEncryptionHandler(KEY);
+        var receiver = new AESProtocolEncryptionHandler(KEY);
+        for (int size : new int[] {1, 15, 16, 17, 100}) {
+            var plain = plainText(size);
+
+            var encrypted = ByteBuffer.allocate(256);
+            int len = sender.encryptInto(ByteBuffer.wrap(plain), encrypted);
+            assertEquals(sender.encryptBuffer(ByteBuffer.wrap(plain)).length, len);
+            encrypted.flip();
+            // the data is zero padded to a block, so the start of the decrypted data is the message
+            var decrypted = receiver.decryptBuffer(encrypted, len);
+            assertArrayEquals(plain, Arrays.copyOf(decrypted, size));
+
+            var fromArray = ByteBuffer.wrap(sender.encryptBuffer(ByteBuffer.wrap(plain)));
+            var output = ByteBuffer.allocate(256);
+            receiver.decryptInto(fromArray, fromArray.remaining(), output);
+            assertArrayEquals(plain, Arrays.copyOf(output.array(), size));
+        }
+    }
+
+    @Test
+    public void testGcmRoundTripWithUniqueNonces() throws Exception {
+        var sender = new AESGCMProtocolEncryptionHandler(KEY);
+        var receiver = new AESGCMProtocolEncryptionHandler(KEY);
+        var plain = plainText(37);
+
+        var first = ByteBuffer.allocate(128);
+        int len = sender.encryptInto(ByteBuffer.wrap(plain), first);
+        assertEquals(AESGCMProtocolEncryptionHandler.NONCE_LENGTH + 37 + AESGCMProtocolEncryptionHandler.TAG_LENGTH, len);
+        var second = ByteBuffer.wrap(sender.encryptBuffer(ByteBuffer.wrap(plain)));
+        assertFalse(Arrays.equals(Arrays.copyOf(first.array(), 12), Arrays.copyOf(second.array(), 12)));
+
+        var output = ByteBuffer.allocate(64);
+        receiver.decryptInto(first.flip(), len, output);
+        assertArrayEquals(plain, Arrays.copyOf(output.array(), output.position()));
+        assertArrayEquals(plain, receiver.decryptBuffer(second, second.remaining()));
+    }
+
+    @Test
+    public void testGcmRejectsAlteredMessage() throws Exception {
+        var sender = new AESGCMProtocolEncryptionHandler(KEY);
+        var receiver = new AESGCMProtocolEncryptionHandler(KEY);
+        var encrypted = sender.encryptBuffer(ByteBuffer.wrap(plainText(20)));
+        encrypted[15] ^= 1;
+
+        try {
+            receiver.decryptBuffer(ByteBuffer.wrap(encrypted), encrypted.length);
+            fail("altered message decrypted");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("not authentic"));
+        }
+    }
+
+    @Test
+    public void testEncryptFailsWhenOutputTooSmall() throws Exception {
+        var plain = ByteBuffer.wrap(plainText(40));
+        assertThrows(IOException.class, () -> new AESGCMProtocolEncryptionHandler(KEY).encryptInto(plain, ByteBuffer.allocate(40)));
+        assertThrows(IOException.class, () -> new AESProtocolEncryptionHandler(KEY).encryptInto(plain, ByteBuffer.allocate(40)));
+    }
+
+    @Test
+    public void testCommandsCrossEncryptedStream() throws Exception {
+        for (var mode : EncryptMode.values()) {
+            var factory = new AESEncryptionHandlerFactory(KEY, mode);
+            var wire = ByteBuffer.allocate(4096);
+            var sender = new LoopbackConnection(factory.create(), wire);
+            var receiver = new LoopbackConnection(factory.create(), wire);
+            assertEquals(mode, sender.getEncryptionMode());
+
+            sender.sendMenuCommand(newHeartbeatCommand(1500, MenuHeartbeatCommand.HeartbeatMode.NORMAL));
+            sender.sendMenuCommand(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 5, "a longer value that spans several blocks"));
+
+            var hb = (MenuHeartbeatCommand) receiver.readCommandFromStream();
+            assertEquals(1500, hb.getHearbeatInterval());
+            var change = (MenuChangeCommand) receiver.readCommandFromStream();
+            assertEquals("a longer value that spans several blocks", change.getValue());
+        }
+    }
+
+    @Test
+    public void testBroadcastFrameIsEncryptedByEachEncryptedConnection() throws Exception {
+        var frame = new EncodedCommandFrame(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 5, "broadcast value"));
+        for (var mode : EncryptMode.values()) {
+            var factory = new AESEncryptionHandlerFactory(KEY, mode);
+            var wire = ByteBuffer.allocate(4096);
+            var sender = new LoopbackConnection(factory.create(), wire);
+            var receiver = new LoopbackConnection(factory.create(), wire);
+
+            // the shared encoding is plain text, so it is not used, the command is encoded and encrypted instead
+            assertFalse(sender.sendEncodedFrame(frame));
+            assertFalse(wireText(wire).contains("broadcast value"));
+            var change = (MenuChangeCommand) receiver.readCommandFromStream();
+            assertEquals("broadcast value", change.getValue());
+        }
+
+        var wire = ByteBuffer.allocate(4096);
+        var plainSender = new LoopbackConnection(null, wire);
+        var plainReceiver = new LoopbackConnection(null, wire);
+        assertTrue(plainSender.sendEncodedFrame(frame));
+        assertTrue(wireText(wire).contains("broadcast value"));
+        var change = (MenuChangeCommand) plainReceiver.readCommandFromStream();
+        assertEquals("broadcast value", change.getValue());
+    }
+
+    private static String wireText(ByteBuffer wire) {
+        return new String(wire.array(), 0, wire.position(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] plainText(int size) {
+        var data = new byte[size];
+        for (int i = 0; i < size; i++) data[i] = (byte) ('A' + (i % 26));
+        return data;
+    }
+
+    /**
+     * A connection that writes to and reads from a shared in memory buffer, so that one instance can send to another.
+     */
+    private static class LoopbackConnection extends SharedStreamConnection {
+        private final ByteBuffer wire;
+
+        LoopbackConnection(ProtocolEncryptionHandler handler, ByteBuffer wire) {
+            super(new ConfigurableProtocolConverter(true), handler);
+            this.wire = wire;
+            inputBuffer.flip();
+        }
+
+        EncryptMode getEncryptionMode() {
+            return encryptionHandler.getEncryptMode();
+        }
+
+        @Override
+        protected void getAtLeastBytes(ByteBuffer inputBuffer, int len, StreamRemoteConnector.ReadMode mode) throws IOException {
+            if (mode == StreamRemoteConnector.ReadMode.ONLY_WHEN_EMPTY && inputBuffer.remaining() >= len) return;
+            wire.flip();
+            if (!wire.hasRemaining()) throw new IOException("Nothing left on the wire");
+            inputBuffer.compact();
+            int count = Math.min(inputBuffer.remaining(), wire.remaining());
+            inputBuffer.put(wire.slice(wire.position(), count));
+            wire.position(wire.position() + count);
+            inputBuffer.flip();
+            wire.compact();
+        }
+
+        @Override
+        protected void sendInternal(ByteBuffer cmdBuffer) {
+            wire.put(cmdBuffer);
+        }
+
+        @Override
+        public boolean isDeviceConnected() {
+            return true;
+        }
+
+        @Override
+        public String getConnectionName() {
+            return "loopback";
+        }
+
+        @Override
+        public boolean canSendMessageNow(MenuCommand cmd) {
+            return true;
+        }
+    }
+}
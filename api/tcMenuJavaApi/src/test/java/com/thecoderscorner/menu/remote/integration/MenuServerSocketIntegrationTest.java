@@ -12,6 +12,7 @@ import com.thecoderscorner.menu.remote.commands.AckStatus;
 import com.thecoderscorner.menu.remote.commands.MenuCommand;
 import com.thecoderscorner.menu.remote.commands.MenuDialogCommand;
 import com.thecoderscorner.menu.remote.mgrclient.SocketServerConnectionManager;
+import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
 import com.thecoderscorner.menu.remote.protocol.ConfigurableProtocolConverter;
 import com.thecoderscorner.menu.remote.protocol.CorrelationId;
 import com.thecoderscorner.menu.remote.protocol.SpannerCommand;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -43,9 +45,8 @@ public class MenuServerSocketIntegrationTest {
     private final UUID localUuid = UUID.randomUUID();
     private ConfigurableProtocolConverter protocol;
     private CountDownLatch treePopulatedLatch;
-    private volatile CountDownLatch correlationLatch;
     private volatile CountDownLatch itemUpdatedLatch;
-    private final AtomicReference<CorrelationId> correlationToWaitFor = new AtomicReference<>();
+    private final LinkedBlockingQueue<CorrelationId> acksReceived = new LinkedBlockingQueue<>();
     private final AtomicReference<RemoteInformation> remoteInfoReceived = new AtomicReference<>();
     private final AtomicInteger updateIdToWaitFor = new AtomicInteger();
 
@@ -72,7 +73,6 @@ public class MenuServerSocketIntegrationTest {
                 null);
         clientController = new RemoteMenuController(clientConnector, new MenuTree());
         treePopulatedLatch = new CountDownLatch(1);
-        correlationLatch = new CountDownLatch(1);
         itemUpdatedLatch = new CountDownLatch(1);
     }
 
@@ -82,13 +82,18 @@ public class MenuServerSocketIntegrationTest {
         menuServer.stop();
     }
 
+    @Test
+    void testConnectorThatHasNotSentCanBeClosed() {
+        assertDoesNotThrow(() -> clientConnector.close());
+    }
+
     @Test
     void testIntegrationOfSocketLayer() throws InterruptedException {
         serverConnection.start(menuServer);
         Thread.sleep(500); // give the socket time to start accepting
+        clientController.addListener(new IntegrationRemoteControllerListener());
         clientController.start();
 
-        clientController.addListener(new IntegrationRemoteControllerListener());
         AtomicReference<MenuCommand> customMsg = new AtomicReference<>();
         CountDownLatch customReceivedLatch = new CountDownLatch(1);
         clientController.addCustomMessageProcessor(SpannerCommand.SPANNER_MSG_TYPE, (remoteMenuController, menuCommand) -> {
@@ -104,6 +109,10 @@ public class MenuServerSocketIntegrationTest {
         // check that all items are in the client copy of the server tree.
         checkTreeEquality(menuServer.getManagedMenu(), clientController.getManagedMenu());
 
+        // both sides offered binary during join, so the hot path messages are now sent in binary
+        assertEquals(CommandProtocol.RAW_BIN_PROTOCOL, clientConnector.getPreferredProtocol());
+        assertEquals(CommandProtocol.RAW_BIN_PROTOCOL, ((SharedStreamConnection)serverConnection.getServerConnections().get(0)).getPreferredProtocol());
+
         var menuVolume = (AnalogMenuItem) menuServer.getManagedMenu().getMenuById(1).orElseThrow();
         var menuStatusEnum = (EnumMenuItem) menuServer.getManagedMenu().getMenuById(14).orElseThrow();
         var menuSsidText = (EditableTextMenuItem) menuServer.getManagedMenu().getMenuById(18).orElseThrow();
@@ -118,18 +127,17 @@ public class MenuServerSocketIntegrationTest {
         assertEquals(2, (int)MenuItemHelper.getValueFor(menuStatusEnum, clientController.getManagedMenu(), 0));
         assertEquals("hello", MenuItemHelper.getValueFor(menuSsidText, clientController.getManagedMenu(), ""));
 
-        correlationToWaitFor.set(clientController.sendDeltaUpdate(menuVolume, 1));
-        assertTrue(correlationLatch.await(2, TimeUnit.SECONDS));
+        // acks are queued as they arrive, as the ack can be received before the send call returns
+        var correlation = clientController.sendDeltaUpdate(menuVolume, 1);
+        assertEquals(correlation, acksReceived.poll(2, TimeUnit.SECONDS));
         assertEquals(23, (int)MenuItemHelper.getValueFor(menuVolume, menuServer.getManagedMenu(), 0));
 
-        correlationLatch = new CountDownLatch(1);
-        correlationToWaitFor.set(clientController.sendAbsoluteUpdate(menuStatusEnum, 2));
-        assertTrue(correlationLatch.await(2, TimeUnit.SECONDS));
+        correlation = clientController.sendAbsoluteUpdate(menuStatusEnum, 2);
+        assertEquals(correlation, acksReceived.poll(2, TimeUnit.SECONDS));
         assertEquals(2, (int)MenuItemHelper.getValueFor(menuStatusEnum, menuServer.getManagedMenu(), 0));
 
-        correlationLatch = new CountDownLatch(1);
-        correlationToWaitFor.set(clientController.sendAbsoluteUpdate(menuSsidText, "world"));
-        assertTrue(correlationLatch.await(2, TimeUnit.SECONDS));
+        correlation = clientController.sendAbsoluteUpdate(menuSsidText, "world");
+        assertEquals(correlation, acksReceived.poll(2, TimeUnit.SECONDS));
         assertEquals("world", MenuItemHelper.getValueFor(menuSsidText, menuServer.getManagedMenu(), ""));
 
         menuServer.sendCommand(new SpannerCommand(15, "hello there"));
@@ -161,7 +169,8 @@ public class MenuServerSocketIntegrationTest {
     private void waitForClientConnectionToBeEstablished() throws InterruptedException {
         // wait for a connection to be established at both sides.
         int count = 0;
-        while(serverConnection.getServerConnections().isEmpty() || !clientConnector.isDeviceConnected() && ++count < 100) {
+        while((serverConnection.getServerConnections().isEmpty() || !clientConnector.isDeviceConnected() || remoteInfoReceived.get() == null
+                || serverConnection.getServerConnections().get(0).getConnectionMode() != ServerConnectionMode.AUTHENTICATED) && ++count < 100) {
             Thread.sleep(100);
         }
 
@@ -193,9 +202,7 @@ public class MenuServerSocketIntegrationTest {
 
         @Override
         public void ackReceived(CorrelationId key, MenuItem item, AckStatus status) {
-            if(key.equals(correlationToWaitFor.get())) {
-                correlationLatch.countDown();
-            }
+            acksReceived.add(key);
         }
 
         @Override
@@ -0,0 +1,183 @@
+package com.thecoderscorner.menu.remote.integration;
+
+import com.thecoderscorner.menu.auth.PreDefinedAuthenticator;
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import com.thecoderscorner.menu.mgr.MenuManagerServer;
+import com.thecoderscorner.menu.mgr.ServerConnectionMode;
+import com.thecoderscorner.menu.remote.*;
+import com.thecoderscorner.menu.remote.commands.AckStatus;
+import com.thecoderscorner.menu.remote.commands.CommandFactory;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand;
+import com.thecoderscorner.menu.remote.commands.MenuDialogCommand;
+import com.thecoderscorner.menu.remote.mgrclient.NioServerConnectionManager;
+import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
+import com.thecoderscorner.menu.remote.protocol.ConfigurableProtocolConverter;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import com.thecoderscorner.menu.remote.socket.SocketBasedConnector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.thecoderscorner.menu.auth.PreDefinedAuthenticator.AuthenticationToken;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("BusyWait")
+public class NioServerConnectionManagerTest {
+    /** can be lowered with -Dtcmenu.nio.loadTestConnections when the machine has a small file handle limit */
+    private static final int IDLE_CONNECTIONS = Integer.getInteger("tcmenu.nio.loadTestConnections", 5000);
+    private static final int PORT = 9877;
+
+    private final UUID localUuid = UUID.randomUUID();
+    private ScheduledExecutorService executor;
+    private MenuManagerServer menuServer;
+    private NioServerConnectionManager serverConnection;
+    private ConfigurableProtocolConverter protocol;
+
+    @BeforeEach
+    void setUp() {
+        protocol = new ConfigurableProtocolConverter(true);
+        executor = Executors.newScheduledThreadPool(4);
+        var authenticator = new PreDefinedAuthenticator("4321", List.of(new AuthenticationToken("nio-client", localUuid.toString())));
+        serverConnection = new NioServerConnectionManager(protocol, executor, PORT, Clock.systemDefaultZone(), 30000);
+        menuServer = new MenuManagerServer(executor, DomainFixtures.fullEspAmplifierTestTree(), "nio-test",
+                UUID.randomUUID(), authenticator, Clock.systemDefaultZone());
+        menuServer.addConnectionManager(serverConnection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        menuServer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testClientCanBootstrapAndUpdateOverSelector() throws Exception {
+        serverConnection.start(menuServer);
+
+        var treePopulatedLatch = new CountDownLatch(1);
+        var acksReceived = new LinkedBlockingQueue<CorrelationId>();
+        var clientConnector = new SocketBasedConnector(new LocalIdentifier(localUuid, "nio-client"), executor,
+                Clock.systemDefaultZone(), protocol, "localhost", PORT, ConnectMode.FULLY_AUTHENTICATED, null);
+        var clientController = new RemoteMenuController(clientConnector, new MenuTree());
+        clientController.addListener(new RemoteControllerListener() {
+            @Override
+            public void menuItemChanged(MenuItem item, boolean valueOnly) {
+            }
+
+            @Override
+            public void treeFullyPopulated() {
+                treePopulatedLatch.countDown();
+            }
+
+            @Override
+            public void connectionState(RemoteInformation remoteInformation, AuthStatus connected) {
+            }
+
+            @Override
+            public void ackReceived(CorrelationId key, MenuItem item, AckStatus status) {
+                acksReceived.add(key);
+            }
+
+            @Override
+            public void dialogUpdate(MenuDialogCommand cmd) {
+            }
+        });
+
+        try {
+            clientController.start();
+            assertTrue(treePopulatedLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(1, serverConnection.getServerConnections().size());
+            assertEquals(ServerConnectionMode.AUTHENTICATED, serverConnection.getServerConnections().get(0).getConnectionMode());
+            assertEquals("nio-client", serverConnection.getServerConnections().get(0).getUserName());
+            assertEquals(CommandProtocol.RAW_BIN_PROTOCOL, clientConnector.getPreferredProtocol());
+
+            var menuVolume = (AnalogMenuItem) menuServer.getManagedMenu().getMenuById(1).orElseThrow();
+            var correlation = clientController.sendAbsoluteUpdate(menuVolume, 42);
+            assertEquals(correlation, acksReceived.poll(2, TimeUnit.SECONDS));
+            assertEquals(42, (int) MenuItemHelper.getValueFor(menuVolume, menuServer.getManagedMenu(), 0));
+        }
+        finally {
+            clientController.stop();
+        }
+    }
+
+    @Test
+    void testSelectorHoldsManyIdleConnections() throws Exception {
+        serverConnection.start(menuServer);
+        int threadsBefore = Thread.activeCount();
+
+        var clients = new ArrayList<SocketChannel>(IDLE_CONNECTIONS);
+        try {
+            for(int i = 0; i < IDLE_CONNECTIONS; i++) {
+                clients.add(SocketChannel.open(new InetSocketAddress("localhost", PORT)));
+            }
+
+            int count = 0;
+            while(serverConnection.getServerConnections().size() < IDLE_CONNECTIONS && ++count < 300) {
+                Thread.sleep(100);
+            }
+            assertEquals(IDLE_CONNECTIONS, serverConnection.getServerConnections().size());
+
+            // all those connections are served by the one selector thread that was started with the manager
+            assertTrue(Thread.activeCount() - threadsBefore < 10, "Threads grew to " + Thread.activeCount());
+
+            // reads only hold a pooled buffer while data is being processed, so idle connections do not keep one
+            assertTrue(serverConnection.getBufferPool().getAllocatedCount() < 10);
+        }
+        finally {
+            for(var client : clients) client.close();
+        }
+
+        int count = 0;
+        while(!serverConnection.getServerConnections().isEmpty() && ++count < 300) {
+            Thread.sleep(100);
+        }
+        assertTrue(serverConnection.getServerConnections().isEmpty());
+    }
+
+    @Test
+    void testMessageHandlersRunOffTheSelectorThread() throws Exception {
+        var handlerThreads = new LinkedBlockingQueue<String>();
+        serverConnection.start(connection -> connection.registerMessageHandler(
+                (c, cmd) -> handlerThreads.add(Thread.currentThread().getName())));
+
+        try(var client = SocketChannel.open(new InetSocketAddress("localhost", PORT))) {
+            var buffer = ByteBuffer.allocate(SharedStreamConnection.MAX_MSG_EXPECTED);
+            protocol.toChannel(buffer, CommandFactory.newHeartbeatCommand(1500, MenuHeartbeatCommand.HeartbeatMode.NORMAL));
+            protocol.toChannel(buffer, CommandFactory.newHeartbeatCommand(1500, MenuHeartbeatCommand.HeartbeatMode.NORMAL));
+            buffer.flip();
+            while(buffer.hasRemaining()) client.write(buffer);
+
+            for(int i = 0; i < 2; i++) {
+                var threadName = handlerThreads.poll(5, TimeUnit.SECONDS);
+                assertNotNull(threadName);
+                assertTrue(threadName.startsWith("nio-handler-"), "Handled on " + threadName);
+            }
+
+            // both messages were complete, so the connection goes back to holding no input buffer
+            var pool = serverConnection.getBufferPool();
+            int count = 0;
+            while(pool.getFreeCount() != pool.getAllocatedCount() && ++count < 50) {
+                Thread.sleep(100);
+            }
+            assertEquals(pool.getAllocatedCount(), pool.getFreeCount());
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.thecoderscorner.menu.remote.integration;
+
+import com.thecoderscorner.menu.auth.PreDefinedAuthenticator;
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import com.thecoderscorner.menu.mgr.MenuManagerServer;
+import com.thecoderscorner.menu.remote.ConnectionThreadMode;
+import com.thecoderscorner.menu.remote.AuthStatus;
+import com.thecoderscorner.menu.remote.OutboundQueuePolicy;
+import com.thecoderscorner.menu.remote.RemoteControllerListener;
+import com.thecoderscorner.menu.remote.RemoteInformation;
+import com.thecoderscorner.menu.remote.RemoteMenuController;
+import com.thecoderscorner.menu.remote.StreamRemoteConnector;
+import com.thecoderscorner.menu.remote.commands.AckStatus;
+import com.thecoderscorner.menu.remote.commands.MenuDialogCommand;
+import com.thecoderscorner.menu.remote.mgrclient.SocketServerConnection;
+import com.thecoderscorner.menu.remote.mgrclient.SocketServerConnectionManager;
+import com.thecoderscorner.menu.remote.protocol.ConfigurableProtocolConverter;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import com.thecoderscorner.menu.remote.protocol.SpannerCommand;
+import com.thecoderscorner.menu.remote.protocol.TagValMenuCommandProcessors;
+import com.thecoderscorner.menu.remote.socket.SocketControllerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.thecoderscorner.menu.auth.PreDefinedAuthenticator.AuthenticationToken;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadConnectionTest {
+    private static final int PORT = 9878;
+
+    private final UUID localUuid = UUID.randomUUID();
+    private ScheduledExecutorService executor;
+    private MenuManagerServer menuServer;
+    private SocketServerConnectionManager serverConnection;
+    private RemoteMenuController clientController;
+    private ConfigurableProtocolConverter protocol;
+
+    @BeforeEach
+    void setUp() {
+        protocol = new ConfigurableProtocolConverter(true);
+        protocol.addTagValInProcessor(SpannerCommand.SPANNER_MSG_TYPE, parser ->
+                new SpannerCommand(parser.getValueAsInt("ZA"), parser.getValue("ZB")));
+        protocol.addTagValOutProcessor(SpannerCommand.SPANNER_MSG_TYPE, (buffer, cmd) -> {
+            TagValMenuCommandProcessors.appendField(buffer, "ZA", cmd.getMetricSize());
+            TagValMenuCommandProcessors.appendField(buffer, "ZB", cmd.getMake());
+        }, SpannerCommand.class);
+
+        executor = Executors.newScheduledThreadPool(2);
+        var authenticator = new PreDefinedAuthenticator("4321", List.of(new AuthenticationToken("virtual-client", localUuid.toString())));
+        serverConnection = new SocketServerConnectionManager(protocol, executor, PORT, Clock.systemDefaultZone(),
+                30000, ConnectionThreadMode.VIRTUAL);
+        menuServer = new MenuManagerServer(executor, DomainFixtures.fullEspAmplifierTestTree(), "virtual-test",
+                UUID.randomUUID(), authenticator, Clock.systemDefaultZone());
+        menuServer.addConnectionManager(serverConnection);
+
+        clientController = new SocketControllerBuilder()
+                .withAddress("localhost").withPort(PORT)
+                .withMenuTree(new MenuTree())
+                .withLocalName("virtual-client").withUUID(localUuid)
+                .withProtocol(protocol).withExecutor(executor)
+                .withThreadMode(ConnectionThreadMode.VIRTUAL)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientController.stop();
+        menuServer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConnectionLoopsRunOnVirtualThreads() throws Exception {
+        var serverReadOnVirtual = new AtomicBoolean();
+        var clientReadOnVirtual = new AtomicBoolean();
+        var serverReceived = new CountDownLatch(1);
+        var clientReceived = new CountDownLatch(1);
+        menuServer.addCustomMessageProcessor(SpannerCommand.SPANNER_MSG_TYPE, (server, cmd) -> {
+            serverReadOnVirtual.set(Thread.currentThread().isVirtual());
+            serverReceived.countDown();
+            server.sendCommand(new SpannerCommand(10, "reply"));
+        });
+        clientController.addCustomMessageProcessor(SpannerCommand.SPANNER_MSG_TYPE, (controller, cmd) -> {
+            clientReadOnVirtual.set(Thread.currentThread().isVirtual());
+            clientReceived.countDown();
+        });
+
+        serverConnection.start(menuServer);
+        clientController.start();
+
+        int count = 0;
+        while(!clientController.isTreeFullyPopulated() && ++count < 100) {
+            Thread.sleep(100);
+        }
+        assertTrue(clientController.isTreeFullyPopulated());
+        assertEquals(ConnectionThreadMode.VIRTUAL, ((StreamRemoteConnector) clientController.getConnector()).getThreadMode());
+
+        // the bootstrap is sent as one batch, so it needs far fewer writes than there are items
+        var connection = (SocketServerConnection) serverConnection.getServerConnections().get(0);
+        int itemCount = menuServer.getManagedMenu().getAllMenuItems().size();
+        assertTrue(connection.getWriteBatcher().getWriteCount() < itemCount / 2);
+
+        clientController.getConnector().sendMenuCommand(new SpannerCommand(8, "request"));
+        assertTrue(serverReceived.await(2, TimeUnit.SECONDS));
+        assertTrue(clientReceived.await(2, TimeUnit.SECONDS));
+        assertTrue(serverReadOnVirtual.get());
+        assertTrue(clientReadOnVirtual.get());
+    }
+
+    @Test
+    void testQueuedOutputBootstrapsAndSendsLatestValue() throws Exception {
+        serverConnection.setOutboundQueue(OutboundQueuePolicy.CONFLATE_CHANGES, 512);
+        serverConnection.start(menuServer);
+        clientController.start();
+
+        int count = 0;
+        while(!clientController.isTreeFullyPopulated() && ++count < 100) {
+            Thread.sleep(100);
+        }
+        assertTrue(clientController.isTreeFullyPopulated());
+        var connection = (SocketServerConnection) serverConnection.getServerConnections().get(0);
+        assertEquals(OutboundQueuePolicy.CONFLATE_CHANGES, connection.getOutboundQueue().getPolicy());
+
+        // wait on the final value arriving rather than on time, any older value arriving after it would be a failure
+        var clientTree = clientController.getManagedMenu();
+        var clientItem = clientTree.getMenuById(1).orElseThrow();
+        var latestReceived = new CountDownLatch(1);
+        clientController.addListener(new RemoteControllerListener() {
+            @Override
+            public void menuItemChanged(MenuItem item, boolean valueOnly) {
+                if (item.getId() == clientItem.getId() && MenuItemHelper.getValueFor(clientItem, clientTree, -1) == 199) {
+                    latestReceived.countDown();
+                }
+            }
+
+            @Override
+            public void treeFullyPopulated() {
+            }
+
+            @Override
+            public void connectionState(RemoteInformation remoteInformation, AuthStatus connected) {
+            }
+
+            @Override
+            public void ackReceived(CorrelationId key, MenuItem item, AckStatus status) {
+            }
+
+            @Override
+            public void dialogUpdate(MenuDialogCommand cmd) {
+            }
+        });
+
+        var item = (AnalogMenuItem) menuServer.getManagedMenu().getMenuById(1).orElseThrow();
+        for(int i=0; i<200; i++) {
+            menuServer.updateMenuItem(this, item, i);
+        }
+
+        assertTrue(latestReceived.await(10, TimeUnit.SECONDS));
+        assertEquals(199, (int) MenuItemHelper.getValueFor(clientItem, clientTree, -1));
+        assertEquals(0, connection.getOutboundQueue().size());
+    }
+
+    @Test
+    void testReconnectWithUnchangedTreeOnlyRefreshesValues() throws Exception {
+        serverConnection.start(menuServer);
+        clientController.start();
+
+        int count = 0;
+        while(!clientController.isTreeFullyPopulated() && ++count < 100) {
+            Thread.sleep(100);
+        }
+        assertTrue(clientController.isTreeFullyPopulated());
+        assertEquals(menuServer.getManagedMenu().getSnapshot().getStructureHash(), clientController.getBootstrappedTreeHash());
+
+        // change a value while the client is away, it must still arrive through the value refresh
+        var connection = (SocketServerConnection) serverConnection.getServerConnections().get(0);
+        connection.closeConnection();
+        var item = (AnalogMenuItem) menuServer.getManagedMenu().getMenuById(1).orElseThrow();
+        menuServer.getManagedMenu().changeItem(item, MenuItemHelper.stateForMenuItem(item, 42, false, false));
+
+        count = 0;
+        while(menuServer.getBootstrapsRefreshed() == 0 && ++count < 200) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, menuServer.getBootstrapsRefreshed());
+
+        var clientItem = clientController.getManagedMenu().getMenuById(1).orElseThrow();
+        count = 0;
+        while(MenuItemHelper.getValueFor(clientItem, clientController.getManagedMenu(), -1) != 42 && ++count < 100) {
+            Thread.sleep(50);
+        }
+        assertEquals(42, (int) MenuItemHelper.getValueFor(clientItem, clientController.getManagedMenu(), -1));
+    }
+}
@@ -0,0 +1,191 @@
+package com.thecoderscorner.menu.remote.protocol;
+
+import com.thecoderscorner.menu.domain.AnalogMenuItemBuilder;
+import com.thecoderscorner.menu.domain.BooleanMenuItem;
+import com.thecoderscorner.menu.domain.state.ListResponse;
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
+import com.thecoderscorner.menu.remote.MenuCommandProtocol;
+import com.thecoderscorner.menu.remote.commands.*;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand.HeartbeatMode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import static com.thecoderscorner.menu.remote.commands.CommandFactory.*;
+import static java.lang.System.Logger.Level.INFO;
+import static org.junit.Assert.*;
+
+public class BinaryMenuCommandProtocolTest {
+    private final System.Logger logger = System.getLogger(getClass().getSimpleName());
+    private ConfigurableProtocolConverter protocol;
+    private ByteBuffer bb;
+
+    @Before
+    public void setUp() {
+        protocol = new ConfigurableProtocolConverter(true);
+        bb = ByteBuffer.allocate(2048);
+    }
+
+    @Test
+    public void testHotPathMessagesRoundTrip() throws IOException {
+        var correlation = new CorrelationId("7fe2aa01");
+        roundTrip(newDeltaChangeCommand(correlation, 22, -5));
+        roundTrip(newAbsoluteMenuChangeCommand(correlation, 1, "12.5"));
+        roundTrip(newAbsoluteMenuChangeCommand(CorrelationId.EMPTY_CORRELATION, 1, "with|separators=ok é"));
+        roundTrip(newAbsoluteListChangeCommand(correlation, 30, List.of("one", "two", "three")));
+        roundTrip(newListResponseChangeCommand(correlation, 30, ListResponse.fromString("12:1").orElseThrow()));
+        roundTrip(newHeartbeatCommand(1500, HeartbeatMode.START));
+        roundTrip(newHeartbeatCommand(1500, HeartbeatMode.NORMAL));
+        roundTrip(newHeartbeatCommand(30000, HeartbeatMode.END));
+        roundTrip(newAcknowledgementCommand(correlation, AckStatus.SUCCESS));
+        roundTrip(newAcknowledgementCommand(correlation, AckStatus.VALUE_RANGE_WARNING));
+        roundTrip(newBootstrapCommand(MenuBootstrapCommand.BootType.START));
+        roundTrip(newBootstrapCommand(MenuBootstrapCommand.BootType.END));
+        roundTrip(newBootstrapCommand(MenuBootstrapCommand.BootType.START, 0x8badf00d12345678L, true));
+        roundTrip(newBootstrapCommand(MenuBootstrapCommand.BootType.END, 0x8badf00d12345678L, false));
+    }
+
+    @Test
+    public void testBootItemsRoundTrip() throws IOException {
+        roundTrip(newAnalogBootCommand(0, DomainFixtures.anAnalogItem("Volume", 1), 22));
+        roundTrip(newMenuSubBootCommand(0, DomainFixtures.aSubMenu("Settings", 2)));
+        roundTrip(newMenuActionBootCommand(2, DomainFixtures.anActionMenu("Save", 3)));
+        roundTrip(newMenuEnumBootCommand(2, DomainFixtures.anEnumItem("Input", 4), 1));
+        roundTrip(newMenuBooleanBootCommand(2, DomainFixtures.aBooleanMenu("Mute", 5, BooleanMenuItem.BooleanNaming.YES_NO), true));
+        roundTrip(newMenuFloatBootCommand(2, DomainFixtures.aFloatMenu("Temp", 6), 12.25F));
+        roundTrip(newMenuTextBootCommand(2, DomainFixtures.aTextMenu("SSID", 7), "home network"));
+    }
+
+    @Test
+    public void testEepromAddressesAboveSignedShortRoundTrip() throws IOException {
+        for(int eeprom : new int[] { -1, 0, 32767, 32768, 65534 }) {
+            var item = AnalogMenuItemBuilder.anAnalogMenuItemBuilder().withName("Volume").withId(1)
+                    .withEepromAddr(eeprom).withMaxValue(255).menuItem();
+            bb.clear();
+            protocol.toChannel(bb, newAnalogBootCommand(0, item, 22), CommandProtocol.RAW_BIN_PROTOCOL);
+            bb.flip().get();
+            var received = (MenuAnalogBootCommand) protocol.fromChannel(bb);
+            assertEquals(eeprom, received.getMenuItem().getEepromAddress());
+        }
+    }
+
+    @Test
+    public void testBinaryOnlyUsedWhenPreferred() throws IOException {
+        var change = newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 22, 5);
+        protocol.toChannel(bb, change);
+        assertEquals(CommandProtocol.TAG_VAL_PROTOCOL.getProtoNum(), bb.get(1));
+
+        bb.clear();
+        protocol.toChannel(bb, change, CommandProtocol.RAW_BIN_PROTOCOL);
+        assertEquals(CommandProtocol.RAW_BIN_PROTOCOL.getProtoNum(), bb.get(1));
+
+        // join has no binary form, so it is always written as tag value
+        bb.clear();
+        protocol.toChannel(bb, newJoinCommand("test", UUID.randomUUID(), "1234"), CommandProtocol.RAW_BIN_PROTOCOL);
+        assertEquals(CommandProtocol.TAG_VAL_PROTOCOL.getProtoNum(), bb.get(1));
+
+        assertTrue(protocol.supportsBinaryNegotiation());
+        protocol.setBinaryNegotiation(false);
+        assertFalse(protocol.supportsBinaryNegotiation());
+    }
+
+    @Test
+    public void testBinaryMessagesAreFullyConsumed() throws IOException {
+        var first = newDeltaChangeCommand(new CorrelationId("1234"), 22, 5);
+        var second = newHeartbeatCommand(1500, HeartbeatMode.NORMAL);
+        protocol.toChannel(bb, first, CommandProtocol.RAW_BIN_PROTOCOL);
+
+        // a newer peer may add fields to the end of a message, these are skipped over
+        int lenPosition = bb.position() - 15;
+        bb.putShort(lenPosition, (short) (bb.getShort(lenPosition) + 3));
+        bb.put(new byte[] {9, 9, 9});
+
+        protocol.toChannel(bb, second, CommandProtocol.RAW_BIN_PROTOCOL);
+        bb.flip();
+
+        assertEquals(MenuCommandProtocol.PROTO_START_OF_MSG, bb.get());
+        assertEquals(first.toString(), protocol.fromChannel(bb).toString());
+        assertEquals(MenuCommandProtocol.PROTO_START_OF_MSG, bb.get());
+        assertEquals(second, protocol.fromChannel(bb));
+        assertFalse(bb.hasRemaining());
+    }
+
+    @Test(expected = TcProtocolException.class)
+    public void testTruncatedBinaryMessageIsProtocolError() throws IOException {
+        bb.put(CommandProtocol.RAW_BIN_PROTOCOL.getProtoNum())
+                .put((byte) MenuCommandType.CHANGE_INT_FIELD.getHigh())
+                .put((byte) MenuCommandType.CHANGE_INT_FIELD.getLow())
+                .putShort((short) 3).put(new byte[] {1, 2, 3})
+                .flip();
+        protocol.fromChannel(bb);
+    }
+
+    @Test
+    public void testEncodedFrameKeepsEncodingPerFormat() throws IOException {
+        var frame = new EncodedCommandFrame(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 22, 5));
+        var tagVal = frame.encodedFor(protocol, CommandProtocol.TAG_VAL_PROTOCOL);
+        var binary = frame.encodedFor(protocol, CommandProtocol.RAW_BIN_PROTOCOL);
+        assertEquals(CommandProtocol.TAG_VAL_PROTOCOL.getProtoNum(), tagVal.get(1));
+        assertEquals(CommandProtocol.RAW_BIN_PROTOCOL.getProtoNum(), binary.get(1));
+        assertEquals(binary, frame.encodedFor(protocol, CommandProtocol.RAW_BIN_PROTOCOL));
+        assertEquals(tagVal, frame.encodedFor(protocol));
+    }
+
+    /**
+     * Compares the size on the wire of the hot path messages in both formats, the cost of parsing them is measured
+     * by ProtocolConverterBenchmark in the benchmarks module.
+     */
+    @Test
+    public void testWireSizeAgainstTagVal() throws IOException {
+        var correlation = new CorrelationId();
+        List<MenuCommand> commands = List.of(
+                newDeltaChangeCommand(correlation, 22, 1),
+                newAbsoluteMenuChangeCommand(correlation, 1, "222"),
+                newHeartbeatCommand(1500, HeartbeatMode.NORMAL),
+                newAcknowledgementCommand(correlation, AckStatus.SUCCESS),
+                newAnalogBootCommand(0, DomainFixtures.anAnalogItem("Volume", 1), 22)
+        );
+
+        int tagValTotal = 0;
+        int binaryTotal = 0;
+        for(var cmd : commands) {
+            int tagValSize = encode(cmd, CommandProtocol.TAG_VAL_PROTOCOL).remaining();
+            int binarySize = encode(cmd, CommandProtocol.RAW_BIN_PROTOCOL).remaining();
+            logger.log(INFO, "{0} tag value {1} bytes, binary {2} bytes", cmd.getCommandType(), tagValSize, binarySize);
+            assertTrue("binary larger for " + cmd, binarySize < tagValSize);
+            tagValTotal += tagValSize;
+            binaryTotal += binarySize;
+        }
+        logger.log(INFO, "Hot path total: tag value {0} bytes, binary {1} bytes", tagValTotal, binaryTotal);
+        assertTrue(binaryTotal < tagValTotal);
+    }
+
+    private ByteBuffer encode(MenuCommand cmd, CommandProtocol format) throws TcProtocolException {
+        var buffer = ByteBuffer.allocate(1024);
+        protocol.toChannel(buffer, cmd, format);
+        return buffer.flip();
+    }
+
+    private void roundTrip(MenuCommand cmd) throws IOException {
+        bb.clear();
+        protocol.toChannel(bb, cmd, CommandProtocol.RAW_BIN_PROTOCOL);
+        bb.flip();
+        assertEquals(MenuCommandProtocol.PROTO_START_OF_MSG, bb.get());
+        assertEquals(CommandProtocol.RAW_BIN_PROTOCOL.getProtoNum(), bb.get(bb.position()));
+        var received = protocol.fromChannel(bb);
+        assertFalse(bb.hasRemaining());
+        assertEquals(cmd.getClass(), received.getClass());
+        // change equality compares the correlation by identity, so compare the text instead
+        if(cmd instanceof MenuChangeCommand) {
+            assertEquals(cmd.toString(), received.toString());
+        }
+        else {
+            assertEquals(cmd, received);
+        }
+    }
+}
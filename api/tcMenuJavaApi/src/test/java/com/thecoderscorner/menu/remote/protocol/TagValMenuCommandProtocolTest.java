@@ -13,6 +13,7 @@ import com.thecoderscorner.menu.domain.FloatMenuItemBuilder;
 import com.thecoderscorner.menu.domain.state.ListResponse;
 import com.thecoderscorner.menu.domain.state.PortableColor;
 import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.remote.EncodedCommandFrame;
 import com.thecoderscorner.menu.remote.MenuCommandProtocol;
 import com.thecoderscorner.menu.remote.commands.*;
 import com.thecoderscorner.menu.remote.commands.MenuChangeCommand.ChangeType;
@@ -72,6 +73,14 @@ public class TagValMenuCommandProtocolTest {
         assertEquals("987654321", join.getSerialNumber());
         assertEquals(ApiPlatform.JAVA_API, join.getPlatform());
         assertEquals(JOIN, join.getCommandType());
+        assertFalse(join.isBinaryCapable());
+
+        join = (MenuJoinCommand) protocol.fromChannel(toBuffer(JOIN, "NM=IoTdevice|UU=07cd8bc6-734d-43da-84e7-6084990becfc|US=987654321|VE=1223|PF=1|PB=1|\u0002"));
+        assertTrue(join.isBinaryCapable());
+        assertEquals(0, join.getKnownTreeHash());
+
+        join = (MenuJoinCommand) protocol.fromChannel(toBuffer(JOIN, "NM=IoTdevice|UU=07cd8bc6-734d-43da-84e7-6084990becfc|US=987654321|VE=1223|PF=1|TH=f00dcafe12345678|\u0002"));
+        assertEquals(0xf00dcafe12345678L, join.getKnownTreeHash());
     }
 
     @Test
@@ -101,6 +110,12 @@ public class TagValMenuCommandProtocolTest {
 
         cmd = protocol.fromChannel(toBuffer(BOOTSTRAP,"BT=END|\u0002"));
         checkBootstrapFields(cmd,MenuBootstrapCommand.BootType.END);
+        assertEquals(0, ((MenuBootstrapCommand) cmd).getTreeHash());
+
+        cmd = protocol.fromChannel(toBuffer(BOOTSTRAP,"BT=START|TH=12ab|VR=1|\u0002"));
+        checkBootstrapFields(cmd,MenuBootstrapCommand.BootType.START);
+        assertEquals(0x12ab, ((MenuBootstrapCommand) cmd).getTreeHash());
+        assertTrue(((MenuBootstrapCommand) cmd).isValueRefresh());
     }
 
     private void checkBootstrapFields(MenuCommand cmd, MenuBootstrapCommand.BootType bootTy) {
@@ -308,6 +323,18 @@ public class TagValMenuCommandProtocolTest {
         assertTrue(boolCmd.getMenuItem().isReadOnly());
     }
 
+    @Test
+    public void testReceiveSubscribe() throws IOException {
+        MenuCommand cmd = protocol.fromChannel(toBuffer(SUBSCRIBE, "SI=12,5,12|\u0002"));
+        assertTrue(cmd instanceof MenuSubscribeCommand);
+        MenuSubscribeCommand subscribe = (MenuSubscribeCommand) cmd;
+        assertEquals(List.of(5, 12), subscribe.getSubMenuIds());
+        assertFalse(subscribe.isEverything());
+
+        cmd = protocol.fromChannel(toBuffer(SUBSCRIBE, "SI=|\u0002"));
+        assertTrue(((MenuSubscribeCommand) cmd).isEverything());
+    }
+
     @Test
     public void testReceivePairing() throws IOException {
         MenuCommand cmd = protocol.fromChannel(toBuffer(PAIRING_REQUEST, "NM=someUI|UU=575d327e-fe76-4e68-b0b8-45eea154a126|\u0002"));
@@ -419,6 +446,13 @@ public class TagValMenuCommandProtocolTest {
         testBufferAgainstExpected(JOIN, "NM=dave|UU=07cd8bc6-734d-43da-84e7-6084990becfc|VE=101|PF=0|US=999999999|\u0002");
     }
 
+    @Test
+    public void testWritingBinaryCapableJoin() throws TcProtocolException {
+        var uuid = UUID.fromString("07cd8bc6-734d-43da-84e7-6084990becfc");
+        protocol.toChannel(bb, new MenuJoinCommand(uuid,"dave", ApiPlatform.ARDUINO, 101, "999999999", true));
+        testBufferAgainstExpected(JOIN, "NM=dave|UU=07cd8bc6-734d-43da-84e7-6084990becfc|VE=101|PF=0|US=999999999|PB=1|\u0002");
+    }
+
     @Test
     public void testWritingLargeIntegerBoot() throws TcProtocolException {
         protocol.toChannel(bb, new MenuLargeNumBootCommand(10, DomainFixtures.aLargeNumber("largeNum", 111, 4, true), BigDecimal.ONE));
@@ -431,6 +465,19 @@ public class TagValMenuCommandProtocolTest {
         testBufferAgainstExpected(BOOTSTRAP, "BT=START|\u0002");
     }
 
+    @Test
+    public void testWritingBootstrapWithTreeHash() throws TcProtocolException {
+        protocol.toChannel(bb, newBootstrapCommand(MenuBootstrapCommand.BootType.END, 0xf00dcafe12345678L, true));
+        testBufferAgainstExpected(BOOTSTRAP, "BT=END|TH=f00dcafe12345678|VR=1|\u0002");
+    }
+
+    @Test
+    public void testWritingJoinWithTreeHash() throws TcProtocolException {
+        var uuid = UUID.fromString("07cd8bc6-734d-43da-84e7-6084990becfc");
+        protocol.toChannel(bb, new MenuJoinCommand(uuid,"dave", ApiPlatform.ARDUINO, 101, "999999999", false, 0xabcL));
+        testBufferAgainstExpected(JOIN, "NM=dave|UU=07cd8bc6-734d-43da-84e7-6084990becfc|VE=101|PF=0|US=999999999|TH=abc|\u0002");
+    }
+
     @Test
     public void testWritingAnalogItem() throws TcProtocolException {
         protocol.toChannel(bb, new MenuAnalogBootCommand(321,
@@ -500,6 +547,26 @@ public class TagValMenuCommandProtocolTest {
         testBufferAgainstExpected(TEXT_BOOT_ITEM, "PI=22|ID=1|IE=101|NM=TextItem|RO=0|VI=1|ML=10|EM=0|VC=ABC|\u0002");
     }
 
+    @Test
+    public void testWritingEscapedUnicodeAndExtremeValues() throws IOException {
+        var text = "a|b=c \u00e9\u20ac\ud83d\ude00";
+        protocol.toChannel(bb, new MenuTextBootCommand(22, DomainFixtures.aTextMenu("TextItem", 1), text));
+        bb.flip();
+        byte[] expected = ("\u0001\u0001BTPI=22|ID=1|IE=101|NM=TextItem|RO=0|VI=1|ML=10|EM=0|VC=" +
+                text.replace("|", "\\|").replace("=", "\\=") + "|\u0002").getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        assertArrayEquals(expected, java.util.Arrays.copyOf(msgData, bb.limit()));
+
+        bb.clear();
+        protocol.toChannel(bb, new MenuAnalogBootCommand(0, DomainFixtures.anAnalogItem("Test", 123), Integer.MIN_VALUE));
+        bb.position(1);
+        var analog = (MenuAnalogBootCommand) protocol.fromChannel(bb);
+        assertEquals(Integer.MIN_VALUE, (int) analog.getCurrentValue());
+
+        bb.clear();
+        protocol.toChannel(bb, newAcknowledgementCommand(new CorrelationId(0xabcdL), AckStatus.SUCCESS));
+        testBufferAgainstExpected(ACKNOWLEDGEMENT, "IC=0000abcd|ST=0|\u0002");
+    }
+
     @Test
     public void testWritingBooleanItemOnOff() throws TcProtocolException {
         protocol.toChannel(bb, new MenuBooleanBootCommand(22,
@@ -554,6 +621,12 @@ public class TagValMenuCommandProtocolTest {
         testBufferAgainstExpected(PAIRING_REQUEST,"NM=pairingtest|UU=575d327e-fe76-4e68-b0b8-45eea154a126|\u0002");
     }
 
+    @Test
+    public void testWritingSubscribe() throws TcProtocolException {
+        protocol.toChannel(bb, newSubscribeCommand(List.of(7, 3)));
+        testBufferAgainstExpected(SUBSCRIBE, "SI=3,7|\u0002");
+    }
+
     @Test
     public void testWritingDialogUpdate() throws TcProtocolException {
 
@@ -592,6 +665,26 @@ public class TagValMenuCommandProtocolTest {
         assertEquals("Super Duper", spannerCmd.getMake());
     }
 
+    @Test
+    public void testEncodedFrameIsEncodedOnceAndShared() throws IOException {
+        var frame = new EncodedCommandFrame(newDeltaChangeCommand(CorrelationId.EMPTY_CORRELATION, 22, 5));
+        assertFalse(frame.isEncoded());
+        var first = frame.encodedFor(protocol);
+        var second = frame.encodedFor(protocol);
+        assertTrue(frame.isEncoded());
+        assertTrue(first.isReadOnly());
+        assertEquals(first, second);
+
+        protocol.toChannel(bb, frame.getCommand());
+        bb.flip();
+        assertEquals(bb, first);
+
+        // reading one view must not affect the other, and another protocol cannot share the frame
+        first.get();
+        assertEquals(bb.remaining(), second.remaining());
+        assertNull(frame.encodedFor(new ConfigurableProtocolConverter(true)));
+    }
+
     @Test
     public void testSendingAndReceivingCustomBinData() throws IOException {
         var binData = new BinaryDataCommand(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
@@ -6,6 +6,7 @@
 
 package com.thecoderscorner.menu.remote.protocol;
 
+import com.thecoderscorner.menu.remote.commands.MenuBootstrapCommand;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
@@ -13,6 +14,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class TagValTextParserTest {
 
@@ -62,6 +64,46 @@ public class TagValTextParserTest {
         assertEquals(123, parser.getValueAsIntWithDefault("AB", 42));
     }
 
+    @Test
+    public void testParserCanBeReusedAcrossMessages() throws IOException {
+        TagValTextParser parser = new TagValTextParser();
+        ByteBuffer bb = ByteBuffer.wrap("ID=22|VC=-1234|BT=END|\u0002AB=1|\u0002".getBytes());
+        parser.parse(bb);
+        assertEquals(3, parser.getFieldCount());
+        assertEquals(22, parser.getValueAsInt("ID"));
+        assertEquals(-1234, parser.getValueAsInt("VC"));
+        assertEquals(MenuBootstrapCommand.BootType.END, parser.getValueAsEnum("BT", MenuBootstrapCommand.BootType.values()));
+
+        parser.parse(bb);
+        assertEquals(1, parser.getFieldCount());
+        assertEquals(1, parser.getValueAsInt("AB"));
+        assertEquals(42, parser.getValueAsIntWithDefault("ID", 42));
+        assertFalse(bb.hasRemaining());
+    }
+
+    @Test
+    public void testNumericDecodingFromBytes() throws IOException {
+        TagValTextParser parser = toBuffer("A1=2147483647|A2=-2147483648|A3=12a|A4=2147483648|IC=0012abcd|IE=|\u0002");
+        assertEquals(Integer.MAX_VALUE, parser.getValueAsInt("A1"));
+        assertEquals(Integer.MIN_VALUE, parser.getValueAsInt("A2"));
+        Assertions.assertThrows(NumberFormatException.class, ()-> parser.getValueAsInt("A3"));
+        Assertions.assertThrows(NumberFormatException.class, ()-> parser.getValueAsInt("A4"));
+        assertEquals(0x12abcdL, parser.getValueAsHexWithDefault("IC", 0));
+        assertEquals(0, parser.getValueAsHexWithDefault("IE", 0));
+        assertEquals(99, parser.getValueAsHexWithDefault("ZZ", 99));
+        Assertions.assertThrows(TcProtocolException.class, ()-> parser.getValueAsEnum("A3", MenuBootstrapCommand.BootType.values()));
+    }
+
+    @Test
+    public void testLongKeysAndValuesInDirectBuffer() throws IOException {
+        String longValue = "x".repeat(300);
+        byte[] data = ("LONGKEY=" + longValue + "|ES=a\\=b|\u0002").getBytes();
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        TagValTextParser parser = new TagValTextParser(direct);
+        assertEquals(longValue, parser.getValue("LONGKEY"));
+        assertEquals("a=b", parser.getValue("ES"));
+    }
+
     private TagValTextParser toBuffer(String s) throws IOException {
         return new TagValTextParser(ByteBuffer.wrap(s.getBytes()));
     }
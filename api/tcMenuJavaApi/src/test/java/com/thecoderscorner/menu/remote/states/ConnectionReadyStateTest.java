@@ -0,0 +1,87 @@
+package com.thecoderscorner.menu.remote.states;
+
+import com.thecoderscorner.menu.remote.AuthStatus;
+import com.thecoderscorner.menu.remote.HeartbeatWheel;
+import com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.thecoderscorner.menu.remote.commands.MenuHeartbeatCommand.HeartbeatMode.NORMAL;
+import static org.mockito.ArgumentMatchers.any;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class ConnectionReadyStateTest {
+    private final AtomicLong now = new AtomicLong(10000);
+    private RemoteConnectorContext context;
+    private HeartbeatWheel wheel;
+
+    @Before
+    public void setUp() {
+        var clock = mock(Clock.class);
+        when(clock.millis()).thenAnswer(inv -> now.get());
+        wheel = new HeartbeatWheel(clock, 100, 64);
+
+        var executor = mock(ScheduledExecutorService.class);
+        doAnswer(inv -> {
+            ((Runnable) inv.getArgument(0)).run();
+            return null;
+        }).when(executor).execute(any());
+
+        context = mock(RemoteConnectorContext.class);
+        when(context.getClock()).thenReturn(clock);
+        when(context.getHeartbeatWheel()).thenReturn(wheel);
+        when(context.getScheduledExecutor()).thenReturn(executor);
+        when(context.getConnectionName()).thenReturn("test");
+    }
+
+    @Test
+    public void testShorterIntervalFromRemoteReschedulesHeartbeat() {
+        var state = new ConnectionReadyState(context);
+        state.enterState();
+        receive(state, new MenuHeartbeatCommand(1500, NORMAL));
+
+        advanceTo(11400);
+        verify(context, never()).sendHeartbeat(anyInt(), any());
+        advanceTo(11600);
+        verify(context).sendHeartbeat(1500, NORMAL);
+
+        // the remote keeps sending, so the connection stays up well beyond the old default interval
+        for (long t = 11700; t <= 20000; t += 100) {
+            if (t % 1000 == 0) receive(state, new MenuHeartbeatCommand(1500, NORMAL));
+            advanceTo(t);
+        }
+        verify(context, never()).close();
+        verify(context, never()).changeState(AuthStatus.CONNECTION_FAILED);
+        verify(context, atLeast(5)).sendHeartbeat(1500, NORMAL);
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testLeavingStateStopsHeartbeat() {
+        var state = new ConnectionReadyState(context);
+        state.enterState();
+        state.exitState(null);
+        receive(state, new MenuHeartbeatCommand(1500, NORMAL));
+
+        advanceTo(30000);
+        verify(context, never()).sendHeartbeat(anyInt(), any());
+        verify(context, never()).close();
+    }
+
+    private void receive(ConnectionReadyState state, MenuHeartbeatCommand cmd) {
+        // as the read loop does for each command it reads
+        state.lastReception.set(now.get());
+        state.processMessage(cmd);
+    }
+
+    private void advanceTo(long millis) {
+        now.set(millis);
+        wheel.advance();
+    }
+}
@@ -0,0 +1,70 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.domain.*;
+import com.thecoderscorner.menu.domain.state.MapMenuStateStore;
+import com.thecoderscorner.menu.domain.state.MenuStateStore;
+import com.thecoderscorner.menu.domain.state.MenuTree;
+
+import java.util.List;
+
+/**
+ * Builds trees of a given size for the benchmarks. Items are spread across sub menus of up to 100 items each, and
+ * cycle through the common item types so that lookups and serialisation see a realistic mix.
+ */
+public final class BenchmarkTrees {
+    public static final int ITEMS_PER_SUB_MENU = 100;
+
+    private BenchmarkTrees() {
+    }
+
+    /**
+     * Creates a tree that holds the requested number of items, ids start at 1 and are contiguous, sub menus are
+     * included in the count.
+     * @param size the number of items to create
+     * @return the populated tree with state initialised for each item
+     */
+    public static MenuTree treeOfSize(int size) {
+        return treeOfSize(size, new MapMenuStateStore(size));
+    }
+
+    /**
+     * Creates a tree as above, with the state held in the store provided.
+     * @param size the number of items to create
+     * @param stateStore the store for the state of each item
+     * @return the populated tree with state initialised for each item
+     */
+    public static MenuTree treeOfSize(int size, MenuStateStore stateStore) {
+        var tree = new MenuTree(stateStore);
+        SubMenuItem currentSub = MenuTree.ROOT;
+        int itemsInSub = ITEMS_PER_SUB_MENU;
+        for(int id = 1; id <= size; id++) {
+            if(itemsInSub == ITEMS_PER_SUB_MENU) {
+                currentSub = SubMenuItemBuilder.aSubMenuItemBuilder().withId(id).withName("Sub " + id).menuItem();
+                tree.addMenuItem(MenuTree.ROOT, currentSub);
+                itemsInSub = 0;
+            }
+            else {
+                tree.addMenuItem(currentSub, itemFor(id));
+                itemsInSub++;
+            }
+        }
+        tree.initialiseStateForEachItem();
+        return tree;
+    }
+
+    private static MenuItem itemFor(int id) {
+        return switch (id % 5) {
+            case 0 -> EnumMenuItemBuilder.anEnumMenuItemBuilder().withId(id).withName("Enum " + id)
+                    .withEepromAddr(id * 2).withEnumList(List.of("One", "Two", "Three")).menuItem();
+            case 1 -> BooleanMenuItemBuilder.aBooleanMenuItemBuilder().withId(id).withName("Bool " + id)
+                    .withNaming(BooleanMenuItem.BooleanNaming.ON_OFF).menuItem();
+            case 2 -> EditableTextMenuItemBuilder.aTextMenuItemBuilder().withId(id).withName("Text " + id)
+                    .withEditItemType(EditItemType.PLAIN_TEXT).withLength(10).menuItem();
+            case 3 -> FloatMenuItemBuilder.aFloatMenuItemBuilder().withId(id).withName("Float " + id)
+                    .withDecimalPlaces(2).menuItem();
+            default -> AnalogMenuItemBuilder.anAnalogMenuItemBuilder().withId(id).withName("Analog " + id)
+                    .withEepromAddr(id * 2).withMaxValue(10000).withOffset(0).withDivisor(10).withUnit("dB")
+                    .menuItem();
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.ScrollChoiceMenuItem;
+import com.thecoderscorner.menu.domain.ScrollChoiceMenuItemBuilder;
+import com.thecoderscorner.menu.domain.util.DomainFixtures;
+import com.thecoderscorner.menu.mgr.MenuCallback;
+import com.thecoderscorner.menu.mgr.MenuManagerListener;
+import com.thecoderscorner.menu.mgr.ScrollChoiceValueRetriever;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of calling the annotated listener methods that the manager calls on each change, an
+ * `@MenuCallback` method and an `@ScrollChoiceValueRetriever` method, comparing `Method.invoke` with a method handle
+ * adapted once up front, as the manager now does at registration. Run with `-prof gc` to see the allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CallbackDispatchBenchmark {
+    private static final int VOLUME_ID = 1;
+    private static final int CHANNEL_ID = 2;
+
+    private BenchListener listener;
+    private AnalogMenuItem volume;
+    private ScrollChoiceMenuItem channel;
+    private Method callbackMethod;
+    private MethodHandle callbackHandle;
+    private Method retrieverMethod;
+    private MethodHandle retrieverHandle;
+    private int row;
+
+    @Setup
+    public void setUp() throws Exception {
+        volume = DomainFixtures.anAnalogItem("Volume", VOLUME_ID);
+        listener = new BenchListener();
+
+        callbackMethod = BenchListener.class.getMethod("volumeChanged", Object.class, AnalogMenuItem.class);
+        callbackHandle = MethodHandles.lookup().unreflect(callbackMethod).bindTo(listener)
+                .asType(MethodType.methodType(void.class, Object.class, MenuItem.class));
+
+        channel = new ScrollChoiceMenuItemBuilder().withId(CHANNEL_ID).withName("Channel").withNumEntries(10).menuItem();
+        retrieverMethod = BenchListener.class.getMethod("channelValue", ScrollChoiceMenuItem.class, int.class);
+        retrieverHandle = MethodHandles.lookup().unreflect(retrieverMethod).bindTo(listener)
+                .asType(MethodType.methodType(String.class, MenuItem.class, int.class));
+    }
+
+    @Benchmark
+    public int reflectiveCallback() throws Exception {
+        callbackMethod.invoke(listener, this, volume);
+        return listener.calls;
+    }
+
+    @Benchmark
+    public int methodHandleCallback() throws Throwable {
+        callbackHandle.invokeExact((Object) this, (MenuItem) volume);
+        return listener.calls;
+    }
+
+    @Benchmark
+    public Object reflectiveScrollValue() throws Exception {
+        return retrieverMethod.invoke(listener, channel, (row++) & 0xff);
+    }
+
+    @Benchmark
+    public String methodHandleScrollValue() throws Throwable {
+        return (String) retrieverHandle.invokeExact((MenuItem) channel, (row++) & 0xff);
+    }
+
+    public static class BenchListener implements MenuManagerListener {
+        private int calls;
+
+        @MenuCallback(id = VOLUME_ID)
+        public void volumeChanged(Object sender, AnalogMenuItem item) {
+            calls++;
+        }
+
+        @ScrollChoiceValueRetriever(id = CHANNEL_ID)
+        public String channelValue(ScrollChoiceMenuItem item, int row) {
+            return (row & 1) == 0 ? "Even" : "Odd";
+        }
+
+        @Override
+        public void menuItemHasChanged(Object sender, MenuItem item) {
+        }
+
+        @Override
+        public void managerWillStart() {
+        }
+
+        @Override
+        public void managerWillStop() {
+        }
+    }
+}
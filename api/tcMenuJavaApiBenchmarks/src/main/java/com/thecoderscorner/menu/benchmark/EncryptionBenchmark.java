@@ -0,0 +1,65 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.remote.encryption.AESGCMProtocolEncryptionHandler;
+import com.thecoderscorner.menu.remote.encryption.AESProtocolEncryptionHandler;
+import com.thecoderscorner.menu.remote.encryption.ProtocolEncryptionHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encrypting and then decrypting one typical change message, as an encrypted connection does for each
+ * command. Compares the original array based CBC methods with the buffer based CBC and GCM methods that connections
+ * now use. Run with `-prof gc` to see the allocation per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncryptionBenchmark {
+    private static final String KEY = Base64.getEncoder().encodeToString("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+    private static final byte[] MESSAGE = "\u0001\u0001VC|IC=1|TC=0|VC=Volume 22.5dB|\u0002".getBytes(StandardCharsets.US_ASCII);
+
+    private ProtocolEncryptionHandler cbcSender;
+    private ProtocolEncryptionHandler cbcReceiver;
+    private ProtocolEncryptionHandler gcmSender;
+    private ProtocolEncryptionHandler gcmReceiver;
+    private final ByteBuffer plain = ByteBuffer.wrap(MESSAGE);
+    private final ByteBuffer encrypted = ByteBuffer.allocate(256);
+    private final ByteBuffer decrypted = ByteBuffer.allocate(256);
+
+    @Setup
+    public void setUp() throws Exception {
+        cbcSender = new AESProtocolEncryptionHandler(KEY);
+        cbcReceiver = new AESProtocolEncryptionHandler(KEY);
+        gcmSender = new AESGCMProtocolEncryptionHandler(KEY);
+        gcmReceiver = new AESGCMProtocolEncryptionHandler(KEY);
+    }
+
+    @Benchmark
+    public int cbcArrays() throws Exception {
+        var data = cbcSender.encryptBuffer(plain.clear());
+        return cbcReceiver.decryptBuffer(ByteBuffer.wrap(data), data.length).length;
+    }
+
+    @Benchmark
+    public int cbcBuffers() throws Exception {
+        return roundTrip(cbcSender, cbcReceiver);
+    }
+
+    @Benchmark
+    public int gcmBuffers() throws Exception {
+        return roundTrip(gcmSender, gcmReceiver);
+    }
+
+    private int roundTrip(ProtocolEncryptionHandler sender, ProtocolEncryptionHandler receiver) throws Exception {
+        int len = sender.encryptInto(plain.clear(), encrypted.clear());
+        receiver.decryptInto(encrypted.flip(), len, decrypted.clear());
+        return decrypted.position();
+    }
+}
@@ -0,0 +1,46 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.persist.JsonMenuItemSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON form of a tree in both directions, as used for copy and paste and for menu persistence.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonMenuItemSerializerBenchmark {
+    @Param({"100", "1000"})
+    public int treeSize;
+
+    private final JsonMenuItemSerializer serializer = new JsonMenuItemSerializer();
+    private MenuTree tree;
+    private String treeText;
+
+    @Setup
+    public void setUp() {
+        tree = BenchmarkTrees.treeOfSize(treeSize);
+        treeText = serializer.itemsToCopyText(MenuTree.ROOT, tree);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return serializer.itemsToCopyText(MenuTree.ROOT, tree);
+    }
+
+    @Benchmark
+    public MenuTree deserialize() {
+        return serializer.newMenuTreeWithItems(treeText);
+    }
+
+    @Benchmark
+    public MenuTree roundTrip() {
+        return serializer.newMenuTreeWithItems(serializer.itemsToCopyText(MenuTree.ROOT, tree));
+    }
+}
@@ -0,0 +1,53 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.state.AnyMenuState;
+import com.thecoderscorner.menu.domain.state.MapMenuStateStore;
+import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.domain.state.PrimitiveMenuStateStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the map and primitive state stores for the high rate analog update path, and for reading state back.
+ * Run with `-prof gc` to see the allocation per update for each store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MenuStateStoreBenchmark {
+    @Param({"map", "primitive"})
+    public String store;
+
+    @Param({"10000"})
+    public int treeSize;
+
+    private MenuTree tree;
+    private AnalogMenuItem[] analogItems;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setUp() {
+        var stateStore = store.equals("map") ? new MapMenuStateStore(treeSize) : new PrimitiveMenuStateStore(treeSize + 1);
+        tree = BenchmarkTrees.treeOfSize(treeSize, stateStore);
+        analogItems = tree.getAllMenuItems().stream().filter(item -> item instanceof AnalogMenuItem)
+                .toArray(AnalogMenuItem[]::new);
+    }
+
+    @Benchmark
+    public void changeAnalogValue() {
+        tree.changeItemValue(analogItems[random.nextInt(analogItems.length)], random.nextInt(10000), true, false);
+    }
+
+    @Benchmark
+    public AnyMenuState changeThenReadState() {
+        var item = analogItems[random.nextInt(analogItems.length)];
+        tree.changeItemValue(item, random.nextInt(10000), true, false);
+        return tree.getMenuState(item);
+    }
+}
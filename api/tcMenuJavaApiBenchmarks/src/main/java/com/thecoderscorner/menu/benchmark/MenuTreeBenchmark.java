@@ -0,0 +1,59 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.domain.AnalogMenuItem;
+import com.thecoderscorner.menu.domain.MenuItem;
+import com.thecoderscorner.menu.domain.SubMenuItem;
+import com.thecoderscorner.menu.domain.state.AnyMenuState;
+import com.thecoderscorner.menu.domain.state.MenuTree;
+import com.thecoderscorner.menu.domain.util.MenuItemHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the tree lookups and the incremental value change used when a delta update arrives, at a range of tree
+ * sizes. Ids are chosen randomly so that the position of an item in the tree does not favour any one size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MenuTreeBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int treeSize;
+
+    private MenuTree tree;
+    private MenuItem[] items;
+    private AnalogMenuItem[] analogItems;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int delta = 1;
+
+    @Setup
+    public void setUp() {
+        tree = BenchmarkTrees.treeOfSize(treeSize);
+        items = tree.getAllMenuItems().stream().filter(item -> item.getId() > 0).toArray(MenuItem[]::new);
+        analogItems = tree.getAllMenuItems().stream().filter(item -> item instanceof AnalogMenuItem)
+                .toArray(AnalogMenuItem[]::new);
+    }
+
+    @Benchmark
+    public Optional<MenuItem> getMenuById() {
+        return tree.getMenuById(random.nextInt(1, treeSize + 1));
+    }
+
+    @Benchmark
+    public SubMenuItem findParent() {
+        return tree.findParent(items[random.nextInt(items.length)]);
+    }
+
+    @Benchmark
+    public Optional<AnyMenuState> applyIncrementalValueChange() {
+        // alternate the direction so values stay within range across iterations
+        delta = -delta;
+        return MenuItemHelper.applyIncrementalValueChange(analogItems[random.nextInt(analogItems.length)], delta, tree);
+    }
+}
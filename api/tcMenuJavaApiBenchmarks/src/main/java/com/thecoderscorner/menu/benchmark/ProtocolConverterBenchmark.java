@@ -0,0 +1,113 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.domain.*;
+import com.thecoderscorner.menu.domain.state.CurrentScrollPosition;
+import com.thecoderscorner.menu.domain.state.ListResponse;
+import com.thecoderscorner.menu.domain.state.PortableColor;
+import com.thecoderscorner.menu.remote.commands.*;
+import com.thecoderscorner.menu.remote.protocol.CommandProtocol;
+import com.thecoderscorner.menu.remote.protocol.ConfigurableProtocolConverter;
+import com.thecoderscorner.menu.remote.protocol.CorrelationId;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.thecoderscorner.menu.remote.commands.CommandFactory.*;
+
+/**
+ * Measures writing and reading each message type that has a default processor. The format parameter selects the
+ * preferred wire format, message types without a binary form are written as tag value in both cases. The change
+ * message is measured both as a delta and as an absolute value. The remote boot item and form messages have no
+ * default processors so they are not included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolConverterBenchmark {
+    @Param({"JOIN", "PAIRING_REQUEST", "HEARTBEAT", "BOOTSTRAP", "ANALOG_BOOT_ITEM", "ACTION_BOOT_ITEM",
+            "SUBMENU_BOOT_ITEM", "ENUM_BOOT_ITEM", "BOOLEAN_BOOT_ITEM", "TEXT_BOOT_ITEM", "RUNTIME_LIST_BOOT",
+            "BOOT_SCROLL_CHOICE", "BOOT_RGB_COLOR", "LARGE_NUM_BOOT_ITEM", "FLOAT_BOOT_ITEM", "ACKNOWLEDGEMENT",
+            "CHANGE_INT_FIELD", "ABSOLUTE_CHANGE", "DIALOG_UPDATE"})
+    public String commandType;
+
+    @Param({"TAG_VAL_PROTOCOL", "RAW_BIN_PROTOCOL"})
+    public CommandProtocol format;
+
+    private ConfigurableProtocolConverter protocol;
+    private MenuCommand command;
+    private ByteBuffer outBuffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        protocol = new ConfigurableProtocolConverter(true);
+        command = sampleCommand(commandType);
+        outBuffer = ByteBuffer.allocate(8192).order(ByteOrder.BIG_ENDIAN);
+
+        protocol.toChannel(outBuffer, command, format);
+        outBuffer.flip();
+        outBuffer.get(); // the start of message is consumed by the connection before the protocol is called
+        encoded = ByteBuffer.allocate(outBuffer.remaining()).put(outBuffer).flip();
+    }
+
+    @Benchmark
+    public ByteBuffer toChannel() throws IOException {
+        outBuffer.clear();
+        protocol.toChannel(outBuffer, command, format);
+        return outBuffer;
+    }
+
+    @Benchmark
+    public MenuCommand fromChannel() throws IOException {
+        return protocol.fromChannel(encoded.duplicate());
+    }
+
+    static MenuCommand sampleCommand(String type) {
+        var correlation = new CorrelationId("1a2b3c4d");
+        return switch (type) {
+            case "JOIN" -> newJoinCommand("benchmark", UUID.fromString("07cd8bc6-734d-43da-84e7-6084990becfc"), "999999999");
+            case "PAIRING_REQUEST" -> newPairingCommand("benchmark", UUID.fromString("07cd8bc6-734d-43da-84e7-6084990becfc"));
+            case "HEARTBEAT" -> newHeartbeatCommand(1500, MenuHeartbeatCommand.HeartbeatMode.NORMAL);
+            case "BOOTSTRAP" -> newBootstrapCommand(MenuBootstrapCommand.BootType.START);
+            case "ANALOG_BOOT_ITEM" -> newAnalogBootCommand(0, AnalogMenuItemBuilder.anAnalogMenuItemBuilder()
+                    .withId(1).withName("Volume").withEepromAddr(2).withMaxValue(255).withOffset(-180)
+                    .withDivisor(2).withUnit("dB").menuItem(), 22);
+            case "ACTION_BOOT_ITEM" -> newMenuActionBootCommand(0, ActionMenuItemBuilder.anActionMenuItemBuilder()
+                    .withId(2).withName("Save").menuItem());
+            case "SUBMENU_BOOT_ITEM" -> newMenuSubBootCommand(0, SubMenuItemBuilder.aSubMenuItemBuilder()
+                    .withId(3).withName("Settings").menuItem());
+            case "ENUM_BOOT_ITEM" -> newMenuEnumBootCommand(3, EnumMenuItemBuilder.anEnumMenuItemBuilder()
+                    .withId(4).withName("Input").withEnumList(List.of("Line", "Phono", "Aux")).menuItem(), 1);
+            case "BOOLEAN_BOOT_ITEM" -> newMenuBooleanBootCommand(3, BooleanMenuItemBuilder.aBooleanMenuItemBuilder()
+                    .withId(5).withName("Mute").withNaming(BooleanMenuItem.BooleanNaming.ON_OFF).menuItem(), true);
+            case "TEXT_BOOT_ITEM" -> newMenuTextBootCommand(3, EditableTextMenuItemBuilder.aTextMenuItemBuilder()
+                    .withId(6).withName("SSID").withEditItemType(EditItemType.PLAIN_TEXT).withLength(20).menuItem(), "home network");
+            case "RUNTIME_LIST_BOOT" -> newRuntimeListBootCommand(3, RuntimeListMenuItemBuilder.aRuntimeListMenuItemBuilder()
+                    .withId(7).withName("Networks").withInitialRows(3).menuItem(), List.of("home", "work", "cafe"));
+            case "BOOT_SCROLL_CHOICE" -> new MenuScrollChoiceBootCommand(3, new ScrollChoiceMenuItemBuilder()
+                    .withId(8).withName("Choice").withItemWidth(10).withNumEntries(20).menuItem(), new CurrentScrollPosition(2, "Two"));
+            case "BOOT_RGB_COLOR" -> new MenuRgb32BootCommand(3, new Rgb32MenuItemBuilder()
+                    .withId(9).withName("Colour").withAlpha(true).menuItem(), new PortableColor(255, 128, 0, 255));
+            case "LARGE_NUM_BOOT_ITEM" -> newLargeNumberBootItem(3, EditableLargeNumberMenuItemBuilder.aLargeNumberItemBuilder()
+                    .withId(10).withName("Large").withDecimalPlaces(4).withTotalDigits(12).withNegativeAllowed(true).menuItem(),
+                    new BigDecimal("1234.5678"));
+            case "FLOAT_BOOT_ITEM" -> newMenuFloatBootCommand(3, FloatMenuItemBuilder.aFloatMenuItemBuilder()
+                    .withId(11).withName("Temp").withDecimalPlaces(2).menuItem(), 21.5F);
+            case "ACKNOWLEDGEMENT" -> newAcknowledgementCommand(correlation, AckStatus.SUCCESS);
+            case "CHANGE_INT_FIELD" -> newDeltaChangeCommand(correlation, 1, 5);
+            case "ABSOLUTE_CHANGE" -> newAbsoluteMenuChangeCommand(correlation, 1, "222");
+            case "DIALOG_UPDATE" -> newDialogCommand(DialogMode.SHOW, "Header", "Dialog message",
+                    MenuButtonType.ACCEPT, MenuButtonType.CANCEL, correlation);
+            default -> throw new IllegalArgumentException("No sample command for " + type);
+        };
+    }
+}
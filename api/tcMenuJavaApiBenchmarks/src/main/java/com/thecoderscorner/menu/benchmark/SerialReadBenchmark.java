@@ -0,0 +1,105 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.fazecast.jSerialComm.SerialPort;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original per byte serial read loop of Rs232RemoteConnector with the bulk read it now uses. A python
+ * helper opens a pseudo-terminal and acts as the device, writing a bootstrap sized block each time it is asked, the
+ * benchmark opens the other side with jSerialComm exactly as the connector opens a real port. Each operation
+ * requests one block and reads it fully into a buffer using the read loop under test, which is a copy of the loop in
+ * the connector as embedCONTROLCore is not a dependency of this module. Requires python3 on the path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerialReadBenchmark {
+    @Param({"perByte", "bulk"})
+    public String readMode;
+
+    @Param({"16384"})
+    public int blockSize;
+
+    private Process standIn;
+    private SerialPort serialPort;
+    private final ByteBuffer inputBuffer = ByteBuffer.allocate(8192);
+    private final byte[] request = { 'g' };
+
+    @Setup
+    public void setUp() throws IOException {
+        var script = Files.createTempFile("pty-standin", ".py");
+        try (var in = getClass().getResourceAsStream("/serial/pty-standin.py")) {
+            Files.write(script, in.readAllBytes());
+        }
+        standIn = new ProcessBuilder("python3", script.toString(), Integer.toString(blockSize))
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        var portName = new BufferedReader(new InputStreamReader(standIn.getInputStream())).readLine();
+        if (portName == null) throw new IOException("pseudo terminal stand in did not start, is python3 available?");
+
+        serialPort = SerialPort.getCommPort(portName);
+        serialPort.setBaudRate(115200);
+        if (!serialPort.openPort()) throw new IOException("Could not open " + portName);
+        if (readMode.equals("bulk")) {
+            serialPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, 100, 0);
+        }
+        Files.deleteIfExists(script);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        serialPort.writeBytes(new byte[] {'q'}, 1);
+        serialPort.closePort();
+        standIn.destroy();
+        standIn.waitFor(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public int readBlock() throws IOException {
+        serialPort.writeBytes(request, 1);
+        int total = 0;
+        while (total < blockSize) {
+            inputBuffer.clear().flip();
+            if (readMode.equals("bulk")) {
+                bulkRead(inputBuffer, 1);
+            } else {
+                perByteRead(inputBuffer, 1);
+            }
+            total += inputBuffer.remaining();
+        }
+        return total;
+    }
+
+    /** The read loop Rs232RemoteConnector used before, one read call per byte */
+    private void perByteRead(ByteBuffer inputBuffer, int len) throws IOException {
+        do {
+            inputBuffer.compact();
+            while (serialPort.bytesAvailable() > 0 && inputBuffer.hasRemaining()) {
+                inputBuffer.put((byte) serialPort.getInputStream().read());
+            }
+            inputBuffer.flip();
+        } while (inputBuffer.remaining() < len);
+    }
+
+    /** The bulk read loop Rs232RemoteConnector now uses, without coalescing */
+    private void bulkRead(ByteBuffer inputBuffer, int len) throws IOException {
+        do {
+            inputBuffer.compact();
+            int toRead = Math.max(1, Math.min(serialPort.bytesAvailable(), inputBuffer.remaining()));
+            int actual = serialPort.readBytes(inputBuffer.array(), toRead, inputBuffer.arrayOffset() + inputBuffer.position());
+            if (actual < 0) throw new IOException("read failed");
+            inputBuffer.position(inputBuffer.position() + actual);
+            inputBuffer.flip();
+        } while (inputBuffer.remaining() < len);
+    }
+}
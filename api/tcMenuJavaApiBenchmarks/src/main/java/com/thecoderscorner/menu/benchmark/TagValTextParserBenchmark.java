@@ -0,0 +1,48 @@
+package com.thecoderscorner.menu.benchmark;
+
+import com.thecoderscorner.menu.remote.protocol.TagValTextParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures indexing a typical boot item message, both by constructing a new parser for each message and by reusing
+ * one parser as the protocol converter does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TagValTextParserBenchmark {
+    private static final String MESSAGE = "PI=0|ID=1|IE=2|NM=Volume|RO=0|VI=1|AO=-180|AD=2|AM=255|AS=1|AU=dB|VC=22|\u0002";
+
+    private final TagValTextParser reusedParser = new TagValTextParser();
+    private ByteBuffer message;
+
+    @Setup
+    public void setUp() {
+        message = ByteBuffer.wrap(MESSAGE.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String constructParser() throws IOException {
+        var parser = new TagValTextParser(message.duplicate());
+        return parser.getValue("NM");
+    }
+
+    @Benchmark
+    public String reuseParser() throws IOException {
+        try {
+            reusedParser.parse(message.duplicate());
+            return reusedParser.getValue("NM");
+        }
+        finally {
+            reusedParser.clear();
+        }
+    }
+}
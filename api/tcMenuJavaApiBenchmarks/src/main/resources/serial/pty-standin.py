@@ -0,0 +1,21 @@
+# Stands in for a serial device during the serial read benchmark. Opens a pseudo-terminal pair, prints the name of
+# the slave side for the benchmark to open as its serial port, then each time a request byte arrives on the master
+# side it writes back a block of the requested size, much like a device sending a bootstrap.
+import os
+import sys
+import tty
+
+block_size = int(sys.argv[1])
+master, slave = os.openpty()
+tty.setraw(slave)
+print(os.ttyname(slave), flush=True)
+
+block = bytes((i % 250) + 3 for i in range(block_size))
+while True:
+    request = os.read(master, 1)
+    if not request or request == b'q':
+        break
+    view = memoryview(block)
+    while view:
+        written = os.write(master, view)
+        view = view[written:]